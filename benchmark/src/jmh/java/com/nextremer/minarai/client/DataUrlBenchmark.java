@@ -0,0 +1,40 @@
+package com.nextremer.minarai.client;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * Benchmark of image data URL encoding. Base64 is the JVM implementation, not the one of Android.
+ *
+ * @author nextremer.com
+ */
+@State(Scope.Thread)
+public class DataUrlBenchmark {
+
+    @Param({"16384", "262144"})
+    public int size;        // Image size in bytes.
+
+    private byte[] bytes;   // Image.
+
+    /**
+     * Setup.
+     */
+    @Setup
+    public void setup() {
+        bytes = new byte[size];
+        new Random(0L).nextBytes(bytes);
+    }
+
+    /**
+     * Encode data URL.
+     */
+    @Benchmark
+    public String toDataUrl() {
+        return Util.toDataUrl("image/jpeg", bytes);
+    }
+}
@@ -0,0 +1,144 @@
+package com.nextremer.minarai.client;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import io.socket.parser.IOParser;
+import io.socket.parser.Packet;
+import io.socket.parser.Parser;
+
+/**
+ * Benchmark of inbound Socket.IO frames, from the raw text the socket receives.
+ * Both decoders are fed the same frame like '2["message",{...}]', so the parse by the default decoder is included.
+ * Dispatch benchmarks continue to a listener reading payload id, as a listener matching replies does.
+ *
+ * @author nextremer.com
+ */
+@State(Scope.Thread)
+public class DecodeBenchmark {
+
+    @Param({"message", "logs-100", "logs-1000"})
+    public String frame;            // Frame: MESSAGE, or LOGS with the number of entries.
+
+    private String text;            // Raw frame.
+    private MinaraiEvent event;     // Event of frame.
+
+    private IOParser.Decoder orgJsonDecoder;    // Default decoder, used with org.json codec.
+    private StreamingDecoder streamingDecoder;  // Decoder of streaming codec.
+    private Packet<?> decoded;                  // Last decoded packet.
+
+    private MinaraiClient orgJsonClient;    // Client with org.json codec.
+    private MinaraiClient streamingClient;  // Client with streaming codec.
+    private long received;                  // Sink of listeners.
+
+    /**
+     * Setup.
+     */
+    @Setup
+    public void setup() throws JSONException {
+
+        JSONObject payload;
+
+        if(frame.equals("message")) {
+            event = MinaraiEvent.MESSAGE;
+            payload = Fixtures.message("bot-1");
+        }
+        else {
+            event = MinaraiEvent.LOGS;
+            payload = Fixtures.logs(Integer.parseInt(frame.substring("logs-".length())));
+        }
+
+        text = Parser.EVENT + new JSONArray().put(event.toString()).put(payload).toString();
+
+        Parser.Decoder.Callback callback = new Parser.Decoder.Callback() {
+            @Override
+            public void call(Packet packet) {
+                decoded = packet;
+            }
+        };
+
+        orgJsonDecoder = new IOParser.Decoder();
+        orgJsonDecoder.onDecoded(callback);
+
+        streamingDecoder = new StreamingDecoder();
+        streamingDecoder.onDecoded(callback);
+
+        orgJsonClient = newClient(MinaraiJsonCodec.ORG_JSON);
+        streamingClient = newClient(MinaraiJsonCodec.STREAMING);
+    }
+
+    /**
+     * Tear down.
+     */
+    @TearDown
+    public void tearDown() {
+        orgJsonClient.close();
+        streamingClient.close();
+    }
+
+    /**
+     * Decode frame by the default decoder, which parses the payload.
+     */
+    @Benchmark
+    public Object decodeOrgJson() {
+        orgJsonDecoder.add(text);
+        return decoded;
+    }
+
+    /**
+     * Decode frame by the streaming decoder, which defers parsing of the payload.
+     */
+    @Benchmark
+    public Object decodeStreaming() {
+        streamingDecoder.add(text);
+        return decoded;
+    }
+
+    /**
+     * Decode frame by the default decoder and dispatch it.
+     */
+    @Benchmark
+    public long dispatchOrgJson() throws JSONException {
+        orgJsonDecoder.add(text);
+        orgJsonClient.onSocketIoEvent(event, ((JSONArray)decoded.data).get(1));
+        return received;
+    }
+
+    /**
+     * Decode frame by the streaming decoder and dispatch it.
+     */
+    @Benchmark
+    public long dispatchStreaming() throws JSONException {
+        streamingDecoder.add(text);
+        streamingClient.onSocketIoEvent(event, ((JSONArray)decoded.data).get(1));
+        return received;
+    }
+
+    /**
+     * Create client with a listener reading payload id.
+     *
+     * @param codec Codec.
+     * @return Client.
+     */
+    private MinaraiClient newClient(MinaraiJsonCodec codec) {
+
+        MinaraiClient client = Fixtures.newClient(codec);
+
+        client.on(event, new MinaraiEventDataListener() {
+            @Override
+            public void onEvent(MinaraiEventData data) {
+                String id = data.getId();
+                received += (id != null) ? id.length() : 0;
+            }
+        });
+
+        return client;
+    }
+}
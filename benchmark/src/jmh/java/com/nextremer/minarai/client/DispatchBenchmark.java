@@ -0,0 +1,69 @@
+package com.nextremer.minarai.client;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmark of inbound MESSAGE events, from the Socket.IO argument to the last inline listener.
+ * With org.json codec, the argument is parsed by the Socket.IO decoder beforehand, which is not included.
+ * See {@link DecodeBenchmark} for the cost from raw frames, including the decoder.
+ *
+ * @author nextremer.com
+ */
+@State(Scope.Thread)
+public class DispatchBenchmark {
+
+    @Param({"1", "8", "64"})
+    public int listeners;       // Number of listeners.
+
+    @Param({"ORG_JSON", "STREAMING"})
+    public MinaraiJsonCodec codec;  // Codec, which defines the argument type.
+
+    private MinaraiClient client;   // Client.
+    private Object argument;        // Argument given by Socket.IO.
+    private long received;          // Sink of listeners.
+
+    /**
+     * Setup.
+     */
+    @Setup
+    public void setup() throws JSONException {
+
+        client = Fixtures.newClient(codec);
+
+        JSONObject message = Fixtures.message("bot-1");
+        argument = (codec == MinaraiJsonCodec.STREAMING) ? new RawJson(message.toString()) : message;
+
+        for(int i = 0; i < listeners; i++) {
+            client.on(MinaraiEvent.MESSAGE, new MinaraiEventListener() {
+                @Override
+                public void onEvent(MinaraiEvent event, JSONObject data) {
+                    received += data.length();
+                }
+            });
+        }
+    }
+
+    /**
+     * Tear down.
+     */
+    @TearDown
+    public void tearDown() {
+        client.close();
+    }
+
+    /**
+     * Dispatch one event.
+     */
+    @Benchmark
+    public long dispatch() {
+        client.onSocketIoEvent(MinaraiEvent.MESSAGE, argument);
+        return received;
+    }
+}
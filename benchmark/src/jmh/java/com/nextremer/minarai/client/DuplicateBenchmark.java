@@ -0,0 +1,89 @@
+package com.nextremer.minarai.client;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmark of copying LOGS payloads.
+ * reparse is the former implementation of {@link Util#duplicate(JSONObject)}, kept as baseline.
+ * readOnlyView is what listeners receive instead of a copy.
+ *
+ * @author nextremer.com
+ */
+@State(Scope.Thread)
+public class DuplicateBenchmark {
+
+    @Param({"1", "100", "1000"})
+    public int entries;         // Number of log entries.
+
+    private JSONObject logs;    // LOGS payload.
+
+    /**
+     * Setup.
+     */
+    @Setup
+    public void setup() throws JSONException {
+        logs = Fixtures.logs(entries);
+    }
+
+    /**
+     * Copy payload by encoding and parsing.
+     */
+    @Benchmark
+    public JSONObject reparse() throws JSONException {
+        return new JSONObject(logs.toString());
+    }
+
+    /**
+     * Copy payload structurally.
+     */
+    @Benchmark
+    public JSONObject duplicate() throws JSONException {
+        return Util.duplicate(logs);
+    }
+
+    /**
+     * Copy payload lazily and read the latest entry, as a listener showing the latest message does.
+     */
+    @Benchmark
+    public String lazyDuplicateReadLatest() throws JSONException {
+
+        JSONObject copy = Util.lazyDuplicate(logs);
+
+        return copy.getJSONObject("body").getJSONArray("logs").getJSONObject(entries - 1).getString("id");
+    }
+
+    /**
+     * Copy payload lazily and read all entries.
+     */
+    @Benchmark
+    public int lazyDuplicateReadAll() throws JSONException {
+
+        JSONObject copy = Util.lazyDuplicate(logs);
+        JSONArray list = copy.getJSONObject("body").getJSONArray("logs");
+        int length = 0;
+
+        for(int i = 0; i < list.length(); i++) {
+            length += list.getJSONObject(i).getJSONObject("body").getJSONArray("messages").length();
+        }
+
+        return length;
+    }
+
+    /**
+     * Create read-only view and read the latest entry, as a listener showing the latest message does.
+     */
+    @Benchmark
+    public String readOnlyViewReadLatest() throws JSONException {
+
+        JSONObject view = new ReadOnlyJsonObject(logs);
+
+        return view.getJSONObject("body").getJSONArray("logs").getJSONObject(entries - 1).getString("id");
+    }
+}
@@ -0,0 +1,155 @@
+package com.nextremer.minarai.client;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Payloads and clients shared by benchmarks.
+ *
+ * @author nextremer.com
+ */
+class Fixtures {
+
+    /**
+     * Constructor.
+     */
+    private Fixtures() {
+    }
+
+    /**
+     * Create client which is not connected.
+     *
+     * @param codec Codec.
+     * @return Client.
+     */
+    static MinaraiClient newClient(MinaraiJsonCodec codec) {
+        return new MinaraiClient("applicationId", "applicationSecret", "clientId", "userId", "deviceId",
+                new MinaraiClientOptions().putJsonCodec(codec));
+    }
+
+    /**
+     * Make body of send.
+     *
+     * @param uttr Message.
+     * @return Body.
+     * @throws JSONException Never.
+     */
+    static JSONObject sendBody(String uttr) throws JSONException {
+
+        JSONObject body = new JSONObject();
+        body.put("message", uttr);
+        body.put("position", new JSONObject().put("latitude", 35.681236).put("longitude", 139.767125));
+        body.put("extra", new JSONObject().put("screen", "chat").put("retry", false));
+
+        return body;
+    }
+
+    /**
+     * Make MESSAGE payload from a bot.
+     *
+     * @param id Payload id.
+     * @return Payload.
+     * @throws JSONException Never.
+     */
+    static JSONObject message(String id) throws JSONException {
+
+        JSONObject head = new JSONObject()
+                .put("applicationId", "applicationId")
+                .put("clientId", "clientId")
+                .put("userId", "userId")
+                .put("deviceId", "deviceId")
+                .put("timestampUnixTime", 1500000000L)
+                .put("lang", "ja-JP");
+
+        JSONArray messages = new JSONArray()
+                .put(new JSONObject()
+                        .put("type", "text")
+                        .put("speechText", "こんにちは。ご用件をどうぞ。")
+                        .put("extra", new JSONObject().put("score", 0.92)));
+
+        JSONObject body = new JSONObject()
+                .put("type", "text")
+                .put("messages", messages);
+
+        return new JSONObject()
+                .put("id", id)
+                .put("head", head)
+                .put("body", body);
+    }
+
+    /**
+     * Make LOGS payload.
+     *
+     * @param entries Number of log entries.
+     * @return Payload.
+     * @throws JSONException Never.
+     */
+    static JSONObject logs(int entries) throws JSONException {
+
+        JSONArray logs = new JSONArray();
+
+        for(int i = 0; i < entries; i++) {
+            logs.put(message("log-" + i));
+        }
+
+        return new JSONObject()
+                .put("id", "logs")
+                .put("head", new JSONObject().put("timestampUnixTime", 1500000000L))
+                .put("body", new JSONObject().put("logs", logs));
+    }
+
+    /**
+     * Make JPEG photo as a camera takes, with EXIF orientation.
+     *
+     * @param width       Width of stored image.
+     * @param height      Height of stored image.
+     * @param orientation EXIF orientation.
+     * @return JPEG bytes.
+     * @throws IOException Never.
+     */
+    static byte[] photo(int width, int height, int orientation) throws IOException {
+
+        // Gradient with noise, which compresses like a photo.
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(0L);
+
+        for(int y = 0; y < height; y++) {
+            for(int x = 0; x < width; x++) {
+                int r = x * 239 / width + random.nextInt(16);
+                int g = y * 239 / height + random.nextInt(16);
+                int b = (x + y) * 127 / (width + height) + random.nextInt(16);
+
+                image.setRGB(x, y, (r << 16) | (g << 8) | b);
+            }
+        }
+
+        ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpeg", jpeg);
+        byte[] bytes = jpeg.toByteArray();
+
+        // APP1 segment with IFD0 which has only orientation, inserted after SOI.
+        byte[] app1 = {
+                (byte)0xFF, (byte)0xE1, 0, 34,
+                'E', 'x', 'i', 'f', 0, 0,
+                'M', 'M', 0, 42, 0, 0, 0, 8,
+                0, 1,
+                0x01, 0x12, 0, 3, 0, 0, 0, 1, 0, (byte)orientation, 0, 0,
+                0, 0, 0, 0
+        };
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length + app1.length);
+        out.write(bytes, 0, 2);
+        out.write(app1, 0, app1.length);
+        out.write(bytes, 2, bytes.length - 2);
+
+        return out.toByteArray();
+    }
+}
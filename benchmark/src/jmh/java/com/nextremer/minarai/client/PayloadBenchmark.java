@@ -0,0 +1,78 @@
+package com.nextremer.minarai.client;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmark of outbound payload construction, up to the text Socket.IO writes to the socket.
+ * formatId is the former id scheme by String.format, kept as baseline of nextId.
+ *
+ * @author nextremer.com
+ */
+@State(Scope.Thread)
+public class PayloadBenchmark {
+
+    private MinaraiClient orgJsonClient;    // Client with org.json codec.
+    private MinaraiClient streamingClient;  // Client with streaming codec.
+    private long unixTime;                  // UNIX time.
+    private String idPrefix;                // Prefix of ids.
+
+    /**
+     * Setup.
+     */
+    @Setup
+    public void setup() {
+        orgJsonClient = Fixtures.newClient(MinaraiJsonCodec.ORG_JSON);
+        streamingClient = Fixtures.newClient(MinaraiJsonCodec.STREAMING);
+        unixTime = Util.getUnixTime();
+        idPrefix = IdGenerator.prefix("applicationId", "clientId", "userId", "deviceId");
+    }
+
+    /**
+     * Payload id by the former scheme.
+     */
+    @Benchmark
+    public String formatId() {
+        return String.format("%s%s%s%s-%s", "applicationId", "clientId", "userId", "deviceId", unixTime);
+    }
+
+    /**
+     * Payload id by {@link IdGenerator}.
+     */
+    @Benchmark
+    public String nextId() {
+        return IdGenerator.next(idPrefix);
+    }
+
+    /**
+     * Head and id of payload.
+     */
+    @Benchmark
+    public JSONObject makePayload() throws JSONException {
+        return orgJsonClient.makePayload("client-1", unixTime, "ja-JP");
+    }
+
+    /**
+     * Payload of send by org.json codec, serialized as Socket.IO does.
+     */
+    @Benchmark
+    public String sendOrgJson() throws JSONException {
+
+        JSONObject payload = orgJsonClient.makePayload("client-1", unixTime, "ja-JP");
+        payload.put("body", Fixtures.sendBody("hello"));
+
+        return payload.toString();
+    }
+
+    /**
+     * Payload of send by streaming codec.
+     */
+    @Benchmark
+    public String sendStreaming() throws JSONException {
+        return streamingClient.encodePayload("client-1", unixTime, "ja-JP", Fixtures.sendBody("hello")).toString();
+    }
+}
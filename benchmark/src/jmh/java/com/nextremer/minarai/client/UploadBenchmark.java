@@ -0,0 +1,78 @@
+package com.nextremer.minarai.client;
+
+import android.support.media.ExifInterface;
+
+import com.nextremer.minarai.loopback.LoopbackConnector;
+
+import org.json.JSONException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of end-to-end image upload to the loopback connector, with and without resizing.
+ * The photo is 8 megapixels in landscape with EXIF orientation of portrait, as phone cameras take.
+ * Images are decoded and encoded by ImageIO on JVM, so absolute numbers differ from devices.
+ *
+ * @author nextremer.com
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class UploadBenchmark {
+
+    @Param({"false", "true"})
+    public boolean resize;                  // Resize before upload or not.
+
+    private LoopbackConnector connector;    // Connector.
+    private MinaraiClient client;           // Client which is not connected. Upload does not need connection.
+    private MinaraiSendOptions options;     // Send options.
+    private byte[] photo;                   // Photo.
+
+    /**
+     * Setup.
+     */
+    @Setup
+    public void setup() throws IOException, InterruptedException {
+
+        connector = new LoopbackConnector().start(0);
+        client = new MinaraiClient("applicationId", "applicationSecret", "clientId", "userId", "deviceId",
+                new MinaraiClientOptions()
+                        .putSocketIoRootUrl(connector.getUrl())
+                        .putApiVersion(connector.getApiVersion()));
+
+        options = new MinaraiSendOptions();
+
+        if(resize)
+            options.putImageResizeOptions(new MinaraiImageResizeOptions());
+
+        photo = Fixtures.photo(3264, 2448, ExifInterface.ORIENTATION_ROTATE_90);
+    }
+
+    /**
+     * Tear down.
+     */
+    @TearDown
+    public void tearDown() {
+        client.close();
+        connector.close();
+    }
+
+    /**
+     * Upload photo and wait for its URL.
+     */
+    @Benchmark
+    public URL upload() throws IOException, JSONException {
+        return client.uploadImage(photo, 0, photo.length, "image/jpeg", "photo.jpg", options);
+    }
+}
@@ -0,0 +1,134 @@
+package android.graphics;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * JVM implementation of Android Bitmap for benchmarks, backed by java.awt images.
+ * JPEG and PNG are supported. WEBP can not be compressed on JVM.
+ */
+public final class Bitmap {
+
+    public enum CompressFormat {
+        JPEG,
+        PNG,
+        WEBP
+    }
+
+    final BufferedImage image;
+
+    Bitmap(BufferedImage image) {
+        this.image = image;
+    }
+
+    public static Bitmap createScaledBitmap(Bitmap src, int dstWidth, int dstHeight, boolean filter) {
+
+        if(dstWidth == src.getWidth() && dstHeight == src.getHeight())
+            return src;
+
+        BufferedImage dst = new BufferedImage(dstWidth, dstHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = dst.createGraphics();
+
+        try {
+            hint(g, filter);
+            g.drawImage(src.image, 0, 0, dstWidth, dstHeight, null);
+        }
+        finally {
+            g.dispose();
+        }
+
+        return new Bitmap(dst);
+    }
+
+    public static Bitmap createBitmap(Bitmap source, int x, int y, int width, int height, Matrix m, boolean filter) {
+
+        if(m == null || m.isIdentity())
+            return new Bitmap(source.image.getSubimage(x, y, width, height));
+
+        AffineTransform transform = new AffineTransform(m.transform);
+        Rectangle2D bounds = transform.createTransformedShape(new Rectangle2D.Float(0, 0, width, height)).getBounds2D();
+        transform.preConcatenate(AffineTransform.getTranslateInstance(-bounds.getX(), -bounds.getY()));
+
+        BufferedImage dst = new BufferedImage(
+                Math.max((int)Math.round(bounds.getWidth()), 1),
+                Math.max((int)Math.round(bounds.getHeight()), 1),
+                BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = dst.createGraphics();
+
+        try {
+            hint(g, filter);
+            g.drawImage(source.image.getSubimage(x, y, width, height), transform, null);
+        }
+        finally {
+            g.dispose();
+        }
+
+        return new Bitmap(dst);
+    }
+
+    public int getWidth() {
+        return image.getWidth();
+    }
+
+    public int getHeight() {
+        return image.getHeight();
+    }
+
+    public boolean compress(CompressFormat format, int quality, OutputStream stream) {
+
+        try {
+            if(format == CompressFormat.PNG)
+                return ImageIO.write(image, "png", stream);
+
+            if(format != CompressFormat.JPEG)
+                return false;
+
+            Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
+
+            if(!writers.hasNext())
+                return false;
+
+            ImageWriter writer = writers.next();
+            ImageOutputStream out = ImageIO.createImageOutputStream(stream);
+
+            try {
+                ImageWriteParam param = writer.getDefaultWriteParam();
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(quality / 100.0f);
+
+                writer.setOutput(out);
+                writer.write(null, new IIOImage(image, null, null), param);
+            }
+            finally {
+                writer.dispose();
+                out.close();
+            }
+
+            return true;
+        }
+        catch(IOException ex) {
+            return false;
+        }
+    }
+
+    public void recycle() {
+    }
+
+    private static void hint(Graphics2D g, boolean filter) {
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, filter
+                ? RenderingHints.VALUE_INTERPOLATION_BILINEAR
+                : RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+    }
+}
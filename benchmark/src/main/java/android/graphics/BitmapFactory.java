@@ -0,0 +1,102 @@
+package android.graphics;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * JVM implementation of Android BitmapFactory for benchmarks, backed by ImageIO.
+ */
+public class BitmapFactory {
+
+    public static class Options {
+        public boolean inJustDecodeBounds;
+        public int inSampleSize;
+        public int outWidth;
+        public int outHeight;
+    }
+
+    public static Bitmap decodeStream(InputStream is, Rect outPadding, Options opts) {
+
+        if(opts != null) {
+            opts.outWidth = -1;
+            opts.outHeight = -1;
+        }
+
+        try {
+            ImageInputStream in = ImageIO.createImageInputStream(is);
+
+            if(in == null)
+                return null;
+
+            try {
+                Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+
+                if(!readers.hasNext())
+                    return null;
+
+                ImageReader reader = readers.next();
+
+                try {
+                    reader.setInput(in, true, true);
+
+                    if(opts != null) {
+                        opts.outWidth = reader.getWidth(0);
+                        opts.outHeight = reader.getHeight(0);
+
+                        if(opts.inJustDecodeBounds)
+                            return null;
+                    }
+
+                    ImageReadParam param = reader.getDefaultReadParam();
+
+                    if(opts != null && opts.inSampleSize > 1)
+                        param.setSourceSubsampling(opts.inSampleSize, opts.inSampleSize, 0, 0);
+
+                    BufferedImage image = toRgb(reader.read(0, param));
+
+                    if(opts != null) {
+                        opts.outWidth = image.getWidth();
+                        opts.outHeight = image.getHeight();
+                    }
+
+                    return new Bitmap(image);
+                }
+                finally {
+                    reader.dispose();
+                }
+            }
+            finally {
+                in.close();
+            }
+        }
+        catch(IOException ex) {
+            return null;
+        }
+    }
+
+    private static BufferedImage toRgb(BufferedImage image) {
+
+        if(image.getType() == BufferedImage.TYPE_INT_RGB)
+            return image;
+
+        BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = rgb.createGraphics();
+
+        try {
+            g.drawImage(image, 0, 0, null);
+        }
+        finally {
+            g.dispose();
+        }
+
+        return rgb;
+    }
+}
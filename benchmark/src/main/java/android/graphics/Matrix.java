@@ -0,0 +1,33 @@
+package android.graphics;
+
+import java.awt.geom.AffineTransform;
+
+/**
+ * JVM implementation of Android Matrix for benchmarks, backed by AffineTransform.
+ */
+public class Matrix {
+
+    final AffineTransform transform = new AffineTransform();
+
+    public boolean isIdentity() {
+        return transform.isIdentity();
+    }
+
+    public void setScale(float sx, float sy) {
+        transform.setToScale(sx, sy);
+    }
+
+    public void setRotate(float degrees) {
+        transform.setToRotation(Math.toRadians(degrees));
+    }
+
+    public boolean postScale(float sx, float sy) {
+        transform.preConcatenate(AffineTransform.getScaleInstance(sx, sy));
+        return true;
+    }
+
+    public boolean postRotate(float degrees) {
+        transform.preConcatenate(AffineTransform.getRotateInstance(Math.toRadians(degrees)));
+        return true;
+    }
+}
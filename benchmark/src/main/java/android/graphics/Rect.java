@@ -0,0 +1,7 @@
+package android.graphics;
+
+/**
+ * Stub of Android Rect for benchmarks.
+ */
+public final class Rect {
+}
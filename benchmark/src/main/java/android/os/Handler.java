@@ -0,0 +1,18 @@
+package android.os;
+
+/**
+ * JVM implementation of Android Handler for benchmarks.
+ */
+public class Handler {
+
+    private final Looper looper;
+
+    public Handler(Looper looper) {
+        this.looper = looper;
+    }
+
+    public final boolean post(Runnable r) {
+        looper.executor.execute(r);
+        return true;
+    }
+}
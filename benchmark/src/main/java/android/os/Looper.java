@@ -0,0 +1,29 @@
+package android.os;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * JVM implementation of Android Looper for benchmarks. The main looper is a single daemon thread.
+ */
+public final class Looper {
+
+    private static final Looper MAIN = new Looper();
+
+    final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "main");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private Looper() {
+    }
+
+    public static Looper getMainLooper() {
+        return MAIN;
+    }
+}
@@ -0,0 +1,87 @@
+package android.support.media;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * JVM implementation of Android support ExifInterface for benchmarks. Only orientation of JPEG is read.
+ */
+public class ExifInterface {
+
+    public static final String TAG_ORIENTATION = "Orientation";
+
+    public static final int ORIENTATION_UNDEFINED = 0;
+    public static final int ORIENTATION_NORMAL = 1;
+    public static final int ORIENTATION_FLIP_HORIZONTAL = 2;
+    public static final int ORIENTATION_ROTATE_180 = 3;
+    public static final int ORIENTATION_FLIP_VERTICAL = 4;
+    public static final int ORIENTATION_TRANSPOSE = 5;
+    public static final int ORIENTATION_ROTATE_90 = 6;
+    public static final int ORIENTATION_TRANSVERSE = 7;
+    public static final int ORIENTATION_ROTATE_270 = 8;
+
+    private static final int MARKER_SOS = 0xDA;     // Start of scan, after which no metadata follows.
+    private static final int MARKER_APP1 = 0xE1;    // Segment of EXIF.
+    private static final int TAG_ORIENTATION_ID = 0x0112;
+
+    private int orientation = -1;
+
+    public ExifInterface(InputStream inputStream) throws IOException {
+
+        DataInputStream in = new DataInputStream(inputStream);
+
+        if(in.readUnsignedShort() != 0xFFD8)
+            return;
+
+        while(true) {
+            if(in.readUnsignedByte() != 0xFF)
+                return;
+
+            int marker = in.readUnsignedByte();
+
+            if(marker == MARKER_SOS)
+                return;
+
+            byte[] segment = new byte[in.readUnsignedShort() - 2];
+            in.readFully(segment);
+
+            try {
+                if(marker == MARKER_APP1 && parseExif(segment))
+                    return;
+            }
+            catch(IndexOutOfBoundsException ex) {
+                return;
+            }
+        }
+    }
+
+    public int getAttributeInt(String tag, int defaultValue) {
+        return (TAG_ORIENTATION.equals(tag) && orientation >= 0) ? orientation : defaultValue;
+    }
+
+    private boolean parseExif(byte[] segment) {
+
+        if(segment.length < 14 || segment[0] != 'E' || segment[1] != 'x' || segment[2] != 'i' || segment[3] != 'f')
+            return false;
+
+        ByteBuffer tiff = ByteBuffer.wrap(segment, 6, segment.length - 6).slice();
+        tiff.order((tiff.get(0) == 'I') ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+
+        int ifd = tiff.getInt(4);
+        int count = tiff.getShort(ifd) & 0xFFFF;
+
+        for(int i = 0; i < count; i++) {
+            int entry = ifd + 2 + i * 12;
+
+            if((tiff.getShort(entry) & 0xFFFF) == TAG_ORIENTATION_ID) {
+                orientation = tiff.getShort(entry + 8) & 0xFFFF;
+                return true;
+            }
+        }
+
+        return true;
+    }
+}
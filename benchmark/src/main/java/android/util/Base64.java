@@ -0,0 +1,40 @@
+package android.util;
+
+/**
+ * JVM implementation of Android Base64 for benchmarks, backed by java.util.Base64.
+ * Only the flags used by the SDK are supported.
+ */
+public final class Base64 {
+
+    public static final int DEFAULT = 0;
+    public static final int NO_PADDING = 1;
+    public static final int NO_WRAP = 2;
+    public static final int CRLF = 4;
+    public static final int URL_SAFE = 8;
+    public static final int NO_CLOSE = 16;
+
+    private Base64() {
+    }
+
+    public static String encodeToString(byte[] input, int flags) {
+
+        java.util.Base64.Encoder encoder = ((flags & URL_SAFE) != 0)
+                ? java.util.Base64.getUrlEncoder()
+                : java.util.Base64.getEncoder();
+
+        if((flags & NO_PADDING) != 0)
+            encoder = encoder.withoutPadding();
+
+        return encoder.encodeToString(input);
+    }
+
+    public static byte[] encode(byte[] input, int flags) {
+        return encodeToString(input, flags).getBytes(java.nio.charset.StandardCharsets.US_ASCII);
+    }
+
+    public static byte[] decode(String str, int flags) {
+        return ((flags & URL_SAFE) != 0)
+                ? java.util.Base64.getUrlDecoder().decode(str)
+                : java.util.Base64.getMimeDecoder().decode(str);
+    }
+}
@@ -0,0 +1,36 @@
+package android.util;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+/**
+ * JVM implementation of Android Log for benchmarks. Messages are written to standard error.
+ */
+public final class Log {
+
+    public static final int VERBOSE = 2;
+    public static final int DEBUG = 3;
+    public static final int INFO = 4;
+    public static final int WARN = 5;
+    public static final int ERROR = 6;
+    public static final int ASSERT = 7;
+
+    private Log() {
+    }
+
+    public static int println(int priority, String tag, String msg) {
+        System.err.println(priority + "/" + tag + ": " + msg);
+        return 0;
+    }
+
+    public static String getStackTraceString(Throwable tr) {
+
+        if(tr == null)
+            return "";
+
+        StringWriter sw = new StringWriter();
+        tr.printStackTrace(new PrintWriter(sw));
+
+        return sw.toString();
+    }
+}
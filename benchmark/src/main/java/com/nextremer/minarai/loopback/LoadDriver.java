@@ -0,0 +1,332 @@
+package com.nextremer.minarai.loopback;
+
+import android.support.annotation.NonNull;
+
+import com.nextremer.minarai.client.MinaraiChatEvent;
+import com.nextremer.minarai.client.MinaraiClient;
+import com.nextremer.minarai.client.MinaraiClientOptions;
+import com.nextremer.minarai.client.MinaraiEvent;
+import com.nextremer.minarai.client.MinaraiEventListener;
+import com.nextremer.minarai.client.MinaraiLogger;
+import com.nextremer.minarai.client.MinaraiReconnectPolicy;
+import com.nextremer.minarai.client.MinaraiReconnectStats;
+import com.nextremer.minarai.client.MinaraiReplyCallback;
+import com.nextremer.minarai.client.MinaraiTransport;
+
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Load driver which runs many clients against an in-process {@link LoopbackConnector}.
+ * Each client sends messages one at a time by sendAndAwait, sending the next one when the reply arrives or times out,
+ * then throughput and latency percentiles of send to reply are reported.
+ * With flapping, the connector drops all connections periodically and clients reconnect by reconnection policy.
+ * Replies name no message, so a dropped reply shifts the following replies of the client by one,
+ * and timeouts are reported for more messages than dropped ones.
+ *
+ * Arguments: --clients N --messages N --latency MILLIS --jitter MILLIS --drop RATE --timeout MILLIS --flap MILLIS
+ *
+ * @author nextremer.com
+ */
+public class LoadDriver {
+
+    private final int clientCount;      // Number of clients.
+    private final int messageCount;     // Number of messages per client.
+    private final long timeoutMillis;   // Timeout of a reply.
+    private final long flapMillis;      // Interval to drop all connections. 0 means no flapping.
+    private final LoopbackConnector connector;  // Connector.
+
+    private final long[] latencies;                         // Latencies of replies in microseconds.
+    private final AtomicInteger latencyCount = new AtomicInteger();    // Number of latencies.
+    private final AtomicInteger timeoutCount = new AtomicInteger();    // Number of timeouts.
+    private final AtomicInteger failureCount = new AtomicInteger();    // Number of messages not sent.
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();   // Timer of flapping.
+
+    /**
+     * Session of one client.
+     */
+    private class Session implements MinaraiReplyCallback {
+
+        final MinaraiClient client;     // Client.
+        final CountDownLatch joined = new CountDownLatch(1);   // Released when joined first.
+        final CountDownLatch done;      // Released when all messages are answered or timed out.
+        private int sent;               // Number of sent messages. Guarded by this.
+
+        Session(MinaraiClient client, CountDownLatch done) {
+            this.client = client;
+            this.done = done;
+        }
+
+        /**
+         * Send next message, or finish.
+         */
+        void next() {
+
+            int number;
+
+            synchronized(this) {
+                if(sent == messageCount) {
+                    done.countDown();
+                    return;
+                }
+
+                number = ++sent;
+            }
+
+            client.sendAndAwait("hello " + number, timeoutMillis, this);
+        }
+
+        /**
+         * @see MinaraiReplyCallback#onReply(MinaraiChatEvent, long)
+         */
+        @Override
+        public void onReply(@NonNull MinaraiChatEvent reply, long latencyMicros) {
+            latencies[latencyCount.getAndIncrement()] = latencyMicros;
+            next();
+        }
+
+        /**
+         * @see MinaraiReplyCallback#onFailure(Exception)
+         */
+        @Override
+        public void onFailure(@NonNull Exception ex) {
+
+            if(ex instanceof TimeoutException)
+                timeoutCount.incrementAndGet();
+            else
+                failureCount.incrementAndGet();
+
+            next();
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param clientCount   Number of clients.
+     * @param messageCount  Number of messages per client.
+     * @param timeoutMillis Timeout of a reply.
+     * @param flapMillis    Interval to drop all connections. 0 means no flapping.
+     * @param connector     Started connector.
+     */
+    public LoadDriver(int clientCount, int messageCount, long timeoutMillis, long flapMillis, LoopbackConnector connector) {
+        this.clientCount = clientCount;
+        this.messageCount = messageCount;
+        this.timeoutMillis = timeoutMillis;
+        this.flapMillis = flapMillis;
+        this.connector = connector;
+        this.latencies = new long[clientCount * messageCount];
+    }
+
+    /**
+     * Run load and print report.
+     *
+     * @throws InterruptedException If interrupted.
+     */
+    public void run() throws InterruptedException {
+
+        MinaraiTransport transport = new MinaraiTransport();
+        MinaraiLogger quiet = new MinaraiLogger() {
+            @Override
+            public boolean isLoggable(int level) {
+                return level >= android.util.Log.ERROR;
+            }
+
+            @Override
+            public void log(int level, String tag, String msg, Throwable tr) {
+                System.err.println(tag + ": " + msg + ((tr != null) ? " " + tr : ""));
+            }
+        };
+
+        final CountDownLatch done = new CountDownLatch(clientCount);
+        List<Session> sessions = new ArrayList<>(clientCount);
+
+        for(int i = 0; i < clientCount; i++) {
+            MinaraiClientOptions opts = new MinaraiClientOptions()
+                    .putSocketIoRootUrl(connector.getUrl())
+                    .putApiVersion(connector.getApiVersion())
+                    .putTransport(transport)
+                    .putLogger(quiet);
+
+            // Messages sent while reconnecting are queued and sent after joined.
+            if(flapMillis > 0L) {
+                opts.putReconnectPolicy(new MinaraiReconnectPolicy().putBaseDelayMillis(50L).putMaxDelayMillis(2000L))
+                        .putOutboundQueueEnabled(true);
+            }
+
+            MinaraiClient client = new MinaraiClient("app", "secret", "client-" + i, "user-" + i, "device-" + i, opts);
+            final Session session = new Session(client, done);
+
+            client.on(MinaraiEvent.JOINED, new MinaraiEventListener() {
+                @Override
+                public void onEvent(MinaraiEvent event, JSONObject data) {
+                    session.joined.countDown();
+                }
+            });
+
+            sessions.add(session);
+        }
+
+        try {
+            drive(sessions, done);
+        }
+        finally {
+            for(Session session : sessions)
+                session.client.close();
+
+            timer.shutdownNow();
+        }
+    }
+
+    /**
+     * Connect clients, send messages and print report.
+     *
+     * @param sessions Sessions of clients.
+     * @param done     Released when all sessions are done.
+     * @throws InterruptedException If interrupted.
+     */
+    private void drive(List<Session> sessions, CountDownLatch done) throws InterruptedException {
+
+        // Connect all and wait joined.
+        long connectStart = System.nanoTime();
+
+        for(Session session : sessions)
+            session.client.init();
+
+        for(Session session : sessions) {
+            if(!session.joined.await(30L, TimeUnit.SECONDS))
+                throw new IllegalStateException("Client did not join in time.");
+        }
+
+        long connectMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - connectStart);
+
+        // Flap connections while sending.
+        ScheduledFuture<?> flapping = null;
+
+        if(flapMillis > 0L) {
+            flapping = timer.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    connector.disconnectAll();
+                }
+            }, flapMillis, flapMillis, TimeUnit.MILLISECONDS);
+        }
+
+        long start = System.nanoTime();
+
+        for(Session session : sessions)
+            session.next();
+
+        done.await();
+
+        long elapsedNanos = System.nanoTime() - start;
+
+        if(flapping != null)
+            flapping.cancel(false);
+
+        // Report.
+        long[] sorted = Arrays.copyOf(latencies, latencyCount.get());
+        Arrays.sort(sorted);
+
+        System.out.println(String.format(Locale.US, "clients=%d messages=%d connect+join=%dms", clientCount, messageCount, connectMillis));
+        System.out.println(String.format(Locale.US, "replies=%d timeouts=%d failures=%d elapsed=%dms throughput=%.1f msg/s",
+                sorted.length, timeoutCount.get(), failureCount.get(), TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                sorted.length * 1e9 / elapsedNanos));
+        System.out.println(String.format(Locale.US, "latency ms: p50=%.2f p90=%.2f p99=%.2f max=%.2f",
+                percentile(sorted, 50.0) / 1000.0, percentile(sorted, 90.0) / 1000.0,
+                percentile(sorted, 99.0) / 1000.0, percentile(sorted, 100.0) / 1000.0));
+
+        if(flapMillis > 0L) {
+            long reconnects = 0L;
+            long attempts = 0L;
+            long maxLatency = 0L;
+
+            for(Session session : sessions) {
+                MinaraiReconnectStats stats = session.client.getReconnectStats();
+                reconnects += stats.getReconnectCount();
+                attempts += stats.getAttemptCount();
+                maxLatency = Math.max(maxLatency, stats.getLastLatencyMillis());
+            }
+
+            System.out.println(String.format(Locale.US, "reconnects=%d attempts=%d max last reconnect=%dms",
+                    reconnects, attempts, maxLatency));
+        }
+
+        System.out.println(connector.getStats());
+    }
+
+    /**
+     * Gets value at percentile of sorted values.
+     *
+     * @param sorted     Sorted values.
+     * @param percentile Percentile.
+     * @return Value. 0 if empty.
+     */
+    private static long percentile(long[] sorted, double percentile) {
+
+        if(sorted.length == 0)
+            return 0L;
+
+        int rank = (int)Math.ceil(sorted.length * percentile / 100.0);
+
+        return sorted[Math.min(Math.max(rank, 1), sorted.length) - 1];
+    }
+
+    /**
+     * Entry point.
+     *
+     * @param args Arguments.
+     */
+    public static void main(String[] args) throws Exception {
+
+        int clients = 200;
+        int messages = 20;
+        long latency = 20L;
+        long jitter = 10L;
+        double drop = 0.0;
+        long timeout = 2000L;
+        long flap = 0L;
+
+        for(int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+
+            switch(args[i]) {
+                case "--clients":  clients = Integer.parseInt(value); break;
+                case "--messages": messages = Integer.parseInt(value); break;
+                case "--latency":  latency = Long.parseLong(value); break;
+                case "--jitter":   jitter = Long.parseLong(value); break;
+                case "--drop":     drop = Double.parseDouble(value); break;
+                case "--timeout":  timeout = Long.parseLong(value); break;
+                case "--flap":     flap = Long.parseLong(value); break;
+                default: throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+
+        LoopbackConnector connector = new LoopbackConnector()
+                .putLatencyMillis(latency)
+                .putJitterMillis(jitter)
+                .putDropRate(drop)
+                .start(0);
+
+        try {
+            new LoadDriver(clients, messages, timeout, flap, connector).run();
+        }
+        finally {
+            connector.close();
+        }
+
+        // Idle threads of OkHttp keep JVM alive for a minute.
+        System.exit(0);
+    }
+}
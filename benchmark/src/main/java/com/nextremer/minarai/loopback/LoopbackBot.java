@@ -0,0 +1,17 @@
+package com.nextremer.minarai.loopback;
+
+/**
+ * Defines the bot of {@link LoopbackConnector}.
+ *
+ * @author nextremer.com
+ */
+public interface LoopbackBot {
+
+    /**
+     * Make reply to utterance. Called on a connection thread, so it must return quickly.
+     *
+     * @param utterance Utterance of user.
+     * @return Reply. null if the bot does not reply.
+     */
+    String reply(String utterance);
+}
@@ -0,0 +1,456 @@
+package com.nextremer.minarai.loopback;
+
+import android.support.annotation.NonNull;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import io.netty.handler.codec.http.multipart.FileUpload;
+import io.netty.handler.codec.http.multipart.HttpPostRequestDecoder;
+import io.netty.handler.codec.http.multipart.InterfaceHttpData;
+import io.netty.handler.codec.http.websocketx.WebSocketFrameAggregator;
+import io.netty.handler.codec.http.websocketx.WebSocketServerHandshaker;
+import io.netty.handler.codec.http.websocketx.WebSocketServerHandshakerFactory;
+import io.netty.util.concurrent.GlobalEventExecutor;
+
+/**
+ * Local stand-in of minarai Socket.IO Connector for load and latency testing.
+ * Speaks Engine.IO 3 over WebSocket with join-as-client, message, command and logs events, and serves image upload.
+ * Messages are answered by a {@link LoopbackBot} after the configured latency, or dropped at the configured rate.
+ * Configure with put methods, then {@link #start(int)}.
+ *
+ * @author nextremer.com
+ */
+public class LoopbackConnector implements Closeable {
+
+    private static final String DEFAULT_API_VERSION = "v1";   // Default API version.
+    private static final int MAX_CONTENT_LENGTH = 16 * 1024 * 1024;    // Maximum size of request and frame.
+    private static final int MAX_LOGS_PER_USER = 1000;                  // Maximum number of log entries kept per user.
+
+    private String apiVersion = DEFAULT_API_VERSION;    // API version.
+    private long latencyMillis;                         // Latency of replies.
+    private long jitterMillis;                          // Maximum jitter added to latency.
+    private double dropRate;                            // Rate of messages dropped without reply.
+    private LoopbackBot bot = new ScriptedBot();        // Bot.
+
+    private EventLoopGroup bossGroup;       // Acceptor threads.
+    private EventLoopGroup workerGroup;     // Connection threads.
+    private Channel serverChannel;          // Server socket.
+    private final ChannelGroup sessions = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);   // Open WebSocket connections.
+
+    private final Map<String, ArrayDeque<JSONObject>> logsByUser = new HashMap<>();    // Log entries by user. Guarded by itself.
+    private final Map<String, byte[]> images = new ConcurrentHashMap<>();              // Uploaded images by id.
+    private final Map<String, String> imageTypes = new ConcurrentHashMap<>();          // Types of uploaded images by id.
+
+    final AtomicLong connectionCount = new AtomicLong();   // Number of accepted connections.
+    final AtomicLong joinCount = new AtomicLong();         // Number of joins.
+    final AtomicLong messageCount = new AtomicLong();      // Number of received messages.
+    final AtomicLong replyCount = new AtomicLong();        // Number of sent replies.
+    final AtomicLong droppedCount = new AtomicLong();      // Number of dropped messages.
+    final AtomicLong commandCount = new AtomicLong();      // Number of received commands.
+    final AtomicLong uploadCount = new AtomicLong();       // Number of uploaded images.
+
+    /**
+     * Puts API version, which is a part of Socket.IO path and upload URL.
+     *
+     * @param apiVersion API version.
+     * @return this
+     */
+    public LoopbackConnector putApiVersion(@NonNull String apiVersion) {
+        this.apiVersion = apiVersion;
+        return this;
+    }
+
+    /**
+     * Puts latency of replies in milliseconds.
+     *
+     * @param millis Latency.
+     * @return this
+     */
+    public LoopbackConnector putLatencyMillis(long millis) {
+        latencyMillis = millis;
+        return this;
+    }
+
+    /**
+     * Puts maximum jitter in milliseconds. Each reply is delayed by latency plus a random value up to this.
+     *
+     * @param millis Jitter.
+     * @return this
+     */
+    public LoopbackConnector putJitterMillis(long millis) {
+        jitterMillis = millis;
+        return this;
+    }
+
+    /**
+     * Puts rate of messages dropped without reply, from 0 to 1.
+     *
+     * @param rate Rate.
+     * @return this
+     */
+    public LoopbackConnector putDropRate(double rate) {
+
+        if(rate < 0.0 || rate > 1.0)
+            throw new IllegalArgumentException("rate must be between 0 and 1.");
+
+        dropRate = rate;
+        return this;
+    }
+
+    /**
+     * Puts bot. Default is a {@link ScriptedBot} without rules, which echoes utterances.
+     *
+     * @param bot Bot.
+     * @return this
+     */
+    public LoopbackConnector putBot(@NonNull LoopbackBot bot) {
+
+        if(bot == null)
+            throw new IllegalArgumentException("bot must not be null.");
+
+        this.bot = bot;
+        return this;
+    }
+
+    /**
+     * Start listening on loopback address.
+     *
+     * @param port Port. 0 to choose a free port.
+     * @return this
+     * @throws InterruptedException If interrupted while binding.
+     */
+    public LoopbackConnector start(int port) throws InterruptedException {
+
+        if(serverChannel != null)
+            throw new IllegalStateException("Already started.");
+
+        bossGroup = new NioEventLoopGroup(1);
+        workerGroup = new NioEventLoopGroup();
+
+        serverChannel = new ServerBootstrap()
+                .group(bossGroup, workerGroup)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        ch.pipeline()
+                                .addLast(new HttpServerCodec())
+                                .addLast(new HttpObjectAggregator(MAX_CONTENT_LENGTH))
+                                .addLast(new HttpHandler());
+                    }
+                })
+                .bind("127.0.0.1", port)
+                .sync()
+                .channel();
+
+        return this;
+    }
+
+    /**
+     * Gets root URL to put to {@code MinaraiClientOptions.putSocketIoRootUrl}.
+     */
+    public String getUrl() {
+
+        if(serverChannel == null)
+            throw new IllegalStateException("Not started.");
+
+        return "http://127.0.0.1:" + ((InetSocketAddress)serverChannel.localAddress()).getPort();
+    }
+
+    /**
+     * Gets API version.
+     */
+    public String getApiVersion() {
+        return apiVersion;
+    }
+
+    /**
+     * Gets statistics.
+     */
+    public LoopbackStats getStats() {
+        return new LoopbackStats(connectionCount.get(), joinCount.get(), messageCount.get(), replyCount.get(),
+                droppedCount.get(), commandCount.get(), uploadCount.get());
+    }
+
+    /**
+     * Close all connections abruptly, as if the server went down. Clients see "transport close".
+     */
+    public void disconnectAll() {
+        sessions.close();
+    }
+
+    /**
+     * Stop server and close all connections.
+     */
+    @Override
+    public void close() {
+
+        sessions.close().awaitUninterruptibly();
+
+        if(serverChannel != null) {
+            serverChannel.close().awaitUninterruptibly();
+            serverChannel = null;
+        }
+
+        if(workerGroup != null)
+            workerGroup.shutdownGracefully(0L, 1L, TimeUnit.SECONDS);
+
+        if(bossGroup != null)
+            bossGroup.shutdownGracefully(0L, 1L, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Gets delay of a reply by latency and jitter.
+     *
+     * @return Delay in milliseconds.
+     */
+    long nextDelayMillis() {
+        return latencyMillis + ((jitterMillis > 0L) ? ThreadLocalRandom.current().nextLong(jitterMillis + 1L) : 0L);
+    }
+
+    /**
+     * Gets if a message is dropped by drop rate.
+     */
+    boolean nextDropped() {
+        return dropRate > 0.0 && ThreadLocalRandom.current().nextDouble() < dropRate;
+    }
+
+    /**
+     * Gets bot.
+     */
+    LoopbackBot getBot() {
+        return bot;
+    }
+
+    /**
+     * Add log entry of user.
+     *
+     * @param userId User id.
+     * @param entry  Payload.
+     */
+    void addLog(@NonNull String userId, @NonNull JSONObject entry) {
+
+        synchronized(logsByUser) {
+            ArrayDeque<JSONObject> logs = logsByUser.get(userId);
+
+            if(logs == null) {
+                logs = new ArrayDeque<>();
+                logsByUser.put(userId, logs);
+            }
+
+            logs.add(entry);
+
+            if(logs.size() > MAX_LOGS_PER_USER)
+                logs.poll();
+        }
+    }
+
+    /**
+     * Gets newest log entries of user older than the time.
+     *
+     * @param userId User id.
+     * @param before UNIX time. Entries of this time and later are excluded.
+     * @param limit  Maximum number of entries.
+     * @return Entries in chronological order.
+     */
+    JSONArray getLogs(@NonNull String userId, long before, int limit) {
+
+        List<JSONObject> result = new ArrayList<>();
+
+        synchronized(logsByUser) {
+            ArrayDeque<JSONObject> logs = logsByUser.get(userId);
+
+            if(logs != null) {
+                Iterator<JSONObject> it = logs.descendingIterator();
+
+                while(it.hasNext() && result.size() < limit) {
+                    JSONObject entry = it.next();
+                    JSONObject head = entry.optJSONObject("head");
+
+                    if(head != null && head.optLong("timestampUnixTime") < before)
+                        result.add(entry);
+                }
+            }
+        }
+
+        Collections.reverse(result);
+
+        return new JSONArray(result);
+    }
+
+    /**
+     * Handler of HTTP requests: WebSocket handshake of Socket.IO, image upload and download of uploaded images.
+     */
+    private class HttpHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
+
+        /**
+         * @see SimpleChannelInboundHandler#channelRead0(ChannelHandlerContext, Object)
+         */
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest req) throws Exception {
+
+            QueryStringDecoder query = new QueryStringDecoder(req.uri());
+            String path = query.path();
+
+            if(path.equals("/socket.io/" + apiVersion + "/") || path.equals("/socket.io/" + apiVersion)) {
+                handshake(ctx, req, query);
+            }
+            else if(path.equals("/" + apiVersion + "/upload-image") && req.method() == HttpMethod.POST) {
+                upload(ctx, req);
+            }
+            else if(path.startsWith("/images/") && req.method() == HttpMethod.GET) {
+                download(ctx, path.substring("/images/".length()));
+            }
+            else {
+                respond(ctx, HttpResponseStatus.NOT_FOUND, "text/plain", "Not found".getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        /**
+         * Upgrade to WebSocket and start Engine.IO session.
+         */
+        private void handshake(ChannelHandlerContext ctx, FullHttpRequest req, QueryStringDecoder query) {
+
+            List<String> transport = query.parameters().get("transport");
+
+            if(transport == null || !transport.contains("websocket")) {
+                respond(ctx, HttpResponseStatus.BAD_REQUEST, "text/plain",
+                        "Only websocket transport is supported.".getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+
+            String location = "ws://" + req.headers().get(HttpHeaderNames.HOST) + req.uri();
+            WebSocketServerHandshaker handshaker = new WebSocketServerHandshakerFactory(location, null, true, MAX_CONTENT_LENGTH)
+                    .newHandshaker(req);
+
+            if(handshaker == null) {
+                WebSocketServerHandshakerFactory.sendUnsupportedVersionResponse(ctx.channel());
+                return;
+            }
+
+            final LoopbackSession session = new LoopbackSession(LoopbackConnector.this, handshaker);
+
+            ctx.pipeline().replace(this, "frames", new WebSocketFrameAggregator(MAX_CONTENT_LENGTH));
+            ctx.pipeline().addLast("session", session);
+
+            handshaker.handshake(ctx.channel(), req).addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture future) {
+
+                    if(!future.isSuccess()) {
+                        future.channel().close();
+                        return;
+                    }
+
+                    sessions.add(future.channel());
+                    connectionCount.incrementAndGet();
+                    session.open(future.channel());
+                }
+            });
+        }
+
+        /**
+         * Store uploaded image and respond its URL.
+         */
+        private void upload(ChannelHandlerContext ctx, FullHttpRequest req) throws IOException, JSONException {
+
+            HttpPostRequestDecoder decoder = new HttpPostRequestDecoder(req);
+
+            try {
+                InterfaceHttpData data = decoder.getBodyHttpData("file");
+
+                if(!(data instanceof FileUpload)) {
+                    respond(ctx, HttpResponseStatus.BAD_REQUEST, "text/plain", "No file.".getBytes(StandardCharsets.UTF_8));
+                    return;
+                }
+
+                FileUpload file = (FileUpload)data;
+                String id = Long.toString(uploadCount.incrementAndGet());
+
+                images.put(id, file.get());
+                imageTypes.put(id, file.getContentType());
+
+                String url = "http://" + req.headers().get(HttpHeaderNames.HOST) + "/images/" + id;
+                JSONObject body = new JSONObject().put("message", "ok").put("url", url);
+
+                respond(ctx, HttpResponseStatus.OK, "application/json", body.toString().getBytes(StandardCharsets.UTF_8));
+            }
+            finally {
+                decoder.destroy();
+            }
+        }
+
+        /**
+         * Respond uploaded image.
+         */
+        private void download(ChannelHandlerContext ctx, String id) {
+
+            byte[] bytes = images.get(id);
+
+            if(bytes == null) {
+                respond(ctx, HttpResponseStatus.NOT_FOUND, "text/plain", "Not found".getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+
+            respond(ctx, HttpResponseStatus.OK, imageTypes.get(id), bytes);
+        }
+
+        /**
+         * Respond and close connection.
+         */
+        private void respond(ChannelHandlerContext ctx, HttpResponseStatus status, String type, byte[] content) {
+
+            ByteBuf buf = Unpooled.wrappedBuffer(content);
+            FullHttpResponse res = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, status, buf);
+            res.headers().set(HttpHeaderNames.CONTENT_TYPE, type);
+            res.headers().setInt(HttpHeaderNames.CONTENT_LENGTH, content.length);
+            res.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.CLOSE);
+
+            ctx.writeAndFlush(res).addListener(ChannelFutureListener.CLOSE);
+        }
+    }
+}
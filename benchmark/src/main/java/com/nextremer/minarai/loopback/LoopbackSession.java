@@ -0,0 +1,352 @@
+package com.nextremer.minarai.loopback;
+
+import android.support.annotation.NonNull;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.http.websocketx.CloseWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.PingWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.PongWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketServerHandshaker;
+
+/**
+ * Engine.IO session of {@link LoopbackConnector} over one WebSocket connection.
+ * Handles Socket.IO packets of all namespaces on the connection. Called on the connection thread.
+ *
+ * @author nextremer.com
+ */
+class LoopbackSession extends SimpleChannelInboundHandler<WebSocketFrame> {
+
+    private static final long PING_INTERVAL_MILLIS = 25000L;   // Ping interval told to client.
+    private static final long PING_TIMEOUT_MILLIS = 60000L;    // Ping timeout told to client.
+    private static final int DEFAULT_LOGS_LIMIT = 20;           // Number of log entries without limit.
+    private static final String DEFAULT_NAMESPACE = "/";        // Default namespace.
+
+    private static final AtomicLong REPLY_COUNT = new AtomicLong();   // Sequence of reply ids.
+
+    private final LoopbackConnector connector;          // Connector.
+    private final WebSocketServerHandshaker handshaker; // Handshaker to close WebSocket.
+    private final Map<String, JSONObject> identities = new HashMap<>();    // Join payloads by namespace.
+    private Channel channel;                            // Connection.
+
+    /**
+     * Constructor.
+     *
+     * @param connector  Connector.
+     * @param handshaker Handshaker of the connection.
+     */
+    LoopbackSession(@NonNull LoopbackConnector connector, @NonNull WebSocketServerHandshaker handshaker) {
+        this.connector = connector;
+        this.handshaker = handshaker;
+    }
+
+    /**
+     * Called when WebSocket handshake completed. Opens Engine.IO session and connects default namespace.
+     *
+     * @param channel Connection.
+     */
+    void open(@NonNull Channel channel) {
+
+        this.channel = channel;
+
+        try {
+            JSONObject handshake = new JSONObject()
+                    .put("sid", UUID.randomUUID().toString())
+                    .put("upgrades", new JSONArray())
+                    .put("pingInterval", PING_INTERVAL_MILLIS)
+                    .put("pingTimeout", PING_TIMEOUT_MILLIS);
+
+            send("0" + handshake);
+            send("40");
+        }
+        catch(JSONException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * @see SimpleChannelInboundHandler#channelRead0(ChannelHandlerContext, Object)
+     */
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, WebSocketFrame frame) throws Exception {
+
+        if(frame instanceof CloseWebSocketFrame) {
+            handshaker.close(ctx.channel(), (CloseWebSocketFrame)frame.retain());
+        }
+        else if(frame instanceof PingWebSocketFrame) {
+            ctx.writeAndFlush(new PongWebSocketFrame(frame.content().retain()));
+        }
+        else if(frame instanceof TextWebSocketFrame) {
+            onEngineIoPacket(((TextWebSocketFrame)frame).text());
+        }
+    }
+
+    /**
+     * Handle Engine.IO packet.
+     *
+     * @param packet Packet.
+     */
+    private void onEngineIoPacket(String packet) throws JSONException {
+
+        if(packet.isEmpty())
+            return;
+
+        switch(packet.charAt(0)) {
+            case '1':   // Close.
+                channel.close();
+                break;
+
+            case '2':   // Ping.
+                send("3" + packet.substring(1));
+                break;
+
+            case '4':   // Message.
+                onSocketIoPacket(packet.substring(1));
+                break;
+
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Handle Socket.IO packet like '2/nsp,id["event",{...}]'. Binary packets are not supported.
+     *
+     * @param packet Packet.
+     */
+    private void onSocketIoPacket(String packet) throws JSONException {
+
+        if(packet.isEmpty())
+            return;
+
+        char type = packet.charAt(0);
+        int i = 1;
+        String nsp = DEFAULT_NAMESPACE;
+
+        if(i < packet.length() && packet.charAt(i) == '/') {
+            int comma = packet.indexOf(',', i);
+            int end = (comma < 0) ? packet.length() : comma;
+            nsp = packet.substring(i, end);
+            i = (comma < 0) ? end : comma + 1;
+        }
+
+        // Acknowledgement id is not used.
+        while(i < packet.length() && Character.isDigit(packet.charAt(i)))
+            i++;
+
+        switch(type) {
+            case '0':   // Connect. Default namespace is connected on open.
+                if(!DEFAULT_NAMESPACE.equals(nsp))
+                    send("40" + nsp);
+                break;
+
+            case '1':   // Disconnect.
+                identities.remove(nsp);
+                break;
+
+            case '2':   // Event.
+                JSONArray args = new JSONArray(packet.substring(i));
+                onEvent(nsp, args.getString(0), args.optJSONObject(1));
+                break;
+
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Handle Socket.IO event.
+     *
+     * @param nsp     Namespace.
+     * @param event   Event.
+     * @param payload Payload. May be null.
+     */
+    private void onEvent(String nsp, String event, JSONObject payload) throws JSONException {
+
+        if(payload == null)
+            payload = new JSONObject();
+
+        switch(event) {
+            case "join-as-client":
+                identities.put(nsp, payload);
+                connector.joinCount.incrementAndGet();
+                emit(nsp, "joined", payload);
+                break;
+
+            case "message":
+                onMessage(nsp, payload);
+                break;
+
+            case "command":
+            case "system-command":
+                connector.commandCount.incrementAndGet();
+                break;
+
+            case "logs":
+                onLogs(nsp, payload);
+                break;
+
+            case "force-disconnect":
+                identities.remove(nsp);
+                send("41" + (DEFAULT_NAMESPACE.equals(nsp) ? "" : nsp));
+                break;
+
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Handle message. Reply is sent after latency unless dropped.
+     *
+     * @param nsp     Namespace.
+     * @param payload Payload.
+     */
+    private void onMessage(final String nsp, JSONObject payload) throws JSONException {
+
+        connector.messageCount.incrementAndGet();
+
+        final JSONObject identity = identities.get(nsp);
+
+        if(identity == null) {
+            emit(nsp, "error", new JSONObject().put("message", "Not joined."));
+            return;
+        }
+
+        connector.addLog(identity.optString("userId"), payload);
+
+        if(connector.nextDropped()) {
+            connector.droppedCount.incrementAndGet();
+            return;
+        }
+
+        JSONObject body = payload.optJSONObject("body");
+        String reply = connector.getBot().reply((body != null) ? body.optString("message") : "");
+
+        if(reply == null)
+            return;
+
+        JSONObject head = payload.optJSONObject("head");
+        final JSONObject replyPayload = makeReply(identity, (head != null) ? head.optString("lang", null) : null, reply);
+
+        channel.eventLoop().schedule(new Runnable() {
+            @Override
+            public void run() {
+
+                try {
+                    replyPayload.getJSONObject("head").put("timestampUnixTime", System.currentTimeMillis() / 1000L);
+                    connector.addLog(identity.optString("userId"), replyPayload);
+                    emit(nsp, "message", replyPayload);
+                    connector.replyCount.incrementAndGet();
+                }
+                catch(JSONException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            }
+        }, connector.nextDelayMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Handle logs request.
+     *
+     * @param nsp     Namespace.
+     * @param payload Payload.
+     */
+    private void onLogs(String nsp, JSONObject payload) throws JSONException {
+
+        JSONObject identity = identities.get(nsp);
+        JSONObject body = payload.optJSONObject("body");
+        long before = Long.MAX_VALUE;
+        int limit = DEFAULT_LOGS_LIMIT;
+
+        if(body != null) {
+            String ltDate = body.optString("ltDate", null);
+
+            if(ltDate != null) {
+                try {
+                    before = Instant.parse(ltDate).getEpochSecond();
+                }
+                catch(DateTimeParseException ex) {
+                    emit(nsp, "error", new JSONObject().put("message", "Invalid ltDate: " + ltDate));
+                    return;
+                }
+            }
+
+            limit = body.optInt("limit", DEFAULT_LOGS_LIMIT);
+        }
+
+        JSONArray logs = connector.getLogs((identity != null) ? identity.optString("userId") : "", before, limit);
+
+        emit(nsp, "logs", new JSONObject()
+                .put("id", payload.optString("id"))
+                .put("head", new JSONObject().put("timestampUnixTime", System.currentTimeMillis() / 1000L))
+                .put("body", new JSONObject().put("logs", logs)));
+    }
+
+    /**
+     * Make reply payload of bot.
+     *
+     * @param identity Join payload of client.
+     * @param lang     Language of message. May be null.
+     * @param reply    Reply.
+     * @return Payload.
+     */
+    private static JSONObject makeReply(JSONObject identity, String lang, String reply) throws JSONException {
+
+        JSONObject head = new JSONObject()
+                .put("applicationId", identity.optString("applicationId"))
+                .put("clientId", identity.optString("clientId"))
+                .put("userId", identity.optString("userId"))
+                .put("deviceId", identity.optString("deviceId"));
+
+        if(lang != null)
+            head.put("lang", lang);
+
+        return new JSONObject()
+                .put("id", "loopback-" + REPLY_COUNT.incrementAndGet())
+                .put("head", head)
+                .put("body", new JSONObject()
+                        .put("type", "text")
+                        .put("message", reply));
+    }
+
+    /**
+     * Emit Socket.IO event.
+     *
+     * @param nsp     Namespace.
+     * @param event   Event.
+     * @param payload Payload.
+     */
+    private void emit(String nsp, String event, JSONObject payload) {
+
+        String prefix = DEFAULT_NAMESPACE.equals(nsp) ? "42" : "42" + nsp + ",";
+
+        send(prefix + new JSONArray().put(event).put(payload));
+    }
+
+    /**
+     * Send Engine.IO packet.
+     *
+     * @param packet Packet.
+     */
+    private void send(String packet) {
+
+        if(channel.isActive())
+            channel.writeAndFlush(new TextWebSocketFrame(packet));
+    }
+}
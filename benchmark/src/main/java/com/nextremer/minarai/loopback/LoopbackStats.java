@@ -0,0 +1,103 @@
+package com.nextremer.minarai.loopback;
+
+/**
+ * Snapshot of {@link LoopbackConnector} statistics.
+ *
+ * @author nextremer.com
+ */
+public class LoopbackStats {
+
+    private final long connections;     // Number of accepted connections.
+    private final long joins;           // Number of joins.
+    private final long messages;        // Number of received messages.
+    private final long replies;         // Number of sent replies.
+    private final long dropped;         // Number of messages dropped without reply.
+    private final long commands;        // Number of received commands.
+    private final long uploads;         // Number of uploaded images.
+
+    /**
+     * Constructor.
+     *
+     * @param connections Number of accepted connections.
+     * @param joins       Number of joins.
+     * @param messages    Number of received messages.
+     * @param replies     Number of sent replies.
+     * @param dropped     Number of messages dropped without reply.
+     * @param commands    Number of received commands.
+     * @param uploads     Number of uploaded images.
+     */
+    LoopbackStats(long connections, long joins, long messages, long replies, long dropped, long commands, long uploads) {
+        this.connections = connections;
+        this.joins = joins;
+        this.messages = messages;
+        this.replies = replies;
+        this.dropped = dropped;
+        this.commands = commands;
+        this.uploads = uploads;
+    }
+
+    /**
+     * Gets number of accepted connections.
+     */
+    public long getConnections() {
+        return connections;
+    }
+
+    /**
+     * Gets number of joins.
+     */
+    public long getJoins() {
+        return joins;
+    }
+
+    /**
+     * Gets number of received messages.
+     */
+    public long getMessages() {
+        return messages;
+    }
+
+    /**
+     * Gets number of sent replies.
+     */
+    public long getReplies() {
+        return replies;
+    }
+
+    /**
+     * Gets number of messages dropped without reply.
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * Gets number of received commands.
+     */
+    public long getCommands() {
+        return commands;
+    }
+
+    /**
+     * Gets number of uploaded images.
+     */
+    public long getUploads() {
+        return uploads;
+    }
+
+    /**
+     * @see Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "LoopbackStats{"
+                + "connections=" + connections
+                + ", joins=" + joins
+                + ", messages=" + messages
+                + ", replies=" + replies
+                + ", dropped=" + dropped
+                + ", commands=" + commands
+                + ", uploads=" + uploads
+                + "}";
+    }
+}
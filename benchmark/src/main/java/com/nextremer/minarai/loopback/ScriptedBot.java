@@ -0,0 +1,66 @@
+package com.nextremer.minarai.loopback;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Bot which replies by script. The first rule whose pattern matches the whole utterance is used.
+ * Groups of the pattern can be referred from reply as $1, $2, ...
+ * If no rule matches, the utterance is echoed back.
+ *
+ * @author nextremer.com
+ */
+public class ScriptedBot implements LoopbackBot {
+
+    /**
+     * Rule of script.
+     */
+    private static class Rule {
+
+        final Pattern pattern;  // Pattern of utterance.
+        final String reply;     // Reply. null for no reply.
+
+        Rule(Pattern pattern, String reply) {
+            this.pattern = pattern;
+            this.reply = reply;
+        }
+    }
+
+    private final List<Rule> rules = new ArrayList<>();    // Rules in order.
+
+    /**
+     * Puts rule.
+     *
+     * @param regex Pattern of utterance.
+     * @param reply Reply. null for no reply.
+     * @return this
+     */
+    public ScriptedBot put(@NonNull String regex, String reply) {
+
+        if(regex == null)
+            throw new IllegalArgumentException("regex must not be null.");
+
+        rules.add(new Rule(Pattern.compile(regex), reply));
+        return this;
+    }
+
+    /**
+     * @see LoopbackBot#reply(String)
+     */
+    @Override
+    public String reply(String utterance) {
+
+        for(Rule rule : rules) {
+            Matcher matcher = rule.pattern.matcher(utterance);
+
+            if(matcher.matches())
+                return (rule.reply != null) ? matcher.replaceFirst(rule.reply) : null;
+        }
+
+        return utterance;
+    }
+}
@@ -0,0 +1,229 @@
+package com.nextremer.minarai.client;
+
+import com.nextremer.minarai.loopback.LoopbackConnector;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of reconnection by {@link MinaraiReconnectPolicy} against the loopback connector,
+ * through repeated drops and outages ended by a network-available signal.
+ *
+ * @author nextremer.com
+ */
+public class ReconnectFlapTest {
+
+    private static final long BASE_DELAY_MILLIS = 20L;     // Base delay of policy.
+    private static final long MAX_DELAY_MILLIS = 160L;     // Maximum delay of policy.
+    private static final long STALL_DELAY_MILLIS = 60000L; // Delay which only retryNow can cut short.
+    private static final int FLAPS = 5;                     // Number of drops while the server is up.
+    private static final int OUTAGE_FAILURES = 6;           // Number of failed attempts while the server is down.
+    private static final int MAX_ATTEMPTS = 3;              // Maximum attempts of policy when exhausted.
+
+    /**
+     * Policy which records delays, and stalls the next attempt when requested.
+     */
+    private static class RecordingPolicy extends MinaraiReconnectPolicy {
+
+        final List<Integer> attempts = new ArrayList<>();   // Attempt numbers of delays.
+        final List<Long> delays = new ArrayList<>();        // Delays chosen by policy.
+        final CountDownLatch stalled = new CountDownLatch(1);  // Released when an attempt is stalled.
+        volatile boolean stall;                             // Stall the next attempt or not.
+
+        @Override
+        long getDelayMillis(int attempt, Random random) {
+
+            long delay = super.getDelayMillis(attempt, random);
+
+            synchronized(this) {
+                attempts.add(attempt);
+                delays.add(delay);
+            }
+
+            if(stall) {
+                stall = false;
+                stalled.countDown();
+                return STALL_DELAY_MILLIS;
+            }
+
+            return delay;
+        }
+    }
+
+    private final RecordingPolicy policy = new RecordingPolicy();  // Policy of client.
+    private final Semaphore joins = new Semaphore(0);               // Released on each JOINED.
+    private LoopbackConnector connector;    // Connector.
+    private MinaraiClient client;           // Client.
+
+    /**
+     * Tear down.
+     */
+    @After
+    public void tearDown() {
+
+        if(client != null)
+            client.close();
+
+        if(connector != null)
+            connector.close();
+    }
+
+    /**
+     * Client reconnects after each drop with backoff within the policy bounds, and the statistics count each step.
+     */
+    @Test
+    public void flapAndOutage() throws Exception {
+
+        int port = connect();
+
+        // Drops while the server is up. Each is recovered by the first attempt.
+        for(int i = 1; i <= FLAPS; i++) {
+            connector.disconnectAll();
+            awaitJoined();
+
+            MinaraiReconnectStats stats = client.getReconnectStats();
+            assertEquals(i, stats.getDisconnectCount());
+            assertEquals(i, stats.getReconnectCount());
+            assertEquals(i, stats.getAttemptCount());
+            assertEquals(0L, stats.getFailureCount());
+            assertTrue(stats.getLastLatencyMillis() >= 0L);
+        }
+
+        // Outage. Attempts fail until the server is back.
+        connector.close();
+        connector = null;
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10L);
+
+        while(client.getReconnectStats().getFailureCount() < OUTAGE_FAILURES) {
+            assertTrue("Attempts are not retried.", System.nanoTime() < deadline);
+            Thread.sleep(10L);
+        }
+
+        // Stall the next attempt, then only retryNow reconnects in time.
+        policy.stall = true;
+        assertTrue(policy.stalled.await(10L, TimeUnit.SECONDS));
+
+        connector = new LoopbackConnector().start(port);
+        client.onNetworkAvailable();
+        awaitJoined();
+
+        MinaraiReconnectStats stats = client.getReconnectStats();
+        assertEquals(FLAPS + 1, stats.getDisconnectCount());
+        assertEquals(FLAPS + 1, stats.getReconnectCount());
+        assertTrue(stats.getFailureCount() >= OUTAGE_FAILURES);
+        assertEquals(stats.getFailureCount() + stats.getReconnectCount(), stats.getAttemptCount());
+
+        // Backoff restarts after each reconnection, and delays stay within min(max, base * 2^attempt).
+        int runs = 0;
+        int expected = 0;
+
+        synchronized(policy) {
+            for(int i = 0; i < policy.attempts.size(); i++) {
+                int attempt = policy.attempts.get(i);
+                long delay = policy.delays.get(i);
+
+                if(attempt == 0) {
+                    runs++;
+                    expected = 0;
+                }
+
+                assertEquals(expected++, attempt);
+                assertTrue(delay >= 0L);
+                assertTrue(delay <= Math.min(MAX_DELAY_MILLIS, BASE_DELAY_MILLIS << Math.min(attempt, 30)));
+            }
+        }
+
+        assertEquals(FLAPS + 1, runs);
+    }
+
+    /**
+     * Client gives up after the maximum attempts, and a network-available signal starts attempts again.
+     */
+    @Test
+    public void retryAfterAttemptsExhausted() throws Exception {
+
+        policy.putMaxAttempts(MAX_ATTEMPTS);
+        int port = connect();
+
+        connector.close();
+        connector = null;
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10L);
+
+        while(client.getReconnectStats().getFailureCount() < MAX_ATTEMPTS) {
+            assertTrue("Attempts are not retried.", System.nanoTime() < deadline);
+            Thread.sleep(10L);
+        }
+
+        // No attempt after given up.
+        Thread.sleep(MAX_DELAY_MILLIS * 3L);
+        assertEquals(MAX_ATTEMPTS, client.getReconnectStats().getAttemptCount());
+
+        connector = new LoopbackConnector().start(port);
+        client.onNetworkAvailable();
+        awaitJoined();
+
+        MinaraiReconnectStats stats = client.getReconnectStats();
+        assertEquals(1L, stats.getDisconnectCount());
+        assertEquals(1L, stats.getReconnectCount());
+        assertEquals(MAX_ATTEMPTS, stats.getFailureCount());
+        assertEquals(MAX_ATTEMPTS + 1, stats.getAttemptCount());
+    }
+
+    /**
+     * Start connector and connect client to it.
+     *
+     * @return Port of connector, to start it again after an outage.
+     */
+    private int connect() throws Exception {
+
+        connector = new LoopbackConnector().start(0);
+
+        client = new MinaraiClient("app", "secret", "client", "user", "device", new MinaraiClientOptions()
+                .putSocketIoRootUrl(connector.getUrl())
+                .putApiVersion(connector.getApiVersion())
+                .putReconnectPolicy(policy.putBaseDelayMillis(BASE_DELAY_MILLIS).putMaxDelayMillis(MAX_DELAY_MILLIS))
+                .putLogger(new MinaraiLogger() {
+                    @Override
+                    public boolean isLoggable(int level) {
+                        return false;
+                    }
+
+                    @Override
+                    public void log(int level, String tag, String msg, Throwable tr) {
+                    }
+                }));
+
+        client.on(MinaraiEvent.JOINED, new MinaraiEventListener() {
+            @Override
+            public void onEvent(MinaraiEvent event, JSONObject data) {
+                joins.release();
+            }
+        });
+
+        client.init();
+        awaitJoined();
+
+        return URI.create(connector.getUrl()).getPort();
+    }
+
+    /**
+     * Wait next JOINED.
+     */
+    private void awaitJoined() throws InterruptedException {
+        assertTrue("Client did not join in time.", joins.tryAcquire(10L, TimeUnit.SECONDS));
+    }
+}
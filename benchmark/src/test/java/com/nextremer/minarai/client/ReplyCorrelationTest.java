@@ -0,0 +1,215 @@
+package com.nextremer.minarai.client;
+
+import com.nextremer.minarai.loopback.LoopbackBot;
+import com.nextremer.minarai.loopback.LoopbackConnector;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of replies to sendAndAwait interleaved with send, against the loopback connector whose replies name no message.
+ *
+ * @author nextremer.com
+ */
+public class ReplyCorrelationTest {
+
+    private static final long TIMEOUT_MILLIS = 5000L;  // Timeout of replies.
+
+    private final BlockingQueue<String> replies = new LinkedBlockingQueue<>();    // Replies received by listener.
+    private LoopbackConnector connector;    // Connector.
+    private MinaraiClient client;           // Client.
+
+    /**
+     * Connect client to the connector of an echoing bot.
+     */
+    @Before
+    public void setUp() throws Exception {
+
+        connector = new LoopbackConnector()
+                .putBot(new LoopbackBot() {
+                    @Override
+                    public String reply(String utterance) {
+                        return "re:" + utterance;
+                    }
+                })
+                .start(0);
+
+        client = new MinaraiClient("app", "secret", "client", "user", "device", new MinaraiClientOptions()
+                .putSocketIoRootUrl(connector.getUrl())
+                .putApiVersion(connector.getApiVersion())
+                .putLogger(new MinaraiLogger() {
+                    @Override
+                    public boolean isLoggable(int level) {
+                        return false;
+                    }
+
+                    @Override
+                    public void log(int level, String tag, String msg, Throwable tr) {
+                    }
+                }));
+
+        final Semaphore joined = new Semaphore(0);
+
+        client.on(MinaraiEvent.JOINED, new MinaraiEventListener() {
+            @Override
+            public void onEvent(MinaraiEvent event, JSONObject data) {
+                joined.release();
+            }
+        });
+
+        client.on(MinaraiEvent.MESSAGE, new MinaraiEventDataListener() {
+            @Override
+            public void onEvent(MinaraiEventData data) {
+                replies.add(textOf((MinaraiChatEvent)data));
+            }
+        });
+
+        client.init();
+        assertTrue("Client did not join in time.", joined.tryAcquire(10L, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Tear down.
+     */
+    @After
+    public void tearDown() {
+
+        if(client != null)
+            client.close();
+
+        if(connector != null)
+            connector.close();
+    }
+
+    /**
+     * Replies to send while no message is waiting are ignored, and each sendAndAwait gets its own reply.
+     */
+    @Test
+    public void interleavedSendAndAwait() throws Exception {
+
+        // Reply to send while no message is waiting is not kept for the next sendAndAwait.
+        assertTrue(client.send("p1"));
+        assertEquals("re:p1", nextReply());
+
+        assertEquals("re:a1", await(client.sendAndAwait("a1", TIMEOUT_MILLIS, null)));
+        assertEquals("re:a1", nextReply());
+
+        // send while a message is waiting is answered after it, when no message is waiting.
+        MinaraiReplyTask a2 = client.sendAndAwait("a2", TIMEOUT_MILLIS, null);
+        assertTrue(client.send("p2"));
+
+        assertEquals("re:a2", await(a2));
+        assertEquals("re:a2", nextReply());
+        assertEquals("re:p2", nextReply());
+
+        // Messages waiting at once are answered in order.
+        MinaraiReplyTask a3 = client.sendAndAwait("a3", TIMEOUT_MILLIS, null);
+        MinaraiReplyTask a4 = client.sendAndAwait("a4", TIMEOUT_MILLIS, null);
+        MinaraiReplyTask a5 = client.sendAndAwait("a5", TIMEOUT_MILLIS, null);
+
+        assertEquals("re:a3", await(a3));
+        assertEquals("re:a4", await(a4));
+        assertEquals("re:a5", await(a5));
+
+        assertTrue(client.send("p3"));
+        assertEquals("re:a3", nextReply());
+        assertEquals("re:a4", nextReply());
+        assertEquals("re:a5", nextReply());
+        assertEquals("re:p3", nextReply());
+
+        // Nothing is waiting after all.
+        assertEquals("re:a6", await(client.sendAndAwait("a6", TIMEOUT_MILLIS, null)));
+    }
+
+    /**
+     * Reply to send which is unanswered when sendAndAwait is called does not complete the task.
+     */
+    @Test
+    public void awaitWhileSendUnanswered() throws Exception {
+
+        connector.putLatencyMillis(200L);
+
+        assertTrue(client.send("p1"));
+        MinaraiReplyTask a1 = client.sendAndAwait("a1", TIMEOUT_MILLIS, null);
+        assertTrue(client.send("p2"));
+        MinaraiReplyTask a2 = client.sendAndAwait("a2", TIMEOUT_MILLIS, null);
+
+        assertEquals("re:a1", await(a1));
+        assertEquals("re:a2", await(a2));
+    }
+
+    /**
+     * Late replies to tasks timed out or canceled do not complete the tasks after them.
+     */
+    @Test
+    public void lateReplyOfTimedOutAndCanceled() throws Exception {
+
+        connector.putLatencyMillis(300L);
+
+        MinaraiReplyTask timedOut = client.sendAndAwait("t1", 50L, null);
+        MinaraiReplyTask canceled = client.sendAndAwait("c1", TIMEOUT_MILLIS, null);
+        assertTrue(canceled.cancel(false));
+        MinaraiReplyTask a1 = client.sendAndAwait("a1", TIMEOUT_MILLIS, null);
+
+        try {
+            timedOut.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            fail("Not timed out.");
+        }
+        catch(ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof TimeoutException);
+        }
+
+        assertEquals("re:a1", await(a1));
+
+        // Order is kept after the late replies are consumed.
+        connector.putLatencyMillis(0L);
+        assertEquals("re:a2", await(client.sendAndAwait("a2", TIMEOUT_MILLIS, null)));
+    }
+
+    /**
+     * Wait reply of task.
+     *
+     * @param task Task.
+     * @return Text of reply.
+     */
+    private static String await(MinaraiReplyTask task) throws Exception {
+        return textOf(task.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Wait next reply received by listener.
+     *
+     * @return Text of reply.
+     */
+    private String nextReply() throws InterruptedException {
+
+        String reply = replies.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        assertNotNull("No reply in time.", reply);
+
+        return reply;
+    }
+
+    /**
+     * Gets text of reply.
+     *
+     * @param reply Reply.
+     * @return Text.
+     */
+    private static String textOf(MinaraiChatEvent reply) {
+        return reply.getBody().optString("message");
+    }
+}
@@ -0,0 +1,121 @@
+package com.nextremer.minarai.client;
+
+import com.nextremer.minarai.loopback.LoopbackConnector;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import io.socket.client.IO;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of clients sharing Socket.IO options put by app.
+ *
+ * @author nextremer.com
+ */
+public class SharedSocketIoOptionsTest {
+
+    private static final int CLIENTS = 3;      // Number of clients sharing options.
+    private static final int MESSAGES = 20;    // Number of messages per client.
+
+    private final List<MinaraiClient> clients = new ArrayList<>();     // Clients.
+    private LoopbackConnector connector;    // Connector.
+
+    /**
+     * Tear down.
+     */
+    @After
+    public void tearDown() {
+
+        for(MinaraiClient client : clients)
+            client.close();
+
+        if(connector != null)
+            connector.close();
+    }
+
+    /**
+     * Options are not modified by clients, and each client decodes its own frames with streaming codec and metrics.
+     */
+    @Test
+    public void sharedOptions() throws Exception {
+
+        connector = new LoopbackConnector().start(0);
+
+        IO.Options socketIoOptions = new IO.Options();
+        socketIoOptions.path = "/socket.io/" + connector.getApiVersion();
+        socketIoOptions.transports = new String[] {"websocket"};
+
+        final CountDownLatch joined = new CountDownLatch(CLIENTS);
+        final CountDownLatch replied = new CountDownLatch(CLIENTS * MESSAGES);
+
+        for(int i = 0; i < CLIENTS; i++) {
+            MinaraiClient client = new MinaraiClient("app", "secret", "client-" + i, "user-" + i, "device-" + i,
+                    new MinaraiClientOptions()
+                            .putSocketIoRootUrl(connector.getUrl())
+                            .putApiVersion(connector.getApiVersion())
+                            .putSocketIoOptions(socketIoOptions)
+                            .putJsonCodec(MinaraiJsonCodec.STREAMING)
+                            .putMetricsEnabled(true)
+                            .putReconnectPolicy(new MinaraiReconnectPolicy())
+                            .putLogger(new MinaraiLogger() {
+                                @Override
+                                public boolean isLoggable(int level) {
+                                    return false;
+                                }
+
+                                @Override
+                                public void log(int level, String tag, String msg, Throwable tr) {
+                                }
+                            }));
+
+            client.on(MinaraiEvent.JOINED, new MinaraiEventListener() {
+                @Override
+                public void onEvent(MinaraiEvent event, JSONObject data) {
+                    joined.countDown();
+                }
+            });
+
+            client.on(MinaraiEvent.MESSAGE, new MinaraiEventDataListener() {
+                @Override
+                public void onEvent(MinaraiEventData data) {
+                    replied.countDown();
+                }
+            });
+
+            clients.add(client);
+        }
+
+        for(MinaraiClient client : clients)
+            assertTrue(client.init());
+
+        assertTrue("Clients did not join in time.", joined.await(10L, TimeUnit.SECONDS));
+
+        // Options put by app are left as they are.
+        assertNull(socketIoOptions.encoder);
+        assertNull(socketIoOptions.decoder);
+        assertNull(socketIoOptions.callFactory);
+        assertNull(socketIoOptions.webSocketFactory);
+        assertTrue(socketIoOptions.reconnection);
+
+        // Frames of all clients arrive at once.
+        for(int i = 0; i < MESSAGES; i++) {
+            for(MinaraiClient client : clients)
+                assertTrue(client.send("message-" + i));
+        }
+
+        assertTrue("Replies are lost.", replied.await(10L, TimeUnit.SECONDS));
+
+        for(MinaraiClient client : clients)
+            assertEquals(MESSAGES, client.getMetrics().getTraffic().get("message").getPacketsIn());
+    }
+}
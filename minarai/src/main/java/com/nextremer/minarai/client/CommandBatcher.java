@@ -0,0 +1,243 @@
+package com.nextremer.minarai.client;
+
+import android.support.annotation.NonNull;
+
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces commands of the names opted in, sent within a window.
+ * Commands of the same name are overwritten by the latest one, keeping the position of the first one.
+ * Commands of other names are not held, and pending commands are flushed before them to keep order.
+ * Pending commands are flushed when the window elapses, when the number of pending names reaches the limit,
+ * or when closed.
+ *
+ * @author nextremer.com
+ */
+class CommandBatcher {
+
+    private static final String LOG_TAG = CommandBatcher.class.getName();  // Logging tag.
+    private static final long KEEP_ALIVE_SECONDS = 30L;                     // Keep alive time of idle thread.
+
+    /**
+     * Defines the destination of flushed commands.
+     */
+    interface Sink {
+
+        /**
+         * Emit command.
+         *
+         * @param name     Command name.
+         * @param extra    Extra data.
+         * @param unixTime UNIX time when the command was sent.
+         * @return Emitted or queued, or not.
+         */
+        boolean emit(@NonNull String name, @NonNull JSONObject extra, long unixTime);
+    }
+
+    /**
+     * Pending command.
+     */
+    private static class Command {
+
+        final String name;      // Command name.
+        final JSONObject extra; // Extra data.
+        final long unixTime;    // UNIX time when sent.
+
+        Command(String name, JSONObject extra, long unixTime) {
+            this.name = name;
+            this.extra = extra;
+            this.unixTime = unixTime;
+        }
+    }
+
+    private final Sink sink;                            // Sink.
+    private final Logger log;                           // Logger.
+    private final long windowMillis;                    // Window in milliseconds.
+    private final int maxSize;                          // Maximum number of pending names.
+    private final Set<String> names;                    // Names of commands to coalesce.
+    private final ScheduledThreadPoolExecutor timer;    // Timer to flush.
+
+    private final Map<String, Command> pending = new LinkedHashMap<>(); // Pending commands by name. Guarded by this.
+    private final Object flushLock = new Object();                      // Lock to keep order between flushes.
+    private boolean scheduled;                                          // Flush scheduled flag. Guarded by this.
+    private boolean closed;                                             // Closed flag. Guarded by this.
+
+    private long acceptedCount;     // Guarded by this.
+    private long coalescedCount;    // Guarded by this.
+    private long emittedCount;      // Guarded by this.
+    private long droppedCount;      // Guarded by this.
+    private long flushCount;        // Guarded by this.
+
+    /**
+     * Constructor.
+     *
+     * @param sink         Sink.
+     * @param names        Names of commands to coalesce.
+     * @param windowMillis Window in milliseconds.
+     * @param maxSize      Maximum number of pending names.
+     * @param log          Logger.
+     */
+    CommandBatcher(@NonNull Sink sink, @NonNull Set<String> names, long windowMillis, int maxSize, @NonNull Logger log) {
+
+        if(sink == null)
+            throw new IllegalArgumentException("sink must not be null.");
+
+        if(names == null)
+            throw new IllegalArgumentException("names must not be null.");
+
+        this.sink = sink;
+        this.names = names;
+        this.log = log;
+        this.windowMillis = windowMillis;
+        this.maxSize = Math.max(maxSize, 1);
+
+        timer = new ScheduledThreadPoolExecutor(1, Util.newThreadFactory("minarai-command-batch"));
+        timer.setKeepAliveTime(KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+        timer.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Gets whether commands of the name are coalesced.
+     *
+     * @param name Command name.
+     */
+    boolean isCoalesced(@NonNull String name) {
+        return names.contains(name);
+    }
+
+    /**
+     * Emit command of a name not coalesced, after pending commands.
+     *
+     * @param name     Command name.
+     * @param extra    Extra data.
+     * @param unixTime UNIX time when sent.
+     * @return Emitted or queued, or not.
+     */
+    boolean pass(@NonNull String name, @NonNull JSONObject extra, long unixTime) {
+
+        synchronized(flushLock) {
+            flush();
+            return sink.emit(name, extra, unixTime);
+        }
+    }
+
+    /**
+     * Add command of a name coalesced.
+     *
+     * @param name     Command name.
+     * @param extra    Extra data.
+     * @param unixTime UNIX time when sent.
+     * @return Accepted or not. false if closed.
+     */
+    boolean add(@NonNull String name, @NonNull JSONObject extra, long unixTime) {
+
+        boolean flushNow;
+
+        synchronized(this) {
+            if(closed)
+                return false;
+
+            acceptedCount++;
+
+            if(pending.put(name, new Command(name, extra, unixTime)) != null)
+                coalescedCount++;
+
+            flushNow = pending.size() >= maxSize;
+
+            if(!flushNow && !scheduled) {
+                scheduled = true;
+
+                try {
+                    timer.schedule(new Runnable() {
+                        @Override
+                        public void run() {
+                            flush();
+                        }
+                    }, windowMillis, TimeUnit.MILLISECONDS);
+                }
+                catch(RejectedExecutionException ex) {
+                    flushNow = true;
+                }
+            }
+        }
+
+        if(flushNow)
+            flush();
+
+        return true;
+    }
+
+    /**
+     * Emit pending commands.
+     * Commands which are neither emitted nor queued, e.g. when disconnected without outbound queue, are dropped.
+     */
+    void flush() {
+
+        synchronized(flushLock) {
+            List<Command> commands;
+
+            synchronized(this) {
+                scheduled = false;
+
+                if(pending.isEmpty())
+                    return;
+
+                commands = new ArrayList<>(pending.values());
+                pending.clear();
+
+                flushCount++;
+            }
+
+            int emitted = 0;
+
+            for(Command command : commands) {
+                try {
+                    if(sink.emit(command.name, command.extra, command.unixTime))
+                        emitted++;
+                    else
+                        log.w(LOG_TAG, "Command dropped: " + command.name);
+                }
+                catch(RuntimeException ex) {
+                    log.e(LOG_TAG, "Error while emit command: " + command.name, ex);
+                }
+            }
+
+            synchronized(this) {
+                emittedCount += emitted;
+                droppedCount += commands.size() - emitted;
+            }
+        }
+    }
+
+    /**
+     * Gets statistics.
+     */
+    synchronized MinaraiCommandBatchStats getStats() {
+        return new MinaraiCommandBatchStats(acceptedCount, coalescedCount, emittedCount, droppedCount, flushCount);
+    }
+
+    /**
+     * Flush pending commands and stop accepting commands.
+     */
+    void close() {
+
+        synchronized(this) {
+            if(closed)
+                return;
+
+            closed = true;
+        }
+
+        flush();
+        timer.shutdownNow();
+    }
+}
@@ -0,0 +1,451 @@
+package com.nextremer.minarai.client;
+
+import android.support.annotation.NonNull;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persistent store of conversation, to render latest messages before connected.
+ * Each chat event is appended to a file as one line of JSON on a background thread.
+ * Payloads are stored as received, so they are parsed only when read.
+ * The file is compacted to the latest entries when it grows to twice the maximum size.
+ * Each event is stored with the user id, and events of other users are dropped from the file when it is loaded.
+ *
+ * @author nextremer.com
+ */
+class ConversationStore implements Closeable {
+
+    private static final String LOG_TAG = ConversationStore.class.getName();   // Logging tag.
+
+    private static final String KEY_EVENT = "e";    // Key of event.
+    private static final String KEY_ID = "id";      // Key of payload id.
+    private static final String KEY_TIME = "t";     // Key of UNIX time.
+    private static final String KEY_DATA = "d";     // Key of payload.
+    private static final String KEY_USER = "u";     // Key of user id.
+
+    private static final long KEEP_ALIVE_SECONDS = 30L;    // Keep alive time of idle thread.
+
+    /**
+     * Stored event.
+     */
+    private static class Record {
+
+        final MinaraiEvent event;   // Event.
+        final String id;            // Payload id. May be null.
+        final long unixTime;        // UNIX time.
+        final String data;          // Encoded payload.
+        final String userId;        // User id. null if stored by older version.
+
+        Record(MinaraiEvent event, String id, long unixTime, String data, String userId) {
+            this.event = event;
+            this.id = id;
+            this.unixTime = unixTime;
+            this.data = data;
+            this.userId = userId;
+        }
+
+        /**
+         * Encode to one line of JSON.
+         */
+        String encode() {
+
+            StringBuilder sb = new StringBuilder(data.length() + 64);
+
+            new JsonWriter(sb)
+                    .beginObject()
+                    .name(KEY_EVENT).value(event.getSocketIoEvent())
+                    .name(KEY_ID).value(id)
+                    .name(KEY_TIME).value(unixTime)
+                    .name(KEY_USER).value(userId)
+                    .name(KEY_DATA).raw(data)
+                    .endObject();
+
+            return sb.toString();
+        }
+
+        /**
+         * Decode from one line of JSON.
+         *
+         * @return Record. null if line is broken.
+         */
+        static Record decode(String line) {
+
+            try {
+                MinaraiEvent event = MinaraiEvent.valueOf(JsonScanner.find(line, KEY_EVENT), null);
+                String time = JsonScanner.find(line, KEY_TIME);
+
+                JsonScanner scanner = new JsonScanner(line, 0);
+
+                if(event == null || time == null || !scanner.enterMember(KEY_DATA))
+                    return null;
+
+                int start = scanner.position();
+                scanner.skipValue();
+
+                return new Record(event,
+                        JsonScanner.find(line, KEY_ID),
+                        Long.parseLong(time),
+                        line.substring(start, scanner.position()).trim(),
+                        JsonScanner.find(line, KEY_USER));
+            }
+            catch(IllegalStateException | IndexOutOfBoundsException | NumberFormatException ex) {
+                return null;
+            }
+        }
+    }
+
+    private final File file;                    // File to persist.
+    private final String userId;                // User id of stored events.
+    private final int maxSize;                  // Maximum number of stored events.
+    private final Logger log;                   // Logger.
+    private final ThreadPoolExecutor executor;  // Writer thread.
+
+    private final List<Record> records = new ArrayList<>();     // Stored events in chronological order. Guarded by this.
+    private final Set<String> ids = new HashSet<>();            // Ids of stored events. Guarded by this.
+    private Writer writer;                                      // Writer of file. Guarded by this.
+    private int lineCount;                                      // Number of lines in file. Guarded by this.
+    private boolean loaded;                                     // Loaded flag. Guarded by this.
+    private volatile int generation;                            // Incremented by clear. Written while guarded by this.
+
+    /**
+     * Constructor.
+     *
+     * @param file    File to persist.
+     * @param userId  User id of stored events. Events of other users in the file are dropped.
+     * @param maxSize Maximum number of stored events.
+     * @param log     Logger.
+     */
+    ConversationStore(@NonNull File file, @NonNull String userId, int maxSize, @NonNull Logger log) {
+
+        if(file == null)
+            throw new IllegalArgumentException("file must not be null.");
+
+        if(userId == null)
+            throw new IllegalArgumentException("userId must not be null.");
+
+        if(maxSize < 1)
+            throw new IllegalArgumentException("maxSize must be positive.");
+
+        this.file = file;
+        this.userId = userId;
+        this.maxSize = maxSize;
+        this.log = log;
+
+        executor = new ThreadPoolExecutor(1, 1,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                Util.newThreadFactory("minarai-conversation"));
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Store event on background thread. The payload is encoded on the calling thread.
+     *
+     * @param data Event data.
+     */
+    void add(@NonNull MinaraiEventData data) {
+
+        final Record record = new Record(data.getEvent(), data.getId(), data.getTimestamp(), data.encode(), userId);
+        final int generation = this.generation;
+
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    append(record, generation);
+                }
+            });
+        }
+        catch(RejectedExecutionException ex) {
+            // Closed.
+        }
+    }
+
+    /**
+     * Gets latest events. Reads the file on first call.
+     *
+     * @param limit Maximum number of events.
+     * @return Events in chronological order.
+     */
+    synchronized List<MinaraiChatEvent> getLatest(int limit) {
+
+        load();
+
+        int from = Math.max(0, records.size() - limit);
+        List<MinaraiChatEvent> result = new ArrayList<>(records.size() - from);
+
+        for(int i = from; i < records.size(); i++) {
+            Record record = records.get(i);
+            result.add(new MinaraiChatEvent(record.event, null, record.data));
+        }
+
+        return result;
+    }
+
+    /**
+     * Remove all events and the file. Events added before but not written yet are discarded too.
+     */
+    synchronized void clear() {
+
+        generation++;
+        records.clear();
+        ids.clear();
+        closeWriter();
+        lineCount = 0;
+        loaded = true;
+
+        if(file.exists() && !file.delete())
+            log.w(LOG_TAG, "Failed to delete conversation file: ", file);
+    }
+
+    /**
+     * Write pending events and release file.
+     */
+    @Override
+    public void close() {
+
+        executor.shutdown();
+
+        try {
+            executor.awaitTermination(1L, TimeUnit.SECONDS);
+        }
+        catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized(this) {
+            closeWriter();
+        }
+    }
+
+    /**
+     * Append event to memory and file, then compact file if needed.
+     *
+     * @param record     Event.
+     * @param generation Generation when added.
+     */
+    private synchronized void append(Record record, int generation) {
+
+        // Cleared after added.
+        if(generation != this.generation)
+            return;
+
+        load();
+
+        int index = insert(record);
+
+        // Duplicated, or older than all stored events.
+        if(index < 0 || index < trim())
+            return;
+
+        if(lineCount + 1 > maxSize * 2) {
+            compact();
+            return;
+        }
+
+        try {
+            if(writer == null)
+                openWriter();
+
+            writer.write(record.encode());
+            writer.write('\n');
+            writer.flush();
+            lineCount++;
+        }
+        catch(IOException ex) {
+            log.w(LOG_TAG, "Failed to write conversation file: ", ex);
+            closeWriter();
+        }
+    }
+
+    /**
+     * Insert event keeping chronological order.
+     *
+     * @param record Event.
+     * @return Inserted index. -1 if duplicated.
+     */
+    private int insert(Record record) {
+
+        if(record.id != null && !ids.add(record.id))
+            return -1;
+
+        // Events mostly arrive in order, so search from the end.
+        int i = records.size();
+
+        while(i > 0 && records.get(i - 1).unixTime > record.unixTime)
+            i--;
+
+        records.add(i, record);
+
+        return i;
+    }
+
+    /**
+     * Remove oldest events over maximum size from memory.
+     *
+     * @return Number of removed events.
+     */
+    private int trim() {
+
+        int over = records.size() - maxSize;
+
+        if(over <= 0)
+            return 0;
+
+        List<Record> removed = records.subList(0, over);
+
+        for(Record record : removed) {
+            if(record.id != null)
+                ids.remove(record.id);
+        }
+
+        removed.clear();
+
+        return over;
+    }
+
+    /**
+     * Load events persisted by previous process if not loaded yet.
+     */
+    private void load() {
+
+        if(loaded)
+            return;
+
+        loaded = true;
+
+        if(!file.exists())
+            return;
+
+        int dropped = 0;
+
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+
+            try {
+                String line;
+
+                while((line = reader.readLine()) != null) {
+
+                    if(line.isEmpty())
+                        continue;
+
+                    lineCount++;
+
+                    Record record = Record.decode(line);
+
+                    // Partially written line by process death is skipped.
+                    if(record == null)
+                        continue;
+
+                    if(!userId.equals(record.userId)) {
+                        dropped++;
+                        continue;
+                    }
+
+                    insert(record);
+                }
+            }
+            finally {
+                reader.close();
+            }
+        }
+        catch(IOException ex) {
+            log.w(LOG_TAG, "Failed to load conversation file: ", ex);
+        }
+
+        trim();
+
+        // Remove events of other users from the file.
+        if(dropped > 0) {
+            log.i(LOG_TAG, "Dropped conversation of other users: " + dropped + " events");
+            compact();
+        }
+    }
+
+    /**
+     * Rewrite file with events in memory.
+     */
+    private void compact() {
+
+        closeWriter();
+
+        File temp = new File(file.getPath() + ".tmp");
+
+        try {
+            Writer out = new OutputStreamWriter(new FileOutputStream(temp), "UTF-8");
+
+            try {
+                for(Record record : records) {
+                    out.write(record.encode());
+                    out.write('\n');
+                }
+            }
+            finally {
+                out.close();
+            }
+
+            if(!temp.renameTo(file))
+                throw new IOException("Can not rename " + temp + " to " + file);
+
+            lineCount = records.size();
+        }
+        catch(IOException ex) {
+            log.w(LOG_TAG, "Failed to compact conversation file: ", ex);
+
+            if(temp.exists() && !temp.delete())
+                log.w(LOG_TAG, "Failed to delete temporary file: ", temp);
+        }
+    }
+
+    /**
+     * Open writer of file.
+     */
+    private void openWriter() throws IOException {
+
+        File dir = file.getParentFile();
+
+        if(dir != null && !dir.isDirectory() && !dir.mkdirs())
+            throw new IOException("Can not create directory: " + dir);
+
+        writer = new OutputStreamWriter(new FileOutputStream(file, true), "UTF-8");
+
+        // Terminate partially written line left by previous process.
+        if(file.length() > 0L)
+            writer.write('\n');
+    }
+
+    /**
+     * Close writer of file.
+     */
+    private void closeWriter() {
+
+        if(writer == null)
+            return;
+
+        try {
+            writer.close();
+        }
+        catch(IOException ex) {
+            log.w(LOG_TAG, "Failed to close conversation file: ", ex);
+        }
+
+        writer = null;
+    }
+}
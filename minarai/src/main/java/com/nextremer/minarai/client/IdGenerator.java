@@ -0,0 +1,79 @@
+package com.nextremer.minarai.client;
+
+import android.support.annotation.NonNull;
+
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates payload ids.
+ * An id consists of the identity prefix, time in milliseconds, a token of the process and a sequence number,
+ * e.g. "{applicationId}{clientId}{userId}{deviceId}-1520000000000-k3x9z-1a".
+ * The sequence is shared by all clients in the process, so ids are unique within the process
+ * regardless of time resolution or reconnects, and the process token separates ids of different processes.
+ *
+ * @author nextremer.com
+ */
+class IdGenerator {
+
+    private static final AtomicLong SEQUENCE = new AtomicLong();   // Sequence shared in the process.
+    private static final String PROCESS_TOKEN = newProcessToken(); // Token of the process.
+
+    /**
+     * Constructor.
+     */
+    private IdGenerator() {
+    }
+
+    /**
+     * Makes prefix of ids from identity.
+     *
+     * @param applicationId Application id.
+     * @param clientId      Client id.
+     * @param userId        User id.
+     * @param deviceId      Device id.
+     * @return Prefix.
+     */
+    static String prefix(@NonNull String applicationId,
+                         @NonNull String clientId,
+                         @NonNull String userId,
+                         @NonNull String deviceId) {
+
+        return new StringBuilder(applicationId.length() + clientId.length() + userId.length() + deviceId.length() + 1)
+                .append(applicationId)
+                .append(clientId)
+                .append(userId)
+                .append(deviceId)
+                .append('-')
+                .toString();
+    }
+
+    /**
+     * Generate next id.
+     *
+     * @param prefix Prefix made by {@link #prefix(String, String, String, String)}.
+     * @return Id.
+     */
+    static String next(@NonNull String prefix) {
+
+        long seq = SEQUENCE.incrementAndGet();
+
+        return new StringBuilder(prefix.length() + 32)
+                .append(prefix)
+                .append(System.currentTimeMillis())
+                .append('-')
+                .append(PROCESS_TOKEN)
+                .append('-')
+                .append(Long.toString(seq, Character.MAX_RADIX))
+                .toString();
+    }
+
+    /**
+     * Makes token of the process.
+     *
+     * @return Random base-36 token.
+     */
+    private static String newProcessToken() {
+        return Long.toString(new SecureRandom().nextLong() & 0xffffffffL, Character.MAX_RADIX);
+    }
+}
@@ -0,0 +1,183 @@
+package com.nextremer.minarai.client;
+
+import android.support.annotation.NonNull;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Identity of client, which is fixed until next join.
+ * Payload id prefix and the fixed members of the head are derived from it once and reused for every message,
+ * so only time and language are written at send time.
+ * A new instance is made when the identity is rewritten by the server, which invalidates them.
+ *
+ * @author nextremer.com
+ */
+class Identity {
+
+    final String applicationId;     // Application id.
+    final String applicationSecret; // Application secret.
+    final String clientId;          // Client id.
+    final String userId;            // User id.
+    final String deviceId;          // Device id.
+
+    private final String idPrefix;      // Prefix of payload ids.
+    private final String encodedFields; // Encoded members of head fixed until next join.
+    private volatile Head lastHead;     // Last made head tree.
+
+    /**
+     * Head tree made for a timestamp and a language.
+     */
+    private static class Head {
+
+        final long unixTime;    // UNIX time.
+        final String lang;      // Language. May be null.
+        final JSONObject json;  // Head. Must not be modified.
+
+        Head(long unixTime, String lang, JSONObject json) {
+            this.unixTime = unixTime;
+            this.lang = lang;
+            this.json = json;
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param applicationId     Application id.
+     * @param applicationSecret Application secret.
+     * @param clientId          Client id.
+     * @param userId            User id.
+     * @param deviceId          Device id.
+     */
+    Identity(@NonNull String applicationId,
+             @NonNull String applicationSecret,
+             @NonNull String clientId,
+             @NonNull String userId,
+             @NonNull String deviceId) {
+        this.applicationId = applicationId;
+        this.applicationSecret = applicationSecret;
+        this.clientId = clientId;
+        this.userId = userId;
+        this.deviceId = deviceId;
+
+        idPrefix = IdGenerator.prefix(applicationId, clientId, userId, deviceId);
+
+        // Members between braces of the encoded object.
+        StringBuilder fields = new StringBuilder();
+        new JsonWriter(fields)
+                .beginObject()
+                .name("applicationId").value(applicationId)
+                .name("applicationSecret").value(applicationSecret)
+                .name("clientId").value(clientId)
+                .name("userId").value(userId)
+                .name("deviceId").value(deviceId)
+                .endObject();
+        encodedFields = fields.substring(1, fields.length() - 1);
+    }
+
+    /**
+     * Parse identity from payload of joined event.
+     *
+     * @param payload Payload.
+     * @return Identity.
+     * @throws JSONException When payload format is invalid.
+     */
+    static Identity parse(@NonNull JSONObject payload) throws JSONException {
+
+        return new Identity(payload.getString("applicationId"),
+                payload.getString("applicationSecret"),
+                payload.getString("clientId"),
+                payload.getString("userId"),
+                payload.getString("deviceId"));
+    }
+
+    /**
+     * Generate next payload id.
+     *
+     * @return Id.
+     */
+    String nextId() {
+        return IdGenerator.next(idPrefix);
+    }
+
+    /**
+     * Make payload of join-as-client event.
+     *
+     * @return Payload.
+     * @throws JSONException When error while construct JSON.
+     */
+    JSONObject toJoinPayload() throws JSONException {
+
+        JSONObject payload = new JSONObject();
+        payload.put("applicationId", applicationId);
+        payload.put("applicationSecret", applicationSecret);
+        payload.put("clientId", clientId);
+        payload.put("userId", userId);
+        payload.put("deviceId", deviceId);
+
+        return payload;
+    }
+
+    /**
+     * Gets head of payload as JSON tree.
+     * A tree handed to Socket.IO must not be modified, so the time can not be rewritten in place.
+     * Instead, messages sent in the same second with the same language share one head instance,
+     * so the returned object must not be modified.
+     *
+     * @param unixTime UNIX time.
+     * @param lang     Language. If null, not included.
+     * @return Head.
+     * @throws JSONException When error while construct JSON.
+     */
+    JSONObject getHead(long unixTime, String lang) throws JSONException {
+        return head(unixTime, lang).json;
+    }
+
+    /**
+     * Write head of payload. Fixed members encoded on construction are copied, and only time and language are encoded.
+     *
+     * @param writer   Writer, just after the name of head.
+     * @param unixTime UNIX time.
+     * @param lang     Language. If null, not included.
+     */
+    void writeHead(@NonNull JsonWriter writer, long unixTime, String lang) {
+
+        writer.beginObject()
+                .members(encodedFields)
+                .name("timestampUnixTime").value(unixTime);
+
+        if(lang != null)
+            writer.name("lang").value(lang);
+
+        writer.endObject();
+    }
+
+    /**
+     * Gets cached head tree or make new one.
+     *
+     * @param unixTime UNIX time.
+     * @param lang     Language. If null, not included.
+     * @return Head.
+     * @throws JSONException When error while construct JSON.
+     */
+    private Head head(long unixTime, String lang) throws JSONException {
+
+        Head head = lastHead;
+
+        if(head != null && head.unixTime == unixTime
+                && (head.lang == null ? lang == null : head.lang.equals(lang)))
+            return head;
+
+        JSONObject json = toJoinPayload();
+        json.put("timestampUnixTime", unixTime);
+
+        if(lang != null)
+            json.put("lang", lang);
+
+        head = new Head(unixTime, lang, json);
+        lastHead = head;
+
+        return head;
+    }
+}
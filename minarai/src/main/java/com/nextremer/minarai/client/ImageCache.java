@@ -0,0 +1,520 @@
+package com.nextremer.minarai.client;
+
+import android.support.annotation.NonNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import okio.BufferedSink;
+import okio.Okio;
+import okio.Source;
+
+/**
+ * Two-tier cache of downloaded images.
+ * The first tier is an in-memory LRU bounded by bytes,
+ * the second tier is a directory of files with size-based LRU eviction.
+ * Entries are keyed by image URL and image type.
+ *
+ * @author nextremer.com
+ */
+class ImageCache {
+
+    private static final String LOG_TAG = ImageCache.class.getName();  // Logging tag.
+
+    private static final String FILE_SUFFIX = ".img";   // Suffix of cached files.
+    private static final String TEMP_SUFFIX = ".tmp";   // Suffix of files being written.
+    private static final int BUFFER_SIZE = 8192;        // Buffer size for file I/O.
+
+    private final long memoryMaxSize;   // Maximum size of memory cache in bytes. 0 means disabled.
+    private final File diskDir;         // Directory of disk cache. null means disabled.
+    private final long diskMaxSize;     // Maximum size of disk cache in bytes.
+    private final Logger log;           // Logger.
+
+    private final LinkedHashMap<String, byte[]> memory = new LinkedHashMap<>(16, 0.75f, true);  // Memory cache. Guarded by memory.
+    private long memorySize;                                                                    // Memory cache size. Guarded by memory.
+
+    private LinkedHashMap<String, Long> disk;   // File sizes of disk cache in LRU order. Guarded by diskLock. Loaded lazily.
+    private long diskSize;                      // Disk cache size. Guarded by diskLock.
+    private final Object diskLock = new Object();
+
+    private long memoryHitCount;        // Guarded by this.
+    private long diskHitCount;          // Guarded by this.
+    private long missCount;             // Guarded by this.
+    private long memoryEvictionCount;   // Guarded by this.
+    private long diskEvictionCount;     // Guarded by this.
+
+    /**
+     * Constructor.
+     *
+     * @param memoryMaxSize Maximum size of memory cache in bytes. 0 disables memory cache.
+     * @param diskDir       Directory of disk cache. null disables disk cache.
+     * @param diskMaxSize   Maximum size of disk cache in bytes.
+     * @param log           Logger.
+     */
+    ImageCache(long memoryMaxSize, File diskDir, long diskMaxSize, @NonNull Logger log) {
+        this.memoryMaxSize = Math.max(memoryMaxSize, 0L);
+        this.diskDir = (diskMaxSize > 0L) ? diskDir : null;
+        this.diskMaxSize = diskMaxSize;
+        this.log = log;
+    }
+
+    /**
+     * Gets cached image.
+     *
+     * @param url  Image URL.
+     * @param type Image type.
+     * @return Image bytes. If not cached, null.
+     */
+    byte[] get(@NonNull String url, @NonNull String type) {
+
+        String key = key(url, type);
+
+        if(memoryMaxSize > 0L) {
+            byte[] bytes;
+
+            synchronized(memory) {
+                bytes = memory.get(key);
+            }
+
+            if(bytes != null) {
+                synchronized(this) {
+                    memoryHitCount++;
+                }
+                return bytes;
+            }
+        }
+
+        if(diskDir != null) {
+            byte[] bytes = readDisk(key);
+
+            if(bytes != null) {
+                synchronized(this) {
+                    diskHitCount++;
+                }
+                putMemory(key, bytes);
+                return bytes;
+            }
+        }
+
+        synchronized(this) {
+            missCount++;
+        }
+
+        return null;
+    }
+
+    /**
+     * Puts image to cache.
+     *
+     * @param url   Image URL.
+     * @param type  Image type.
+     * @param bytes Image bytes.
+     */
+    void put(@NonNull String url, @NonNull String type, @NonNull byte[] bytes) {
+
+        String key = key(url, type);
+
+        putMemory(key, bytes);
+
+        if(diskDir != null)
+            writeDisk(key, bytes);
+    }
+
+    /**
+     * Checks whether disk cache is enabled.
+     */
+    boolean isDiskEnabled() {
+        return diskDir != null;
+    }
+
+    /**
+     * Gets cached image file from disk cache.
+     *
+     * @param url  Image URL.
+     * @param type Image type.
+     * @return Cached file. If not cached or disk cache is disabled, null.
+     */
+    File getFile(@NonNull String url, @NonNull String type) {
+
+        if(diskDir == null)
+            return null;
+
+        String name = key(url, type) + FILE_SUFFIX;
+        File file = new File(diskDir, name);
+        boolean hit;
+
+        synchronized(diskLock) {
+            loadDiskIndex();
+
+            hit = disk.get(name) != null && file.isFile();
+
+            if(!hit) {
+                Long size = disk.remove(name);
+
+                if(size != null)
+                    diskSize -= size;
+            }
+        }
+
+        synchronized(this) {
+            if(hit)
+                diskHitCount++;
+            else
+                missCount++;
+        }
+
+        if(hit)
+            file.setLastModified(System.currentTimeMillis());
+
+        return hit ? file : null;
+    }
+
+    /**
+     * Streams image into disk cache. Only a small constant buffer is held in memory.
+     *
+     * @param url    Image URL.
+     * @param type   Image type.
+     * @param source Image source. It is consumed but not closed.
+     * @return Cached file.
+     * @throws IOException When I/O error occurred or disk cache is disabled.
+     */
+    File putFile(@NonNull String url, @NonNull String type, @NonNull Source source) throws IOException {
+
+        if(diskDir == null)
+            throw new IOException("Disk cache is disabled.");
+
+        String key = key(url, type);
+        File temp = newTempFile(key);
+
+        try {
+            BufferedSink sink = Okio.buffer(Okio.sink(temp));
+
+            try {
+                sink.writeAll(source);
+            }
+            finally {
+                sink.close();
+            }
+
+            return commit(key, temp);
+        }
+        catch(IOException ex) {
+            temp.delete();
+            throw ex;
+        }
+    }
+
+    /**
+     * Gets statistics.
+     */
+    MinaraiImageCacheStats getStats() {
+
+        long memorySize;
+        long diskSize;
+
+        synchronized(memory) {
+            memorySize = this.memorySize;
+        }
+
+        synchronized(diskLock) {
+            diskSize = this.diskSize;
+        }
+
+        synchronized(this) {
+            return new MinaraiImageCacheStats(memoryHitCount,
+                    diskHitCount,
+                    missCount,
+                    memoryEvictionCount,
+                    diskEvictionCount,
+                    memorySize,
+                    diskSize);
+        }
+    }
+
+    /**
+     * Puts image to memory cache, evicting least recently used entries.
+     *
+     * @param key   Cache key.
+     * @param bytes Image bytes.
+     */
+    private void putMemory(String key, byte[] bytes) {
+
+        // Images larger than whole cache are not cached.
+        if(bytes.length > memoryMaxSize)
+            return;
+
+        int evicted = 0;
+
+        synchronized(memory) {
+            byte[] prev = memory.put(key, bytes);
+
+            if(prev != null)
+                memorySize -= prev.length;
+
+            memorySize += bytes.length;
+
+            Iterator<Map.Entry<String, byte[]>> it = memory.entrySet().iterator();
+
+            while(memorySize > memoryMaxSize && it.hasNext()) {
+                Map.Entry<String, byte[]> eldest = it.next();
+                memorySize -= eldest.getValue().length;
+                it.remove();
+                evicted++;
+            }
+        }
+
+        if(evicted > 0) {
+            synchronized(this) {
+                memoryEvictionCount += evicted;
+            }
+        }
+    }
+
+    /**
+     * Reads image from disk cache.
+     *
+     * @param key Cache key.
+     * @return Image bytes. If not cached, null.
+     */
+    private byte[] readDisk(String key) {
+
+        String name = key + FILE_SUFFIX;
+        File file = new File(diskDir, name);
+
+        synchronized(diskLock) {
+            loadDiskIndex();
+
+            if(disk.get(name) == null)
+                return null;
+        }
+
+        try {
+            byte[] bytes = readFile(file);
+            file.setLastModified(System.currentTimeMillis());
+            return bytes;
+        }
+        catch(IOException ex) {
+            // Evicted or broken. Forget it.
+            synchronized(diskLock) {
+                Long size = disk.remove(name);
+
+                if(size != null)
+                    diskSize -= size;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Writes image to disk cache.
+     *
+     * @param key   Cache key.
+     * @param bytes Image bytes.
+     */
+    private void writeDisk(String key, byte[] bytes) {
+
+        if(bytes.length > diskMaxSize)
+            return;
+
+        File temp = null;
+
+        try {
+            temp = newTempFile(key);
+            OutputStream out = new FileOutputStream(temp);
+
+            try {
+                out.write(bytes);
+            }
+            finally {
+                out.close();
+            }
+
+            commit(key, temp);
+        }
+        catch(IOException ex) {
+            log.w(LOG_TAG, "Failed to write image cache: ", ex);
+
+            if(temp != null)
+                temp.delete();
+        }
+    }
+
+    /**
+     * Makes temporary file to write image.
+     *
+     * @param key Cache key.
+     * @return Temporary file in disk cache directory.
+     * @throws IOException When directory can not be created.
+     */
+    private File newTempFile(String key) throws IOException {
+
+        if(!diskDir.isDirectory() && !diskDir.mkdirs())
+            throw new IOException("Can not create directory: " + diskDir);
+
+        return new File(diskDir, key + "-" + Thread.currentThread().getId() + TEMP_SUFFIX);
+    }
+
+    /**
+     * Moves written temporary file into disk cache, evicting least recently used files.
+     *
+     * @param key  Cache key.
+     * @param temp Temporary file.
+     * @return Cached file.
+     * @throws IOException When I/O error occurred.
+     */
+    private File commit(String key, File temp) throws IOException {
+
+        String name = key + FILE_SUFFIX;
+        File file = new File(diskDir, name);
+        long size = temp.length();
+
+        if(!temp.renameTo(file))
+            throw new IOException("Can not rename file: " + temp);
+
+        int evicted = 0;
+
+        synchronized(diskLock) {
+            loadDiskIndex();
+
+            Long prev = disk.put(name, size);
+
+            if(prev != null)
+                diskSize -= prev;
+
+            diskSize += size;
+
+            Iterator<Map.Entry<String, Long>> it = disk.entrySet().iterator();
+
+            while(diskSize > diskMaxSize && it.hasNext()) {
+                Map.Entry<String, Long> eldest = it.next();
+
+                if(eldest.getKey().equals(name))
+                    continue;
+
+                new File(diskDir, eldest.getKey()).delete();
+                diskSize -= eldest.getValue();
+                it.remove();
+                evicted++;
+            }
+        }
+
+        if(evicted > 0) {
+            synchronized(this) {
+                diskEvictionCount += evicted;
+            }
+        }
+
+        return file;
+    }
+
+    /**
+     * Loads index of disk cache from directory if not loaded yet.
+     * Must be called with diskLock held.
+     */
+    private void loadDiskIndex() {
+
+        if(disk != null)
+            return;
+
+        disk = new LinkedHashMap<>(16, 0.75f, true);
+        diskSize = 0L;
+
+        File[] files = diskDir.listFiles();
+
+        if(files == null)
+            return;
+
+        // Older files come first.
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                long l = lhs.lastModified();
+                long r = rhs.lastModified();
+                return (l < r) ? -1 : ((l == r) ? 0 : 1);
+            }
+        });
+
+        for(File file : files) {
+            String name = file.getName();
+
+            if(name.endsWith(TEMP_SUFFIX)) {
+                file.delete();
+            }
+            else if(name.endsWith(FILE_SUFFIX)) {
+                long size = file.length();
+                disk.put(name, size);
+                diskSize += size;
+            }
+        }
+    }
+
+    /**
+     * Reads whole file.
+     *
+     * @param file File.
+     * @return Bytes.
+     * @throws IOException When I/O error occurred.
+     */
+    private static byte[] readFile(File file) throws IOException {
+
+        InputStream in = new FileInputStream(file);
+
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream((int)file.length());
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int len;
+
+            while((len = in.read(buffer)) != -1) {
+                out.write(buffer, 0, len);
+            }
+
+            return out.toByteArray();
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Makes cache key from image URL and type.
+     *
+     * @param url  Image URL.
+     * @param type Image type.
+     * @return Cache key which is usable as a file name.
+     */
+    static String key(@NonNull String url, @NonNull String type) {
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            digest.update(type.getBytes("UTF-8"));
+            digest.update((byte)0);
+            digest.update(url.getBytes("UTF-8"));
+
+            byte[] hash = digest.digest();
+            char[] chars = new char[hash.length * 2];
+
+            for(int i = 0; i < hash.length; i++) {
+                chars[i * 2] = Character.forDigit((hash[i] >> 4) & 0xf, 16);
+                chars[i * 2 + 1] = Character.forDigit(hash[i] & 0xf, 16);
+            }
+
+            return new String(chars);
+        }
+        catch(NoSuchAlgorithmException | UnsupportedEncodingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package com.nextremer.minarai.client;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.support.annotation.NonNull;
+import android.support.media.ExifInterface;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+
+import okhttp3.MediaType;
+
+/**
+ * Downscales and recompresses images before upload.
+ * EXIF is not kept by recompression, so images are rotated as EXIF orientation tells before compressed.
+ *
+ * @author nextremer.com
+ */
+class ImageProcessor {
+
+    private static final int BUFFER_SIZE = 8192;   // Buffer size to read non-repeatable content.
+
+    /**
+     * Result of processing.
+     */
+    static class Result {
+
+        final StreamRequestBody body;       // Body to upload.
+        final long originalSize;            // Size of original image in bytes.
+        final long processedSize;           // Size of processed image in bytes.
+        final Bitmap.CompressFormat format; // Format of processed image. null if original image is kept.
+
+        Result(StreamRequestBody body, long originalSize, long processedSize, Bitmap.CompressFormat format) {
+            this.body = body;
+            this.originalSize = originalSize;
+            this.processedSize = processedSize;
+            this.format = format;
+        }
+
+        /**
+         * Gets file name to upload. Extension is replaced if it does not match format of processed image.
+         *
+         * @param fileName Original file name.
+         * @return File name.
+         */
+        String fileName(@NonNull String fileName) {
+
+            if(format == null)
+                return fileName;
+
+            String extension = extension(format);
+            int dot = fileName.lastIndexOf('.');
+
+            if(dot <= 0)
+                return fileName + "." + extension;
+
+            String current = fileName.substring(dot + 1).toLowerCase(Locale.US);
+
+            if(current.equals(extension) || (format == Bitmap.CompressFormat.JPEG && current.equals("jpeg")))
+                return fileName;
+
+            return fileName.substring(0, dot + 1) + extension;
+        }
+    }
+
+    /**
+     * Constructor.
+     */
+    private ImageProcessor() {
+    }
+
+    /**
+     * Downscale and recompress image.
+     * Original image is kept when it can not be decoded or processing does not make it smaller.
+     *
+     * @param src     Original image.
+     * @param options Options.
+     * @return Result.
+     * @throws IOException When I/O error occurred.
+     */
+    static Result process(@NonNull StreamRequestBody src, @NonNull MinaraiImageResizeOptions options) throws IOException {
+
+        if(src == null)
+            throw new IllegalArgumentException("src must not be null.");
+
+        if(options == null)
+            throw new IllegalArgumentException("options must not be null.");
+
+        // Image is decoded twice, so buffer content which can be read only once.
+        if(!src.isRepeatable()) {
+            byte[] bytes = readAll(src);
+            src = StreamRequestBody.ofBytes(src.contentType(), bytes, 0, bytes.length);
+        }
+
+        long originalSize = src.contentLength();
+
+        // Read size.
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        decode(src, bounds);
+
+        if(bounds.outWidth <= 0 || bounds.outHeight <= 0)
+            return new Result(src, originalSize, originalSize, null);
+
+        // Decode subsampled image which is still not smaller than maximum dimension.
+        int maxDimension = options.getMaxDimensionOrDefault();
+        int longSide = Math.max(bounds.outWidth, bounds.outHeight);
+        int sampleSize = 1;
+
+        while(longSide / (sampleSize * 2) >= maxDimension) {
+            sampleSize *= 2;
+        }
+
+        BitmapFactory.Options decodeOptions = new BitmapFactory.Options();
+        decodeOptions.inSampleSize = sampleSize;
+
+        Bitmap bitmap = decode(src, decodeOptions);
+
+        if(bitmap == null)
+            return new Result(src, originalSize, originalSize, null);
+
+        // Scale to maximum dimension.
+        ByteArrayOutputStream out = new ByteArrayOutputStream(BUFFER_SIZE);
+
+        try {
+            int width = bitmap.getWidth();
+            int height = bitmap.getHeight();
+            float scale = maxDimension / (float)Math.max(width, height);
+
+            if(scale < 1.0f) {
+                Bitmap scaled = Bitmap.createScaledBitmap(bitmap,
+                        Math.max(Math.round(width * scale), 1),
+                        Math.max(Math.round(height * scale), 1),
+                        true);
+
+                if(scaled != bitmap) {
+                    bitmap.recycle();
+                    bitmap = scaled;
+                }
+            }
+
+            // Rotate as EXIF orientation tells, because compression drops EXIF.
+            Matrix matrix = orientationMatrix(readOrientation(src));
+
+            if(matrix != null) {
+                Bitmap rotated = Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+
+                if(rotated != bitmap) {
+                    bitmap.recycle();
+                    bitmap = rotated;
+                }
+            }
+
+            // Compress.
+            if(!bitmap.compress(options.getFormatOrDefault(), options.getQualityOrDefault(), out))
+                return new Result(src, originalSize, originalSize, null);
+        }
+        finally {
+            bitmap.recycle();
+        }
+
+        if(originalSize >= 0L && out.size() >= originalSize)
+            return new Result(src, originalSize, originalSize, null);
+
+        byte[] processed = out.toByteArray();
+        StreamRequestBody body = StreamRequestBody.ofBytes(mediaType(options.getFormatOrDefault()),
+                processed, 0, processed.length);
+
+        return new Result(body, originalSize, processed.length, options.getFormatOrDefault());
+    }
+
+    /**
+     * Read EXIF orientation.
+     *
+     * @param src Image.
+     * @return Orientation. {@link ExifInterface#ORIENTATION_NORMAL} if not exists or not readable.
+     */
+    private static int readOrientation(StreamRequestBody src) {
+
+        try {
+            InputStream in = src.openStream();
+
+            try {
+                return new ExifInterface(in).getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+            }
+            finally {
+                in.close();
+            }
+        }
+        catch(IOException ex) {
+            return ExifInterface.ORIENTATION_NORMAL;
+        }
+    }
+
+    /**
+     * Make matrix to display image upright.
+     *
+     * @param orientation EXIF orientation.
+     * @return Matrix. null if no transformation is needed.
+     */
+    private static Matrix orientationMatrix(int orientation) {
+
+        Matrix matrix = new Matrix();
+
+        switch(orientation) {
+            case ExifInterface.ORIENTATION_FLIP_HORIZONTAL:
+                matrix.setScale(-1.0f, 1.0f);
+                return matrix;
+
+            case ExifInterface.ORIENTATION_ROTATE_180:
+                matrix.setRotate(180.0f);
+                return matrix;
+
+            case ExifInterface.ORIENTATION_FLIP_VERTICAL:
+                matrix.setScale(1.0f, -1.0f);
+                return matrix;
+
+            case ExifInterface.ORIENTATION_TRANSPOSE:
+                matrix.setRotate(90.0f);
+                matrix.postScale(-1.0f, 1.0f);
+                return matrix;
+
+            case ExifInterface.ORIENTATION_ROTATE_90:
+                matrix.setRotate(90.0f);
+                return matrix;
+
+            case ExifInterface.ORIENTATION_TRANSVERSE:
+                matrix.setRotate(-90.0f);
+                matrix.postScale(-1.0f, 1.0f);
+                return matrix;
+
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                matrix.setRotate(-90.0f);
+                return matrix;
+
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Decode image.
+     *
+     * @param src     Image.
+     * @param options Decode options.
+     * @return Bitmap. null if bounds only or not decodable.
+     * @throws IOException When I/O error occurred.
+     */
+    private static Bitmap decode(StreamRequestBody src, BitmapFactory.Options options) throws IOException {
+
+        InputStream in = src.openStream();
+
+        try {
+            return BitmapFactory.decodeStream(in, null, options);
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Read whole content.
+     *
+     * @param src Content.
+     * @return Bytes.
+     * @throws IOException When I/O error occurred.
+     */
+    private static byte[] readAll(StreamRequestBody src) throws IOException {
+
+        long length = src.contentLength();
+        ByteArrayOutputStream out = new ByteArrayOutputStream((length > 0L && length <= Integer.MAX_VALUE) ? (int)length : BUFFER_SIZE);
+        InputStream in = src.openStream();
+
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int len;
+
+            while((len = in.read(buffer)) != -1) {
+                out.write(buffer, 0, len);
+            }
+        }
+        finally {
+            in.close();
+        }
+
+        return out.toByteArray();
+    }
+
+    /**
+     * Gets media type of format.
+     *
+     * @param format Format.
+     * @return Media type.
+     */
+    private static MediaType mediaType(Bitmap.CompressFormat format) {
+
+        switch(format) {
+            case PNG:
+                return MediaType.parse("image/png");
+
+            case WEBP:
+                return MediaType.parse("image/webp");
+
+            default:
+                return MediaType.parse("image/jpeg");
+        }
+    }
+
+    /**
+     * Gets file extension of format.
+     *
+     * @param format Format.
+     * @return Extension without dot.
+     */
+    private static String extension(Bitmap.CompressFormat format) {
+
+        switch(format) {
+            case PNG:
+                return "png";
+
+            case WEBP:
+                return "webp";
+
+            default:
+                return "jpg";
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.nextremer.minarai.client;
+
+import android.support.annotation.NonNull;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolves images of chat events on background threads.
+ * Events submitted to this class are delivered to the sink in submitted order,
+ * while images of different events are fetched concurrently.
+ * Events without image are delivered immediately unless an earlier event is still waiting for its image.
+ *
+ * @author nextremer.com
+ */
+class ImageResolver implements Closeable {
+
+    private static final String LOG_TAG = ImageResolver.class.getName();   // Logging tag.
+
+    private static final int QUEUE_CAPACITY = 64;           // Capacity of fetch task queue.
+    private static final long KEEP_ALIVE_SECONDS = 30L;     // Keep alive time of idle threads.
+
+    /**
+     * Defines the image fetcher.
+     */
+    interface Fetcher {
+
+        /**
+         * Fetch image.
+         *
+         * @param url  Image URL.
+         * @param type Image type.
+         * @return Image data by URL form.
+         * @throws IOException When communication error occurred.
+         */
+        String fetch(@NonNull String url, @NonNull String type) throws IOException;
+    }
+
+    /**
+     * Defines the destination of resolved events.
+     */
+    interface Sink {
+
+        /**
+         * Deliver event.
+         *
+         * @param data Event data.
+         */
+        void deliver(@NonNull MinaraiEventData data);
+    }
+
+    /**
+     * Pending event.
+     */
+    private static class Entry {
+
+        final MinaraiEventData data;    // Event data.
+        boolean done;                   // Resolved flag. Guarded by lock.
+
+        Entry(MinaraiEventData data, boolean done) {
+            this.data = data;
+            this.done = done;
+        }
+    }
+
+    private final Fetcher fetcher;              // Image fetcher.
+    private final Sink sink;                    // Event sink.
+    private final ThreadPoolExecutor executor;  // Fetch executor.
+    private final Logger log;                   // Logger.
+
+    private final Object lock = new Object();                   // Lock for pending events.
+    private final ArrayDeque<Entry> pending = new ArrayDeque<>(); // Pending events in arrival order.
+    private boolean draining;                                   // Draining flag. Guarded by lock.
+
+    /**
+     * Constructor.
+     *
+     * @param fetcher     Image fetcher.
+     * @param sink        Event sink.
+     * @param concurrency Maximum number of concurrent fetches.
+     * @param log         Logger.
+     */
+    ImageResolver(@NonNull Fetcher fetcher, @NonNull Sink sink, int concurrency, @NonNull Logger log) {
+
+        if(fetcher == null)
+            throw new IllegalArgumentException("fetcher must not be null.");
+
+        if(sink == null)
+            throw new IllegalArgumentException("sink must not be null.");
+
+        if(concurrency < 1)
+            throw new IllegalArgumentException("concurrency must be positive.");
+
+        this.fetcher = fetcher;
+        this.sink = sink;
+        this.log = log;
+
+        executor = new ThreadPoolExecutor(concurrency, concurrency,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(QUEUE_CAPACITY),
+                Util.newThreadFactory("minarai-image"));
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Submit event.
+     *
+     * @param data    Event data.
+     * @param message Message which contains image to resolve. If null, event has no image.
+     */
+    void submit(@NonNull MinaraiEventData data, JSONObject message) {
+
+        final Entry entry = new Entry(data, message == null);
+
+        synchronized(lock) {
+            pending.add(entry);
+        }
+
+        if(message != null) {
+            final JSONObject target = message;
+
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        resolve(target);
+                        complete(entry);
+                    }
+                });
+            }
+            catch(RejectedExecutionException ex) {
+                log.w(LOG_TAG, "Image fetch rejected. Deliver event without image: ", data.getEvent());
+                complete(entry);
+            }
+        }
+
+        drain();
+    }
+
+    /**
+     * Fetch image and put it to message as "url".
+     *
+     * @param message Message which contains image.
+     */
+    private void resolve(JSONObject message) {
+
+        try {
+            String imageUrl = message.getString("imageUrl");
+            String imageType = message.getString("imageType");
+
+            message.put("url", fetcher.fetch(imageUrl, imageType));
+        }
+        catch(JSONException ex) {
+        }
+        catch(IOException ex) {
+            log.e(LOG_TAG, "Error while get image URL", ex);
+        }
+    }
+
+    /**
+     * Mark entry as resolved and deliver resolved events.
+     *
+     * @param entry Entry.
+     */
+    private void complete(Entry entry) {
+
+        synchronized(lock) {
+            entry.done = true;
+        }
+
+        drain();
+    }
+
+    /**
+     * Deliver resolved events from the head of pending events.
+     * Only one thread delivers at a time, so listeners are never called concurrently from this class.
+     */
+    private void drain() {
+
+        synchronized(lock) {
+            if(draining)
+                return;
+
+            draining = true;
+        }
+
+        for(;;) {
+            Entry head;
+
+            synchronized(lock) {
+                head = pending.peek();
+
+                if(head == null || !head.done) {
+                    draining = false;
+                    return;
+                }
+
+                pending.poll();
+            }
+
+            try {
+                sink.deliver(head.data);
+            }
+            catch(RuntimeException ex) {
+                log.e(LOG_TAG, "Error while deliver event: " + head.data.getEvent(), ex);
+            }
+        }
+    }
+
+    /**
+     * Stop fetching. Pending events are discarded.
+     */
+    @Override
+    public void close() {
+
+        executor.shutdownNow();
+
+        synchronized(lock) {
+            pending.clear();
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package com.nextremer.minarai.client;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Streaming JSON reader which walks encoded JSON without building a tree.
+ * Used to look at a few fields of inbound payloads before, or instead of, parsing them.
+ *
+ * @author nextremer.com
+ */
+class JsonScanner {
+
+    private final String json;  // Encoded JSON.
+    private int pos;            // Current position.
+
+    /**
+     * Constructor.
+     *
+     * @param json Encoded JSON.
+     * @param pos  Start position.
+     */
+    JsonScanner(@NonNull String json, int pos) {
+        this.json = json;
+        this.pos = pos;
+    }
+
+    /**
+     * Find value by path of object member names.
+     *
+     * @param json Encoded JSON object.
+     * @param path Path of member names.
+     * @return String value, or text of number and boolean value. null if not found, null value, object or array.
+     */
+    static String find(@NonNull String json, @NonNull String... path) {
+
+        try {
+            JsonScanner scanner = new JsonScanner(json, 0);
+
+            for(String name : path) {
+                if(!scanner.enterMember(name))
+                    return null;
+            }
+
+            return scanner.readScalar();
+        }
+        catch(IllegalStateException | IndexOutOfBoundsException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Gets current position.
+     */
+    int position() {
+        return pos;
+    }
+
+    /**
+     * Move to value of member in the object at current position.
+     *
+     * @param name Member name.
+     * @return Found or not.
+     */
+    boolean enterMember(@NonNull String name) {
+
+        expect('{');
+
+        if(peek() == '}')
+            return false;
+
+        for(;;) {
+            String key = readString();
+            expect(':');
+
+            if(name.equals(key)) {
+                skipWhitespace();
+                return true;
+            }
+
+            skipValue();
+
+            if(peek() == ',') {
+                pos++;
+                continue;
+            }
+
+            expect('}');
+            return false;
+        }
+    }
+
+    /**
+     * Read string, number or boolean at current position.
+     *
+     * @return Value. null if null, object or array.
+     */
+    String readScalar() {
+
+        char c = peek();
+
+        if(c == '"')
+            return readString();
+
+        if(c == '{' || c == '[')
+            return null;
+
+        int start = pos;
+        skipValue();
+        String text = json.substring(start, pos).trim();
+
+        return "null".equals(text) ? null : text;
+    }
+
+    /**
+     * Read string at current position.
+     *
+     * @return Value.
+     */
+    String readString() {
+
+        expect('"');
+
+        StringBuilder sb = null;
+        int start = pos;
+
+        for(;;) {
+            char c = json.charAt(pos++);
+
+            if(c == '"')
+                break;
+
+            if(c != '\\')
+                continue;
+
+            if(sb == null)
+                sb = new StringBuilder();
+
+            sb.append(json, start, pos - 1);
+
+            char e = json.charAt(pos++);
+
+            switch(e) {
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'n': sb.append('\n'); break;
+                case 'r': sb.append('\r'); break;
+                case 't': sb.append('\t'); break;
+                case 'u':
+                    sb.append((char)Integer.parseInt(json.substring(pos, pos + 4), 16));
+                    pos += 4;
+                    break;
+                default:  sb.append(e); break;
+            }
+
+            start = pos;
+        }
+
+        if(sb == null)
+            return json.substring(start, pos - 1);
+
+        return sb.append(json, start, pos - 1).toString();
+    }
+
+    /**
+     * Skip value at current position.
+     */
+    void skipValue() {
+
+        skipWhitespace();
+
+        int nest = 0;
+
+        do {
+            char c = json.charAt(pos);
+
+            switch(c) {
+                case '"':
+                    skipString();
+                    continue;
+
+                case '{':
+                case '[':
+                    nest++;
+                    break;
+
+                case '}':
+                case ']':
+                    if(nest == 0)
+                        return;
+                    nest--;
+                    break;
+
+                case ',':
+                    if(nest == 0)
+                        return;
+                    break;
+
+                default:
+                    break;
+            }
+
+            pos++;
+        }
+        while(nest > 0 || !isValueEnd());
+
+        skipWhitespace();
+    }
+
+    /**
+     * Skip whitespace and expect character.
+     *
+     * @param c Expected character.
+     */
+    void expect(char c) {
+
+        if(peek() != c)
+            throw new IllegalStateException("Expected '" + c + "' at " + pos);
+
+        pos++;
+    }
+
+    /**
+     * Skip whitespace and gets next character without consuming it.
+     */
+    char peek() {
+        skipWhitespace();
+        return json.charAt(pos);
+    }
+
+    /**
+     * Skip whitespace.
+     */
+    private void skipWhitespace() {
+
+        while(pos < json.length()) {
+            char c = json.charAt(pos);
+
+            if(c != ' ' && c != '\t' && c != '\n' && c != '\r')
+                return;
+
+            pos++;
+        }
+    }
+
+    /**
+     * Skip string at current position.
+     */
+    private void skipString() {
+
+        pos++;
+
+        for(;;) {
+            char c = json.charAt(pos++);
+
+            if(c == '"')
+                return;
+
+            if(c == '\\')
+                pos++;
+        }
+    }
+
+    /**
+     * Gets if current position is at the end of a value.
+     */
+    private boolean isValueEnd() {
+
+        if(pos >= json.length())
+            return true;
+
+        char c = json.charAt(pos);
+
+        return c == ',' || c == '}' || c == ']' || c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+}
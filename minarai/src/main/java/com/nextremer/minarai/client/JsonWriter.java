@@ -0,0 +1,225 @@
+package com.nextremer.minarai.client;
+
+import android.support.annotation.NonNull;
+
+import org.json.JSONObject;
+
+import java.util.Arrays;
+
+/**
+ * Streaming JSON writer which appends to a buffer without building a tree.
+ * Callers are responsible for well-formed nesting.
+ *
+ * @author nextremer.com
+ */
+class JsonWriter {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();    // Hex digits.
+
+    private final StringBuilder out;        // Destination.
+    private boolean[] first = new boolean[8];   // First value flags by depth.
+    private int depth;                      // Current depth.
+    private boolean afterName;              // Name was written just before.
+
+    /**
+     * Constructor.
+     *
+     * @param out Destination.
+     */
+    JsonWriter(@NonNull StringBuilder out) {
+        this.out = out;
+    }
+
+    /**
+     * Begin object.
+     */
+    JsonWriter beginObject() {
+        separate();
+        out.append('{');
+        push();
+        return this;
+    }
+
+    /**
+     * End object.
+     */
+    JsonWriter endObject() {
+        depth--;
+        out.append('}');
+        return this;
+    }
+
+    /**
+     * Begin array.
+     */
+    JsonWriter beginArray() {
+        separate();
+        out.append('[');
+        push();
+        return this;
+    }
+
+    /**
+     * End array.
+     */
+    JsonWriter endArray() {
+        depth--;
+        out.append(']');
+        return this;
+    }
+
+    /**
+     * Write name of object member.
+     *
+     * @param name Name.
+     */
+    JsonWriter name(@NonNull String name) {
+        separate();
+        string(out, name);
+        out.append(':');
+        afterName = true;
+        return this;
+    }
+
+    /**
+     * Write string value.
+     *
+     * @param value Value. null is written as null.
+     */
+    JsonWriter value(String value) {
+
+        if(value == null)
+            return raw("null");
+
+        separate();
+        string(out, value);
+        return this;
+    }
+
+    /**
+     * Write number value.
+     *
+     * @param value Value.
+     */
+    JsonWriter value(long value) {
+        separate();
+        out.append(value);
+        return this;
+    }
+
+    /**
+     * Write boolean value.
+     *
+     * @param value Value.
+     */
+    JsonWriter value(boolean value) {
+        separate();
+        out.append(value);
+        return this;
+    }
+
+    /**
+     * Write object value built by org.json.
+     *
+     * @param value Value. null is written as null.
+     */
+    JsonWriter value(JSONObject value) {
+        return raw((value != null) ? value.toString() : "null");
+    }
+
+    /**
+     * Write encoded JSON value as is.
+     *
+     * @param json Encoded JSON.
+     */
+    JsonWriter raw(@NonNull CharSequence json) {
+        separate();
+        out.append(json);
+        return this;
+    }
+
+    /**
+     * Write encoded members of object as is, e.g. {@code "a":1,"b":2}.
+     *
+     * @param members Encoded members. Must not be empty.
+     */
+    JsonWriter members(@NonNull CharSequence members) {
+        separate();
+        out.append(members);
+        return this;
+    }
+
+    /**
+     * Write comma if needed.
+     */
+    private void separate() {
+
+        if(afterName) {
+            afterName = false;
+            return;
+        }
+
+        if(depth == 0)
+            return;
+
+        if(first[depth - 1])
+            first[depth - 1] = false;
+        else
+            out.append(',');
+    }
+
+    /**
+     * Enter object or array.
+     */
+    private void push() {
+
+        if(depth == first.length)
+            first = Arrays.copyOf(first, depth * 2);
+
+        first[depth++] = true;
+    }
+
+    /**
+     * Write quoted and escaped string.
+     *
+     * @param out   Destination.
+     * @param value Value.
+     */
+    static void string(@NonNull StringBuilder out, @NonNull String value) {
+
+        out.append('"');
+
+        int start = 0;
+        int length = value.length();
+
+        for(int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+
+            if(c >= 0x20 && c != '"' && c != '\\' && c != '\u2028' && c != '\u2029')
+                continue;
+
+            out.append(value, start, i);
+            start = i + 1;
+
+            switch(c) {
+                case '"':  out.append("\\\""); break;
+                case '\\': out.append("\\\\"); break;
+                case '\b': out.append("\\b"); break;
+                case '\f': out.append("\\f"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                case '\t': out.append("\\t"); break;
+                default:
+                    out.append("\\u")
+                            .append(HEX[(c >> 12) & 0xf])
+                            .append(HEX[(c >> 8) & 0xf])
+                            .append(HEX[(c >> 4) & 0xf])
+                            .append(HEX[c & 0xf]);
+                    break;
+            }
+        }
+
+        out.append(value, start, length);
+        out.append('"');
+    }
+}
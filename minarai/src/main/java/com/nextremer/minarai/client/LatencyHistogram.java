@@ -0,0 +1,92 @@
+package com.nextremer.minarai.client;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency histogram with log-linear buckets in microseconds.
+ * Each power of two is split into 32 buckets, so recorded values are kept within about 3% of precision
+ * from 1 microsecond up to about 19 hours with a fixed array of counters.
+ * Recording does not lock nor allocate.
+ *
+ * @author nextremer.com
+ */
+class LatencyHistogram {
+
+    private static final int SUB_BITS = 5;                          // Bits of buckets in a power of two.
+    private static final int SUB_COUNT = 1 << SUB_BITS;             // Number of buckets in a power of two.
+    private static final long MAX_VALUE = (1L << 36) - 1L;          // Maximum value. Larger values are clamped.
+    static final int BUCKET_COUNT = indexOf(MAX_VALUE) + 1;         // Number of buckets.
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);   // Counts by bucket.
+    private final AtomicLong count = new AtomicLong();                          // Number of values.
+    private final AtomicLong sum = new AtomicLong();                            // Sum of values.
+    private final AtomicLong max = new AtomicLong();                            // Maximum value.
+
+    /**
+     * Record value.
+     *
+     * @param micros Value in microseconds.
+     */
+    void record(long micros) {
+
+        long value = Math.min(Math.max(micros, 0L), MAX_VALUE);
+
+        counts.incrementAndGet(indexOf(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+
+        for(;;) {
+            long current = max.get();
+
+            if(value <= current || max.compareAndSet(current, value))
+                return;
+        }
+    }
+
+    /**
+     * Take snapshot. Values recorded concurrently may be partially included.
+     */
+    MinaraiLatencyStats snapshot() {
+
+        long[] snapshot = new long[BUCKET_COUNT];
+
+        for(int i = 0; i < BUCKET_COUNT; i++)
+            snapshot[i] = counts.get(i);
+
+        return new MinaraiLatencyStats(snapshot, count.get(), sum.get(), max.get());
+    }
+
+    /**
+     * Gets bucket index of value.
+     *
+     * @param value Value.
+     * @return Index.
+     */
+    static int indexOf(long value) {
+
+        if(value < SUB_COUNT)
+            return (int)value;
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+
+        return (exponent - SUB_BITS) * SUB_COUNT + (int)(value >>> (exponent - SUB_BITS));
+    }
+
+    /**
+     * Gets the largest value of bucket.
+     *
+     * @param index Index.
+     * @return Value.
+     */
+    static long highestValueOf(int index) {
+
+        if(index < SUB_COUNT * 2)
+            return index;
+
+        int shift = index / SUB_COUNT - 1;
+        long lowest = (long)(index % SUB_COUNT + SUB_COUNT) << shift;
+
+        return lowest + (1L << shift) - 1L;
+    }
+}
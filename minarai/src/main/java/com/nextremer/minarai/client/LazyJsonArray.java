@@ -0,0 +1,67 @@
+package com.nextremer.minarai.client;
+
+import android.support.annotation.NonNull;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+
+import java.util.IdentityHashMap;
+
+/**
+ * Copy of JSONArray whose nested objects and arrays are copied when first accessed.
+ * See {@link LazyJsonObject}.
+ *
+ * @author nextremer.com
+ */
+class LazyJsonArray extends JSONArray {
+
+    private IdentityHashMap<Object, Integer> shared;   // Numbers of occurrences by nested values not copied yet. null if none.
+
+    /**
+     * Constructor.
+     *
+     * @param source Source array.
+     */
+    LazyJsonArray(@NonNull JSONArray source) {
+
+        for(int i = 0; i < source.length(); i++) {
+            Object value = source.opt(i);
+
+            super.put(value);
+            shared = LazyJsonObject.share(shared, value);
+        }
+    }
+
+    /**
+     * @see JSONArray#opt(int)
+     */
+    @Override
+    public Object opt(int index) {
+
+        Object value = super.opt(index);
+        Object copy = LazyJsonObject.copyOf(shared, value);
+
+        if(copy != value) {
+            try {
+                super.put(index, copy);
+            }
+            catch(JSONException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+
+        return copy;
+    }
+
+    /**
+     * @see JSONArray#get(int)
+     */
+    @Override
+    public Object get(int index) throws JSONException {
+
+        // Throws if not exists.
+        super.get(index);
+
+        return opt(index);
+    }
+}
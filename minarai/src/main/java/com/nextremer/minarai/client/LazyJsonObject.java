@@ -0,0 +1,141 @@
+package com.nextremer.minarai.client;
+
+import android.support.annotation.NonNull;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+
+/**
+ * Copy of JSONObject whose nested objects and arrays are copied when first accessed.
+ * Only this level is copied on construction, and untouched subtrees stay shared with the source,
+ * so the source must not be modified while the copy is in use.
+ * Shared subtrees are serialized as they are, because their content is the same as copies.
+ * Reading copies nested values, so unlike an unmodified JSONObject, it is not safe to read from multiple threads.
+ *
+ * @author nextremer.com
+ */
+class LazyJsonObject extends JSONObject {
+
+    private IdentityHashMap<Object, Integer> shared;   // Numbers of occurrences by nested values not copied yet. null if none.
+
+    /**
+     * Constructor.
+     *
+     * @param source Source object.
+     * @throws JSONException When source object format is invalid.
+     */
+    LazyJsonObject(@NonNull JSONObject source) throws JSONException {
+
+        Iterator<?> names = source.keys();
+
+        while(names.hasNext()) {
+            String name = (String)names.next();
+            Object value = source.opt(name);
+
+            super.put(name, value);
+            shared = share(shared, value);
+        }
+    }
+
+    /**
+     * @see JSONObject#opt(String)
+     */
+    @Override
+    public Object opt(String name) {
+
+        Object value = super.opt(name);
+        Object copy = copyOf(shared, value);
+
+        if(copy != value) {
+            try {
+                super.put(name, copy);
+            }
+            catch(JSONException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+
+        return copy;
+    }
+
+    /**
+     * @see JSONObject#get(String)
+     */
+    @Override
+    public Object get(String name) throws JSONException {
+
+        // Throws if not exists.
+        super.get(name);
+
+        return opt(name);
+    }
+
+    /**
+     * @see JSONObject#accumulate(String, Object)
+     */
+    @Override
+    public JSONObject accumulate(String name, Object value) throws JSONException {
+
+        // Existing array is appended, so copy it first.
+        opt(name);
+
+        return super.accumulate(name, value);
+    }
+
+    /**
+     * Register value as shared if it is an object or array.
+     *
+     * @param shared Numbers of occurrences by shared values. May be null.
+     * @param value  Value.
+     * @return Numbers of occurrences by shared values. null if none.
+     */
+    static IdentityHashMap<Object, Integer> share(IdentityHashMap<Object, Integer> shared, Object value) {
+
+        if(!(value instanceof JSONObject || value instanceof JSONArray))
+            return shared;
+
+        if(shared == null)
+            shared = new IdentityHashMap<>();
+
+        Integer count = shared.get(value);
+        shared.put(value, (count != null) ? count + 1 : 1);
+
+        return shared;
+    }
+
+    /**
+     * Gets copy of value if it is shared. Each occurrence of a shared value gets a copy of its own, as parsed JSON does.
+     *
+     * @param shared Numbers of occurrences by shared values. May be null.
+     * @param value  Value.
+     * @return Copy. value itself if not shared.
+     */
+    static Object copyOf(IdentityHashMap<Object, Integer> shared, Object value) {
+
+        if(shared == null || value == null)
+            return value;
+
+        Integer count = shared.get(value);
+
+        if(count == null)
+            return value;
+
+        if(count == 1)
+            shared.remove(value);
+        else
+            shared.put(value, count - 1);
+
+        try {
+            return (value instanceof JSONObject)
+                    ? new LazyJsonObject((JSONObject)value)
+                    : new LazyJsonArray((JSONArray)value);
+        }
+        catch(JSONException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
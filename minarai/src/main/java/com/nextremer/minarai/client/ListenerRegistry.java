@@ -0,0 +1,156 @@
+package com.nextremer.minarai.client;
+
+import android.support.annotation.NonNull;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Registry of event listeners.
+ * Registrations of each event are kept in an immutable array which is replaced on every change,
+ * so registration and dispatch are safe from any thread without locking.
+ * Dispatch reads one array and does not allocate.
+ *
+ * @author nextremer.com
+ */
+class ListenerRegistry {
+
+    private static final Registration[] EMPTY = new Registration[0];   // Empty registrations.
+
+    /**
+     * Listener and its dispatcher.
+     */
+    static class Registration {
+
+        final Object listener;                  // MinaraiEventListener or MinaraiEventDataListener.
+        final MinaraiDispatcher dispatcher;     // Dispatcher.
+        final Metrics metrics;                  // Metrics. null if disabled.
+
+        Registration(Object listener, MinaraiDispatcher dispatcher, Metrics metrics) {
+            this.listener = listener;
+            this.dispatcher = dispatcher;
+            this.metrics = metrics;
+        }
+
+        /**
+         * Call listener.
+         *
+         * @param data Event data.
+         */
+        void deliver(@NonNull MinaraiEventData data) {
+
+            long startNanos = (metrics != null) ? System.nanoTime() : 0L;
+
+            if(listener instanceof MinaraiEventDataListener)
+                ((MinaraiEventDataListener)listener).onEvent(data);
+            else
+                ((MinaraiEventListener)listener).onEvent(data.getEvent(), data.getJson());
+
+            if(metrics != null)
+                metrics.recordSince(MinaraiMetric.LISTENER_DISPATCH, startNanos);
+        }
+    }
+
+    private final EnumMap<MinaraiEvent, AtomicReference<Registration[]>> slots;   // Registrations by event. Never modified after construction.
+    private final Metrics metrics;  // Metrics. null if disabled.
+
+    /**
+     * Constructor.
+     *
+     * @param metrics Metrics to record listener dispatch time. null if disabled.
+     */
+    ListenerRegistry(Metrics metrics) {
+
+        this.metrics = metrics;
+
+        slots = new EnumMap<>(MinaraiEvent.class);
+
+        for(MinaraiEvent event : MinaraiEvent.values()) {
+            slots.put(event, new AtomicReference<>(EMPTY));
+        }
+    }
+
+    /**
+     * Add listener.
+     *
+     * @param event      Event.
+     * @param listener   MinaraiEventListener or MinaraiEventDataListener.
+     * @param dispatcher Dispatcher to call listener.
+     */
+    void add(@NonNull MinaraiEvent event, @NonNull Object listener, @NonNull MinaraiDispatcher dispatcher) {
+
+        AtomicReference<Registration[]> slot = slots.get(event);
+        Registration registration = new Registration(listener, dispatcher, metrics);
+
+        for(;;) {
+            Registration[] current = slot.get();
+            Registration[] next = Arrays.copyOf(current, current.length + 1);
+            next[current.length] = registration;
+
+            if(slot.compareAndSet(current, next))
+                return;
+        }
+    }
+
+    /**
+     * Remove listener. If the listener is added more than once, the first one is removed.
+     *
+     * @param event    Event.
+     * @param listener Listener.
+     * @return Removed or not.
+     */
+    boolean remove(@NonNull MinaraiEvent event, @NonNull Object listener) {
+
+        AtomicReference<Registration[]> slot = slots.get(event);
+
+        for(;;) {
+            Registration[] current = slot.get();
+            int index = indexOf(current, listener);
+
+            if(index < 0)
+                return false;
+
+            Registration[] next;
+
+            if(current.length == 1) {
+                next = EMPTY;
+            }
+            else {
+                next = new Registration[current.length - 1];
+                System.arraycopy(current, 0, next, 0, index);
+                System.arraycopy(current, index + 1, next, index, current.length - index - 1);
+            }
+
+            if(slot.compareAndSet(current, next))
+                return true;
+        }
+    }
+
+    /**
+     * Gets registrations of event. The returned array must not be modified.
+     *
+     * @param event Event.
+     * @return Registrations. Empty if no listener.
+     */
+    Registration[] get(@NonNull MinaraiEvent event) {
+        return slots.get(event).get();
+    }
+
+    /**
+     * Gets index of listener.
+     *
+     * @param registrations Registrations.
+     * @param listener      Listener to find.
+     * @return Index. -1 if not found.
+     */
+    private static int indexOf(Registration[] registrations, Object listener) {
+
+        for(int i = 0; i < registrations.length; i++) {
+            if(registrations[i].listener.equals(listener))
+                return i;
+        }
+
+        return -1;
+    }
+}
@@ -0,0 +1,159 @@
+package com.nextremer.minarai.client;
+
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import java.util.regex.Pattern;
+
+/**
+ * Logging helper which checks level before building messages.
+ * Arguments are converted to string only when the level is loggable,
+ * so pass objects like {@link #redact(Object)} instead of concatenated strings.
+ *
+ * @author nextremer.com
+ */
+class Logger {
+
+    private static final Pattern SECRET_PATTERN = Pattern.compile(
+            "(\"applicationSecret\"\\s*:\\s*)\"(?:[^\"\\\\]|\\\\.)*\"");  // Pattern of application secret in JSON.
+
+    private final MinaraiLogger logger; // Destination.
+
+    /**
+     * Constructor.
+     *
+     * @param logger Destination.
+     */
+    Logger(@NonNull MinaraiLogger logger) {
+
+        if(logger == null)
+            throw new IllegalArgumentException("logger must not be null.");
+
+        this.logger = logger;
+    }
+
+    /**
+     * Checks whether debug messages are logged.
+     */
+    boolean isDebugEnabled() {
+        return logger.isLoggable(Log.DEBUG);
+    }
+
+    /**
+     * Log debug message.
+     *
+     * @param tag Tag.
+     * @param msg Message.
+     */
+    void d(String tag, String msg) {
+        log(Log.DEBUG, tag, msg, null, null);
+    }
+
+    /**
+     * Log debug message followed by argument.
+     *
+     * @param tag Tag.
+     * @param msg Message.
+     * @param arg Argument. Converted to string only when logged.
+     */
+    void d(String tag, String msg, Object arg) {
+        log(Log.DEBUG, tag, msg, arg, null);
+    }
+
+    /**
+     * Log info message.
+     *
+     * @param tag Tag.
+     * @param msg Message.
+     */
+    void i(String tag, String msg) {
+        log(Log.INFO, tag, msg, null, null);
+    }
+
+    /**
+     * Log warning message.
+     *
+     * @param tag Tag.
+     * @param msg Message.
+     */
+    void w(String tag, String msg) {
+        log(Log.WARN, tag, msg, null, null);
+    }
+
+    /**
+     * Log warning message followed by argument.
+     *
+     * @param tag Tag.
+     * @param msg Message.
+     * @param arg Argument. Converted to string only when logged.
+     */
+    void w(String tag, String msg, Object arg) {
+        log(Log.WARN, tag, msg, arg, null);
+    }
+
+    /**
+     * Log error message followed by argument.
+     *
+     * @param tag Tag.
+     * @param msg Message.
+     * @param arg Argument. Converted to string only when logged.
+     */
+    void e(String tag, String msg, Object arg) {
+        log(Log.ERROR, tag, msg, arg, null);
+    }
+
+    /**
+     * Log error message with exception.
+     *
+     * @param tag Tag.
+     * @param msg Message.
+     * @param tr  Exception.
+     */
+    void e(String tag, String msg, Throwable tr) {
+        log(Log.ERROR, tag, msg, null, tr);
+    }
+
+    /**
+     * Log message.
+     *
+     * @param level Level.
+     * @param tag   Tag.
+     * @param msg   Message.
+     * @param arg   Argument appended to message. May be null.
+     * @param tr    Exception. May be null.
+     */
+    private void log(int level, String tag, String msg, Object arg, Throwable tr) {
+
+        if(!logger.isLoggable(level))
+            return;
+
+        logger.log(level, tag, (arg != null) ? msg + arg : msg, tr);
+    }
+
+    /**
+     * Wraps object so that its string form has application secret redacted.
+     * The object is converted to string only when logged.
+     *
+     * @param obj Object. e.g. JSONObject of payload.
+     * @return Wrapper.
+     */
+    static Object redact(final Object obj) {
+
+        return new Object() {
+            @Override
+            public String toString() {
+                return redact(String.valueOf(obj));
+            }
+        };
+    }
+
+    /**
+     * Redact application secret in JSON string.
+     *
+     * @param json JSON string.
+     * @return Redacted string.
+     */
+    static String redact(@NonNull String json) {
+        return SECRET_PATTERN.matcher(json).replaceAll("$1\"***\"");
+    }
+}
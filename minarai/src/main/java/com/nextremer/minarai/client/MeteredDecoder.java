@@ -0,0 +1,81 @@
+package com.nextremer.minarai.client;
+
+import android.support.annotation.NonNull;
+
+import io.socket.parser.Packet;
+import io.socket.parser.Parser;
+
+/**
+ * Socket.IO packet decoder which records size of decoded packets.
+ * Size of binary attachments is added to the packet they belong to.
+ * Called only on the Socket.IO event thread.
+ *
+ * @author nextremer.com
+ */
+class MeteredDecoder implements Parser.Decoder {
+
+    private final Parser.Decoder delegate;  // Actual decoder.
+    private final Metrics metrics;  // Metrics.
+    private long pendingBytes;      // Size of frames added since the last decoded packet.
+
+    /**
+     * Constructor.
+     *
+     * @param delegate Actual decoder.
+     * @param metrics  Metrics.
+     */
+    MeteredDecoder(@NonNull Parser.Decoder delegate, @NonNull Metrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    /**
+     * @see Parser.Decoder#add(String)
+     */
+    @Override
+    public void add(String obj) {
+        pendingBytes += obj.length();
+        delegate.add(obj);
+    }
+
+    /**
+     * @see Parser.Decoder#add(byte[])
+     */
+    @Override
+    public void add(byte[] obj) {
+        pendingBytes += obj.length;
+        delegate.add(obj);
+    }
+
+    /**
+     * @see Parser.Decoder#destroy()
+     */
+    @Override
+    public void destroy() {
+        delegate.destroy();
+    }
+
+    /**
+     * @see Parser.Decoder#onDecoded(Callback)
+     */
+    @Override
+    public void onDecoded(final Callback callback) {
+
+        if(callback == null) {
+            delegate.onDecoded(null);
+            return;
+        }
+
+        delegate.onDecoded(new Callback() {
+            @Override
+            public void call(Packet packet) {
+
+                long bytes = pendingBytes;
+                pendingBytes = 0L;
+
+                metrics.recordTraffic(Metrics.nameOf(packet), true, bytes);
+                callback.call(packet);
+            }
+        });
+    }
+}
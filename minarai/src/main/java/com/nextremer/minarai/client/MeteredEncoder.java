@@ -0,0 +1,53 @@
+package com.nextremer.minarai.client;
+
+import android.support.annotation.NonNull;
+
+import io.socket.parser.Packet;
+import io.socket.parser.Parser;
+
+/**
+ * Socket.IO packet encoder which records size of encoded packets.
+ *
+ * @author nextremer.com
+ */
+class MeteredEncoder implements Parser.Encoder {
+
+    private final Parser.Encoder delegate;  // Actual encoder.
+    private final Metrics metrics;  // Metrics.
+
+    /**
+     * Constructor.
+     *
+     * @param delegate Actual encoder.
+     * @param metrics  Metrics.
+     */
+    MeteredEncoder(@NonNull Parser.Encoder delegate, @NonNull Metrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    /**
+     * @see Parser.Encoder#encode(Packet, Callback)
+     */
+    @Override
+    public void encode(final Packet obj, final Callback callback) {
+
+        delegate.encode(obj, new Callback() {
+            @Override
+            public void call(Object[] data) {
+
+                long bytes = 0L;
+
+                for(Object item : data) {
+                    if(item instanceof String)
+                        bytes += ((String)item).length();
+                    else if(item instanceof byte[])
+                        bytes += ((byte[])item).length;
+                }
+
+                metrics.recordTraffic(Metrics.nameOf(obj), false, bytes);
+                callback.call(data);
+            }
+        });
+    }
+}
@@ -0,0 +1,169 @@
+package com.nextremer.minarai.client;
+
+import android.support.annotation.NonNull;
+
+import org.json.JSONArray;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import io.socket.parser.Packet;
+import io.socket.parser.Parser;
+
+/**
+ * Recorder of client metrics. Safe to record from any thread.
+ *
+ * @author nextremer.com
+ */
+class Metrics {
+
+    private static final int PACKETS_IN = 0;    // Index of number of received packets.
+    private static final int BYTES_IN = 1;      // Index of size of received packets.
+    private static final int PACKETS_OUT = 2;   // Index of number of sent packets.
+    private static final int BYTES_OUT = 3;     // Index of size of sent packets.
+
+    private final MinaraiMetricsListener listener;  // Listener. May be null.
+
+    private final EnumMap<MinaraiMetric, LatencyHistogram> histograms;  // Histograms by metric. Never modified after construction.
+    private final ConcurrentHashMap<String, AtomicLongArray> traffic = new ConcurrentHashMap<>();  // Traffic counters by event.
+    private final AtomicLong unansweredSendNanos = new AtomicLong();    // Time of the earliest unanswered send. 0 if none.
+
+    /**
+     * Constructor.
+     *
+     * @param listener Listener. May be null.
+     */
+    Metrics(MinaraiMetricsListener listener) {
+
+        this.listener = listener;
+
+        histograms = new EnumMap<>(MinaraiMetric.class);
+
+        for(MinaraiMetric metric : MinaraiMetric.values()) {
+            histograms.put(metric, new LatencyHistogram());
+        }
+    }
+
+    /**
+     * Record latency from start time until now.
+     *
+     * @param metric     Metric.
+     * @param startNanos Start time by {@link System#nanoTime()}.
+     */
+    void recordSince(@NonNull MinaraiMetric metric, long startNanos) {
+
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+
+        histograms.get(metric).record(micros);
+
+        if(listener != null)
+            listener.onLatency(metric, micros);
+    }
+
+    /**
+     * Record traffic of packet.
+     *
+     * @param event   Socket.IO event.
+     * @param inbound Received or sent.
+     * @param bytes   Size of packet.
+     */
+    void recordTraffic(@NonNull String event, boolean inbound, long bytes) {
+
+        AtomicLongArray counters = traffic.get(event);
+
+        if(counters == null) {
+            AtomicLongArray created = new AtomicLongArray(4);
+            counters = traffic.putIfAbsent(event, created);
+
+            if(counters == null)
+                counters = created;
+        }
+
+        counters.incrementAndGet(inbound ? PACKETS_IN : PACKETS_OUT);
+        counters.addAndGet(inbound ? BYTES_IN : BYTES_OUT, bytes);
+
+        if(listener != null)
+            listener.onTraffic(event, inbound, bytes);
+    }
+
+    /**
+     * Called when message is sent. Starts measuring until reply unless an earlier message is unanswered.
+     * Replies carry no message id, so only the earliest unanswered message is timed, and later ones are not counted.
+     */
+    void onSent() {
+        unansweredSendNanos.compareAndSet(0L, System.nanoTime());
+    }
+
+    /**
+     * Called when MESSAGE event is received. Records latency from the earliest unanswered send.
+     */
+    void onReply() {
+
+        long sentNanos = unansweredSendNanos.getAndSet(0L);
+
+        if(sentNanos != 0L)
+            recordSince(MinaraiMetric.SEND_TO_REPLY, sentNanos);
+    }
+
+    /**
+     * Take snapshot.
+     */
+    MinaraiMetrics snapshot() {
+
+        EnumMap<MinaraiMetric, MinaraiLatencyStats> latencies = new EnumMap<>(MinaraiMetric.class);
+
+        for(Map.Entry<MinaraiMetric, LatencyHistogram> entry : histograms.entrySet()) {
+            latencies.put(entry.getKey(), entry.getValue().snapshot());
+        }
+
+        Map<String, MinaraiTrafficStats> stats = new TreeMap<>();
+
+        for(Map.Entry<String, AtomicLongArray> entry : traffic.entrySet()) {
+            AtomicLongArray counters = entry.getValue();
+            stats.put(entry.getKey(), new MinaraiTrafficStats(
+                    counters.get(PACKETS_IN), counters.get(BYTES_IN),
+                    counters.get(PACKETS_OUT), counters.get(BYTES_OUT)));
+        }
+
+        return new MinaraiMetrics(latencies, stats);
+    }
+
+    /**
+     * Gets name of packet for traffic metrics.
+     *
+     * @param packet Socket.IO packet.
+     * @return Event name for event packets. Otherwise, packet type.
+     */
+    static String nameOf(@NonNull Packet packet) {
+
+        switch(packet.type) {
+            case Parser.EVENT:
+            case Parser.BINARY_EVENT:
+                if(packet.data instanceof JSONArray) {
+                    String name = ((JSONArray)packet.data).optString(0, null);
+
+                    if(name != null)
+                        return name;
+                }
+                return "event";
+
+            case Parser.CONNECT:
+                return "connect";
+
+            case Parser.DISCONNECT:
+                return "disconnect";
+
+            case Parser.ACK:
+            case Parser.BINARY_ACK:
+                return "ack";
+
+            default:
+                return "error";
+        }
+    }
+}
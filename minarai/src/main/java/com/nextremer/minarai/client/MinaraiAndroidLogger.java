@@ -0,0 +1,51 @@
+package com.nextremer.minarai.client;
+
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+/**
+ * Logger which writes to logcat.
+ * Per-message logs, e.g. payloads of sent and received events, are written at {@link Log#DEBUG}.
+ *
+ * @author nextremer.com
+ */
+public class MinaraiAndroidLogger implements MinaraiLogger {
+
+    private final int minLevel; // Minimum level to log.
+
+    /**
+     * Constructor. Logs {@link Log#INFO} and above.
+     */
+    public MinaraiAndroidLogger() {
+        this(Log.INFO);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param minLevel Minimum level to log. e.g. {@link Log#DEBUG}
+     */
+    public MinaraiAndroidLogger(int minLevel) {
+        this.minLevel = minLevel;
+    }
+
+    /**
+     * @see MinaraiLogger#isLoggable(int)
+     */
+    @Override
+    public boolean isLoggable(int level) {
+        return level >= minLevel;
+    }
+
+    /**
+     * @see MinaraiLogger#log(int, String, String, Throwable)
+     */
+    @Override
+    public void log(int level, @NonNull String tag, @NonNull String msg, Throwable tr) {
+
+        if(tr != null)
+            msg = msg + '\n' + Log.getStackTraceString(tr);
+
+        Log.println(level, tag, msg);
+    }
+}
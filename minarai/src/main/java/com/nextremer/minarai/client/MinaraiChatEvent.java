@@ -0,0 +1,131 @@
+package com.nextremer.minarai.client;
+
+import android.support.annotation.NonNull;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Event data of SYNC and MESSAGE.
+ * SYNC has one message as "body.message", MESSAGE has messages as "body.messages".
+ *
+ * @author nextremer.com
+ */
+public class MinaraiChatEvent extends MinaraiEventData {
+
+    private volatile List<MinaraiMessage> messages;     // Messages. Decoded on first access.
+
+    /**
+     * Constructor.
+     *
+     * @param event   Event.
+     * @param json    Raw JSON. If null, parsed from encoded JSON.
+     * @param encoded Encoded JSON.
+     */
+    MinaraiChatEvent(@NonNull MinaraiEvent event, JSONObject json, String encoded) {
+        super(event, json, encoded);
+    }
+
+    /**
+     * Messages decoded before sealed hold raw JSON, so they are decoded again from read-only view.
+     *
+     * @see MinaraiEventData#seal()
+     */
+    @Override
+    void seal() {
+        super.seal();
+        messages = null;
+    }
+
+    /**
+     * Gets messages. Empty if not exists.
+     */
+    public List<MinaraiMessage> getMessages() {
+
+        List<MinaraiMessage> result = messages;
+
+        if(result == null) {
+            result = decodeMessages();
+            messages = result;
+        }
+
+        return result;
+    }
+
+    /**
+     * Gets first message. null if not exists.
+     */
+    public MinaraiMessage getMessage() {
+        List<MinaraiMessage> list = getMessages();
+        return list.isEmpty() ? null : list.get(0);
+    }
+
+    /**
+     * Gets if this is an image message or not.
+     */
+    public boolean isImage() {
+        return "image".equals(getBodyType());
+    }
+
+    /**
+     * Find message object which contains image, without decoding messages.
+     *
+     * @return Message object. null if this is not an image message.
+     */
+    JSONObject findImageMessage() {
+
+        if(!isImage())
+            return null;
+
+        JSONObject body = getBody();
+
+        JSONObject message = body.optJSONObject("message");
+
+        if(message != null)
+            return message;
+
+        JSONArray array = body.optJSONArray("messages");
+
+        return (array != null) ? array.optJSONObject(0) : null;
+    }
+
+    /**
+     * Decode messages from body.
+     *
+     * @return Messages.
+     */
+    private List<MinaraiMessage> decodeMessages() {
+
+        JSONObject body = getBody();
+
+        if(body == null)
+            return Collections.emptyList();
+
+        String type = optString(body, "type");
+        JSONArray array = body.optJSONArray("messages");
+
+        if(array != null) {
+            List<MinaraiMessage> list = new ArrayList<>(array.length());
+
+            for(int i = 0; i < array.length(); i++) {
+                Object value = array.opt(i);
+
+                if(value != null && value != JSONObject.NULL)
+                    list.add(new MinaraiMessage(type, value));
+            }
+
+            return Collections.unmodifiableList(list);
+        }
+
+        Object value = body.opt("message");
+
+        if(value == null || value == JSONObject.NULL)
+            return Collections.emptyList();
+
+        return Collections.singletonList(new MinaraiMessage(type, value));
+    }
+}
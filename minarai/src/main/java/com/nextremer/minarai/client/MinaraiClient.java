@@ -1,25 +1,33 @@
 package com.nextremer.minarai.client;
 
 import android.support.annotation.NonNull;
-import android.util.Base64;
-import android.util.Log;
+import android.support.annotation.VisibleForTesting;
+import android.support.annotation.WorkerThread;
 
-import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.Closeable;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URISyntaxException;
 import java.net.URL;
-import java.util.HashMap;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import io.socket.client.IO;
 import io.socket.client.Socket;
 import io.socket.emitter.Emitter;
+import io.socket.parser.IOParser;
+import okhttp3.Call;
+import okhttp3.Callback;
 import okhttp3.HttpUrl;
 import okhttp3.MediaType;
 import okhttp3.MultipartBody;
@@ -27,11 +35,10 @@ import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
-import okhttp3.ResponseBody;
 
 /**
  * Client operations class.
- * Implementation is not thread-safe.
+ * Listeners can be registered and unregistered from any thread.
  *
  * @author nextremer.com
  */
@@ -41,22 +48,39 @@ public class MinaraiClient implements Closeable {
 
     private static final MinaraiClientOptions DEFAULT_OPTIONS = new MinaraiClientOptions();     // Default options.
     private static final MinaraiSendOptions DEFAULT_SEND_OPTIONS = new MinaraiSendOptions();    // Default send options.
+    private static final int MAX_PAYLOAD_BUFFER_CAPACITY = 64 * 1024;                           // Payload buffer larger than this is not kept after use.
 
     private final MinaraiClientOptions opts;    // Options.
-    private final Map<MinaraiEvent, List<MinaraiEventListener>> listeners;  // Event listeners.
+    private final Logger log;                   // Logger.
+    private final boolean streamingCodec;       // Streaming codec flag.
+    private final StringBuilder payloadBuffer = new StringBuilder(1024);    // Reusable buffer to encode payloads.
+    private final ListenerRegistry listeners;   // Event listeners.
+    private final MinaraiHistory history;       // History of log entries.
+    private final Metrics metrics;              // Metrics. null if disabled.
+    private final ReplyTable replies;           // Messages waiting for replies.
 
     private Socket socketIo;                    // Socket.IO socket.
     private boolean initialized;                // Initialized flag.
-    private boolean joined;                     // Joined flag.
-    private String applicationId;               // Application secret to connect.
-    private String applicationSecret;           // Application id to connect.
-    private String clientId;                    // Client id.
-    private String userId;                      // User id.
-    private String deviceId;                    // Device id.
+    private volatile boolean joined;            // Joined flag.
+    private volatile boolean resuming;          // Sends are pipelined behind join frame. Guarded by outboundLock for writes.
+    private boolean everJoined;                 // Joined at least once. Guarded by outboundLock.
+    private long connectNanos;                  // Time when connected. Guarded by outboundLock.
+    private volatile long joinLatencyMillis = -1L;  // Latency from connect to joined of the last join.
+    private volatile Identity identity;         // Identity to connect. Replaced when joined.
     private String imageUrl;                    // Image URL.
-    private boolean closed;                     // Closed flag.
-
-    private final OkHttpClient httpClient = new OkHttpClient(); // HTTP Client.
+    private volatile boolean closed;            // Closed flag.
+
+    private final MinaraiTransport transport;                   // Shared transport. null if not shared.
+    private final OkHttpClient httpClient;                      // HTTP Client.
+    private final ImageResolver imageResolver;                  // Image resolver for chat events.
+    private final ImageCache imageCache;                        // Cache of downloaded images.
+    private final boolean fileImageDelivery;                    // Deliver images as files or not.
+    private final ThreadPoolExecutor imageProcessExecutor;      // Executor to process images before upload.
+    private final OutboundQueue outboundQueue;                  // Queue of messages sent while not joined. null if disabled.
+    private final ConversationStore conversationStore;          // Store of conversation. null if disabled.
+    private final Object outboundLock = new Object();           // Lock to order emits and queue flush.
+    private final CommandBatcher commandBatcher;                // Batcher of commands. null if disabled.
+    private final Reconnector reconnector;                      // Scheduler of reconnection. null if Socket.IO reconnects.
 
     /**
      * Constructor.
@@ -113,25 +137,136 @@ public class MinaraiClient implements Closeable {
             throw new IllegalArgumentException("deviceId must not be null.");
 
         this.opts = (opts != null) ? opts : DEFAULT_OPTIONS;
-        this.applicationId = applicationId;
-        this.applicationSecret = applicationSecret;
-        this.clientId = clientId;
-        this.userId = userId;
-        this.deviceId = deviceId;
+        this.log = new Logger(this.opts.getLoggerOrDefault());
+        this.streamingCodec = this.opts.getJsonCodecOrDefault() == MinaraiJsonCodec.STREAMING;
+        this.identity = new Identity(applicationId, applicationSecret, clientId, userId, deviceId);
         this.imageUrl = this.opts.getSocketIoRootUrlOrDefault().replaceFirst("\\/$", "")
                 + "/" + this.opts.getApiVersionOrDefault()
                 + "/upload-image";
 
-        listeners = new HashMap<>();
+        transport = this.opts.getTransport();
+        httpClient = (transport != null) ? transport.getHttpClient() : new OkHttpClient();
+
+        metrics = this.opts.isMetricsEnabled() ? new Metrics(this.opts.getMetricsListener()) : null;
+
+        listeners = new ListenerRegistry(metrics);
+
+        history = new MinaraiHistory(
+                new MinaraiHistory.Fetcher() {
+                    @Override
+                    public String nextId() {
+                        return identity.nextId() + "-logs";
+                    }
+
+                    @Override
+                    public boolean fetch(@NonNull String id, @NonNull MinaraiGetLogsOptions options) {
+                        return getLogs(id, options);
+                    }
+                },
+                this.opts.getHistoryMaxSizeOrDefault(),
+                this.opts.getHistoryTimeoutMillisOrDefault(),
+                log);
+
+        replies = new ReplyTable(this.opts.getMaxAwaitingRepliesOrDefault(), log);
+
+        imageCache = new ImageCache(this.opts.getImageMemoryCacheSizeOrDefault(),
+                this.opts.getImageCacheDir(),
+                this.opts.getImageDiskCacheSizeOrDefault(),
+                log);
+
+        fileImageDelivery = this.opts.getImageDeliveryOrDefault() == MinaraiImageDelivery.FILE
+                && imageCache.isDiskEnabled();
+
+        if(this.opts.getImageDeliveryOrDefault() == MinaraiImageDelivery.FILE && !fileImageDelivery)
+            log.w(LOG_TAG, "Image disk cache is disabled. Images are delivered as data URL.");
+
+        conversationStore = (this.opts.getConversationFile() != null)
+                ? new ConversationStore(this.opts.getConversationFile(), userId, this.opts.getConversationMaxSizeOrDefault(), log)
+                : null;
+
+        outboundQueue = this.opts.isOutboundQueueEnabled()
+                ? new OutboundQueue(this.opts.getOutboundQueueFile(), this.opts.getOutboundQueueMaxSizeOrDefault(), log)
+                : null;
+
+        if(this.opts.getCommandBatchWindowMillis() > 0L && !this.opts.getCoalescedCommandsOrDefault().isEmpty()) {
+            commandBatcher = new CommandBatcher(
+                    new CommandBatcher.Sink() {
+                        @Override
+                        public boolean emit(@NonNull String name, @NonNull JSONObject extra, long unixTime) {
+                            return emitCommand(name, extra, unixTime);
+                        }
+                    },
+                    this.opts.getCoalescedCommandsOrDefault(),
+                    this.opts.getCommandBatchWindowMillis(),
+                    this.opts.getCommandBatchMaxSizeOrDefault(),
+                    log);
+        }
+        else {
+            commandBatcher = null;
+        }
+
+        if(this.opts.getReconnectPolicy() != null) {
+            reconnector = new Reconnector(this.opts.getReconnectPolicy(),
+                    new Runnable() {
+                        @Override
+                        public void run() {
+                            reconnect();
+                        }
+                    },
+                    log);
+        }
+        else {
+            reconnector = null;
+        }
+
+        imageProcessExecutor = new ThreadPoolExecutor(1, 1,
+                30L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                Util.newThreadFactory("minarai-image-process"));
+        imageProcessExecutor.allowCoreThreadTimeOut(true);
+
+        imageResolver = new ImageResolver(
+                new ImageResolver.Fetcher() {
+                    @Override
+                    public String fetch(@NonNull String url, @NonNull String type) throws IOException {
+                        return getImageUrl(url, type);
+                    }
+                },
+                new ImageResolver.Sink() {
+                    @Override
+                    public void deliver(@NonNull MinaraiEventData data) {
+
+                        // Image is resolved into the payload, so nothing modifies it any more.
+                        data.seal();
+
+                        if(data.getEvent() == MinaraiEvent.MESSAGE)
+                            replies.onReply((MinaraiChatEvent)data);
+
+                        notifyListeners(data);
+                    }
+                },
+                this.opts.getImageFetchConcurrencyOrDefault(),
+                log);
     }
 
     /**
-     * Register event listener.
+     * Register event listener. Listener is called by the dispatcher of options.
      *
      * @param event    Event to listen on.
      * @param listener Listener.
      */
     public void on(@NonNull MinaraiEvent event, @NonNull MinaraiEventListener listener) {
+        on(event, listener, opts.getDispatcherOrDefault());
+    }
+
+    /**
+     * Register event listener.
+     *
+     * @param event      Event to listen on.
+     * @param listener   Listener.
+     * @param dispatcher Dispatcher which decides the thread to call listener.
+     */
+    public void on(@NonNull MinaraiEvent event, @NonNull MinaraiEventListener listener, @NonNull MinaraiDispatcher dispatcher) {
 
         if(event == null)
             throw new IllegalArgumentException("event must not be null.");
@@ -139,14 +274,10 @@ public class MinaraiClient implements Closeable {
         if(listener == null)
             throw new IllegalArgumentException("listener must not be null.");
 
-        List<MinaraiEventListener> list = listeners.get(event);
-
-        if(list == null) {
-            list = new CopyOnWriteArrayList<>();
-            listeners.put(event, list);
-        }
+        if(dispatcher == null)
+            throw new IllegalArgumentException("dispatcher must not be null.");
 
-        list.add(listener);
+        listeners.add(event, listener, dispatcher);
     }
 
     /**
@@ -164,12 +295,56 @@ public class MinaraiClient implements Closeable {
         if(listener == null)
             throw new IllegalArgumentException("listener must not be null.");
 
-        List<MinaraiEventListener> list = listeners.get(event);
+        return listeners.remove(event, listener);
+    }
 
-        if(list == null)
-            return false;
+    /**
+     * Register typed event listener. Listener is called by the dispatcher of options.
+     *
+     * @param event    Event to listen on.
+     * @param listener Listener.
+     */
+    public void on(@NonNull MinaraiEvent event, @NonNull MinaraiEventDataListener listener) {
+        on(event, listener, opts.getDispatcherOrDefault());
+    }
+
+    /**
+     * Register typed event listener.
+     *
+     * @param event      Event to listen on.
+     * @param listener   Listener.
+     * @param dispatcher Dispatcher which decides the thread to call listener.
+     */
+    public void on(@NonNull MinaraiEvent event, @NonNull MinaraiEventDataListener listener, @NonNull MinaraiDispatcher dispatcher) {
+
+        if(event == null)
+            throw new IllegalArgumentException("event must not be null.");
+
+        if(listener == null)
+            throw new IllegalArgumentException("listener must not be null.");
+
+        if(dispatcher == null)
+            throw new IllegalArgumentException("dispatcher must not be null.");
 
-        return list.remove(listener);
+        listeners.add(event, listener, dispatcher);
+    }
+
+    /**
+     * Unregister typed event listener.
+     *
+     * @param event    Event that was listened on.
+     * @param listener Listener.
+     * @return Successfully unregistered or not.
+     */
+    public boolean off(@NonNull MinaraiEvent event, @NonNull MinaraiEventDataListener listener) {
+
+        if(event == null)
+            throw new IllegalArgumentException("event must not be null.");
+
+        if(listener == null)
+            throw new IllegalArgumentException("listener must not be null.");
+
+        return listeners.remove(event, listener);
     }
 
     /**
@@ -187,25 +362,60 @@ public class MinaraiClient implements Closeable {
     public boolean init() {
 
         if(initialized) {
-            Log.w(LOG_TAG, "Already initialized.");
+            log.w(LOG_TAG, "Already initialized.");
             return false;
         }
 
         if(closed) {
-            Log.w(LOG_TAG, "Already closed.");
+            log.w(LOG_TAG, "Already closed.");
             return false;
         }
 
         // Create Socket.IO socket.
         String socketIoRootURL = opts.getSocketIoRootUrlOrDefault();
         String socketIoApiVersion = opts.getApiVersionOrDefault();
+        // Copy of the options put by app, which is modified below.
         IO.Options socketIoOptions = opts.getSocketIoOptionsOrDefault(socketIoApiVersion);
 
+        // Install streaming codec unless app sets its own. Decoder has state, so a new one is installed for every socket.
+        if(streamingCodec) {
+            if(socketIoOptions.encoder == null)
+                socketIoOptions.encoder = new StreamingEncoder();
+
+            if(socketIoOptions.decoder == null)
+                socketIoOptions.decoder = new StreamingDecoder();
+        }
+
+        // Measure size of packets.
+        if(metrics != null) {
+            socketIoOptions.encoder = new MeteredEncoder(
+                    (socketIoOptions.encoder != null) ? socketIoOptions.encoder : new IOParser.Encoder(), metrics);
+            socketIoOptions.decoder = new MeteredDecoder(
+                    (socketIoOptions.decoder != null && !(socketIoOptions.decoder instanceof IOParser.Decoder))
+                            ? socketIoOptions.decoder : new IOParser.Decoder(), metrics);
+        }
+
+        // Reconnection is driven by the policy.
+        if(reconnector != null)
+            socketIoOptions.reconnection = false;
+
         try {
-            socketIo = IO.socket(socketIoRootURL, socketIoOptions);
+            if(transport != null) {
+                socketIo = transport.socket(socketIoRootURL, opts.getNamespace(), socketIoOptions);
+            }
+            else {
+                // Socket.IO connection shares connection pool and dispatcher with image requests.
+                if(socketIoOptions.callFactory == null)
+                    socketIoOptions.callFactory = httpClient;
+
+                if(socketIoOptions.webSocketFactory == null)
+                    socketIoOptions.webSocketFactory = httpClient;
+
+                socketIo = IO.socket(socketIoRootURL, socketIoOptions);
+            }
         }
         catch(URISyntaxException ex) {
-            Log.e(LOG_TAG, "Unexpected error: " + ex);
+            log.e(LOG_TAG, "Unexpected error: ", ex);
             return false;
         }
 
@@ -222,6 +432,28 @@ public class MinaraiClient implements Closeable {
                 onJoined(args);
             }
         });
+        socketIo.on(Socket.EVENT_DISCONNECT, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                onDisconnect();
+
+                if(reconnector != null)
+                    reconnector.onDisconnected((args.length > 0 && args[0] instanceof String) ? (String)args[0] : null);
+            }
+        });
+
+        if(reconnector != null) {
+            Emitter.Listener connectFailedListener = new Emitter.Listener() {
+                @Override
+                public void call(Object... args) {
+                    log.d(LOG_TAG, "Connect failed: ", (args.length > 0) ? args[0] : null);
+                    reconnector.onConnectFailed();
+                }
+            };
+
+            socketIo.on(Socket.EVENT_CONNECT_ERROR, connectFailedListener);
+            socketIo.on(Socket.EVENT_CONNECT_TIMEOUT, connectFailedListener);
+        }
 
         // Register user event listeners.
         for(final MinaraiEvent event : MinaraiEvent.values()) {
@@ -246,27 +478,92 @@ public class MinaraiClient implements Closeable {
      * Called when connect.
      */
     private void onConnect() {
-        Log.d(LOG_TAG, "onConnect");
+        log.d(LOG_TAG, "onConnect");
 
-        try {
-            // Make payload.
-            JSONObject payload = new JSONObject();
+        if(reconnector != null)
+            reconnector.onConnected();
+
+        synchronized(outboundLock) {
+            // Connected after closed.
+            if(closed || socketIo == null)
+                return;
+
+            connectNanos = System.nanoTime();
+
+            try {
+                // Make payload.
+                JSONObject payload = identity.toJoinPayload();
 
-            payload.put("applicationId", applicationId);
-            payload.put("applicationSecret", applicationSecret);
-            payload.put("clientId", clientId);
-            payload.put("userId", userId);
-            payload.put("deviceId", deviceId);
+                // Emit join event.
+                socketIo.emit("join-as-client", payload);
+            }
+            catch(JSONException ex) {
+                log.e(LOG_TAG, "Failed to make json: ", ex);
+                return;
+            }
 
-            // Emit join event.
-            socketIo.emit("join-as-client", payload);
+            // Resume with the identity of the last join. Queued messages follow the join frame without waiting joined.
+            if(opts.isFastResumeEnabled() && everJoined) {
+                resuming = true;
+                flushOutboundQueue();
+            }
         }
-        catch(JSONException ex) {
-            Log.e(LOG_TAG, "Failed to make json: " + ex);
-            return;
+    }
+
+    /**
+     * Called when Socket.IO socket is disconnected. Messages are queued or rejected until joined again.
+     */
+    private void onDisconnect() {
+        log.d(LOG_TAG, "onDisconnect");
+
+        synchronized(outboundLock) {
+            joined = false;
+            resuming = false;
+        }
+
+        history.onDisconnected();
+    }
+
+    /**
+     * Connect again. Called by reconnector.
+     */
+    private void reconnect() {
+
+        synchronized(outboundLock) {
+            if(closed || socketIo == null)
+                return;
+
+            log.d(LOG_TAG, "Reconnecting");
+            socketIo.connect();
         }
     }
 
+    /**
+     * Notify that network became available, e.g. from a connectivity callback.
+     * If reconnecting by the policy, the waiting attempt is made immediately.
+     * If the attempts were given up by the maximum attempts of the policy, they are started again.
+     * Otherwise, does nothing.
+     */
+    public void onNetworkAvailable() {
+
+        if(reconnector != null)
+            reconnector.retryNow();
+    }
+
+    /**
+     * Gets reconnection statistics. null if reconnection policy is not set.
+     */
+    public MinaraiReconnectStats getReconnectStats() {
+        return (reconnector != null) ? reconnector.getStats() : null;
+    }
+
+    /**
+     * Gets latency from connect to joined of the last join in milliseconds. -1 if not joined yet.
+     */
+    public long getJoinLatencyMillis() {
+        return joinLatencyMillis;
+    }
+
     /**
      * Gets if client is joined or not.
      */
@@ -280,28 +577,41 @@ public class MinaraiClient implements Closeable {
      * @param args Arguments.
      */
     private void onJoined(Object... args) {
-        Log.d(LOG_TAG, "onJoined: " + args);
-
         // Take payload from arguments.
-        if(args.length < 1 || !(args[0] instanceof JSONObject)) {
-            Log.e(LOG_TAG, "Unexpected argument: " + args);
+        if(args.length < 1 || !(args[0] instanceof JSONObject || args[0] instanceof RawJson)) {
+            log.e(LOG_TAG, "Unexpected argument: ", Arrays.toString(args));
             return;
         }
 
-        JSONObject payload = (JSONObject)args[0];
+        log.d(LOG_TAG, "onJoined: ", Logger.redact(args[0]));
 
         // Parse payload.
         try {
-            applicationId = payload.getString("applicationId");
-            applicationSecret = payload.getString("applicationSecret");
-            clientId = payload.getString("clientId");
-            userId = payload.getString("userId");
-            deviceId = payload.getString("deviceId");
+            JSONObject payload = (args[0] instanceof RawJson)
+                    ? new JSONObject(args[0].toString())
+                    : (JSONObject)args[0];
+
+            Identity joinedIdentity = Identity.parse(payload);
+            long joinStartNanos;
+
+            synchronized(outboundLock) {
+                identity = joinedIdentity;
+                joined = true;
+                resuming = false;
+                everJoined = true;
+                joinLatencyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - connectNanos);
+                joinStartNanos = connectNanos;
+                flushOutboundQueue();
+            }
+
+            if(metrics != null)
+                metrics.recordSince(MinaraiMetric.CONNECT_TO_JOIN, joinStartNanos);
 
-            joined = true;
+            if(log.isDebugEnabled())
+                log.d(LOG_TAG, "Joined in " + joinLatencyMillis + " ms");
         }
         catch(JSONException ex) {
-            Log.e(LOG_TAG, "Failed to parse json: " + ex);
+            log.e(LOG_TAG, "Failed to parse json: ", ex);
         }
     }
 
@@ -311,80 +621,80 @@ public class MinaraiClient implements Closeable {
      * @param event Event.
      * @param args  Arguments.
      */
-    private void onSocketIoEvent(MinaraiEvent event, Object... args) {
-        Log.d(LOG_TAG, "onSocketIoEvent: " + event + ", " + args);
+    @VisibleForTesting
+    void onSocketIoEvent(MinaraiEvent event, Object... args) {
+        log.d(LOG_TAG, "onSocketIoEvent: ", event);
 
-        // Take data from arguments.
-        JSONObject data;
+        // Take data from arguments. Encoded JSON by streaming codec is parsed on first access.
+        MinaraiEventData eventData;
 
         if(args.length < 1) {
-            data = new JSONObject();
+            eventData = MinaraiEventData.of(event, new JSONObject());
         }
         else if(args[0] instanceof JSONObject) {
-            data = (JSONObject)args[0];
+            eventData = MinaraiEventData.of(event, (JSONObject)args[0]);
+        }
+        else if(args[0] instanceof RawJson) {
+            eventData = MinaraiEventData.of(event, (RawJson)args[0]);
         }
         else {
-            Log.e(LOG_TAG, "Socket.IO event is not JSONObject.");
+            log.e(LOG_TAG, "Socket.IO event is not JSONObject: ", event);
             return;
         }
 
-        // Get image data by URL form.
-        switch(event) {
-            case SYNC:
-                try {
-                    JSONObject body = data.getJSONObject("body");
-
-                    if("image".equals(body.getString("type"))) {
-
-                        JSONObject message = body.getJSONObject("message");
-                        String imageUrl = message.getString("imageUrl");
-                        String imageType = message.getString("imageType");
-
-                        String url = getImageUrl(imageUrl, imageType);
-                        message.put("url", url);
-                    }
-                }
-                catch(JSONException ex) {
-                }
-                catch(IOException ex) {
-                    Log.e(LOG_TAG, "Error while get image URL", ex);
-                }
-                break;
+        // Store conversation before images are resolved into the payload.
+        if(conversationStore != null) {
+            if(eventData instanceof MinaraiChatEvent) {
+                conversationStore.add(eventData);
+            }
+            else if(eventData instanceof MinaraiLogsEvent) {
+                for(MinaraiChatEvent entry : ((MinaraiLogsEvent)eventData).getLogs())
+                    conversationStore.add(entry);
+            }
+        }
 
-            case MESSAGE:
-                try {
-                    JSONObject body = data.getJSONObject("body");
+        if(metrics != null && event == MinaraiEvent.MESSAGE)
+            metrics.onReply();
 
-                    if("image".equals(body.getString("type"))) {
+        // Only chat events are modified by resolving image, so others are read-only from here.
+        if(!(eventData instanceof MinaraiChatEvent))
+            eventData.seal();
 
-                        JSONArray messages = body.getJSONArray("messages");
+        // Index log entries and complete waiting history requests.
+        if(eventData instanceof MinaraiLogsEvent)
+            history.onLogs((MinaraiLogsEvent)eventData);
+        else if(event == MinaraiEvent.DISCONNECTED)
+            onDisconnect();
 
-                        JSONObject message = messages.getJSONObject(0);
-                        String imageUrl = message.getString("imageUrl");
-                        String imageType = message.getString("imageType");
+        // Resolve image of chat events on background threads, keeping their order.
+        if(eventData instanceof MinaraiChatEvent)
+            imageResolver.submit(eventData, ((MinaraiChatEvent)eventData).findImageMessage());
+        else
+            notifyListeners(eventData);
+    }
 
-                        String url = getImageUrl(imageUrl, imageType);
-                        message.put("url", url);
-                    }
-                }
-                catch(JSONException ex) {
-                }
-                catch(IOException ex) {
-                    Log.e(LOG_TAG, "Error while get image URL", ex);
-                }
-                break;
-        }
+    /**
+     * Notify event to listeners. All listeners share the event data, which must be sealed read-only.
+     *
+     * @param data Event data.
+     */
+    private void notifyListeners(MinaraiEventData data) {
 
-        // Notify event to listeners.
-        List<MinaraiEventListener> list = listeners.get(event);
+        ListenerRegistry.Registration[] list = listeners.get(data.getEvent());
 
-        if(list == null)
+        if(list.length == 0)
             return;
 
-        Log.i(LOG_TAG, "onEvent: " + event + ", " + data);
+        if(log.isDebugEnabled())
+            log.d(LOG_TAG, "onEvent: ", Logger.redact(data));
 
-        for(MinaraiEventListener listener : list) {
-            listener.onEvent(event, data);
+        for(int i = 0; i < list.length; i++) {
+            try {
+                list[i].dispatcher.dispatch(list[i], data);
+            }
+            catch(RejectedExecutionException ex) {
+                log.w(LOG_TAG, "Dispatch rejected, kept queued: ", ex);
+            }
         }
     }
 
@@ -410,32 +720,111 @@ public class MinaraiClient implements Closeable {
         if(uttr == null)
             throw new IllegalArgumentException("uttr must not be null.");
 
+        // Take the slot of the reply before sending, so that the reply is not taken by a waiting task.
+        Object slot = replies.addUnawaited();
+        boolean sent = sendMessage(identity.nextId(), uttr, options);
+
+        if(!sent)
+            replies.withdraw(slot);
+
+        return sent;
+    }
+
+    /**
+     * Send message and wait for the reply of bot asynchronously.
+     *
+     * @param uttr          Message to send.
+     * @param timeoutMillis Timeout to wait for the reply in milliseconds.
+     * @param callback      Callback. May be null.
+     * @return Task to wait for the reply.
+     */
+    public final MinaraiReplyTask sendAndAwait(@NonNull String uttr, long timeoutMillis, MinaraiReplyCallback callback) {
+        return sendAndAwait(uttr, null, timeoutMillis, callback);
+    }
+
+    /**
+     * Send message and wait for the reply of bot asynchronously.
+     * Replies do not name the message they answer, so each MESSAGE event is taken as the reply to the oldest unanswered message,
+     * including ones sent by {@link #send(String, MinaraiSendOptions)} and ones whose tasks are canceled or timed out.
+     * Bot is expected to reply once to each message in order.
+     * The task fails when no reply in time, when too many messages are waiting, or when the message is not sent.
+     *
+     * @param uttr          Message to send.
+     * @param options       Options.
+     * @param timeoutMillis Timeout to wait for the reply in milliseconds.
+     * @param callback      Callback. May be null.
+     * @return Task to wait for the reply.
+     */
+    public MinaraiReplyTask sendAndAwait(@NonNull String uttr,
+                                         MinaraiSendOptions options,
+                                         long timeoutMillis,
+                                         MinaraiReplyCallback callback) {
+
+        if(uttr == null)
+            throw new IllegalArgumentException("uttr must not be null.");
+
+        if(timeoutMillis <= 0L)
+            throw new IllegalArgumentException("timeoutMillis must be positive.");
+
+        MinaraiReplyTask task = new MinaraiReplyTask(identity.nextId(), timeoutMillis, callback);
+        Exception cause = null;
+
+        // Register before sending, so that a quick reply is not missed.
+        if(!replies.add(task))
+            cause = new IOException(closed ? "Client is closed." : "Too many messages waiting for replies.");
+        else if(!sendMessage(task.id, uttr, options))
+            cause = new IOException("Failed to send message.");
+
+        if(cause != null) {
+            replies.withdraw(task);
+
+            if(task.fail(cause) && callback != null)
+                callback.onFailure(cause);
+        }
+
+        return task;
+    }
+
+    /**
+     * Send message with payload id.
+     *
+     * @param id      Payload id.
+     * @param uttr    Message to send.
+     * @param options Options. May be null.
+     * @return Successfully sent or not.
+     */
+    private boolean sendMessage(String id, String uttr, MinaraiSendOptions options) {
+
         if(options == null)
             options = DEFAULT_SEND_OPTIONS;
 
         // Check states.
-        if(!checkInitialized() || !checkJoined() || !checkNotClosed())
+        if(!checkNotClosed())
             return false;
 
         try {
-            // Make payload.
-            JSONObject payload = makePayload();
-            payload.getJSONObject("head").put("lang", options.getLangOrDefault(opts.getLangOrDefault()));
-
+            // Make body.
             JSONObject body = new JSONObject();
             body.put("message", uttr);
             body.put("position", options.getPositionOrDefault());
             body.put("extra", options.getExtraOrDefault());
-            payload.put("body", body);
 
             // Emit event.
-            Log.i(LOG_TAG, "send " + payload);
-            socketIo.emit("message", payload);
+            long unixTime = Util.getUnixTime();
 
-            return true;
+            boolean sent = emitOrQueue("message",
+                    id,
+                    unixTime,
+                    options.getLangOrDefault(opts.getLangOrDefault()),
+                    body);
+
+            if(sent && metrics != null)
+                metrics.onSent();
+
+            return sent;
         }
         catch(JSONException ex) {
-            Log.w(LOG_TAG, "send: " + ex);
+            log.w(LOG_TAG, "send: ", ex);
             return false;
         }
     }
@@ -449,7 +838,7 @@ public class MinaraiClient implements Closeable {
      */
     @Deprecated
     public boolean sendSystemCommand(@NonNull String command, JSONObject commandPayload) {
-        Log.w(LOG_TAG, "sendSystemCommand is deprecated. Please use sendCommand instead.");
+        log.w(LOG_TAG, "sendSystemCommand is deprecated. Please use sendCommand instead.");
 
         if(command == null)
             throw new IllegalArgumentException("command must not be null.");
@@ -463,7 +852,8 @@ public class MinaraiClient implements Closeable {
 
         try {
             // Make payload.
-            JSONObject payload = makePayload();
+            long unixTime = Util.getUnixTime();
+            JSONObject payload = makePayload(identity.nextId(), unixTime, null);
 
             JSONObject body = new JSONObject();
             JSONObject message = new JSONObject();
@@ -473,13 +863,13 @@ public class MinaraiClient implements Closeable {
             payload.put("body", body);
 
             // Emit event.
-            Log.i(LOG_TAG, "send-system-command " + payload);
+            log.d(LOG_TAG, "send-system-command ", Logger.redact(payload));
             socketIo.emit("system-command", payload);
 
             return true;
         }
         catch(JSONException ex) {
-            Log.w(LOG_TAG, "sendSystemCommand: " + ex);
+            log.w(LOG_TAG, "sendSystemCommand: ", ex);
             return false;
         }
     }
@@ -500,30 +890,95 @@ public class MinaraiClient implements Closeable {
             extra = Util.EMPTY_JSON_OBJECT;
 
         // Check states.
-        if(!checkInitialized() || !checkJoined() || !checkNotClosed())
+        if(!checkNotClosed())
             return false;
 
-        try {
-            // Make payload.
-            JSONObject payload = makePayload();
+        long unixTime = Util.getUnixTime();
+
+        // Coalesce command if batching is enabled for the name. Other commands follow pending ones.
+        if(commandBatcher != null) {
+            if(!commandBatcher.isCoalesced(name))
+                return commandBatcher.pass(name, extra, unixTime);
 
+            synchronized(outboundLock) {
+                if(!isReady() && outboundQueue == null)
+                    return checkInitialized() && checkJoined();
+            }
+
+            return commandBatcher.add(name, extra, unixTime);
+        }
+
+        return emitCommand(name, extra, unixTime);
+    }
+
+    /**
+     * Emit command.
+     *
+     * @param name     Command name.
+     * @param extra    Extra data.
+     * @param unixTime UNIX time.
+     * @return Successfully emitted or queued, or not.
+     */
+    private boolean emitCommand(String name, JSONObject extra, long unixTime) {
+
+        try {
+            // Make body.
             JSONObject body = new JSONObject();
             body.put("name", name);
             body.put("extra", extra);
-            payload.put("body", body);
 
             // Emit event.
-            Log.i(LOG_TAG, "send-command " + payload);
-            socketIo.emit("command", payload);
-
-            return true;
+            return emitOrQueue("command", identity.nextId(), unixTime, null, body);
         }
         catch(JSONException ex) {
-            Log.w(LOG_TAG, "sendCommand: " + ex);
+            log.w(LOG_TAG, "sendCommand: ", ex);
             return false;
         }
     }
 
+    /**
+     * Gets statistics of command batching.
+     *
+     * @return Statistics. null if command batching is disabled.
+     */
+    public MinaraiCommandBatchStats getCommandBatchStats() {
+        return (commandBatcher != null) ? commandBatcher.getStats() : null;
+    }
+
+    /**
+     * Gets latest chat events stored by previous and current process, to render them before connected.
+     * Reads the conversation file on first call.
+     *
+     * @param limit Maximum number of events.
+     * @return Events in chronological order. Empty if conversation file is not set.
+     */
+    @WorkerThread
+    public List<MinaraiChatEvent> getRecentMessages(int limit) {
+
+        if(conversationStore == null)
+            return Collections.<MinaraiChatEvent>emptyList();
+
+        return conversationStore.getLatest(limit);
+    }
+
+    /**
+     * Removes stored chat events and the conversation file. Call this when user logs out.
+     * Events of another user are not shown anyway, because they are dropped when the file is read.
+     */
+    @WorkerThread
+    public void clearConversation() {
+
+        if(conversationStore != null)
+            conversationStore.clear();
+    }
+
+    /**
+     * Gets history of log entries, which pages getLogs automatically and serves fetched entries locally.
+     */
+    public MinaraiHistory getHistory() {
+        return history;
+    }
+
     /**
      * Request get logs.
      *
@@ -541,30 +996,47 @@ public class MinaraiClient implements Closeable {
      */
     public boolean getLogs(MinaraiGetLogsOptions options) {
 
+        String id = identity.nextId() + "-logs";
+
+        // History takes LOGS events of other ids as its own responses.
+        history.addAppRequest(id);
+
+        if(getLogs(id, options))
+            return true;
+
+        history.removeAppRequest(id);
+
+        return false;
+    }
+
+    /**
+     * Request get logs with the payload id.
+     *
+     * @param id      Payload id.
+     * @param options Options. If null, use default options.
+     * @return Successfully requested or not.
+     */
+    private boolean getLogs(String id, MinaraiGetLogsOptions options) {
+
         // Check states.
-        if(!checkInitialized() || !checkJoined() || !checkNotClosed())
+        if(!checkNotClosed())
             return false;
 
         try {
-            // Make payload.
-            JSONObject payload = makePayload();
-            payload.put("id", payload.getString("id") + "-logs");
-
+            // Make body.
             JSONObject body = new JSONObject();
             if(options != null) {
                 body.put("ltDate", options.getLtDate());
                 body.put("limit", options.getLimit());
             }
-            payload.put("body", body);
 
             // Emit event.
-            Log.i(LOG_TAG, "logs " + payload);
-            socketIo.emit("logs", payload);
+            long unixTime = Util.getUnixTime();
 
-            return true;
+            return emitOrQueue("logs", id, unixTime, null, body);
         }
         catch(JSONException ex) {
-            Log.w(LOG_TAG, "sendCommand: " + ex);
+            log.w(LOG_TAG, "getLogs: ", ex);
             return false;
         }
     }
@@ -572,11 +1044,12 @@ public class MinaraiClient implements Closeable {
     /**
      * Upload image data.
      *
-     * @param bytes   Bytes of image.
-     * @param off     Byte offset of content.
-     * @param len     Byte length of content.
-     * @param type    Image type. e.g. 'image/jpeg'
-     * @param options Options.
+     * @param bytes    Bytes of image.
+     * @param off      Byte offset of content.
+     * @param len      Byte length of content.
+     * @param type     Image type. e.g. 'image/jpeg'
+     * @param fileName File name.
+     * @param options  Options.
      * @return Image URL.
      * @throws IOException When communication error occurred.
      */
@@ -594,22 +1067,236 @@ public class MinaraiClient implements Closeable {
         if(fileName == null)
             throw new IllegalArgumentException("fileName must not be null.");
 
-        MediaType mediaType = MediaType.parse(type);
-
-        if(mediaType == null)
-            throw new IOException("Can not parse media type: " + type);
+        StreamRequestBody body = StreamRequestBody.ofBytes(parseImageType(type), bytes, off, len);
 
-        MultipartBody.Builder formBuilder = new MultipartBody.Builder()
-                .setType(MultipartBody.FORM)
-                .addFormDataPart("applicationId", applicationId)
-                .addFormDataPart("applicationSecret", applicationSecret)
-                .addFormDataPart("clientId", clientId)
-                .addFormDataPart("userId", userId)
-                .addFormDataPart("deviceId", deviceId)
-                .addFormDataPart("file", fileName, RequestBody.create(mediaType, bytes, off, len));
+        return processAndUpload(body, fileName, options);
+    }
 
-        if(options != null && options.getExtra() != null)
-            formBuilder.addFormDataPart("params", options.getExtra().toString());
+    /**
+     * Upload image file. The file is streamed, not loaded into memory.
+     *
+     * @param file    Image file. Its name is used as file name.
+     * @param type    Image type. e.g. 'image/jpeg'
+     * @param options Options.
+     * @return Image URL.
+     * @throws IOException When communication error occurred.
+     */
+    public URL uploadImage(@NonNull File file,
+                           @NonNull String type,
+                           MinaraiSendOptions options) throws IOException, JSONException {
+
+        if(file == null)
+            throw new IllegalArgumentException("file must not be null.");
+
+        StreamRequestBody body = StreamRequestBody.ofFile(parseImageType(type), file);
+
+        return processAndUpload(body, file.getName(), options);
+    }
+
+    /**
+     * Upload image from input stream. The stream is read in small chunks and closed after upload.
+     *
+     * @param in       Input stream of image.
+     * @param length   Byte length of image. -1 if unknown.
+     * @param type     Image type. e.g. 'image/jpeg'
+     * @param fileName File name.
+     * @param options  Options.
+     * @return Image URL.
+     * @throws IOException When communication error occurred.
+     */
+    public URL uploadImage(@NonNull InputStream in, long length,
+                           @NonNull String type,
+                           @NonNull String fileName,
+                           MinaraiSendOptions options) throws IOException, JSONException {
+
+        if(in == null)
+            throw new IllegalArgumentException("in must not be null.");
+
+        if(fileName == null)
+            throw new IllegalArgumentException("fileName must not be null.");
+
+        StreamRequestBody body = StreamRequestBody.ofStream(parseImageType(type), in, length);
+
+        return processAndUpload(body, fileName, options);
+    }
+
+    /**
+     * Upload image from file channel, from its current position to the end.
+     * The channel is not closed.
+     *
+     * @param channel  File channel of image.
+     * @param type     Image type. e.g. 'image/jpeg'
+     * @param fileName File name.
+     * @param options  Options.
+     * @return Image URL.
+     * @throws IOException When communication error occurred.
+     */
+    public URL uploadImage(@NonNull FileChannel channel,
+                           @NonNull String type,
+                           @NonNull String fileName,
+                           MinaraiSendOptions options) throws IOException, JSONException {
+
+        if(channel == null)
+            throw new IllegalArgumentException("channel must not be null.");
+
+        if(fileName == null)
+            throw new IllegalArgumentException("fileName must not be null.");
+
+        StreamRequestBody body = StreamRequestBody.ofChannel(parseImageType(type), channel);
+
+        return processAndUpload(body, fileName, options);
+    }
+
+    /**
+     * Upload image file asynchronously. The file is streamed, not loaded into memory.
+     *
+     * @param file     Image file. Its name is used as file name.
+     * @param type     Image type. e.g. 'image/jpeg'
+     * @param options  Options.
+     * @param callback Callback. May be null.
+     * @return Task to wait or cancel upload.
+     */
+    public MinaraiUploadTask uploadImageAsync(@NonNull File file,
+                                              @NonNull String type,
+                                              MinaraiSendOptions options,
+                                              MinaraiUploadCallback callback) {
+
+        if(file == null)
+            throw new IllegalArgumentException("file must not be null.");
+
+        StreamRequestBody body = StreamRequestBody.ofFile(parseImageTypeArgument(type), file);
+
+        return enqueueUpload(body, file.getName(), options, callback);
+    }
+
+    /**
+     * Upload image from input stream asynchronously. The stream is read in small chunks and closed after upload.
+     *
+     * @param in       Input stream of image.
+     * @param length   Byte length of image. -1 if unknown.
+     * @param type     Image type. e.g. 'image/jpeg'
+     * @param fileName File name.
+     * @param options  Options.
+     * @param callback Callback. May be null.
+     * @return Task to wait or cancel upload.
+     */
+    public MinaraiUploadTask uploadImageAsync(@NonNull InputStream in, long length,
+                                              @NonNull String type,
+                                              @NonNull String fileName,
+                                              MinaraiSendOptions options,
+                                              MinaraiUploadCallback callback) {
+
+        if(in == null)
+            throw new IllegalArgumentException("in must not be null.");
+
+        if(fileName == null)
+            throw new IllegalArgumentException("fileName must not be null.");
+
+        StreamRequestBody body = StreamRequestBody.ofStream(parseImageTypeArgument(type), in, length);
+
+        return enqueueUpload(body, fileName, options, callback);
+    }
+
+    /**
+     * Upload image from file channel asynchronously, from its current position to the end.
+     * The channel is not closed.
+     *
+     * @param channel  File channel of image.
+     * @param type     Image type. e.g. 'image/jpeg'
+     * @param fileName File name.
+     * @param options  Options.
+     * @param callback Callback. May be null.
+     * @return Task to wait or cancel upload.
+     */
+    public MinaraiUploadTask uploadImageAsync(@NonNull FileChannel channel,
+                                              @NonNull String type,
+                                              @NonNull String fileName,
+                                              MinaraiSendOptions options,
+                                              MinaraiUploadCallback callback) {
+
+        if(channel == null)
+            throw new IllegalArgumentException("channel must not be null.");
+
+        if(fileName == null)
+            throw new IllegalArgumentException("fileName must not be null.");
+
+        StreamRequestBody body;
+
+        try {
+            body = StreamRequestBody.ofChannel(parseImageTypeArgument(type), channel);
+        }
+        catch(IOException ex) {
+            MinaraiUploadTask task = new MinaraiUploadTask(callback);
+            task.fail(ex);
+
+            if(callback != null)
+                callback.onFailure(ex);
+
+            return task;
+        }
+
+        return enqueueUpload(body, fileName, options, callback);
+    }
+
+    /**
+     * Parse image type.
+     *
+     * @param type Image type.
+     * @return Media type.
+     * @throws IOException When type can not be parsed.
+     */
+    private static MediaType parseImageType(@NonNull String type) throws IOException {
+
+        if(type == null)
+            throw new IllegalArgumentException("type must not be null.");
+
+        MediaType mediaType = MediaType.parse(type);
+
+        if(mediaType == null)
+            throw new IOException("Can not parse media type: " + type);
+
+        return mediaType;
+    }
+
+    /**
+     * Parse image type given as argument of asynchronous methods.
+     *
+     * @param type Image type.
+     * @return Media type.
+     */
+    private static MediaType parseImageTypeArgument(@NonNull String type) {
+
+        try {
+            return parseImageType(type);
+        }
+        catch(IOException ex) {
+            throw new IllegalArgumentException(ex.getMessage());
+        }
+    }
+
+    /**
+     * Make HTTP call to upload image.
+     *
+     * @param fileBody Body of image.
+     * @param fileName File name.
+     * @param options  Options.
+     * @return HTTP call.
+     */
+    private Call newUploadCall(RequestBody fileBody, String fileName, MinaraiSendOptions options) {
+
+        Identity identity = this.identity;
+
+        MultipartBody.Builder formBuilder = new MultipartBody.Builder()
+                .setType(MultipartBody.FORM)
+                .addFormDataPart("applicationId", identity.applicationId)
+                .addFormDataPart("applicationSecret", identity.applicationSecret)
+                .addFormDataPart("clientId", identity.clientId)
+                .addFormDataPart("userId", identity.userId)
+                .addFormDataPart("deviceId", identity.deviceId)
+                .addFormDataPart("file", fileName, fileBody);
+
+        if(options != null && options.getExtra() != null)
+            formBuilder.addFormDataPart("params", options.getExtra().toString());
 
         RequestBody form = formBuilder.build();
 
@@ -618,13 +1305,232 @@ public class MinaraiClient implements Closeable {
                 .post(form)
                 .build();
 
-        Response res = httpClient.newCall(request).execute();
+        return httpClient.newCall(request);
+    }
+
+    /**
+     * Downscale and recompress image if resize options are set, then upload it on the calling thread.
+     *
+     * @param body     Body of image.
+     * @param fileName File name. Extension is replaced if format is changed.
+     * @param options  Send options.
+     * @return Image URL.
+     * @throws IOException When communication error occurred.
+     * @throws JSONException When response is not expected format.
+     */
+    private URL processAndUpload(StreamRequestBody body, String fileName, MinaraiSendOptions options) throws IOException, JSONException {
+
+        MinaraiImageResizeOptions resizeOptions = getImageResizeOptions(options);
+
+        try {
+            if(resizeOptions == null)
+                return executeUpload(body, fileName, options);
+
+            ImageProcessor.Result result = ImageProcessor.process(body, resizeOptions);
+            if(log.isDebugEnabled())
+                log.d(LOG_TAG, "Image processed: " + result.originalSize + " -> " + result.processedSize + " bytes");
+
+            return executeUpload(result.body, result.fileName(fileName), options);
+        }
+        finally {
+            // Call may fail before the body is written.
+            body.release();
+        }
+    }
+
+    /**
+     * Gets image resize options. Send options take priority over client options.
+     *
+     * @param options Send options.
+     * @return Resize options. null if images are uploaded as they are.
+     */
+    private MinaraiImageResizeOptions getImageResizeOptions(MinaraiSendOptions options) {
+
+        if(options != null && options.getImageResizeOptions() != null)
+            return options.getImageResizeOptions();
+
+        return opts.getImageResizeOptions();
+    }
+
+    /**
+     * Enqueue image upload.
+     * If resize options are set, image is processed on background executor before upload.
+     *
+     * @param body     Body of image.
+     * @param fileName File name.
+     * @param options  Options.
+     * @param callback Callback. May be null.
+     * @return Task to wait or cancel upload.
+     */
+    private MinaraiUploadTask enqueueUpload(final StreamRequestBody body,
+                                            final String fileName,
+                                            final MinaraiSendOptions options,
+                                            final MinaraiUploadCallback callback) {
+
+        final MinaraiUploadTask task = new MinaraiUploadTask(callback);
+        final MinaraiImageResizeOptions resizeOptions = getImageResizeOptions(options);
+
+        if(resizeOptions == null) {
+            startUpload(task, body, fileName, options, callback);
+            return task;
+        }
+
+        try {
+            imageProcessExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+
+                    if(task.isDone()) {
+                        body.release();
+                        return;
+                    }
+
+                    ImageProcessor.Result result;
+
+                    try {
+                        result = ImageProcessor.process(body, resizeOptions);
+                    }
+                    catch(IOException ex) {
+                        body.release();
+
+                        if(task.fail(ex) && callback != null)
+                            callback.onFailure(ex);
+                        return;
+                    }
+
+                    if(callback != null)
+                        callback.onProcessed(result.originalSize, result.processedSize);
+
+                    startUpload(task, result.body, result.fileName(fileName), options, callback);
+                }
+            });
+        }
+        catch(RejectedExecutionException ex) {
+            IOException cause = new IOException("Client is closed.");
+            body.release();
+
+            if(task.fail(cause) && callback != null)
+                callback.onFailure(cause);
+        }
+
+        return task;
+    }
 
-        JSONObject data = new JSONObject(res.body().string());
-        String message = data.getString("message"); //"ok" succeeded
-        String url = data.getString("url");
+    /**
+     * Start HTTP call of image upload.
+     *
+     * @param task     Task to complete.
+     * @param body     Body of image.
+     * @param fileName File name.
+     * @param options  Options.
+     * @param callback Callback. May be null.
+     */
+    private void startUpload(final MinaraiUploadTask task,
+                             final StreamRequestBody body,
+                             String fileName,
+                             MinaraiSendOptions options,
+                             final MinaraiUploadCallback callback) {
+
+        if(task.isDone()) {
+            body.release();
+            return;
+        }
+
+        if(callback != null) {
+            body.setProgressListener(new StreamRequestBody.ProgressListener() {
+                @Override
+                public void onProgress(long bytesWritten, long contentLength) {
+                    callback.onProgress(bytesWritten, contentLength);
+                }
+            });
+        }
+
+        Call call = newUploadCall(body, fileName, options);
+        task.setCall(call);
+
+        final long startNanos = System.nanoTime();
+
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(@NonNull Call call, @NonNull IOException ex) {
+
+                // Call may fail before the body is written.
+                body.release();
+
+                if(task.fail(ex) && callback != null)
+                    callback.onFailure(ex);
+            }
+
+            @Override
+            public void onResponse(@NonNull Call call, @NonNull Response res) {
+
+                URL url;
+
+                try {
+                    url = parseUploadResponse(res);
+                }
+                catch(IOException ex) {
+                    onFailure(call, ex);
+                    return;
+                }
+                catch(JSONException ex) {
+                    onFailure(call, new IOException("Unexpected response: " + ex.getMessage()));
+                    return;
+                }
 
-        return new URL(url);
+                if(metrics != null)
+                    metrics.recordSince(MinaraiMetric.IMAGE_UPLOAD, startNanos);
+
+                if(task.complete(url) && callback != null)
+                    callback.onSuccess(url);
+            }
+        });
+    }
+
+    /**
+     * Execute HTTP call of image upload on the calling thread.
+     *
+     * @param body     Body of image.
+     * @param fileName File name.
+     * @param options  Options.
+     * @return Image URL.
+     * @throws IOException When communication error occurred.
+     * @throws JSONException When response is not expected format.
+     */
+    private URL executeUpload(RequestBody body, String fileName, MinaraiSendOptions options) throws IOException, JSONException {
+
+        long startNanos = System.nanoTime();
+        URL url = parseUploadResponse(newUploadCall(body, fileName, options).execute());
+
+        if(metrics != null)
+            metrics.recordSince(MinaraiMetric.IMAGE_UPLOAD, startNanos);
+
+        return url;
+    }
+
+    /**
+     * Parse response of image upload. The response is closed.
+     *
+     * @param res Response.
+     * @return Image URL.
+     * @throws IOException When communication error occurred.
+     * @throws JSONException When response is not expected format.
+     */
+    private static URL parseUploadResponse(Response res) throws IOException, JSONException {
+
+        try {
+            if(!res.isSuccessful())
+                throw new IOException("Unexpected response: " + res.code());
+
+            JSONObject data = new JSONObject(res.body().string());
+            String message = data.getString("message"); //"ok" succeeded
+            String url = data.getString("url");
+
+            return new URL(url);
+        }
+        finally {
+            res.close();
+        }
     }
 
     /**
@@ -643,35 +1549,106 @@ public class MinaraiClient implements Closeable {
         if(type == null)
             throw new IllegalArgumentException("type must not be null.");
 
+        // Stream image into file.
+        if(fileImageDelivery) {
+            File file = imageCache.getFile(url, type);
+
+            if(file == null) {
+                long startNanos = System.nanoTime();
+                Response res = downloadImage(url);
+
+                try {
+                    file = imageCache.putFile(url, type, res.body().source());
+                }
+                finally {
+                    res.close();
+                }
+
+                if(metrics != null)
+                    metrics.recordSince(MinaraiMetric.IMAGE_FETCH, startNanos);
+            }
+
+            return "file://" + file.getAbsolutePath();
+        }
+
+        // Make data URL.
+        byte[] bytes = imageCache.get(url, type);
+
+        if(bytes == null) {
+            long startNanos = System.nanoTime();
+            Response res = downloadImage(url);
+
+            try {
+                bytes = res.body().bytes();
+            }
+            finally {
+                res.close();
+            }
+
+            if(metrics != null)
+                metrics.recordSince(MinaraiMetric.IMAGE_FETCH, startNanos);
+
+            imageCache.put(url, type, bytes);
+        }
+
+        return Util.toDataUrl(type, bytes);
+    }
+
+    /**
+     * Download image.
+     *
+     * @param url Image URL.
+     * @return Successful response. Caller must close it.
+     * @throws IOException When communication error occurred.
+     */
+    private Response downloadImage(@NonNull String url) throws IOException {
+
+        Identity identity = this.identity;
+        Request request;
+
         if(opts.isGetImageByHeader()) {
-            Request request = new Request.Builder()
+            request = new Request.Builder()
                     .url(url)
                     .get()
-                    .header("X-Minarai-Application-Id", applicationId)
-                    .header("X-Minarai-Application-Secret", applicationSecret)
-                    .header("X-Minarai-User-Id", userId)
+                    .header("X-Minarai-Application-Id", identity.applicationId)
+                    .header("X-Minarai-Application-Secret", identity.applicationSecret)
+                    .header("X-Minarai-User-Id", identity.userId)
                     .build();
-
-            ResponseBody resBody = httpClient.newCall(request).execute().body();
-
-            return "data:" + type + "base64," + Base64.encodeToString(resBody.bytes(), Base64.DEFAULT);
         }
         else {
             HttpUrl httpUrl = HttpUrl.parse(url).newBuilder()
-                    .addQueryParameter("applicationId", applicationId)
-                    .addQueryParameter("applicationSecret", applicationSecret)
-                    .addQueryParameter("userId", userId)
+                    .addQueryParameter("applicationId", identity.applicationId)
+                    .addQueryParameter("applicationSecret", identity.applicationSecret)
+                    .addQueryParameter("userId", identity.userId)
                     .build();
-            Request request = new Request.Builder()
+            request = new Request.Builder()
                     .url(httpUrl)
                     .get()
                     .build();
+        }
 
-            ResponseBody resBody = httpClient.newCall(request).execute().body();
+        Response res = httpClient.newCall(request).execute();
 
-            return "data:" + type + "base64," + Base64.encodeToString(resBody.bytes(), Base64.DEFAULT);
-//            return resBody.string();
+        if(!res.isSuccessful()) {
+            res.close();
+            throw new IOException("Unexpected response: " + res.code() + " " + url);
         }
+
+        return res;
+    }
+
+    /**
+     * Gets snapshot of metrics. null if metrics are not enabled.
+     */
+    public MinaraiMetrics getMetrics() {
+        return (metrics != null) ? metrics.snapshot() : null;
+    }
+
+    /**
+     * Gets statistics of image cache.
+     */
+    public MinaraiImageCacheStats getImageCacheStats() {
+        return imageCache.getStats();
     }
 
     /**
@@ -686,45 +1663,161 @@ public class MinaraiClient implements Closeable {
             return false;
 
         // Emit event.
-        Log.i(LOG_TAG, "force-disconnect");
+        log.i(LOG_TAG, "force-disconnect");
         socketIo.emit("force-disconnect");
 
         return true;
     }
 
+    /**
+     * Gets whether messages can be emitted now. Guarded by outboundLock.
+     */
+    private boolean isReady() {
+        return initialized && (joined || resuming);
+    }
+
+    /**
+     * Emit payload if joined. Otherwise, queue it to emit after joined if outbound queue is enabled.
+     *
+     * @param event    Socket.IO event.
+     * @param id       Payload id.
+     * @param unixTime UNIX time.
+     * @param lang     Language. May be null.
+     * @param body     Body.
+     * @return Successfully emitted or queued, or not.
+     * @throws JSONException When error while construct JSON.
+     */
+    private boolean emitOrQueue(String event, String id, long unixTime, String lang, JSONObject body) throws JSONException {
+
+        synchronized(outboundLock) {
+
+            if(closed)
+                return false;
+
+            if(isReady()) {
+                emitPayload(event, id, unixTime, lang, body);
+                return true;
+            }
+
+            if(outboundQueue == null)
+                return checkInitialized() && checkJoined();
+
+            if(log.isDebugEnabled())
+                log.d(LOG_TAG, "Not joined yet. Queue " + event + ": " + id);
+
+            return outboundQueue.add(new OutboundQueue.Record(event, id, unixTime, lang, body));
+        }
+    }
+
+    /**
+     * Emit queued payloads in order.
+     * Must be called with outboundLock held.
+     */
+    private void flushOutboundQueue() {
+
+        if(outboundQueue == null)
+            return;
+
+        for(OutboundQueue.Record record : outboundQueue.peek()) {
+            try {
+                emitPayload(record.event, record.id, record.unixTime, record.lang, record.body);
+            }
+            catch(JSONException ex) {
+                log.w(LOG_TAG, "Failed to emit queued " + record.event + ": ", ex);
+            }
+
+            // Removed from the file only after handed to Socket.IO.
+            outboundQueue.markSent(record);
+        }
+    }
+
+    /**
+     * Emit payload.
+     *
+     * @param event    Socket.IO event.
+     * @param id       Payload id.
+     * @param unixTime UNIX time.
+     * @param lang     Language. May be null.
+     * @param body     Body.
+     * @throws JSONException When error while construct JSON.
+     */
+    private void emitPayload(String event, String id, long unixTime, String lang, JSONObject body) throws JSONException {
+
+        Object payload;
+
+        if(streamingCodec) {
+            payload = encodePayload(id, unixTime, lang, body);
+        }
+        else {
+            JSONObject json = makePayload(id, unixTime, lang);
+            json.put("body", body);
+            payload = json;
+        }
+
+        if(log.isDebugEnabled())
+            log.d(LOG_TAG, event + " ", Logger.redact(payload));
+        socketIo.emit(event, payload);
+    }
+
+    /**
+     * Encode payload into the reusable buffer without building JSON tree.
+     * Fixed members of head are encoded once per join.
+     *
+     * @param id       Payload id.
+     * @param unixTime UNIX time.
+     * @param lang     Language. If null, not included.
+     * @param body     Body.
+     * @return Encoded payload.
+     * @throws JSONException When error while construct JSON.
+     */
+    @VisibleForTesting
+    RawJson encodePayload(String id, long unixTime, String lang, JSONObject body) throws JSONException {
+
+        Identity identity = this.identity;
+
+        synchronized(payloadBuffer) {
+            payloadBuffer.setLength(0);
+
+            JsonWriter writer = new JsonWriter(payloadBuffer)
+                    .beginObject()
+                    .name("id").value(id)
+                    .name("head");
+
+            identity.writeHead(writer, unixTime, lang);
+
+            writer.name("body").value(body)
+                    .endObject();
+
+            String encoded = payloadBuffer.toString();
+
+            if(payloadBuffer.capacity() > MAX_PAYLOAD_BUFFER_CAPACITY) {
+                payloadBuffer.setLength(0);
+                payloadBuffer.trimToSize();
+            }
+
+            return new RawJson(encoded);
+        }
+    }
+
     /**
      * Make payload base.
      *
+     * @param id       Payload id.
+     * @param unixTime UNIX time.
+     * @param lang     Language. If null, not included.
      * @return payload.
      * @throws JSONException When error while construct JSON.
      */
-    private JSONObject makePayload() throws JSONException {
+    @VisibleForTesting
+    JSONObject makePayload(String id, long unixTime, String lang) throws JSONException {
 
         JSONObject payload = new JSONObject();
 
-        // Get UNIX time.
-        long unixTime = Util.getUnixTime();
-
         // Put id.
-        String id = String.format("%s%s%s%s-%s",
-                applicationId,
-                clientId,
-                userId,
-                deviceId,
-                unixTime);
-
         payload.put("id", id);
 
-        // Put header.
-        JSONObject head = new JSONObject();
-        head.put("applicationId", applicationId);
-        head.put("applicationSecret", applicationSecret);
-        head.put("clientId", clientId);
-        head.put("userId", userId);
-        head.put("deviceId", deviceId);
-        head.put("timestampUnixTime", unixTime);
-
-        payload.put("head", head);
+        // Put header shared while identity, time and language are unchanged.
+        payload.put("head", identity.getHead(unixTime, lang));
 
         return payload;
     }
@@ -735,7 +1828,7 @@ public class MinaraiClient implements Closeable {
     private boolean checkInitialized() {
 
         if(!initialized) {
-            Log.w(LOG_TAG, "Not initialized yet.");
+            log.w(LOG_TAG, "Not initialized yet.");
             return false;
         }
 
@@ -748,7 +1841,7 @@ public class MinaraiClient implements Closeable {
     private boolean checkJoined() {
 
         if(!joined) {
-            Log.w(LOG_TAG, "Not joined yet.");
+            log.w(LOG_TAG, "Not joined yet.");
             return false;
         }
 
@@ -761,7 +1854,7 @@ public class MinaraiClient implements Closeable {
     private boolean checkNotClosed() {
 
         if(closed) {
-            Log.w(LOG_TAG, "Already closed.");
+            log.w(LOG_TAG, "Already closed.");
             return false;
         }
 
@@ -781,12 +1874,38 @@ public class MinaraiClient implements Closeable {
     @Override
     public void close() {
 
-        if(closed)
-            return;
+        // Flush batched commands before closing socket.
+        if(commandBatcher != null && !closed)
+            commandBatcher.close();
+
+        synchronized(outboundLock) {
+            if(closed)
+                return;
+
+            closed = true;
+
+            if(reconnector != null)
+                reconnector.close();
+
+            if(socketIo != null) {
+                socketIo.close();
+
+                if(transport != null)
+                    transport.release(socketIo);
+
+                socketIo = null;
+            }
+        }
+
+        if(outboundQueue != null)
+            outboundQueue.close();
 
-        socketIo.close();
-        socketIo = null;
+        if(conversationStore != null)
+            conversationStore.close();
 
-        closed = true;
+        replies.close();
+        history.close();
+        imageResolver.close();
+        imageProcessExecutor.shutdownNow();
     }
 }
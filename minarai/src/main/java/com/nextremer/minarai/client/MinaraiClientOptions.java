@@ -1,6 +1,14 @@
 package com.nextremer.minarai.client;
 
+import android.support.annotation.NonNull;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
 import io.socket.client.IO;
+import io.socket.engineio.client.Transport;
 
 /**
  * Client options class.
@@ -12,12 +20,48 @@ public class MinaraiClientOptions {
     private static final String DEFAULT_LANG = "ja-JP";                                                 // Default language.
     private static final String DEFAULT_SOCKET_IO_ROOT_URL = "https://socketio-connector.minarai.ch";   // Default Socket.IO root URL.
     private static final String DEFAULT_API_VERSION = "v1";                                             // Default API version.
+    private static final int DEFAULT_IMAGE_FETCH_CONCURRENCY = 4;                                       // Default image fetch concurrency.
+    private static final long DEFAULT_IMAGE_MEMORY_CACHE_SIZE = 4L * 1024L * 1024L;                     // Default memory cache size of images.
+    private static final long DEFAULT_IMAGE_DISK_CACHE_SIZE = 32L * 1024L * 1024L;                      // Default disk cache size of images.
+    private static final int DEFAULT_OUTBOUND_QUEUE_MAX_SIZE = 256;                                     // Default maximum size of outbound queue.
+    private static final int DEFAULT_COMMAND_BATCH_MAX_SIZE = 32;                                       // Default maximum number of batched commands.
+    private static final MinaraiLogger DEFAULT_LOGGER = new MinaraiAndroidLogger();                     // Default logger.
+    private static final int DEFAULT_HISTORY_MAX_SIZE = 1000;                                           // Default maximum number of log entries kept by history.
+    private static final long DEFAULT_HISTORY_TIMEOUT_MILLIS = 30000L;                                  // Default timeout of logs requested by history.
+    private static final int DEFAULT_CONVERSATION_MAX_SIZE = 200;                                       // Default maximum number of stored chat events.
+    private static final int DEFAULT_MAX_AWAITING_REPLIES = 64;                                         // Default maximum number of messages waiting for replies.
 
     private String lang;                // Language.
     private String socketIoRootUrl;     // Root url of minarai Socket.IO Connector
     private String apiVersion;          // API version of minarai Socket.IO Connector
     private IO.Options socketIoOptions; // Socket.IO options.
     private boolean getImageByHeader;   // Get image by header flag.
+    private int imageFetchConcurrency;  // Maximum number of concurrent image fetches.
+    private Long imageMemoryCacheSize;  // Memory cache size of images in bytes.
+    private File imageCacheDir;         // Directory of image disk cache.
+    private Long imageDiskCacheSize;    // Disk cache size of images in bytes.
+    private MinaraiImageDelivery imageDelivery; // Delivery mode of images.
+    private MinaraiImageResizeOptions imageResizeOptions;   // Image resize options for upload.
+    private boolean outboundQueueEnabled;   // Outbound queue enabled flag.
+    private File outboundQueueFile;         // File to persist outbound queue.
+    private int outboundQueueMaxSize;       // Maximum number of queued messages.
+    private long commandBatchWindowMillis;  // Window to coalesce commands in milliseconds.
+    private int commandBatchMaxSize;        // Maximum number of command names pending in a window.
+    private Set<String> coalescedCommands;  // Names of commands coalesced by batching. null means none.
+    private MinaraiLogger logger;           // Logger.
+    private MinaraiDispatcher dispatcher;   // Default dispatcher of listeners.
+    private MinaraiJsonCodec jsonCodec;     // Codec of Socket.IO payloads.
+    private int historyMaxSize;             // Maximum number of log entries kept by history.
+    private long historyTimeoutMillis;      // Timeout of logs requested by history in milliseconds.
+    private File conversationFile;          // File to store conversation. null means disabled.
+    private boolean fastResumeEnabled;      // Fast resume flag.
+    private int conversationMaxSize;        // Maximum number of stored chat events.
+    private MinaraiReconnectPolicy reconnectPolicy; // Reconnection policy. null means reconnection of Socket.IO.
+    private MinaraiTransport transport;     // Shared transport. null means a transport of its own.
+    private String namespace;               // Socket.IO namespace on shared transport.
+    private boolean metricsEnabled;         // Metrics enabled flag.
+    private MinaraiMetricsListener metricsListener; // Listener of recorded metrics.
+    private int maxAwaitingReplies;         // Maximum number of messages waiting for replies.
 
     /**
      * Constructor.
@@ -108,14 +152,15 @@ public class MinaraiClientOptions {
     }
 
     /**
-     * Gets Socket.IO options.Return default value if it is not set.
+     * Gets copy of Socket.IO options. Return default value if it is not set.
+     * The client modifies the copy, so the options put by app are never modified and can be shared by clients.
      *
      * @param defApiVersion API version for default value.
      */
     IO.Options getSocketIoOptionsOrDefault(String defApiVersion) {
 
         if(socketIoOptions != null)
-            return socketIoOptions;
+            return copy(socketIoOptions);
 
         IO.Options opts = new IO.Options();
         opts.path = "/socket.io/" + defApiVersion;
@@ -125,7 +170,7 @@ public class MinaraiClientOptions {
     }
 
     /**
-     * Puts Socket.IO options.
+     * Puts Socket.IO options. The options are copied by the client on init, and not modified.
      *
      * @param options Options.
      * @return this
@@ -135,6 +180,53 @@ public class MinaraiClientOptions {
         return this;
     }
 
+    /**
+     * Copy Socket.IO options. Values are copied shallowly.
+     *
+     * @param src Source options.
+     * @return Copy.
+     */
+    private static IO.Options copy(@NonNull IO.Options src) {
+
+        IO.Options dst = new IO.Options();
+
+        // IO.Options
+        dst.forceNew = src.forceNew;
+        dst.multiplex = src.multiplex;
+
+        // Manager.Options
+        dst.reconnection = src.reconnection;
+        dst.reconnectionAttempts = src.reconnectionAttempts;
+        dst.reconnectionDelay = src.reconnectionDelay;
+        dst.reconnectionDelayMax = src.reconnectionDelayMax;
+        dst.randomizationFactor = src.randomizationFactor;
+        dst.encoder = src.encoder;
+        dst.decoder = src.decoder;
+        dst.timeout = src.timeout;
+
+        // Socket.Options of Engine.IO
+        dst.transports = src.transports;
+        dst.upgrade = src.upgrade;
+        dst.rememberUpgrade = src.rememberUpgrade;
+        dst.host = src.host;
+        dst.query = src.query;
+        dst.transportOptions = src.transportOptions;
+
+        // Transport.Options of Engine.IO. Socket.Options hides query of the same name.
+        dst.hostname = src.hostname;
+        dst.path = src.path;
+        dst.timestampParam = src.timestampParam;
+        dst.secure = src.secure;
+        dst.timestampRequests = src.timestampRequests;
+        dst.port = src.port;
+        dst.policyPort = src.policyPort;
+        ((Transport.Options)dst).query = ((Transport.Options)src).query;
+        dst.webSocketFactory = src.webSocketFactory;
+        dst.callFactory = src.callFactory;
+
+        return dst;
+    }
+
     /**
      * Gets get image by header flag.
      */
@@ -152,4 +244,600 @@ public class MinaraiClientOptions {
         this.getImageByHeader = enabled;
         return this;
     }
+
+    /**
+     * Gets maximum number of concurrent image fetches.
+     */
+    public int getImageFetchConcurrency() {
+        return imageFetchConcurrency;
+    }
+
+    /**
+     * Gets maximum number of concurrent image fetches. Return default value if it is not set.
+     */
+    int getImageFetchConcurrencyOrDefault() {
+        return (imageFetchConcurrency > 0) ? imageFetchConcurrency : DEFAULT_IMAGE_FETCH_CONCURRENCY;
+    }
+
+    /**
+     * Puts maximum number of concurrent image fetches.
+     * Images of SYNC and MESSAGE events are fetched on background threads,
+     * and the events are notified in the order they arrived.
+     *
+     * @param concurrency Maximum number of concurrent fetches.
+     * @return this
+     */
+    public MinaraiClientOptions putImageFetchConcurrency(int concurrency) {
+        imageFetchConcurrency = concurrency;
+        return this;
+    }
+
+    /**
+     * Gets memory cache size of images in bytes.
+     */
+    public Long getImageMemoryCacheSize() {
+        return imageMemoryCacheSize;
+    }
+
+    /**
+     * Gets memory cache size of images in bytes. Return default value if it is not set.
+     */
+    long getImageMemoryCacheSizeOrDefault() {
+        return (imageMemoryCacheSize != null) ? imageMemoryCacheSize : DEFAULT_IMAGE_MEMORY_CACHE_SIZE;
+    }
+
+    /**
+     * Puts memory cache size of images in bytes.
+     *
+     * @param size Size in bytes. 0 disables memory cache.
+     * @return this
+     */
+    public MinaraiClientOptions putImageMemoryCacheSize(long size) {
+        imageMemoryCacheSize = size;
+        return this;
+    }
+
+    /**
+     * Gets directory of image disk cache.
+     */
+    public File getImageCacheDir() {
+        return imageCacheDir;
+    }
+
+    /**
+     * Puts directory of image disk cache. If not set, disk cache is disabled.
+     * The directory should be dedicated to this client. e.g. new File(context.getCacheDir(), "minarai-images")
+     *
+     * @param dir Directory.
+     * @return this
+     */
+    public MinaraiClientOptions putImageCacheDir(File dir) {
+        imageCacheDir = dir;
+        return this;
+    }
+
+    /**
+     * Gets disk cache size of images in bytes.
+     */
+    public Long getImageDiskCacheSize() {
+        return imageDiskCacheSize;
+    }
+
+    /**
+     * Gets disk cache size of images in bytes. Return default value if it is not set.
+     */
+    long getImageDiskCacheSizeOrDefault() {
+        return (imageDiskCacheSize != null) ? imageDiskCacheSize : DEFAULT_IMAGE_DISK_CACHE_SIZE;
+    }
+
+    /**
+     * Puts disk cache size of images in bytes.
+     *
+     * @param size Size in bytes. 0 disables disk cache.
+     * @return this
+     */
+    public MinaraiClientOptions putImageDiskCacheSize(long size) {
+        imageDiskCacheSize = size;
+        return this;
+    }
+
+    /**
+     * Gets delivery mode of images.
+     */
+    public MinaraiImageDelivery getImageDelivery() {
+        return imageDelivery;
+    }
+
+    /**
+     * Gets delivery mode of images. Return default value if it is not set.
+     */
+    MinaraiImageDelivery getImageDeliveryOrDefault() {
+        return (imageDelivery != null) ? imageDelivery : MinaraiImageDelivery.DATA_URL;
+    }
+
+    /**
+     * Puts delivery mode of images.
+     * {@link MinaraiImageDelivery#FILE} streams images into the image cache directory
+     * and delivers "file://" URL, so whole image is never held in memory.
+     * Delivered files may be evicted from the cache later. Copy them if they must be kept.
+     *
+     * @param delivery Delivery mode.
+     * @return this
+     */
+    public MinaraiClientOptions putImageDelivery(MinaraiImageDelivery delivery) {
+        imageDelivery = delivery;
+        return this;
+    }
+
+    /**
+     * Gets image resize options for upload.
+     */
+    public MinaraiImageResizeOptions getImageResizeOptions() {
+        return imageResizeOptions;
+    }
+
+    /**
+     * Puts image resize options for upload. If not set, images are uploaded as they are.
+     *
+     * @param options Resize options.
+     * @return this
+     */
+    public MinaraiClientOptions putImageResizeOptions(MinaraiImageResizeOptions options) {
+        imageResizeOptions = options;
+        return this;
+    }
+
+    /**
+     * Gets outbound queue enabled flag.
+     */
+    public boolean isOutboundQueueEnabled() {
+        return outboundQueueEnabled;
+    }
+
+    /**
+     * Puts outbound queue enabled flag.
+     * When enabled, send, sendCommand and getLogs accept messages while the client is not joined,
+     * and emit them in order when joined.
+     *
+     * @param enabled flag.
+     * @return this
+     */
+    public MinaraiClientOptions putOutboundQueueEnabled(boolean enabled) {
+        outboundQueueEnabled = enabled;
+        return this;
+    }
+
+    /**
+     * Gets file to persist outbound queue.
+     */
+    public File getOutboundQueueFile() {
+        return outboundQueueFile;
+    }
+
+    /**
+     * Puts file to persist outbound queue. Queued messages in the file are emitted by next process.
+     * If not set, queued messages are kept only in memory.
+     *
+     * @param file File. e.g. new File(context.getFilesDir(), "minarai-outbound")
+     * @return this
+     */
+    public MinaraiClientOptions putOutboundQueueFile(File file) {
+        outboundQueueFile = file;
+        return this;
+    }
+
+    /**
+     * Gets maximum number of queued messages.
+     */
+    public int getOutboundQueueMaxSize() {
+        return outboundQueueMaxSize;
+    }
+
+    /**
+     * Gets maximum number of queued messages. Return default value if it is not set.
+     */
+    int getOutboundQueueMaxSizeOrDefault() {
+        return (outboundQueueMaxSize > 0) ? outboundQueueMaxSize : DEFAULT_OUTBOUND_QUEUE_MAX_SIZE;
+    }
+
+    /**
+     * Puts maximum number of queued messages. Messages beyond it are rejected.
+     *
+     * @param size Maximum number.
+     * @return this
+     */
+    public MinaraiClientOptions putOutboundQueueMaxSize(int size) {
+        outboundQueueMaxSize = size;
+        return this;
+    }
+
+    /**
+     * Gets window to coalesce commands in milliseconds.
+     */
+    public long getCommandBatchWindowMillis() {
+        return commandBatchWindowMillis;
+    }
+
+    /**
+     * Puts window to coalesce commands in milliseconds. 0 disables batching, which is default.
+     * When enabled, commands of the names put by {@link #putCoalescedCommands(Set)} are held within the window,
+     * and only the latest command of each name is emitted when the window elapses.
+     * Other commands are emitted at once, after the pending commands.
+     * Messages sent by send are not held, so they may be emitted before pending commands.
+     *
+     * @param millis Window in milliseconds.
+     * @return this
+     */
+    public MinaraiClientOptions putCommandBatchWindowMillis(long millis) {
+        commandBatchWindowMillis = millis;
+        return this;
+    }
+
+    /**
+     * Gets maximum number of command names pending in a window.
+     */
+    public int getCommandBatchMaxSize() {
+        return commandBatchMaxSize;
+    }
+
+    /**
+     * Gets maximum number of command names pending in a window. Return default value if it is not set.
+     */
+    int getCommandBatchMaxSizeOrDefault() {
+        return (commandBatchMaxSize > 0) ? commandBatchMaxSize : DEFAULT_COMMAND_BATCH_MAX_SIZE;
+    }
+
+    /**
+     * Puts maximum number of command names pending in a window. Pending commands are flushed when reached.
+     *
+     * @param size Maximum number.
+     * @return this
+     */
+    public MinaraiClientOptions putCommandBatchMaxSize(int size) {
+        commandBatchMaxSize = size;
+        return this;
+    }
+
+    /**
+     * Gets names of commands coalesced by batching.
+     */
+    public Set<String> getCoalescedCommands() {
+        return coalescedCommands;
+    }
+
+    /**
+     * Gets names of commands coalesced by batching. Return empty set if it is not set.
+     */
+    Set<String> getCoalescedCommandsOrDefault() {
+        return (coalescedCommands != null) ? coalescedCommands : Collections.<String>emptySet();
+    }
+
+    /**
+     * Puts names of commands coalesced by batching, whose latest one replaces earlier ones, e.g. state updates.
+     * Commands of other names are never dropped nor reordered. None is coalesced by default.
+     *
+     * @param names Command names. The set is copied.
+     * @return this
+     */
+    public MinaraiClientOptions putCoalescedCommands(Set<String> names) {
+        coalescedCommands = (names != null) ? Collections.unmodifiableSet(new HashSet<>(names)) : null;
+        return this;
+    }
+
+    /**
+     * Gets logger.
+     */
+    public MinaraiLogger getLogger() {
+        return logger;
+    }
+
+    /**
+     * Gets logger. Return default value if it is not set.
+     */
+    MinaraiLogger getLoggerOrDefault() {
+        return (logger != null) ? logger : DEFAULT_LOGGER;
+    }
+
+    /**
+     * Puts logger. If not set, {@link MinaraiAndroidLogger} which logs INFO and above is used,
+     * so payloads are not serialized for logging by default.
+     *
+     * @param logger Logger.
+     * @return this
+     */
+    public MinaraiClientOptions putLogger(MinaraiLogger logger) {
+        this.logger = logger;
+        return this;
+    }
+
+    /**
+     * Gets default dispatcher of listeners.
+     */
+    public MinaraiDispatcher getDispatcher() {
+        return dispatcher;
+    }
+
+    /**
+     * Gets default dispatcher of listeners. Return default value if it is not set.
+     */
+    MinaraiDispatcher getDispatcherOrDefault() {
+        return (dispatcher != null) ? dispatcher : MinaraiDispatcher.inline();
+    }
+
+    /**
+     * Puts default dispatcher of listeners, used by {@link MinaraiClient#on(MinaraiEvent, MinaraiEventListener)}.
+     * If not set, listeners are called inline on the notifying thread.
+     *
+     * @param dispatcher Dispatcher.
+     * @return this
+     */
+    public MinaraiClientOptions putDispatcher(MinaraiDispatcher dispatcher) {
+        this.dispatcher = dispatcher;
+        return this;
+    }
+
+    /**
+     * Gets codec of Socket.IO payloads.
+     */
+    public MinaraiJsonCodec getJsonCodec() {
+        return jsonCodec;
+    }
+
+    /**
+     * Gets codec of Socket.IO payloads. Return default value if it is not set.
+     */
+    MinaraiJsonCodec getJsonCodecOrDefault() {
+        return (jsonCodec != null) ? jsonCodec : MinaraiJsonCodec.ORG_JSON;
+    }
+
+    /**
+     * Puts codec of Socket.IO payloads. Default is {@link MinaraiJsonCodec#ORG_JSON}.
+     * {@link MinaraiJsonCodec#STREAMING} replaces encoder and decoder of Socket.IO options unless they are set by the application.
+     *
+     * @param codec Codec.
+     * @return this
+     */
+    public MinaraiClientOptions putJsonCodec(MinaraiJsonCodec codec) {
+        this.jsonCodec = codec;
+        return this;
+    }
+
+    /**
+     * Gets maximum number of log entries kept by history.
+     */
+    public int getHistoryMaxSize() {
+        return historyMaxSize;
+    }
+
+    /**
+     * Gets maximum number of log entries kept by history. Return default value if it is not set.
+     */
+    int getHistoryMaxSizeOrDefault() {
+        return (historyMaxSize > 0) ? historyMaxSize : DEFAULT_HISTORY_MAX_SIZE;
+    }
+
+    /**
+     * Puts maximum number of log entries kept by history. Oldest entries are removed over this size.
+     *
+     * @param size Maximum number of entries.
+     * @return this
+     */
+    public MinaraiClientOptions putHistoryMaxSize(int size) {
+        this.historyMaxSize = size;
+        return this;
+    }
+
+    /**
+     * Gets timeout of logs requested by history in milliseconds.
+     */
+    public long getHistoryTimeoutMillis() {
+        return historyTimeoutMillis;
+    }
+
+    /**
+     * Gets timeout of logs requested by history in milliseconds. Return default value if it is not set.
+     */
+    long getHistoryTimeoutMillisOrDefault() {
+        return (historyTimeoutMillis > 0L) ? historyTimeoutMillis : DEFAULT_HISTORY_TIMEOUT_MILLIS;
+    }
+
+    /**
+     * Puts timeout of logs requested by history in milliseconds.
+     * If no response arrives in time, the waiting load is completed with local entries, as when disconnected.
+     *
+     * @param millis Timeout in milliseconds.
+     * @return this
+     */
+    public MinaraiClientOptions putHistoryTimeoutMillis(long millis) {
+        this.historyTimeoutMillis = millis;
+        return this;
+    }
+
+    /**
+     * Gets file to store conversation.
+     */
+    public File getConversationFile() {
+        return conversationFile;
+    }
+
+    /**
+     * Puts file to store conversation. SYNC, MESSAGE and LOGS events are appended to the file,
+     * and latest ones are available by {@link MinaraiClient#getRecentMessages(int)} before connected.
+     * Only events of the user of the client are read, and {@link MinaraiClient#clearConversation()} removes them on logout.
+     * If not set, conversation is not stored.
+     *
+     * @param file File. e.g. new File(context.getFilesDir(), "minarai-conversation")
+     * @return this
+     */
+    public MinaraiClientOptions putConversationFile(File file) {
+        conversationFile = file;
+        return this;
+    }
+
+    /**
+     * Gets maximum number of stored chat events.
+     */
+    public int getConversationMaxSize() {
+        return conversationMaxSize;
+    }
+
+    /**
+     * Gets maximum number of stored chat events. Return default value if it is not set.
+     */
+    int getConversationMaxSizeOrDefault() {
+        return (conversationMaxSize > 0) ? conversationMaxSize : DEFAULT_CONVERSATION_MAX_SIZE;
+    }
+
+    /**
+     * Puts maximum number of stored chat events. Oldest events are removed over this size.
+     *
+     * @param size Maximum number of events.
+     * @return this
+     */
+    public MinaraiClientOptions putConversationMaxSize(int size) {
+        conversationMaxSize = size;
+        return this;
+    }
+
+    /**
+     * Gets fast resume flag.
+     */
+    public boolean isFastResumeEnabled() {
+        return fastResumeEnabled;
+    }
+
+    /**
+     * Puts fast resume flag. If enabled, on reconnect, queued messages are emitted right behind the join frame
+     * with the identity of the last join, instead of waiting for JOINED.
+     * Effective with outbound queue enabled. Requires the server to process frames of a connection in order.
+     *
+     * @param enabled flag.
+     * @return this
+     */
+    public MinaraiClientOptions putFastResumeEnabled(boolean enabled) {
+        fastResumeEnabled = enabled;
+        return this;
+    }
+
+    /**
+     * Gets reconnection policy.
+     */
+    public MinaraiReconnectPolicy getReconnectPolicy() {
+        return reconnectPolicy;
+    }
+
+    /**
+     * Puts reconnection policy. If set, reconnection of Socket.IO is disabled and the client reconnects by the policy.
+     * Otherwise, Socket.IO reconnects by its own options.
+     *
+     * @param policy Policy.
+     * @return this
+     */
+    public MinaraiClientOptions putReconnectPolicy(MinaraiReconnectPolicy policy) {
+        reconnectPolicy = policy;
+        return this;
+    }
+
+    /**
+     * Gets shared transport.
+     */
+    public MinaraiTransport getTransport() {
+        return transport;
+    }
+
+    /**
+     * Puts shared transport. Clients with the same transport share HTTP connection pool and dispatcher.
+     *
+     * @param transport Transport.
+     * @return this
+     */
+    public MinaraiClientOptions putTransport(MinaraiTransport transport) {
+        this.transport = transport;
+        return this;
+    }
+
+    /**
+     * Gets Socket.IO namespace.
+     */
+    public String getNamespace() {
+        return namespace;
+    }
+
+    /**
+     * Puts Socket.IO namespace, e.g. "/persona-a". Effective with shared transport.
+     * Clients with different namespaces on the same transport share one Socket.IO connection.
+     * The server must serve the namespace.
+     *
+     * @param namespace Namespace starting with "/".
+     * @return this
+     */
+    public MinaraiClientOptions putNamespace(String namespace) {
+
+        if(namespace != null && !namespace.startsWith("/"))
+            throw new IllegalArgumentException("namespace must start with \"/\".");
+
+        this.namespace = namespace;
+        return this;
+    }
+
+    /**
+     * Gets metrics enabled flag.
+     */
+    public boolean isMetricsEnabled() {
+        return metricsEnabled;
+    }
+
+    /**
+     * Puts metrics enabled flag. If enabled, client records latencies and traffic. Default is disabled.
+     *
+     * @param enabled flag.
+     * @return this
+     */
+    public MinaraiClientOptions putMetricsEnabled(boolean enabled) {
+        metricsEnabled = enabled;
+        return this;
+    }
+
+    /**
+     * Gets listener of recorded metrics.
+     */
+    public MinaraiMetricsListener getMetricsListener() {
+        return metricsListener;
+    }
+
+    /**
+     * Puts listener of recorded metrics. Effective with metrics enabled.
+     *
+     * @param listener Listener.
+     * @return this
+     */
+    public MinaraiClientOptions putMetricsListener(MinaraiMetricsListener listener) {
+        metricsListener = listener;
+        return this;
+    }
+
+    /**
+     * Gets maximum number of messages waiting for replies by sendAndAwait.
+     */
+    public int getMaxAwaitingReplies() {
+        return maxAwaitingReplies;
+    }
+
+    /**
+     * Gets maximum number of messages waiting for replies by sendAndAwait. Return default value if it is not set.
+     */
+    int getMaxAwaitingRepliesOrDefault() {
+        return (maxAwaitingReplies > 0) ? maxAwaitingReplies : DEFAULT_MAX_AWAITING_REPLIES;
+    }
+
+    /**
+     * Puts maximum number of messages waiting for replies by sendAndAwait. Messages beyond it are rejected without sending.
+     *
+     * @param size Maximum number.
+     * @return this
+     */
+    public MinaraiClientOptions putMaxAwaitingReplies(int size) {
+        maxAwaitingReplies = size;
+        return this;
+    }
 }
@@ -0,0 +1,88 @@
+package com.nextremer.minarai.client;
+
+/**
+ * Snapshot of command batching statistics.
+ *
+ * @author nextremer.com
+ */
+public class MinaraiCommandBatchStats {
+
+    private final long acceptedCount;   // Number of commands of coalesced names accepted by sendCommand.
+    private final long coalescedCount;  // Number of commands overwritten by later commands of the same name.
+    private final long emittedCount;    // Number of commands emitted or queued.
+    private final long droppedCount;    // Number of commands neither emitted nor queued.
+    private final long flushCount;      // Number of flushes.
+
+    /**
+     * Constructor.
+     *
+     * @param acceptedCount  Number of commands of coalesced names accepted by sendCommand.
+     * @param coalescedCount Number of commands overwritten by later commands of the same name.
+     * @param emittedCount   Number of commands emitted or queued.
+     * @param droppedCount   Number of commands neither emitted nor queued.
+     * @param flushCount     Number of flushes.
+     */
+    MinaraiCommandBatchStats(long acceptedCount, long coalescedCount, long emittedCount, long droppedCount, long flushCount) {
+        this.acceptedCount = acceptedCount;
+        this.coalescedCount = coalescedCount;
+        this.emittedCount = emittedCount;
+        this.droppedCount = droppedCount;
+        this.flushCount = flushCount;
+    }
+
+    /**
+     * Gets number of commands of coalesced names accepted by sendCommand.
+     */
+    public long getAcceptedCount() {
+        return acceptedCount;
+    }
+
+    /**
+     * Gets number of commands overwritten by later commands of the same name.
+     */
+    public long getCoalescedCount() {
+        return coalescedCount;
+    }
+
+    /**
+     * Gets number of commands emitted, or queued by outbound queue while not joined.
+     */
+    public long getEmittedCount() {
+        return emittedCount;
+    }
+
+    /**
+     * Gets number of commands neither emitted nor queued, e.g. because disconnected within the window.
+     */
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * Gets number of flushes.
+     */
+    public long getFlushCount() {
+        return flushCount;
+    }
+
+    /**
+     * Gets number of frames saved by coalescing.
+     */
+    public long getFramesSaved() {
+        return coalescedCount;
+    }
+
+    /**
+     * @see Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "MinaraiCommandBatchStats{"
+                + "acceptedCount=" + acceptedCount
+                + ", coalescedCount=" + coalescedCount
+                + ", emittedCount=" + emittedCount
+                + ", droppedCount=" + droppedCount
+                + ", flushCount=" + flushCount
+                + "}";
+    }
+}
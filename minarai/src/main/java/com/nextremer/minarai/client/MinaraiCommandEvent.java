@@ -0,0 +1,66 @@
+package com.nextremer.minarai.client;
+
+import android.support.annotation.NonNull;
+
+import org.json.JSONObject;
+
+/**
+ * Event data of SYNC_COMMAND, SYNC_SYSTEM_COMMAND and OPERATOR_COMMAND.
+ * Commands are sent as "body.name" and "body.extra" by sendCommand,
+ * and as "body.message.command" and "body.message.payload" by sendSystemCommand.
+ *
+ * @author nextremer.com
+ */
+public class MinaraiCommandEvent extends MinaraiEventData {
+
+    /**
+     * Constructor.
+     *
+     * @param event   Event.
+     * @param json    Raw JSON. If null, parsed from encoded JSON.
+     * @param encoded Encoded JSON.
+     */
+    MinaraiCommandEvent(@NonNull MinaraiEvent event, JSONObject json, String encoded) {
+        super(event, json, encoded);
+    }
+
+    /**
+     * Gets command name. null if not exists.
+     */
+    public String getName() {
+
+        JSONObject body = getBody();
+
+        if(body == null)
+            return null;
+
+        String name = optString(body, "name");
+
+        if(name != null)
+            return name;
+
+        JSONObject message = body.optJSONObject("message");
+
+        return (message != null) ? optString(message, "command") : optString(body, "command");
+    }
+
+    /**
+     * Gets command payload. null if not exists.
+     */
+    public JSONObject getPayload() {
+
+        JSONObject body = getBody();
+
+        if(body == null)
+            return null;
+
+        JSONObject extra = body.optJSONObject("extra");
+
+        if(extra != null)
+            return extra;
+
+        JSONObject message = body.optJSONObject("message");
+
+        return (message != null) ? message.optJSONObject("payload") : body.optJSONObject("payload");
+    }
+}
@@ -0,0 +1,81 @@
+package com.nextremer.minarai.client;
+
+/**
+ * Snapshot of dispatcher statistics.
+ *
+ * @author nextremer.com
+ */
+public class MinaraiDispatchStats {
+
+    private final int queueDepth;       // Number of events waiting in queue.
+    private final int maxQueueDepth;    // Maximum number of events waited in queue.
+    private final long dispatchedCount; // Number of events passed to listeners.
+    private final long droppedCount;    // Number of events dropped by overflow.
+    private final long coalescedCount;  // Number of events replaced by later events.
+
+    /**
+     * Constructor.
+     *
+     * @param queueDepth      Number of events waiting in queue.
+     * @param maxQueueDepth   Maximum number of events waited in queue.
+     * @param dispatchedCount Number of events passed to listeners.
+     * @param droppedCount    Number of events dropped by overflow.
+     * @param coalescedCount  Number of events replaced by later events.
+     */
+    MinaraiDispatchStats(int queueDepth, int maxQueueDepth, long dispatchedCount, long droppedCount, long coalescedCount) {
+        this.queueDepth = queueDepth;
+        this.maxQueueDepth = maxQueueDepth;
+        this.dispatchedCount = dispatchedCount;
+        this.droppedCount = droppedCount;
+        this.coalescedCount = coalescedCount;
+    }
+
+    /**
+     * Gets number of events waiting in queue.
+     */
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * Gets maximum number of events waited in queue.
+     */
+    public int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    /**
+     * Gets number of events passed to listeners.
+     */
+    public long getDispatchedCount() {
+        return dispatchedCount;
+    }
+
+    /**
+     * Gets number of events dropped by overflow.
+     */
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * Gets number of events replaced by later events.
+     */
+    public long getCoalescedCount() {
+        return coalescedCount;
+    }
+
+    /**
+     * @see Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "MinaraiDispatchStats{"
+                + "queueDepth=" + queueDepth
+                + ", maxQueueDepth=" + maxQueueDepth
+                + ", dispatchedCount=" + dispatchedCount
+                + ", droppedCount=" + droppedCount
+                + ", coalescedCount=" + coalescedCount
+                + "}";
+    }
+}
@@ -0,0 +1,352 @@
+package com.nextremer.minarai.client;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Defines on which thread event listeners are called.
+ * Except {@link #inline()}, events are put to a bounded queue and listeners are called on the executor,
+ * so a slow listener does not delay the socket or listeners of other dispatchers.
+ * One dispatcher can be shared by listeners of multiple events and clients.
+ *
+ * @author nextremer.com
+ */
+public class MinaraiDispatcher {
+
+    private static final long KEEP_ALIVE_SECONDS = 30L;     // Keep alive time of idle threads.
+
+    private static final MinaraiDispatcher INLINE = new MinaraiDispatcher(null, 0, 0, null);    // Inline dispatcher.
+
+    /**
+     * Queued event.
+     */
+    private static class Task {
+
+        final ListenerRegistry.Registration registration;   // Listener.
+        MinaraiEventData data;                              // Event data. Replaced by coalescing. Guarded by dispatcher.
+
+        Task(ListenerRegistry.Registration registration, MinaraiEventData data) {
+            this.registration = registration;
+            this.data = data;
+        }
+    }
+
+    private final Executor executor;                // Executor to call listeners. null means inline.
+    private final int concurrency;                  // Maximum number of threads calling listeners at once.
+    private final int capacity;                     // Capacity of queue.
+    private final MinaraiOverflowPolicy policy;     // Policy when queue is full.
+
+    private final ArrayDeque<Task> queue = new ArrayDeque<>();  // Queued events. Guarded by this.
+    private int running;                // Number of running drain tasks. Guarded by this.
+    private int maxQueueDepth;          // Maximum queue depth. Guarded by this.
+    private long dispatchedCount;       // Number of events passed to listeners. Guarded by this.
+    private long droppedCount;          // Number of dropped events. Guarded by this.
+    private long coalescedCount;        // Number of coalesced events. Guarded by this.
+
+    private final Runnable drainTask = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    /**
+     * Constructor.
+     *
+     * @param executor    Executor to call listeners. null means inline.
+     * @param concurrency Maximum number of threads calling listeners at once.
+     * @param capacity    Capacity of queue.
+     * @param policy      Policy when queue is full.
+     */
+    private MinaraiDispatcher(Executor executor, int concurrency, int capacity, MinaraiOverflowPolicy policy) {
+        this.executor = executor;
+        this.concurrency = concurrency;
+        this.capacity = capacity;
+        this.policy = policy;
+    }
+
+    /**
+     * Gets dispatcher which calls listeners on the notifying thread, i.e. the Socket.IO thread or an image fetch thread.
+     * This is the default.
+     */
+    public static MinaraiDispatcher inline() {
+        return INLINE;
+    }
+
+    /**
+     * Create dispatcher which calls listeners one by one in order on a dedicated thread.
+     *
+     * @param capacity Capacity of queue.
+     * @param policy   Policy when queue is full.
+     * @return Dispatcher.
+     */
+    public static MinaraiDispatcher serial(int capacity, @NonNull MinaraiOverflowPolicy policy) {
+        return newQueued(newThreadPool(1), 1, capacity, policy);
+    }
+
+    /**
+     * Create dispatcher which calls listeners on a pool of threads.
+     * Events may be delivered out of order and listeners may be called concurrently.
+     *
+     * @param threads  Number of threads.
+     * @param capacity Capacity of queue.
+     * @param policy   Policy when queue is full.
+     * @return Dispatcher.
+     */
+    public static MinaraiDispatcher pool(int threads, int capacity, @NonNull MinaraiOverflowPolicy policy) {
+
+        if(threads < 1)
+            throw new IllegalArgumentException("threads must be positive.");
+
+        return newQueued(newThreadPool(threads), threads, capacity, policy);
+    }
+
+    /**
+     * Create dispatcher which calls listeners one by one in order on the main thread.
+     * {@link MinaraiOverflowPolicy#BLOCK} is not recommended, because it blocks the socket while the main thread is busy.
+     *
+     * @param capacity Capacity of queue.
+     * @param policy   Policy when queue is full.
+     * @return Dispatcher.
+     */
+    public static MinaraiDispatcher mainThread(int capacity, @NonNull MinaraiOverflowPolicy policy) {
+
+        final Handler handler = new Handler(Looper.getMainLooper());
+
+        return newQueued(new Executor() {
+            @Override
+            public void execute(@NonNull Runnable command) {
+                handler.post(command);
+            }
+        }, 1, capacity, policy);
+    }
+
+    /**
+     * Create dispatcher which calls listeners one by one in order on the executor.
+     *
+     * @param executor Executor.
+     * @param capacity Capacity of queue.
+     * @param policy   Policy when queue is full.
+     * @return Dispatcher.
+     */
+    public static MinaraiDispatcher executor(@NonNull Executor executor, int capacity, @NonNull MinaraiOverflowPolicy policy) {
+
+        if(executor == null)
+            throw new IllegalArgumentException("executor must not be null.");
+
+        return newQueued(executor, 1, capacity, policy);
+    }
+
+    /**
+     * Create queued dispatcher.
+     *
+     * @param executor    Executor.
+     * @param concurrency Maximum number of threads calling listeners at once.
+     * @param capacity    Capacity of queue.
+     * @param policy      Policy when queue is full.
+     * @return Dispatcher.
+     */
+    private static MinaraiDispatcher newQueued(Executor executor, int concurrency, int capacity, MinaraiOverflowPolicy policy) {
+
+        if(capacity < 1)
+            throw new IllegalArgumentException("capacity must be positive.");
+
+        if(policy == null)
+            throw new IllegalArgumentException("policy must not be null.");
+
+        return new MinaraiDispatcher(executor, concurrency, capacity, policy);
+    }
+
+    /**
+     * Create pool of daemon threads which exit when idle.
+     *
+     * @param threads Number of threads.
+     * @return Executor.
+     */
+    private static Executor newThreadPool(int threads) {
+
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                Util.newThreadFactory("minarai-dispatch"));
+        pool.allowCoreThreadTimeOut(true);
+
+        return pool;
+    }
+
+    /**
+     * Gets statistics.
+     */
+    public synchronized MinaraiDispatchStats getStats() {
+        return new MinaraiDispatchStats(queue.size(), maxQueueDepth, dispatchedCount, droppedCount, coalescedCount);
+    }
+
+    /**
+     * Dispatch event to listener.
+     *
+     * @param registration Listener.
+     * @param data         Event data.
+     * @throws RejectedExecutionException When executor rejects drain task. The event is kept queued for next dispatch.
+     */
+    void dispatch(@NonNull ListenerRegistry.Registration registration, @NonNull MinaraiEventData data) {
+
+        if(executor == null) {
+            registration.deliver(data);
+            return;
+        }
+
+        boolean schedule;
+
+        synchronized(this) {
+            if(!enqueue(registration, data))
+                return;
+
+            schedule = running < concurrency;
+
+            if(schedule)
+                running++;
+        }
+
+        if(schedule)
+            execute();
+    }
+
+    /**
+     * Run drain task on executor. Running count incremented by caller is reverted when rejected.
+     *
+     * @throws RejectedExecutionException When executor rejects drain task.
+     */
+    private void execute() {
+
+        try {
+            executor.execute(drainTask);
+        }
+        catch(RejectedExecutionException ex) {
+            synchronized(this) {
+                running--;
+            }
+
+            throw ex;
+        }
+    }
+
+    /**
+     * Put event to queue following overflow policy.
+     *
+     * @param registration Listener.
+     * @param data         Event data.
+     * @return Newly queued or not. false when coalesced.
+     */
+    private boolean enqueue(ListenerRegistry.Registration registration, MinaraiEventData data) {
+
+        // Replace queued event only when full, so distinct events are all delivered while there is room.
+        if(policy == MinaraiOverflowPolicy.COALESCE && queue.size() >= capacity) {
+            Iterator<Task> it = queue.descendingIterator();
+
+            while(it.hasNext()) {
+                Task task = it.next();
+
+                if(task.registration == registration && task.data.getEvent() == data.getEvent()) {
+                    task.data = data;
+                    coalescedCount++;
+                    return false;
+                }
+            }
+        }
+
+        if(policy == MinaraiOverflowPolicy.BLOCK) {
+            boolean interrupted = false;
+
+            while(queue.size() >= capacity) {
+                try {
+                    wait();
+                }
+                catch(InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+
+            if(interrupted)
+                Thread.currentThread().interrupt();
+        }
+        else if(queue.size() >= capacity) {
+            queue.poll();
+            droppedCount++;
+        }
+
+        queue.add(new Task(registration, data));
+
+        if(queue.size() > maxQueueDepth)
+            maxQueueDepth = queue.size();
+
+        return true;
+    }
+
+    /**
+     * Call listeners of queued events until queue becomes empty.
+     * If a listener throws, the exception is propagated to the executor after scheduling the rest.
+     */
+    private void drain() {
+
+        for(;;) {
+            Task task;
+            MinaraiEventData data;
+
+            synchronized(this) {
+                task = queue.poll();
+
+                if(task == null) {
+                    running--;
+                    return;
+                }
+
+                data = task.data;
+                dispatchedCount++;
+
+                if(policy == MinaraiOverflowPolicy.BLOCK)
+                    notifyAll();
+            }
+
+            boolean completed = false;
+
+            try {
+                task.registration.deliver(data);
+                completed = true;
+            }
+            finally {
+                if(!completed)
+                    reschedule();
+            }
+        }
+    }
+
+    /**
+     * Hand over remaining events to a new drain task when a listener throws.
+     * If executor rejects it, remaining events are kept queued for next dispatch, and the listener's exception is propagated.
+     */
+    private void reschedule() {
+
+        synchronized(this) {
+            if(queue.isEmpty()) {
+                running--;
+                return;
+            }
+        }
+
+        try {
+            execute();
+        }
+        catch(RejectedExecutionException ex) {
+            // Running count is already reverted.
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package com.nextremer.minarai.client;
+
+import android.support.annotation.NonNull;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Event data.
+ * One instance is created for each event and shared by all listeners.
+ * JSON given to listeners is read-only, and modifying it throws {@link UnsupportedOperationException}.
+ * Listeners which modify it should take an independent copy with {@link #copyJson()}.
+ * Typed values are decoded from the raw JSON on first access and cached,
+ * so values nobody reads are never built.
+ * With {@link MinaraiJsonCodec#STREAMING}, the raw JSON itself is parsed on first access of
+ * {@link #getJson()}, {@link #getHead()} or {@link #getBody()}.
+ * Subclasses are chosen by event:
+ * <ul>
+ *     <li>SYNC, MESSAGE: {@link MinaraiChatEvent}</li>
+ *     <li>SYNC_COMMAND, SYNC_SYSTEM_COMMAND, OPERATOR_COMMAND: {@link MinaraiCommandEvent}</li>
+ *     <li>LOGS: {@link MinaraiLogsEvent}</li>
+ *     <li>Others: this class</li>
+ * </ul>
+ *
+ * @author nextremer.com
+ */
+public class MinaraiEventData {
+
+    private final MinaraiEvent event;   // Event.
+    private final String encoded;       // Encoded JSON. null if parsed from the first.
+    private volatile JSONObject json;   // Raw JSON. Parsed from encoded JSON on first access.
+    private volatile boolean sealed;    // Raw JSON is no longer modified by the SDK, or not.
+    private volatile JSONObject view;   // Read-only view of raw JSON. Created on first access after sealed.
+
+    /**
+     * Constructor.
+     *
+     * @param event   Event.
+     * @param json    Raw JSON. If null, parsed from encoded JSON.
+     * @param encoded Encoded JSON. Used only when json is null.
+     */
+    MinaraiEventData(@NonNull MinaraiEvent event, JSONObject json, String encoded) {
+        this.event = event;
+        this.json = json;
+        this.encoded = (json != null) ? null : encoded;
+        this.sealed = true;
+    }
+
+    /**
+     * Create event data of the type for event.
+     *
+     * @param event Event.
+     * @param json  Raw JSON.
+     * @return Event data.
+     */
+    static MinaraiEventData of(@NonNull MinaraiEvent event, @NonNull JSONObject json) {
+        return create(event, json, null);
+    }
+
+    /**
+     * Create event data of the type for event, which parses JSON on first access.
+     *
+     * @param event Event.
+     * @param json  Encoded JSON.
+     * @return Event data.
+     */
+    static MinaraiEventData of(@NonNull MinaraiEvent event, @NonNull RawJson json) {
+        return create(event, null, json.toString());
+    }
+
+    /**
+     * Create event data of the type for event. Created event data is not sealed until {@link #seal()}.
+     *
+     * @param event   Event.
+     * @param json    Raw JSON. If null, parsed from encoded JSON.
+     * @param encoded Encoded JSON.
+     * @return Event data.
+     */
+    private static MinaraiEventData create(MinaraiEvent event, JSONObject json, String encoded) {
+
+        MinaraiEventData data;
+
+        switch(event) {
+            case SYNC:
+            case MESSAGE:
+                data = new MinaraiChatEvent(event, json, encoded);
+                break;
+
+            case SYNC_COMMAND:
+            case SYNC_SYSTEM_COMMAND:
+            case OPERATOR_COMMAND:
+                data = new MinaraiCommandEvent(event, json, encoded);
+                break;
+
+            case LOGS:
+                data = new MinaraiLogsEvent(event, json, encoded);
+                break;
+
+            default:
+                data = new MinaraiEventData(event, json, encoded);
+                break;
+        }
+
+        data.sealed = false;
+
+        return data;
+    }
+
+    /**
+     * Seal raw JSON. After this, the SDK no longer modifies it and {@link #getJson()} returns read-only view.
+     * Called before event data is passed to listeners.
+     */
+    void seal() {
+        sealed = true;
+    }
+
+    /**
+     * Gets event.
+     */
+    public MinaraiEvent getEvent() {
+        return event;
+    }
+
+    /**
+     * Gets read-only view of raw JSON. This is the object passed to {@link MinaraiEventListener}.
+     * The view costs only one level of copy, and nested objects are viewed when first accessed.
+     * Modifying it throws {@link UnsupportedOperationException}. Use {@link #copyJson()} to modify.
+     * If encoded JSON is broken, empty object is returned.
+     */
+    public JSONObject getJson() {
+
+        JSONObject raw = json();
+
+        if(!sealed || raw instanceof ReadOnlyJsonObject)
+            return raw;
+
+        JSONObject result = view;
+
+        if(result != null)
+            return result;
+
+        synchronized(this) {
+            if(view == null) {
+                try {
+                    view = new ReadOnlyJsonObject(raw);
+                }
+                catch(JSONException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            }
+
+            return view;
+        }
+    }
+
+    /**
+     * Gets raw JSON, which is modifiable until sealed. Parsed from encoded JSON on first access.
+     * If encoded JSON is broken, empty object is returned.
+     */
+    JSONObject json() {
+
+        JSONObject result = json;
+
+        if(result != null)
+            return result;
+
+        synchronized(this) {
+            if(json == null) {
+                try {
+                    json = new JSONObject(encoded);
+                }
+                catch(JSONException ex) {
+                    json = new JSONObject();
+                }
+            }
+
+            return json;
+        }
+    }
+
+    /**
+     * Gets independent copy of raw JSON, for listeners which modify it.
+     * Parsed from encoded JSON if not parsed yet, otherwise copied lazily as nested objects are accessed.
+     * If encoded JSON is broken, empty object is returned.
+     */
+    public JSONObject copyJson() {
+
+        try {
+            return isParsed() ? Util.lazyDuplicate(json()) : new JSONObject(encoded);
+        }
+        catch(JSONException ex) {
+            return new JSONObject();
+        }
+    }
+
+    /**
+     * Gets payload id. null if not exists.
+     */
+    public String getId() {
+        return isParsed() ? optString(json(), "id") : JsonScanner.find(encoded, "id");
+    }
+
+    /**
+     * Gets head. null if not exists.
+     */
+    public JSONObject getHead() {
+        return getJson().optJSONObject("head");
+    }
+
+    /**
+     * Gets UNIX time of head. 0 if not exists.
+     */
+    public long getTimestamp() {
+
+        if(!isParsed()) {
+            try {
+                String value = JsonScanner.find(encoded, "head", "timestampUnixTime");
+                return (value != null) ? Long.parseLong(value) : 0L;
+            }
+            catch(NumberFormatException ex) {
+                return 0L;
+            }
+        }
+
+        JSONObject head = getHead();
+        return (head != null) ? head.optLong("timestampUnixTime") : 0L;
+    }
+
+    /**
+     * Gets language of head. null if not exists.
+     */
+    public String getLang() {
+
+        if(!isParsed())
+            return JsonScanner.find(encoded, "head", "lang");
+
+        JSONObject head = getHead();
+        return (head != null) ? optString(head, "lang") : null;
+    }
+
+    /**
+     * Gets body. null if not exists.
+     */
+    public JSONObject getBody() {
+        return getJson().optJSONObject("body");
+    }
+
+    /**
+     * Gets type of body. null if not exists.
+     */
+    public String getBodyType() {
+
+        if(!isParsed())
+            return JsonScanner.find(encoded, "body", "type");
+
+        JSONObject body = getBody();
+        return (body != null) ? optString(body, "type") : null;
+    }
+
+    /**
+     * Gets encoded JSON. Encoded JSON received by streaming codec is returned as is.
+     */
+    String encode() {
+        JSONObject result = json;
+        return (result != null) ? result.toString() : encoded;
+    }
+
+    /**
+     * Gets if raw JSON is already parsed or not.
+     */
+    private boolean isParsed() {
+        return json != null;
+    }
+
+    /**
+     * Gets string value. Unlike {@link JSONObject#optString(String)}, returns null if not exists.
+     *
+     * @param json JSON.
+     * @param key  Key.
+     * @return Value.
+     */
+    static String optString(@NonNull JSONObject json, @NonNull String key) {
+        Object value = json.opt(key);
+        return (value == null || value == JSONObject.NULL) ? null : value.toString();
+    }
+
+    /**
+     * @see Object#toString()
+     */
+    @Override
+    public String toString() {
+        return event + " " + encode();
+    }
+}
@@ -0,0 +1,20 @@
+package com.nextremer.minarai.client;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Defines a listener interface to handle events by typed event data.
+ *
+ * @author nextremer.com
+ * @see MinaraiEventData
+ */
+public interface MinaraiEventDataListener {
+
+    /**
+     * Called when event occurred.
+     * The thread is decided by the {@link MinaraiDispatcher} given on registration.
+     *
+     * @param data Event data. Shared by all listeners of the event, so do not modify it.
+     */
+    void onEvent(@NonNull MinaraiEventData data);
+}
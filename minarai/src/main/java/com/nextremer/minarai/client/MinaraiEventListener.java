@@ -13,6 +13,8 @@ public interface MinaraiEventListener {
 
     /**
      * Called when event occurred.
+     * The thread is decided by the {@link MinaraiDispatcher} given on registration.
+     * With the inline dispatcher, SYNC and MESSAGE events may be notified on an image fetch thread instead of the Socket.IO thread.
      *
      * @param event Event.
      * @param data  Event data.
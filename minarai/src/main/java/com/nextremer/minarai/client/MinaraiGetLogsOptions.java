@@ -2,6 +2,11 @@ package com.nextremer.minarai.client;
 
 import android.support.annotation.NonNull;
 
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
 /**
  * Get log options class.
  *
@@ -27,6 +32,22 @@ public class MinaraiGetLogsOptions {
         this.limit = limit;
     }
 
+    /**
+     * Create options to get logs before the time.
+     * ltDate is formatted in ISO 8601 extended format of UTC, e.g. "2017-11-01T09:00:00.000Z".
+     *
+     * @param unixTime UNIX time. Logs older than this time are requested.
+     * @param limit    Limit.
+     * @return Options.
+     */
+    public static MinaraiGetLogsOptions before(long unixTime, int limit) {
+
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        return new MinaraiGetLogsOptions(format.format(new Date(unixTime * 1000L)), limit);
+    }
+
     /**
      * Gets .
      */
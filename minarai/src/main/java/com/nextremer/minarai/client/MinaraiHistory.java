@@ -0,0 +1,592 @@
+package com.nextremer.minarai.client;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Paginated history of log entries.
+ * Entries received by LOGS events are kept in a local index keyed by id and time.
+ * The index remembers the time range which is known to be complete,
+ * so scrolling back within the range is served locally and only the gap beyond the oldest entry is requested.
+ * Requests to the server are sent one at a time. A LOGS event is taken as the response if its id is the one of the request,
+ * or if it has no id. Responses to other requests, i.e. {@link MinaraiClient#getLogs(MinaraiGetLogsOptions)} called by app
+ * and requests of history timed out, are recognized by their ids and only add their entries to the index.
+ * As the connector does not document whether a response echoes the id of its request,
+ * a LOGS event of an unknown id is taken as the response to the oldest other request waiting for response,
+ * or to the request of history if no other request is waiting.
+ * If no response arrives in time, the request is completed with local entries, as when disconnected.
+ *
+ * @author nextremer.com
+ */
+public class MinaraiHistory {
+
+    private static final String LOG_TAG = MinaraiHistory.class.getName();  // Logging tag.
+
+    private static final long BEGINNING = Long.MIN_VALUE;  // Lower bound of range which reached the first entry.
+    private static final long KEEP_ALIVE_SECONDS = 30L;    // Keep alive time of idle thread.
+    private static final int MAX_OTHER_REQUESTS = 64;      // Maximum number of other requests waiting for response.
+
+    /**
+     * Defines the requester of logs.
+     */
+    interface Fetcher {
+
+        /**
+         * Make payload id of next request.
+         *
+         * @return Payload id.
+         */
+        String nextId();
+
+        /**
+         * Request logs.
+         *
+         * @param id      Payload id.
+         * @param options Options.
+         * @return Successfully requested or not.
+         */
+        boolean fetch(@NonNull String id, @NonNull MinaraiGetLogsOptions options);
+    }
+
+    /**
+     * Key of entry. Ordered by time, then id.
+     */
+    private static class Key implements Comparable<Key> {
+
+        final long unixTime;    // UNIX time.
+        final String id;        // Payload id.
+
+        Key(long unixTime, String id) {
+            this.unixTime = unixTime;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(@NonNull Key other) {
+
+            if(unixTime != other.unixTime)
+                return (unixTime < other.unixTime) ? -1 : 1;
+
+            return id.compareTo(other.id);
+        }
+    }
+
+    /**
+     * Load request.
+     */
+    private static class Request {
+
+        final long before;                      // Entries older than this time are loaded.
+        final int limit;                        // Maximum number of entries.
+        final MinaraiHistoryCallback callback;  // Callback.
+
+        Request(long before, int limit, MinaraiHistoryCallback callback) {
+            this.before = before;
+            this.limit = limit;
+            this.callback = callback;
+        }
+    }
+
+    private final Fetcher fetcher;      // Requester of logs.
+    private final int maxSize;          // Maximum number of entries in index.
+    private final long timeoutMillis;   // Timeout of request to server in milliseconds.
+    private final Logger log;           // Logger.
+    private final ScheduledThreadPoolExecutor timer;    // Timer to expire request to server.
+
+    private final TreeMap<Key, MinaraiChatEvent> entries = new TreeMap<>();   // Entries by key. Guarded by this.
+    private final Map<String, Key> keys = new HashMap<>();                      // Keys by id. Guarded by this.
+    private final ArrayDeque<Request> requests = new ArrayDeque<>();            // Waiting requests. Guarded by this.
+    private final LinkedHashMap<String, Long> otherRequests = new LinkedHashMap<>();    // Start time in nanoseconds of other requests by id. Guarded by this.
+    private long anonymousCount;    // Number of entries without id. Guarded by this.
+
+    private boolean covered;        // Complete range exists or not. Guarded by this.
+    private long coveredFrom;       // Entries newer than this time are complete. BEGINNING if all. Guarded by this.
+    private long coveredTo;         // Entries older than this time are complete. Guarded by this.
+
+    private Request inflight;       // Request waiting for response. Guarded by this.
+    private String inflightId;      // Payload id of the request to server. Guarded by this.
+    private ScheduledFuture<?> inflightTimeout;    // Scheduled expiry of the request to server. Guarded by this.
+    private long inflightBefore;    // ltDate of the request to server. Guarded by this.
+    private int inflightLimit;      // Limit of the request to server. Guarded by this.
+    private boolean inflightGap;    // Request to server continues the complete range or not. Guarded by this.
+
+    /**
+     * Constructor.
+     *
+     * @param fetcher       Requester of logs.
+     * @param maxSize       Maximum number of entries in index.
+     * @param timeoutMillis Timeout of request to server in milliseconds.
+     * @param log           Logger.
+     */
+    MinaraiHistory(@NonNull Fetcher fetcher, int maxSize, long timeoutMillis, @NonNull Logger log) {
+
+        if(fetcher == null)
+            throw new IllegalArgumentException("fetcher must not be null.");
+
+        if(maxSize < 1)
+            throw new IllegalArgumentException("maxSize must be positive.");
+
+        if(timeoutMillis < 1L)
+            throw new IllegalArgumentException("timeoutMillis must be positive.");
+
+        this.fetcher = fetcher;
+        this.maxSize = maxSize;
+        this.timeoutMillis = timeoutMillis;
+        this.log = log;
+
+        timer = new ScheduledThreadPoolExecutor(1, Util.newThreadFactory("minarai-history"));
+        timer.setKeepAliveTime(KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+        timer.allowCoreThreadTimeOut(true);
+        timer.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Load latest entries.
+     *
+     * @param limit    Maximum number of entries.
+     * @param callback Callback.
+     */
+    public void loadLatest(int limit, @NonNull MinaraiHistoryCallback callback) {
+        loadBefore(Util.getUnixTime() + 1L, limit, callback);
+    }
+
+    /**
+     * Load entries older than the time, e.g. the time of the oldest entry on screen.
+     *
+     * @param unixTime UNIX time.
+     * @param limit    Maximum number of entries.
+     * @param callback Callback.
+     */
+    public void loadBefore(long unixTime, int limit, @NonNull MinaraiHistoryCallback callback) {
+
+        if(limit < 1)
+            throw new IllegalArgumentException("limit must be positive.");
+
+        if(callback == null)
+            throw new IllegalArgumentException("callback must not be null.");
+
+        synchronized(this) {
+            requests.add(new Request(unixTime, limit, callback));
+        }
+
+        process();
+    }
+
+    /**
+     * Gets number of entries in index.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Remove all entries and forget complete range.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        keys.clear();
+        covered = false;
+    }
+
+    /**
+     * Called before app requests logs, to tell its response from the response to the request of history.
+     *
+     * @param id Payload id.
+     */
+    synchronized void addAppRequest(@NonNull String id) {
+        addOtherRequest(id);
+    }
+
+    /**
+     * Called when app request of logs failed to be sent.
+     *
+     * @param id Payload id.
+     */
+    synchronized void removeAppRequest(@NonNull String id) {
+        otherRequests.remove(id);
+    }
+
+    /**
+     * Called when LOGS event. Entries are always indexed, but the complete range is updated only by the response to the request.
+     *
+     * @param data Event data.
+     */
+    void onLogs(@NonNull MinaraiLogsEvent data) {
+
+        List<MinaraiChatEvent> logs = data.getLogs();
+        String id = data.getId();
+
+        synchronized(this) {
+            long oldest = Long.MAX_VALUE;
+
+            for(MinaraiChatEvent entry : logs) {
+                oldest = Math.min(oldest, entry.getTimestamp());
+                add(entry);
+            }
+
+            if(isResponse(id)) {
+                updateRange(logs.size(), oldest);
+                endInflight();
+            }
+
+            evict();
+        }
+
+        process();
+    }
+
+    /**
+     * Called when disconnected. Request waiting for response is completed with local entries.
+     */
+    void onDisconnected() {
+        abandon(null);
+    }
+
+    /**
+     * Close. Request waiting for response is left uncompleted.
+     */
+    void close() {
+        timer.shutdownNow();
+    }
+
+    /**
+     * Complete request waiting for response with local entries.
+     * Request timed out still waits for response, so that its late response is not taken for the next request.
+     *
+     * @param id Payload id of the request to server. If null, any request.
+     * @return Completed or not.
+     */
+    private boolean abandon(String id) {
+
+        Request request;
+        List<MinaraiChatEvent> result;
+
+        synchronized(this) {
+            request = inflight;
+
+            if(request == null || (id != null && !id.equals(inflightId)))
+                return false;
+
+            if(id != null)
+                addOtherRequest(id);
+
+            endInflight();
+            requests.poll();
+            result = slice(request, false);
+        }
+
+        request.callback.onLoaded(result, true);
+
+        process();
+
+        return true;
+    }
+
+    /**
+     * Gets whether LOGS event of the id is the response to the request to server. Called with lock.
+     * Other request answered by the event stops waiting for response.
+     *
+     * @param id Payload id. May be null.
+     * @return Response to the request to server or not.
+     */
+    private boolean isResponse(String id) {
+
+        if(id != null && otherRequests.remove(id) != null)
+            return false;
+
+        if(inflight != null && (id == null || id.equals(inflightId)))
+            return true;
+
+        if(id == null)
+            return false;
+
+        // Id is not echoed. Other requests lost in time do not wait for response any more.
+        long now = System.nanoTime();
+
+        while(!otherRequests.isEmpty()
+                && now - otherRequests.values().iterator().next() >= TimeUnit.MILLISECONDS.toNanos(timeoutMillis))
+            removeOldestOtherRequest();
+
+        if(!otherRequests.isEmpty()) {
+            removeOldestOtherRequest();
+            return false;
+        }
+
+        if(inflight == null)
+            return false;
+
+        log.d(LOG_TAG, "Logs response of unknown id is taken for request: ", inflightId);
+
+        return true;
+    }
+
+    /**
+     * Add other request waiting for response. Called with lock.
+     *
+     * @param id Payload id.
+     */
+    private void addOtherRequest(String id) {
+
+        otherRequests.put(id, System.nanoTime());
+
+        if(otherRequests.size() > MAX_OTHER_REQUESTS)
+            removeOldestOtherRequest();
+    }
+
+    /**
+     * Remove the oldest other request. Called with lock.
+     */
+    private void removeOldestOtherRequest() {
+
+        Iterator<String> it = otherRequests.keySet().iterator();
+        it.next();
+        it.remove();
+    }
+
+    /**
+     * Clear the request to server and its expiry. Called with lock.
+     */
+    private void endInflight() {
+
+        inflight = null;
+        inflightId = null;
+
+        if(inflightTimeout != null) {
+            inflightTimeout.cancel(false);
+            inflightTimeout = null;
+        }
+    }
+
+    /**
+     * Schedule expiry of the request to server. Called with lock.
+     *
+     * @param id Payload id of the request to server.
+     */
+    private void scheduleTimeout(final String id) {
+
+        try {
+            inflightTimeout = timer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    if(abandon(id))
+                        log.w(LOG_TAG, "Logs request timed out: ", id);
+                }
+            }, timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        catch(RejectedExecutionException ex) {
+            // Closed.
+        }
+    }
+
+    /**
+     * Serve waiting requests locally, or request the gap to server.
+     */
+    private void process() {
+
+        for(;;) {
+            Request request;
+            List<MinaraiChatEvent> result = null;
+            boolean hasMore = true;
+            MinaraiGetLogsOptions options = null;
+            String id = null;
+
+            synchronized(this) {
+                if(inflight != null || requests.isEmpty())
+                    return;
+
+                request = requests.peek();
+
+                if(covered && request.before > coveredFrom && request.before <= coveredTo) {
+                    int available = countCovered(request.before);
+
+                    if(available >= request.limit || coveredFrom == BEGINNING) {
+                        requests.poll();
+                        result = slice(request, true);
+                        hasMore = coveredFrom != BEGINNING || available > request.limit;
+                    }
+                    else {
+                        // Request only the gap beyond the oldest complete entry.
+                        // Entries of the same second as the oldest one are requested again to fill the second,
+                        // and one more entry is requested because the oldest second of response may be partial.
+                        inflightBefore = coveredFrom + 1L;
+                        inflightLimit = request.limit - available + countSecond(coveredFrom) + 1;
+                        inflightGap = true;
+                    }
+                }
+                else {
+                    inflightBefore = request.before;
+                    inflightLimit = request.limit + 1;
+                    inflightGap = false;
+                }
+
+                if(result == null) {
+                    // Id is set before sending, as the response may arrive before fetch returns.
+                    id = fetcher.nextId();
+                    inflight = request;
+                    inflightId = id;
+                    options = MinaraiGetLogsOptions.before(inflightBefore, inflightLimit);
+                    scheduleTimeout(id);
+                }
+            }
+
+            if(result != null) {
+                request.callback.onLoaded(result, hasMore);
+                continue;
+            }
+
+            if(fetcher.fetch(id, options))
+                return;
+
+            // Request failed. Complete with local entries, unless completed meanwhile.
+            synchronized(this) {
+                if(inflight != request || !id.equals(inflightId))
+                    return;
+
+                endInflight();
+                requests.poll();
+                result = slice(request, false);
+            }
+
+            request.callback.onLoaded(result, true);
+        }
+    }
+
+    /**
+     * Add entry to index, replacing entry of the same id.
+     *
+     * @param entry Entry.
+     */
+    private void add(MinaraiChatEvent entry) {
+
+        String id = entry.getId();
+
+        if(id == null)
+            id = "\u0000" + (anonymousCount++);
+
+        Key old = keys.remove(id);
+
+        if(old != null)
+            entries.remove(old);
+
+        Key key = new Key(entry.getTimestamp(), id);
+        entries.put(key, entry);
+        keys.put(id, key);
+    }
+
+    /**
+     * Update complete range by response to the request to server.
+     *
+     * @param count  Number of entries in response.
+     * @param oldest Time of the oldest entry in response.
+     */
+    private void updateRange(int count, long oldest) {
+
+        long from;
+
+        if(count < inflightLimit)
+            from = BEGINNING;
+        else if(inflightGap && oldest >= coveredFrom)
+            from = coveredFrom - 1L;    // Too many entries in one second. Step forward to avoid requesting the same entries forever.
+        else
+            from = oldest;
+
+        if(inflightGap) {
+            coveredFrom = from;
+            return;
+        }
+
+        long to = inflightBefore;
+
+        if(covered && to >= coveredFrom && from <= coveredTo) {
+            // Overlaps complete range. Merge.
+            coveredFrom = Math.min(coveredFrom, from);
+            coveredTo = Math.max(coveredTo, to);
+        }
+        else {
+            // Disjoint. Keep the range just fetched, which the waiting request is in.
+            coveredFrom = from;
+            coveredTo = to;
+            covered = true;
+        }
+    }
+
+    /**
+     * Remove oldest entries over maximum size. Complete range shrinks accordingly.
+     */
+    private void evict() {
+
+        while(entries.size() > maxSize) {
+            Map.Entry<Key, MinaraiChatEvent> oldest = entries.pollFirstEntry();
+            keys.remove(oldest.getKey().id);
+
+            if(covered && (coveredFrom == BEGINNING || oldest.getKey().unixTime > coveredFrom))
+                coveredFrom = oldest.getKey().unixTime;
+        }
+
+        if(covered && coveredFrom != BEGINNING && coveredFrom >= coveredTo)
+            covered = false;
+    }
+
+    /**
+     * Count entries in the complete range older than the time.
+     *
+     * @param before UNIX time.
+     * @return Number of entries.
+     */
+    private int countCovered(long before) {
+
+        if(coveredFrom == BEGINNING)
+            return entries.headMap(new Key(before, ""), false).size();
+
+        return entries.subMap(new Key(coveredFrom + 1L, ""), true, new Key(before, ""), false).size();
+    }
+
+    /**
+     * Count entries in the second.
+     *
+     * @param unixTime UNIX time.
+     * @return Number of entries.
+     */
+    private int countSecond(long unixTime) {
+        return entries.subMap(new Key(unixTime, ""), true, new Key(unixTime + 1L, ""), false).size();
+    }
+
+    /**
+     * Take newest entries older than the time of request.
+     *
+     * @param request     Request.
+     * @param coveredOnly Take entries only in the complete range or not.
+     * @return Entries in chronological order.
+     */
+    private List<MinaraiChatEvent> slice(Request request, boolean coveredOnly) {
+
+        NavigableMap<Key, MinaraiChatEvent> range = entries.headMap(new Key(request.before, ""), false);
+
+        if(coveredOnly && coveredFrom != BEGINNING)
+            range = range.tailMap(new Key(coveredFrom + 1L, ""), true);
+
+        List<MinaraiChatEvent> result = new ArrayList<>(Math.min(request.limit, range.size()));
+        Iterator<MinaraiChatEvent> it = range.descendingMap().values().iterator();
+
+        while(it.hasNext() && result.size() < request.limit)
+            result.add(it.next());
+
+        Collections.reverse(result);
+
+        return result;
+    }
+}
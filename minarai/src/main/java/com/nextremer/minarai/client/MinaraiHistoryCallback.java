@@ -0,0 +1,22 @@
+package com.nextremer.minarai.client;
+
+import android.support.annotation.NonNull;
+
+import java.util.List;
+
+/**
+ * Defines a callback interface of {@link MinaraiHistory}.
+ *
+ * @author nextremer.com
+ */
+public interface MinaraiHistoryCallback {
+
+    /**
+     * Called when log entries are loaded.
+     * Called on the calling thread when served from the local index, otherwise on the Socket.IO thread.
+     *
+     * @param entries Log entries in chronological order. May be fewer than limit if request to server failed.
+     * @param hasMore Older entries may exist or not.
+     */
+    void onLoaded(@NonNull List<MinaraiChatEvent> entries, boolean hasMore);
+}
@@ -0,0 +1,116 @@
+package com.nextremer.minarai.client;
+
+/**
+ * Snapshot of image cache statistics.
+ *
+ * @author nextremer.com
+ */
+public class MinaraiImageCacheStats {
+
+    private final long memoryHitCount;      // Memory cache hit count.
+    private final long diskHitCount;        // Disk cache hit count.
+    private final long missCount;           // Miss count.
+    private final long memoryEvictionCount; // Memory cache eviction count.
+    private final long diskEvictionCount;   // Disk cache eviction count.
+    private final long memorySize;          // Current memory cache size in bytes.
+    private final long diskSize;            // Current disk cache size in bytes.
+
+    /**
+     * Constructor.
+     *
+     * @param memoryHitCount      Memory cache hit count.
+     * @param diskHitCount        Disk cache hit count.
+     * @param missCount           Miss count.
+     * @param memoryEvictionCount Memory cache eviction count.
+     * @param diskEvictionCount   Disk cache eviction count.
+     * @param memorySize          Current memory cache size in bytes.
+     * @param diskSize            Current disk cache size in bytes.
+     */
+    MinaraiImageCacheStats(long memoryHitCount,
+                           long diskHitCount,
+                           long missCount,
+                           long memoryEvictionCount,
+                           long diskEvictionCount,
+                           long memorySize,
+                           long diskSize) {
+        this.memoryHitCount = memoryHitCount;
+        this.diskHitCount = diskHitCount;
+        this.missCount = missCount;
+        this.memoryEvictionCount = memoryEvictionCount;
+        this.diskEvictionCount = diskEvictionCount;
+        this.memorySize = memorySize;
+        this.diskSize = diskSize;
+    }
+
+    /**
+     * Gets memory cache hit count.
+     */
+    public long getMemoryHitCount() {
+        return memoryHitCount;
+    }
+
+    /**
+     * Gets disk cache hit count.
+     */
+    public long getDiskHitCount() {
+        return diskHitCount;
+    }
+
+    /**
+     * Gets total hit count.
+     */
+    public long getHitCount() {
+        return memoryHitCount + diskHitCount;
+    }
+
+    /**
+     * Gets miss count.
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Gets memory cache eviction count.
+     */
+    public long getMemoryEvictionCount() {
+        return memoryEvictionCount;
+    }
+
+    /**
+     * Gets disk cache eviction count.
+     */
+    public long getDiskEvictionCount() {
+        return diskEvictionCount;
+    }
+
+    /**
+     * Gets current memory cache size in bytes.
+     */
+    public long getMemorySize() {
+        return memorySize;
+    }
+
+    /**
+     * Gets current disk cache size in bytes.
+     */
+    public long getDiskSize() {
+        return diskSize;
+    }
+
+    /**
+     * @see Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "MinaraiImageCacheStats{"
+                + "memoryHitCount=" + memoryHitCount
+                + ", diskHitCount=" + diskHitCount
+                + ", missCount=" + missCount
+                + ", memoryEvictionCount=" + memoryEvictionCount
+                + ", diskEvictionCount=" + diskEvictionCount
+                + ", memorySize=" + memorySize
+                + ", diskSize=" + diskSize
+                + "}";
+    }
+}
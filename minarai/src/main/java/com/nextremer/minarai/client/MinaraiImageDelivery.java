@@ -0,0 +1,12 @@
+package com.nextremer.minarai.client;
+
+/**
+ * Defines how images of SYNC and MESSAGE events are delivered as "url" of the message.
+ *
+ * @author nextremer.com
+ */
+public enum MinaraiImageDelivery {
+
+    DATA_URL,   // Image is held in memory and delivered as "data:" URL.
+    FILE        // Image is streamed into image disk cache and delivered as "file://" URL. Requires image cache directory.
+}
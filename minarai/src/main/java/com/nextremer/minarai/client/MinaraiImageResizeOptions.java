@@ -0,0 +1,100 @@
+package com.nextremer.minarai.client;
+
+import android.graphics.Bitmap;
+
+/**
+ * Options to downscale and recompress images before upload.
+ *
+ * @author nextremer.com
+ */
+public class MinaraiImageResizeOptions {
+
+    private static final int DEFAULT_MAX_DIMENSION = 1280;                                  // Default maximum width and height.
+    private static final int DEFAULT_QUALITY = 85;                                          // Default compression quality.
+    private static final Bitmap.CompressFormat DEFAULT_FORMAT = Bitmap.CompressFormat.JPEG; // Default format.
+
+    private int maxDimension;               // Maximum width and height in pixels.
+    private int quality;                    // Compression quality.
+    private Bitmap.CompressFormat format;   // Format.
+
+    /**
+     * Constructor.
+     */
+    public MinaraiImageResizeOptions() {
+    }
+
+    /**
+     * Gets maximum width and height in pixels.
+     */
+    public int getMaxDimension() {
+        return maxDimension;
+    }
+
+    /**
+     * Gets maximum width and height in pixels. Return default value if it is not set.
+     */
+    int getMaxDimensionOrDefault() {
+        return (maxDimension > 0) ? maxDimension : DEFAULT_MAX_DIMENSION;
+    }
+
+    /**
+     * Puts maximum width and height in pixels. Larger images are downscaled keeping aspect ratio.
+     *
+     * @param maxDimension Maximum width and height.
+     * @return this
+     */
+    public MinaraiImageResizeOptions putMaxDimension(int maxDimension) {
+        this.maxDimension = maxDimension;
+        return this;
+    }
+
+    /**
+     * Gets compression quality.
+     */
+    public int getQuality() {
+        return quality;
+    }
+
+    /**
+     * Gets compression quality. Return default value if it is not set.
+     */
+    int getQualityOrDefault() {
+        return (quality > 0) ? Math.min(quality, 100) : DEFAULT_QUALITY;
+    }
+
+    /**
+     * Puts compression quality.
+     *
+     * @param quality Quality from 1 to 100. Ignored by lossless formats.
+     * @return this
+     */
+    public MinaraiImageResizeOptions putQuality(int quality) {
+        this.quality = quality;
+        return this;
+    }
+
+    /**
+     * Gets format.
+     */
+    public Bitmap.CompressFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Gets format. Return default value if it is not set.
+     */
+    Bitmap.CompressFormat getFormatOrDefault() {
+        return (format != null) ? format : DEFAULT_FORMAT;
+    }
+
+    /**
+     * Puts format. Extension of uploaded file name is replaced to match it.
+     *
+     * @param format Format.
+     * @return this
+     */
+    public MinaraiImageResizeOptions putFormat(Bitmap.CompressFormat format) {
+        this.format = format;
+        return this;
+    }
+}
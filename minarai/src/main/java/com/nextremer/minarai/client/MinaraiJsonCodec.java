@@ -0,0 +1,12 @@
+package com.nextremer.minarai.client;
+
+/**
+ * Defines how payloads of Socket.IO events are encoded and decoded.
+ *
+ * @author nextremer.com
+ */
+public enum MinaraiJsonCodec {
+
+    ORG_JSON,   // Payloads are built as org.json trees and serialized by Socket.IO.
+    STREAMING   // Payloads are written straight into a reusable buffer, and inbound payloads are parsed on first access.
+}
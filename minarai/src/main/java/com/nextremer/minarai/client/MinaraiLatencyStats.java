@@ -0,0 +1,96 @@
+package com.nextremer.minarai.client;
+
+/**
+ * Snapshot of a latency histogram. Values are in microseconds.
+ *
+ * @author nextremer.com
+ */
+public class MinaraiLatencyStats {
+
+    private final long[] counts;    // Counts by bucket.
+    private final long count;       // Number of values.
+    private final long sum;         // Sum of values.
+    private final long max;         // Maximum value.
+
+    /**
+     * Constructor.
+     *
+     * @param counts Counts by bucket.
+     * @param count  Number of values.
+     * @param sum    Sum of values.
+     * @param max    Maximum value.
+     */
+    MinaraiLatencyStats(long[] counts, long count, long sum, long max) {
+        this.counts = counts;
+        this.count = count;
+        this.sum = sum;
+        this.max = max;
+    }
+
+    /**
+     * Gets number of recorded values.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Gets mean in microseconds. 0 if no value.
+     */
+    public double getMeanMicros() {
+        return (count > 0L) ? (double)sum / count : 0.0;
+    }
+
+    /**
+     * Gets maximum in microseconds. 0 if no value.
+     */
+    public long getMaxMicros() {
+        return max;
+    }
+
+    /**
+     * Gets value at percentile in microseconds, e.g. 99.0 for p99. 0 if no value.
+     *
+     * @param percentile Percentile from 0 to 100.
+     * @return Value. Not larger than maximum.
+     */
+    public long getPercentileMicros(double percentile) {
+
+        if(percentile < 0.0 || percentile > 100.0)
+            throw new IllegalArgumentException("percentile must be between 0 and 100.");
+
+        long total = 0L;
+
+        for(long c : counts)
+            total += c;
+
+        if(total == 0L)
+            return 0L;
+
+        long rank = Math.max(1L, (long)Math.ceil(total * percentile / 100.0));
+        long seen = 0L;
+
+        for(int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+
+            if(seen >= rank)
+                return Math.min(LatencyHistogram.highestValueOf(i), max);
+        }
+
+        return max;
+    }
+
+    /**
+     * @see Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "MinaraiLatencyStats{"
+                + "count=" + count
+                + ", meanMicros=" + (long)getMeanMicros()
+                + ", p50Micros=" + getPercentileMicros(50.0)
+                + ", p99Micros=" + getPercentileMicros(99.0)
+                + ", maxMicros=" + max
+                + "}";
+    }
+}
@@ -0,0 +1,32 @@
+package com.nextremer.minarai.client;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Defines a logger interface of the client.
+ * Levels are the same as {@link android.util.Log}, e.g. {@link android.util.Log#DEBUG}.
+ * Messages are built only when {@link #isLoggable(int)} returns true,
+ * and application secrets in payloads are redacted before passed to the logger.
+ *
+ * @author nextremer.com
+ */
+public interface MinaraiLogger {
+
+    /**
+     * Checks whether messages of the level are logged.
+     *
+     * @param level Level.
+     * @return Logged or not.
+     */
+    boolean isLoggable(int level);
+
+    /**
+     * Log message.
+     *
+     * @param level Level.
+     * @param tag   Tag.
+     * @param msg   Message.
+     * @param tr    Exception. May be null.
+     */
+    void log(int level, @NonNull String tag, @NonNull String msg, Throwable tr);
+}
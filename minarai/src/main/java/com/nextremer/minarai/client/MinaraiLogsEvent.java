@@ -0,0 +1,72 @@
+package com.nextremer.minarai.client;
+
+import android.support.annotation.NonNull;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Event data of LOGS.
+ * Each entry of "body.logs" is decoded as {@link MinaraiChatEvent} of LOGS event on first access.
+ *
+ * @author nextremer.com
+ */
+public class MinaraiLogsEvent extends MinaraiEventData {
+
+    private volatile List<MinaraiChatEvent> logs;   // Log entries. Decoded on first access.
+
+    /**
+     * Constructor.
+     *
+     * @param event   Event.
+     * @param json    Raw JSON. If null, parsed from encoded JSON.
+     * @param encoded Encoded JSON.
+     */
+    MinaraiLogsEvent(@NonNull MinaraiEvent event, JSONObject json, String encoded) {
+        super(event, json, encoded);
+    }
+
+    /**
+     * Gets log entries. Empty if not exists.
+     */
+    public List<MinaraiChatEvent> getLogs() {
+
+        List<MinaraiChatEvent> result = logs;
+
+        if(result == null) {
+            result = decodeLogs();
+            logs = result;
+        }
+
+        return result;
+    }
+
+    /**
+     * Decode log entries from body.
+     *
+     * @return Log entries.
+     */
+    private List<MinaraiChatEvent> decodeLogs() {
+
+        JSONObject body = getBody();
+        JSONArray array = (body != null) ? body.optJSONArray("logs") : null;
+
+        if(array == null)
+            return Collections.emptyList();
+
+        List<MinaraiChatEvent> list = new ArrayList<>(array.length());
+
+        for(int i = 0; i < array.length(); i++) {
+            JSONObject entry = array.optJSONObject(i);
+
+            if(entry != null)
+                list.add(new MinaraiChatEvent(getEvent(), entry, null));
+        }
+
+        return Collections.unmodifiableList(list);
+    }
+}
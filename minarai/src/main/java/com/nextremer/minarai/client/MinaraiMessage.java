@@ -0,0 +1,105 @@
+package com.nextremer.minarai.client;
+
+import android.support.annotation.NonNull;
+
+import org.json.JSONObject;
+
+/**
+ * Message of {@link MinaraiChatEvent}.
+ * A message is either a plain text or an object, e.g. an image message.
+ *
+ * @author nextremer.com
+ */
+public class MinaraiMessage {
+
+    private final String type;      // Type of body.
+    private final Object value;     // String or JSONObject.
+
+    /**
+     * Constructor.
+     *
+     * @param type  Type of body.
+     * @param value String or JSONObject.
+     */
+    MinaraiMessage(String type, @NonNull Object value) {
+        this.type = type;
+        this.value = value;
+    }
+
+    /**
+     * Gets type, e.g. "image". Type of the message object if exists, otherwise type of body.
+     */
+    public String getType() {
+
+        if(value instanceof JSONObject) {
+            String own = MinaraiEventData.optString((JSONObject)value, "type");
+
+            if(own != null)
+                return own;
+        }
+
+        return type;
+    }
+
+    /**
+     * Gets text. null if message is an object.
+     */
+    public String getText() {
+        return (value instanceof String) ? (String)value : null;
+    }
+
+    /**
+     * Gets message object. null if message is a plain text.
+     */
+    public JSONObject getJson() {
+        return (value instanceof JSONObject) ? (JSONObject)value : null;
+    }
+
+    /**
+     * Gets original image URL. null if not an image.
+     */
+    public String getImageUrl() {
+        return get("imageUrl");
+    }
+
+    /**
+     * Gets image type. null if not an image.
+     */
+    public String getImageType() {
+        return get("imageType");
+    }
+
+    /**
+     * Gets image URL resolved by the SDK, e.g. "data:" or "file://" URL. null if not an image or failed to fetch.
+     */
+    public String getUrl() {
+        return get("url");
+    }
+
+    /**
+     * Gets extra. null if not exists.
+     */
+    public JSONObject getExtra() {
+        JSONObject json = getJson();
+        return (json != null) ? json.optJSONObject("extra") : null;
+    }
+
+    /**
+     * Gets string value of message object.
+     *
+     * @param key Key.
+     * @return Value. null if not exists.
+     */
+    public String get(@NonNull String key) {
+        JSONObject json = getJson();
+        return (json != null) ? MinaraiEventData.optString(json, key) : null;
+    }
+
+    /**
+     * @see Object#toString()
+     */
+    @Override
+    public String toString() {
+        return String.valueOf(value);
+    }
+}
@@ -0,0 +1,17 @@
+package com.nextremer.minarai.client;
+
+/**
+ * Defines latency metrics recorded by client.
+ * Replies do not name the message they answer, so SEND_TO_REPLY is one sample per answered run of messages,
+ * not per message. Messages sent while an earlier one is unanswered are not timed.
+ *
+ * @author nextremer.com
+ */
+public enum MinaraiMetric {
+
+    SEND_TO_REPLY,      // From send of the earliest unanswered message to the next MESSAGE event.
+    CONNECT_TO_JOIN,    // From connect to JOINED event.
+    IMAGE_FETCH,        // Download of an image not in cache.
+    IMAGE_UPLOAD,       // From start of HTTP call to response of a successful upload.
+    LISTENER_DISPATCH   // Call of one listener.
+}
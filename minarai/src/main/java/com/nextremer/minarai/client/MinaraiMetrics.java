@@ -0,0 +1,57 @@
+package com.nextremer.minarai.client;
+
+import android.support.annotation.NonNull;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Snapshot of client metrics.
+ *
+ * @author nextremer.com
+ */
+public class MinaraiMetrics {
+
+    private final EnumMap<MinaraiMetric, MinaraiLatencyStats> latencies;    // Latencies by metric.
+    private final Map<String, MinaraiTrafficStats> traffic;                 // Traffic by Socket.IO event.
+
+    /**
+     * Constructor.
+     *
+     * @param latencies Latencies by metric.
+     * @param traffic   Traffic by Socket.IO event.
+     */
+    MinaraiMetrics(EnumMap<MinaraiMetric, MinaraiLatencyStats> latencies, Map<String, MinaraiTrafficStats> traffic) {
+        this.latencies = latencies;
+        this.traffic = Collections.unmodifiableMap(traffic);
+    }
+
+    /**
+     * Gets latency of metric.
+     *
+     * @param metric Metric.
+     * @return Latency.
+     */
+    public MinaraiLatencyStats getLatency(@NonNull MinaraiMetric metric) {
+        return latencies.get(metric);
+    }
+
+    /**
+     * Gets traffic by Socket.IO event, or packet type like "connect" for non event packets.
+     */
+    public Map<String, MinaraiTrafficStats> getTraffic() {
+        return traffic;
+    }
+
+    /**
+     * @see Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "MinaraiMetrics{"
+                + "latencies=" + latencies
+                + ", traffic=" + traffic
+                + "}";
+    }
+}
@@ -0,0 +1,27 @@
+package com.nextremer.minarai.client;
+
+/**
+ * Listener of recorded metrics, to export them to a monitoring system.
+ * Called on the thread which recorded the value, e.g. the Socket.IO thread, so it must return quickly.
+ *
+ * @author nextremer.com
+ */
+public interface MinaraiMetricsListener {
+
+    /**
+     * Called when latency is recorded.
+     *
+     * @param metric Metric.
+     * @param micros Latency in microseconds.
+     */
+    void onLatency(MinaraiMetric metric, long micros);
+
+    /**
+     * Called when Socket.IO packet is sent or received.
+     *
+     * @param event   Socket.IO event, or packet type like "connect" for non event packets.
+     * @param inbound Received or sent.
+     * @param bytes   Size of packet.
+     */
+    void onTraffic(String event, boolean inbound, long bytes);
+}
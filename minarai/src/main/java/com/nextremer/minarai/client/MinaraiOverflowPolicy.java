@@ -0,0 +1,13 @@
+package com.nextremer.minarai.client;
+
+/**
+ * Defines what a queued {@link MinaraiDispatcher} does when its queue is full.
+ *
+ * @author nextremer.com
+ */
+public enum MinaraiOverflowPolicy {
+
+    DROP_OLDEST,    // Oldest queued event is dropped to make room.
+    BLOCK,          // Notifying thread waits until room is made. Slow listeners also slow down the socket.
+    COALESCE        // Queued event of the same listener and event is replaced by the new data. If none, oldest is dropped.
+}
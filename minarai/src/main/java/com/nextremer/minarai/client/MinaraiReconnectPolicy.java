@@ -0,0 +1,108 @@
+package com.nextremer.minarai.client;
+
+import java.util.Random;
+
+/**
+ * Reconnection policy.
+ * Delay before each attempt is chosen at random between 0 and min(maxDelay, baseDelay * 2^attempt) (full jitter),
+ * so that many clients dropped at once do not reconnect at the same moment.
+ *
+ * @author nextremer.com
+ */
+public class MinaraiReconnectPolicy {
+
+    private static final long DEFAULT_BASE_DELAY_MILLIS = 500L;     // Default base delay.
+    private static final long DEFAULT_MAX_DELAY_MILLIS = 30000L;    // Default maximum delay.
+
+    private long baseDelayMillis;   // Base delay in milliseconds.
+    private long maxDelayMillis;    // Maximum delay in milliseconds.
+    private int maxAttempts;        // Maximum number of attempts. 0 means unlimited.
+
+    /**
+     * Gets base delay in milliseconds.
+     */
+    public long getBaseDelayMillis() {
+        return baseDelayMillis;
+    }
+
+    /**
+     * Gets base delay in milliseconds. Return default value if it is not set.
+     */
+    long getBaseDelayMillisOrDefault() {
+        return (baseDelayMillis > 0L) ? baseDelayMillis : DEFAULT_BASE_DELAY_MILLIS;
+    }
+
+    /**
+     * Puts base delay in milliseconds. Upper bound of delay doubles from this value on each attempt.
+     *
+     * @param millis Delay.
+     * @return this
+     */
+    public MinaraiReconnectPolicy putBaseDelayMillis(long millis) {
+        baseDelayMillis = millis;
+        return this;
+    }
+
+    /**
+     * Gets maximum delay in milliseconds.
+     */
+    public long getMaxDelayMillis() {
+        return maxDelayMillis;
+    }
+
+    /**
+     * Gets maximum delay in milliseconds. Return default value if it is not set.
+     */
+    long getMaxDelayMillisOrDefault() {
+        return (maxDelayMillis > 0L) ? maxDelayMillis : DEFAULT_MAX_DELAY_MILLIS;
+    }
+
+    /**
+     * Puts maximum delay in milliseconds.
+     *
+     * @param millis Delay.
+     * @return this
+     */
+    public MinaraiReconnectPolicy putMaxDelayMillis(long millis) {
+        maxDelayMillis = millis;
+        return this;
+    }
+
+    /**
+     * Gets maximum number of attempts.
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Puts maximum number of attempts after each disconnect. 0 means unlimited, which is the default.
+     *
+     * @param attempts Number of attempts.
+     * @return this
+     */
+    public MinaraiReconnectPolicy putMaxAttempts(int attempts) {
+        maxAttempts = attempts;
+        return this;
+    }
+
+    /**
+     * Gets delay before attempt.
+     *
+     * @param attempt Number of attempts made since disconnect.
+     * @param random  Random.
+     * @return Delay in milliseconds.
+     */
+    long getDelayMillis(int attempt, Random random) {
+
+        long max = getMaxDelayMillisOrDefault();
+        long ceiling = getBaseDelayMillisOrDefault();
+
+        for(int i = 0; i < attempt && ceiling < max; i++)
+            ceiling *= 2L;
+
+        ceiling = Math.min(ceiling, max);
+
+        return (long)(random.nextDouble() * (ceiling + 1L));
+    }
+}
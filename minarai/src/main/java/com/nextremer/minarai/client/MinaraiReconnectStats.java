@@ -0,0 +1,81 @@
+package com.nextremer.minarai.client;
+
+/**
+ * Snapshot of reconnection statistics.
+ *
+ * @author nextremer.com
+ */
+public class MinaraiReconnectStats {
+
+    private final long disconnectCount;     // Number of unexpected disconnects.
+    private final long attemptCount;        // Number of reconnection attempts.
+    private final long failureCount;        // Number of failed attempts.
+    private final long reconnectCount;      // Number of successful reconnections.
+    private final long lastLatencyMillis;   // Time from disconnect to reconnected of the last reconnection. -1 if none.
+
+    /**
+     * Constructor.
+     *
+     * @param disconnectCount   Number of unexpected disconnects.
+     * @param attemptCount      Number of reconnection attempts.
+     * @param failureCount      Number of failed attempts.
+     * @param reconnectCount    Number of successful reconnections.
+     * @param lastLatencyMillis Time from disconnect to reconnected of the last reconnection. -1 if none.
+     */
+    MinaraiReconnectStats(long disconnectCount, long attemptCount, long failureCount, long reconnectCount, long lastLatencyMillis) {
+        this.disconnectCount = disconnectCount;
+        this.attemptCount = attemptCount;
+        this.failureCount = failureCount;
+        this.reconnectCount = reconnectCount;
+        this.lastLatencyMillis = lastLatencyMillis;
+    }
+
+    /**
+     * Gets number of unexpected disconnects.
+     */
+    public long getDisconnectCount() {
+        return disconnectCount;
+    }
+
+    /**
+     * Gets number of reconnection attempts.
+     */
+    public long getAttemptCount() {
+        return attemptCount;
+    }
+
+    /**
+     * Gets number of failed attempts.
+     */
+    public long getFailureCount() {
+        return failureCount;
+    }
+
+    /**
+     * Gets number of successful reconnections.
+     */
+    public long getReconnectCount() {
+        return reconnectCount;
+    }
+
+    /**
+     * Gets time from disconnect to reconnected of the last reconnection in milliseconds. -1 if none.
+     */
+    public long getLastLatencyMillis() {
+        return lastLatencyMillis;
+    }
+
+    /**
+     * @see Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "MinaraiReconnectStats{"
+                + "disconnectCount=" + disconnectCount
+                + ", attemptCount=" + attemptCount
+                + ", failureCount=" + failureCount
+                + ", reconnectCount=" + reconnectCount
+                + ", lastLatencyMillis=" + lastLatencyMillis
+                + "}";
+    }
+}
@@ -0,0 +1,27 @@
+package com.nextremer.minarai.client;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Defines a callback interface of {@link MinaraiReplyTask}.
+ * Methods are called on the thread delivering MESSAGE events, or on a timer thread for timeouts.
+ *
+ * @author nextremer.com
+ */
+public interface MinaraiReplyCallback {
+
+    /**
+     * Called when reply is received. Called before listeners of MESSAGE are notified.
+     *
+     * @param reply         Reply.
+     * @param latencyMicros Latency from send to reply in microseconds.
+     */
+    void onReply(@NonNull MinaraiChatEvent reply, long latencyMicros);
+
+    /**
+     * Called when no reply in time, or message could not be sent. Not called when canceled.
+     *
+     * @param ex Cause. {@link java.util.concurrent.TimeoutException} if timed out.
+     */
+    void onFailure(@NonNull Exception ex);
+}
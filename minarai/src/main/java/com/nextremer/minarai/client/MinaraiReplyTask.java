@@ -0,0 +1,185 @@
+package com.nextremer.minarai.client;
+
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Handle of a message waiting for the reply of bot.
+ * Completed by the MESSAGE event correlated to the message, or failed with {@link TimeoutException} when no reply in time.
+ *
+ * @author nextremer.com
+ */
+public class MinaraiReplyTask implements Future<MinaraiChatEvent> {
+
+    private final CountDownLatch latch = new CountDownLatch(1);    // Completion latch.
+
+    final String id;                        // Payload id of the message.
+    final long sentNanos;                   // Time when sent.
+    final long deadlineNanos;               // Time to fail by timeout.
+    final MinaraiReplyCallback callback;    // Callback. May be null.
+
+    private ReplyTable table;           // Table of waiting tasks. null until registered. Guarded by this.
+    private boolean canceled;           // Canceled flag. Guarded by this.
+    private boolean done;               // Done flag. Guarded by this.
+    private MinaraiChatEvent reply;     // Result. Guarded by this.
+    private Exception exception;        // Failure. Guarded by this.
+    private long latencyMicros = -1L;   // Latency from send to reply. Guarded by this.
+
+    /**
+     * Constructor.
+     *
+     * @param id            Payload id of the message.
+     * @param timeoutMillis Timeout in milliseconds.
+     * @param callback      Callback. May be null.
+     */
+    MinaraiReplyTask(@NonNull String id, long timeoutMillis, MinaraiReplyCallback callback) {
+        this.id = id;
+        this.sentNanos = System.nanoTime();
+        this.deadlineNanos = sentNanos + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        this.callback = callback;
+    }
+
+    /**
+     * Gets payload id of the message.
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Gets latency from send to reply in microseconds. -1 if not replied.
+     */
+    public synchronized long getLatencyMicros() {
+        return latencyMicros;
+    }
+
+    /**
+     * Sets table to remove from when canceled.
+     *
+     * @param table Table of waiting tasks.
+     */
+    synchronized void setTable(@NonNull ReplyTable table) {
+        this.table = table;
+    }
+
+    /**
+     * Completes task with reply.
+     *
+     * @param reply      Reply.
+     * @param replyNanos Time when replied.
+     * @return Completed or not. false if already done.
+     */
+    synchronized boolean complete(@NonNull MinaraiChatEvent reply, long replyNanos) {
+
+        if(done)
+            return false;
+
+        this.reply = reply;
+        latencyMicros = TimeUnit.NANOSECONDS.toMicros(replyNanos - sentNanos);
+        done = true;
+        latch.countDown();
+
+        return true;
+    }
+
+    /**
+     * Completes task with failure.
+     *
+     * @param ex Cause.
+     * @return Completed or not. false if already done.
+     */
+    synchronized boolean fail(@NonNull Exception ex) {
+
+        if(done)
+            return false;
+
+        exception = ex;
+        done = true;
+        latch.countDown();
+
+        return true;
+    }
+
+    /**
+     * Stops waiting for the reply. The message is not recalled.
+     *
+     * @see Future#cancel(boolean)
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+
+        ReplyTable table;
+
+        synchronized(this) {
+            if(done)
+                return false;
+
+            canceled = true;
+            done = true;
+            table = this.table;
+            latch.countDown();
+        }
+
+        if(table != null)
+            table.remove(this);
+
+        return true;
+    }
+
+    /**
+     * @see Future#isCancelled()
+     */
+    @Override
+    public synchronized boolean isCancelled() {
+        return canceled;
+    }
+
+    /**
+     * @see Future#isDone()
+     */
+    @Override
+    public synchronized boolean isDone() {
+        return done;
+    }
+
+    /**
+     * @see Future#get()
+     */
+    @Override
+    public MinaraiChatEvent get() throws InterruptedException, ExecutionException {
+        latch.await();
+        return result();
+    }
+
+    /**
+     * @see Future#get(long, TimeUnit)
+     */
+    @Override
+    public MinaraiChatEvent get(long timeout, @NonNull TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+
+        if(!latch.await(timeout, unit))
+            throw new TimeoutException();
+
+        return result();
+    }
+
+    /**
+     * Gets result of completed task.
+     */
+    private synchronized MinaraiChatEvent result() throws ExecutionException {
+
+        if(canceled)
+            throw new CancellationException();
+
+        if(exception != null)
+            throw new ExecutionException(exception);
+
+        return reply;
+    }
+}
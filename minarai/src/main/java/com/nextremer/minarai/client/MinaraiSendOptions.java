@@ -15,6 +15,7 @@ public class MinaraiSendOptions {
     private String lang;            // Language.
     private JSONObject position;    // position.
     private JSONObject extra;       // Extra data.
+    private MinaraiImageResizeOptions imageResizeOptions;   // Image resize options for upload.
 
     /**
      * Constructor.
@@ -99,4 +100,22 @@ public class MinaraiSendOptions {
     JSONObject getExtraOrDefault() {
         return (extra != null) ? extra : DEFAULT_EXTRA;
     }
+
+    /**
+     * Gets image resize options for upload.
+     */
+    public MinaraiImageResizeOptions getImageResizeOptions() {
+        return imageResizeOptions;
+    }
+
+    /**
+     * Puts image resize options for upload. Takes priority over client options.
+     *
+     * @param options Resize options.
+     * @return this
+     */
+    public MinaraiSendOptions putImageResizeOptions(MinaraiImageResizeOptions options) {
+        imageResizeOptions = options;
+        return this;
+    }
 }
@@ -0,0 +1,71 @@
+package com.nextremer.minarai.client;
+
+/**
+ * Snapshot of traffic of one Socket.IO event.
+ * Sizes are characters of text frames plus bytes of binary attachments, as encoded by Socket.IO.
+ *
+ * @author nextremer.com
+ */
+public class MinaraiTrafficStats {
+
+    private final long packetsIn;   // Number of received packets.
+    private final long bytesIn;     // Size of received packets.
+    private final long packetsOut;  // Number of sent packets.
+    private final long bytesOut;    // Size of sent packets.
+
+    /**
+     * Constructor.
+     *
+     * @param packetsIn  Number of received packets.
+     * @param bytesIn    Size of received packets.
+     * @param packetsOut Number of sent packets.
+     * @param bytesOut   Size of sent packets.
+     */
+    MinaraiTrafficStats(long packetsIn, long bytesIn, long packetsOut, long bytesOut) {
+        this.packetsIn = packetsIn;
+        this.bytesIn = bytesIn;
+        this.packetsOut = packetsOut;
+        this.bytesOut = bytesOut;
+    }
+
+    /**
+     * Gets number of received packets.
+     */
+    public long getPacketsIn() {
+        return packetsIn;
+    }
+
+    /**
+     * Gets size of received packets.
+     */
+    public long getBytesIn() {
+        return bytesIn;
+    }
+
+    /**
+     * Gets number of sent packets.
+     */
+    public long getPacketsOut() {
+        return packetsOut;
+    }
+
+    /**
+     * Gets size of sent packets.
+     */
+    public long getBytesOut() {
+        return bytesOut;
+    }
+
+    /**
+     * @see Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "MinaraiTrafficStats{"
+                + "packetsIn=" + packetsIn
+                + ", bytesIn=" + bytesIn
+                + ", packetsOut=" + packetsOut
+                + ", bytesOut=" + bytesOut
+                + "}";
+    }
+}
@@ -0,0 +1,147 @@
+package com.nextremer.minarai.client;
+
+import android.support.annotation.NonNull;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import io.socket.client.IO;
+import io.socket.client.Manager;
+import io.socket.client.Socket;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+
+/**
+ * Transport shared by multiple clients.
+ * Clients share one OkHttp connection pool and dispatcher for image requests and Socket.IO connections.
+ * Clients with a namespace additionally share one Socket.IO connection per server,
+ * which requires the server to serve the namespaces.
+ * Socket.IO connections run on a dispatcher of their own, because a WebSocket holds a dispatcher slot while open
+ * and the default limit of requests per host would stall the sixth client.
+ *
+ * @author nextremer.com
+ */
+public class MinaraiTransport {
+
+    /**
+     * Shared Socket.IO connection.
+     */
+    private static class Connection {
+
+        final Manager manager;                          // Socket.IO manager.
+        final Set<String> namespaces = new HashSet<>(); // Namespaces ever used on this connection.
+        int users;                                      // Number of clients using this connection.
+
+        Connection(Manager manager) {
+            this.manager = manager;
+        }
+    }
+
+    private final OkHttpClient httpClient;      // HTTP client.
+    private final OkHttpClient socketIoClient;  // HTTP client of Socket.IO sharing connection pool with HTTP client.
+
+    private final Map<String, Connection> connections = new HashMap<>();    // Shared connections by URL and path. Guarded by this.
+    private final Map<Socket, String> sharedSockets = new HashMap<>();      // Keys of connections by sockets on them. Guarded by this.
+
+    /**
+     * Constructor.
+     */
+    public MinaraiTransport() {
+        this(new OkHttpClient());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param httpClient HTTP client to share, e.g. the one of the application.
+     */
+    public MinaraiTransport(@NonNull OkHttpClient httpClient) {
+
+        if(httpClient == null)
+            throw new IllegalArgumentException("httpClient must not be null.");
+
+        this.httpClient = httpClient;
+
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(Integer.MAX_VALUE);
+        dispatcher.setMaxRequestsPerHost(Integer.MAX_VALUE);
+        socketIoClient = httpClient.newBuilder().dispatcher(dispatcher).build();
+    }
+
+    /**
+     * Gets HTTP client.
+     */
+    public OkHttpClient getHttpClient() {
+        return httpClient;
+    }
+
+    /**
+     * Gets number of shared Socket.IO connections.
+     */
+    public synchronized int getConnectionCount() {
+        return connections.size();
+    }
+
+    /**
+     * Create Socket.IO socket on this transport.
+     * With a namespace, the socket joins the shared connection of the URL and path, created with the options of the first client.
+     * If the namespace is already used on the connection, or without a namespace, the socket has a connection of its own.
+     *
+     * @param url       Root URL.
+     * @param namespace Namespace. May be null.
+     * @param opts      Socket.IO options.
+     * @return Socket.
+     * @throws URISyntaxException If URL is invalid.
+     */
+    synchronized Socket socket(@NonNull String url, String namespace, @NonNull IO.Options opts) throws URISyntaxException {
+
+        if(opts.callFactory == null)
+            opts.callFactory = socketIoClient;
+
+        if(opts.webSocketFactory == null)
+            opts.webSocketFactory = socketIoClient;
+
+        if(namespace == null)
+            return IO.socket(url, opts);
+
+        String key = url + "|" + opts.path;
+        Connection connection = connections.get(key);
+
+        if(connection == null) {
+            connection = new Connection(new Manager(new URI(url), opts));
+            connections.put(key, connection);
+        }
+
+        // Socket of a namespace is not renewed by the manager, so it is not used twice.
+        if(!connection.namespaces.add(namespace))
+            return IO.socket(url.replaceFirst("\\/$", "") + namespace, opts);
+
+        Socket socket = connection.manager.socket(namespace, opts);
+        connection.users++;
+        sharedSockets.put(socket, key);
+
+        return socket;
+    }
+
+    /**
+     * Release socket closed by client. Shared connection is forgotten when no client uses it.
+     *
+     * @param socket Socket.
+     */
+    synchronized void release(@NonNull Socket socket) {
+
+        String key = sharedSockets.remove(socket);
+
+        if(key == null)
+            return;
+
+        Connection connection = connections.get(key);
+
+        if(connection != null && --connection.users == 0)
+            connections.remove(key);
+    }
+}
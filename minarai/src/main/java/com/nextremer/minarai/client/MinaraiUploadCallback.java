@@ -0,0 +1,47 @@
+package com.nextremer.minarai.client;
+
+import android.support.annotation.NonNull;
+
+import java.io.IOException;
+import java.net.URL;
+
+/**
+ * Defines a callback interface of asynchronous image upload.
+ * Methods are called on a background thread, except {@link #onFailure(IOException)} of cancel,
+ * which is called on the thread calling {@link MinaraiUploadTask#cancel(boolean)}.
+ *
+ * @author nextremer.com
+ */
+public interface MinaraiUploadCallback {
+
+    /**
+     * Called when image is downscaled and recompressed before upload.
+     * Only called when image resize options are set.
+     *
+     * @param originalBytes  Size of original image in bytes.
+     * @param processedBytes Size of image to upload in bytes.
+     */
+    void onProcessed(long originalBytes, long processedBytes);
+
+    /**
+     * Called when a part of image is sent.
+     *
+     * @param bytesSent  Bytes sent so far.
+     * @param totalBytes Total bytes of image. -1 if unknown.
+     */
+    void onProgress(long bytesSent, long totalBytes);
+
+    /**
+     * Called when upload succeeded.
+     *
+     * @param url Image URL.
+     */
+    void onSuccess(@NonNull URL url);
+
+    /**
+     * Called when upload failed or canceled.
+     *
+     * @param ex Cause.
+     */
+    void onFailure(@NonNull IOException ex);
+}
@@ -0,0 +1,169 @@
+package com.nextremer.minarai.client;
+
+import android.support.annotation.NonNull;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import okhttp3.Call;
+
+/**
+ * Handle of asynchronous image upload.
+ *
+ * @author nextremer.com
+ */
+public class MinaraiUploadTask implements Future<URL> {
+
+    private final CountDownLatch latch = new CountDownLatch(1);    // Completion latch.
+    private final MinaraiUploadCallback callback;                   // Callback. May be null.
+
+    private Call call;              // HTTP call. Guarded by this.
+    private boolean canceled;       // Canceled flag. Guarded by this.
+    private boolean done;           // Done flag. Guarded by this.
+    private URL url;                // Result. Guarded by this.
+    private IOException exception;  // Failure. Guarded by this.
+
+    /**
+     * Constructor.
+     *
+     * @param callback Callback told of cancel. May be null.
+     */
+    MinaraiUploadTask(MinaraiUploadCallback callback) {
+        this.callback = callback;
+    }
+
+    /**
+     * Sets HTTP call. If task is already canceled, the call is canceled immediately.
+     *
+     * @param call HTTP call.
+     */
+    synchronized void setCall(@NonNull Call call) {
+
+        this.call = call;
+
+        if(canceled)
+            call.cancel();
+    }
+
+    /**
+     * Completes task with result.
+     *
+     * @param url Image URL.
+     * @return Completed or not. false if already done.
+     */
+    synchronized boolean complete(@NonNull URL url) {
+
+        if(done)
+            return false;
+
+        this.url = url;
+        done = true;
+        latch.countDown();
+
+        return true;
+    }
+
+    /**
+     * Completes task with failure.
+     *
+     * @param ex Cause.
+     * @return Completed or not. false if already done.
+     */
+    synchronized boolean fail(@NonNull IOException ex) {
+
+        if(done)
+            return false;
+
+        exception = ex;
+        done = true;
+        latch.countDown();
+
+        return true;
+    }
+
+    /**
+     * Cancels upload. {@link MinaraiUploadCallback#onFailure(IOException)} is called on the calling thread.
+     *
+     * @see Future#cancel(boolean)
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+
+        Call call;
+
+        synchronized(this) {
+            if(done)
+                return false;
+
+            canceled = true;
+            done = true;
+            call = this.call;
+            latch.countDown();
+        }
+
+        if(call != null)
+            call.cancel();
+
+        if(callback != null)
+            callback.onFailure(new IOException("Upload is canceled."));
+
+        return true;
+    }
+
+    /**
+     * @see Future#isCancelled()
+     */
+    @Override
+    public synchronized boolean isCancelled() {
+        return canceled;
+    }
+
+    /**
+     * @see Future#isDone()
+     */
+    @Override
+    public synchronized boolean isDone() {
+        return done;
+    }
+
+    /**
+     * @see Future#get()
+     */
+    @Override
+    public URL get() throws InterruptedException, ExecutionException {
+        latch.await();
+        return result();
+    }
+
+    /**
+     * @see Future#get(long, TimeUnit)
+     */
+    @Override
+    public URL get(long timeout, @NonNull TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+
+        if(!latch.await(timeout, unit))
+            throw new TimeoutException();
+
+        return result();
+    }
+
+    /**
+     * Gets result of completed task.
+     */
+    private synchronized URL result() throws ExecutionException {
+
+        if(canceled)
+            throw new CancellationException();
+
+        if(exception != null)
+            throw new ExecutionException(exception);
+
+        return url;
+    }
+}
@@ -0,0 +1,339 @@
+package com.nextremer.minarai.client;
+
+import android.support.annotation.NonNull;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Queue of outbound messages accepted while the client is not joined.
+ * Each message is appended to a file as one line of JSON, so queued messages survive process death.
+ * A message handed to Socket.IO is marked sent by another line, and the file is removed when all messages are sent.
+ * Ids of messages sent lately are kept, so messages replayed after process death while sending are suppressed.
+ *
+ * @author nextremer.com
+ */
+class OutboundQueue {
+
+    private static final String LOG_TAG = OutboundQueue.class.getName();   // Logging tag.
+
+    private static final String KEY_EVENT = "e";        // Key of Socket.IO event.
+    private static final String KEY_ID = "id";          // Key of payload id.
+    private static final String KEY_TIME = "t";         // Key of UNIX time.
+    private static final String KEY_LANG = "lang";      // Key of language.
+    private static final String KEY_BODY = "body";      // Key of body.
+    private static final String KEY_SENT = "s";         // Key of payload id of sent mark.
+
+    /**
+     * Queued message.
+     */
+    static class Record {
+
+        final String event;     // Socket.IO event.
+        final String id;        // Payload id.
+        final long unixTime;    // UNIX time when accepted.
+        final String lang;      // Language. May be null.
+        final JSONObject body;  // Body.
+
+        Record(@NonNull String event, @NonNull String id, long unixTime, String lang, @NonNull JSONObject body) {
+            this.event = event;
+            this.id = id;
+            this.unixTime = unixTime;
+            this.lang = lang;
+            this.body = body;
+        }
+
+        /**
+         * Encode to one line of JSON.
+         */
+        String encode() throws JSONException {
+
+            JSONObject json = new JSONObject();
+            json.put(KEY_EVENT, event);
+            json.put(KEY_ID, id);
+            json.put(KEY_TIME, unixTime);
+            json.putOpt(KEY_LANG, lang);
+            json.put(KEY_BODY, body);
+
+            return json.toString();
+        }
+
+        /**
+         * Decode from JSON of one line.
+         */
+        static Record decode(JSONObject json) throws JSONException {
+            return new Record(json.getString(KEY_EVENT),
+                    json.getString(KEY_ID),
+                    json.getLong(KEY_TIME),
+                    json.has(KEY_LANG) ? json.getString(KEY_LANG) : null,
+                    json.getJSONObject(KEY_BODY));
+        }
+    }
+
+    private final File file;    // File to persist. null means memory only.
+    private final int maxSize;  // Maximum number of queued messages.
+    private final Logger log;   // Logger.
+
+    private final List<Record> records = new ArrayList<>();     // Queued messages. Guarded by this.
+    private final Set<String> ids = new HashSet<>();            // Ids of queued messages, to suppress duplicates. Guarded by this.
+    private final Set<String> sentIds = new LinkedHashSet<>();  // Ids of messages sent lately, to suppress replays. Guarded by this.
+    private Writer writer;                                      // Writer of file. Guarded by this.
+    private boolean loaded;                                     // Loaded flag. Guarded by this.
+
+    /**
+     * Constructor.
+     *
+     * @param file    File to persist. If null, messages are kept only in memory.
+     * @param maxSize Maximum number of queued messages.
+     * @param log     Logger.
+     */
+    OutboundQueue(File file, int maxSize, @NonNull Logger log) {
+        this.file = file;
+        this.maxSize = maxSize;
+        this.log = log;
+    }
+
+    /**
+     * Add message.
+     *
+     * @param record Message.
+     * @return Accepted or not. Duplicates of queued messages are reported as accepted.
+     */
+    synchronized boolean add(@NonNull Record record) {
+
+        load();
+
+        // Suppress duplicates.
+        if(ids.contains(record.id) || sentIds.contains(record.id))
+            return true;
+
+        if(records.size() >= maxSize) {
+            log.w(LOG_TAG, "Outbound queue is full. Message is dropped: ", record.id);
+            return false;
+        }
+
+        String line;
+
+        try {
+            line = record.encode();
+        }
+        catch(JSONException ex) {
+            log.w(LOG_TAG, "Failed to encode message: ", ex);
+            return false;
+        }
+
+        records.add(record);
+        ids.add(record.id);
+
+        append(line);
+
+        return true;
+    }
+
+    /**
+     * Gets all messages in order. They are kept until marked sent.
+     *
+     * @return Messages.
+     */
+    synchronized List<Record> peek() {
+        load();
+        return new ArrayList<>(records);
+    }
+
+    /**
+     * Remove message handed to Socket.IO, or never sendable. The file is removed when no message is left.
+     *
+     * @param record Message.
+     */
+    synchronized void markSent(@NonNull Record record) {
+
+        if(!records.remove(record))
+            return;
+
+        ids.remove(record.id);
+        addSentId(record.id);
+
+        if(records.isEmpty()) {
+            deleteFile();
+            return;
+        }
+
+        try {
+            append(new JSONObject().put(KEY_SENT, record.id).toString());
+        }
+        catch(JSONException ex) {
+            log.w(LOG_TAG, "Failed to encode sent mark: ", ex);
+        }
+    }
+
+    /**
+     * Gets number of queued messages.
+     */
+    synchronized int size() {
+        load();
+        return records.size();
+    }
+
+    /**
+     * Release file.
+     */
+    synchronized void close() {
+        closeWriter();
+    }
+
+    /**
+     * Load messages persisted by previous process if not loaded yet.
+     */
+    private void load() {
+
+        if(loaded)
+            return;
+
+        loaded = true;
+
+        if(file == null || !file.exists())
+            return;
+
+        List<Record> decoded = new ArrayList<>();
+
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+
+            try {
+                String line;
+
+                while((line = reader.readLine()) != null) {
+
+                    if(line.isEmpty())
+                        continue;
+
+                    try {
+                        JSONObject json = new JSONObject(line);
+
+                        // Sent by previous process before it died.
+                        if(json.has(KEY_SENT))
+                            addSentId(json.getString(KEY_SENT));
+                        else
+                            decoded.add(Record.decode(json));
+                    }
+                    catch(JSONException ex) {
+                        // Partially written line by process death. Skip it.
+                        log.w(LOG_TAG, "Broken line in outbound queue file is skipped.");
+                    }
+                }
+            }
+            finally {
+                reader.close();
+            }
+        }
+        catch(IOException ex) {
+            log.w(LOG_TAG, "Failed to load outbound queue file: ", ex);
+        }
+
+        for(Record record : decoded) {
+            if(!ids.contains(record.id) && !sentIds.contains(record.id) && records.size() < maxSize) {
+                records.add(record);
+                ids.add(record.id);
+            }
+        }
+
+        if(records.isEmpty())
+            deleteFile();
+    }
+
+    /**
+     * Remember id of sent message. Oldest ids over maximum size are forgotten.
+     *
+     * @param id Payload id.
+     */
+    private void addSentId(String id) {
+
+        sentIds.add(id);
+
+        if(sentIds.size() > maxSize) {
+            Iterator<String> it = sentIds.iterator();
+            it.next();
+            it.remove();
+        }
+    }
+
+    /**
+     * Close writer and delete file.
+     */
+    private void deleteFile() {
+
+        closeWriter();
+
+        if(file != null && file.exists() && !file.delete())
+            log.w(LOG_TAG, "Failed to delete outbound queue file: ", file);
+    }
+
+    /**
+     * Append line to file.
+     *
+     * @param line Line.
+     */
+    private void append(String line) {
+
+        if(file == null)
+            return;
+
+        try {
+            if(writer == null) {
+                File dir = file.getParentFile();
+
+                if(dir != null && !dir.isDirectory() && !dir.mkdirs())
+                    throw new IOException("Can not create directory: " + dir);
+
+                OutputStream out = new FileOutputStream(file, true);
+                writer = new OutputStreamWriter(out, "UTF-8");
+
+                // Terminate partially written line left by previous process.
+                if(file.length() > 0L)
+                    writer.write('\n');
+            }
+
+            writer.write(line);
+            writer.write('\n');
+            writer.flush();
+        }
+        catch(IOException ex) {
+            log.w(LOG_TAG, "Failed to write outbound queue file: ", ex);
+            closeWriter();
+        }
+    }
+
+    /**
+     * Close writer of file.
+     */
+    private void closeWriter() {
+
+        if(writer == null)
+            return;
+
+        try {
+            writer.close();
+        }
+        catch(IOException ex) {
+            log.w(LOG_TAG, "Failed to close outbound queue file: ", ex);
+        }
+
+        writer = null;
+    }
+}
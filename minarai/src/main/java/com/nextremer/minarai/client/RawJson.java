@@ -0,0 +1,30 @@
+package com.nextremer.minarai.client;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Encoded JSON value carried in Socket.IO packets by {@link StreamingEncoder} and {@link StreamingDecoder}.
+ *
+ * @author nextremer.com
+ */
+final class RawJson {
+
+    private final String json;  // Encoded JSON.
+
+    /**
+     * Constructor.
+     *
+     * @param json Encoded JSON.
+     */
+    RawJson(@NonNull String json) {
+        this.json = json;
+    }
+
+    /**
+     * Gets encoded JSON.
+     */
+    @Override
+    public String toString() {
+        return json;
+    }
+}
@@ -0,0 +1,148 @@
+package com.nextremer.minarai.client;
+
+import android.support.annotation.NonNull;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.IdentityHashMap;
+
+/**
+ * Read-only view of JSONArray. See {@link ReadOnlyJsonObject}.
+ *
+ * @author nextremer.com
+ */
+class ReadOnlyJsonArray extends JSONArray {
+
+    private IdentityHashMap<Object, Object> views;  // Views by nested values. Guarded by this.
+
+    /**
+     * Constructor.
+     *
+     * @param source Source array.
+     */
+    ReadOnlyJsonArray(@NonNull JSONArray source) {
+
+        for(int i = 0; i < source.length(); i++) {
+            super.put(source.opt(i));
+        }
+    }
+
+    /**
+     * @see JSONArray#opt(int)
+     */
+    @Override
+    public Object opt(int index) {
+
+        Object value = super.opt(index);
+
+        if(!(value instanceof JSONObject || value instanceof JSONArray))
+            return value;
+
+        synchronized(this) {
+            views = ReadOnlyJsonObject.viewsOf(views);
+            return ReadOnlyJsonObject.viewOf(views, value);
+        }
+    }
+
+    /**
+     * @see JSONArray#get(int)
+     */
+    @Override
+    public Object get(int index) throws JSONException {
+
+        // Throws if not exists.
+        super.get(index);
+
+        return opt(index);
+    }
+
+    /**
+     * @see JSONArray#put(boolean)
+     */
+    @Override
+    public JSONArray put(boolean value) {
+        throw new UnsupportedOperationException(ReadOnlyJsonObject.readOnlyMessage());
+    }
+
+    /**
+     * @see JSONArray#put(double)
+     */
+    @Override
+    public JSONArray put(double value) {
+        throw new UnsupportedOperationException(ReadOnlyJsonObject.readOnlyMessage());
+    }
+
+    /**
+     * @see JSONArray#put(int)
+     */
+    @Override
+    public JSONArray put(int value) {
+        throw new UnsupportedOperationException(ReadOnlyJsonObject.readOnlyMessage());
+    }
+
+    /**
+     * @see JSONArray#put(long)
+     */
+    @Override
+    public JSONArray put(long value) {
+        throw new UnsupportedOperationException(ReadOnlyJsonObject.readOnlyMessage());
+    }
+
+    /**
+     * @see JSONArray#put(Object)
+     */
+    @Override
+    public JSONArray put(Object value) {
+        throw new UnsupportedOperationException(ReadOnlyJsonObject.readOnlyMessage());
+    }
+
+    /**
+     * @see JSONArray#put(int, boolean)
+     */
+    @Override
+    public JSONArray put(int index, boolean value) {
+        throw new UnsupportedOperationException(ReadOnlyJsonObject.readOnlyMessage());
+    }
+
+    /**
+     * @see JSONArray#put(int, double)
+     */
+    @Override
+    public JSONArray put(int index, double value) {
+        throw new UnsupportedOperationException(ReadOnlyJsonObject.readOnlyMessage());
+    }
+
+    /**
+     * @see JSONArray#put(int, int)
+     */
+    @Override
+    public JSONArray put(int index, int value) {
+        throw new UnsupportedOperationException(ReadOnlyJsonObject.readOnlyMessage());
+    }
+
+    /**
+     * @see JSONArray#put(int, long)
+     */
+    @Override
+    public JSONArray put(int index, long value) {
+        throw new UnsupportedOperationException(ReadOnlyJsonObject.readOnlyMessage());
+    }
+
+    /**
+     * @see JSONArray#put(int, Object)
+     */
+    @Override
+    public JSONArray put(int index, Object value) {
+        throw new UnsupportedOperationException(ReadOnlyJsonObject.readOnlyMessage());
+    }
+
+    /**
+     * @see JSONArray#remove(int)
+     */
+    @Override
+    public Object remove(int index) {
+        throw new UnsupportedOperationException(ReadOnlyJsonObject.readOnlyMessage());
+    }
+}
@@ -0,0 +1,210 @@
+package com.nextremer.minarai.client;
+
+import android.support.annotation.NonNull;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+
+/**
+ * Read-only view of JSONObject, shared by listeners of an event. Modification throws {@link UnsupportedOperationException}.
+ * Only this level is copied on construction. Nested objects and arrays are returned as views of their own,
+ * made on first access and cached, so their contents are never copied before read.
+ * Values held by this object are never replaced after construction, so it is safe to read from multiple threads,
+ * and it is serialized as the source is. The source must not be modified after construction.
+ *
+ * @author nextremer.com
+ */
+class ReadOnlyJsonObject extends JSONObject {
+
+    private static final String READ_ONLY = "Event data is read-only. Use MinaraiEventData#copyJson() to modify.";   // Message of modification.
+
+    private IdentityHashMap<Object, Object> views;  // Views by nested values. Guarded by this.
+
+    /**
+     * Constructor.
+     *
+     * @param source Source object.
+     * @throws JSONException When source object format is invalid.
+     */
+    ReadOnlyJsonObject(@NonNull JSONObject source) throws JSONException {
+
+        Iterator<?> names = source.keys();
+
+        while(names.hasNext()) {
+            String name = (String)names.next();
+            super.put(name, source.opt(name));
+        }
+    }
+
+    /**
+     * @see JSONObject#opt(String)
+     */
+    @Override
+    public Object opt(String name) {
+
+        Object value = super.opt(name);
+
+        if(!(value instanceof JSONObject || value instanceof JSONArray))
+            return value;
+
+        synchronized(this) {
+            views = viewsOf(views);
+            return viewOf(views, value);
+        }
+    }
+
+    /**
+     * @see JSONObject#get(String)
+     */
+    @Override
+    public Object get(String name) throws JSONException {
+
+        // Throws if not exists.
+        super.get(name);
+
+        return opt(name);
+    }
+
+    /**
+     * Gets names. The iterator does not support removal.
+     *
+     * @see JSONObject#keys()
+     */
+    @Override
+    public Iterator<String> keys() {
+
+        final Iterator<?> names = super.keys();
+
+        return new Iterator<String>() {
+            @Override
+            public boolean hasNext() {
+                return names.hasNext();
+            }
+
+            @Override
+            public String next() {
+                return (String)names.next();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException(READ_ONLY);
+            }
+        };
+    }
+
+    /**
+     * @see JSONObject#put(String, boolean)
+     */
+    @Override
+    public JSONObject put(String name, boolean value) {
+        throw new UnsupportedOperationException(READ_ONLY);
+    }
+
+    /**
+     * @see JSONObject#put(String, double)
+     */
+    @Override
+    public JSONObject put(String name, double value) {
+        throw new UnsupportedOperationException(READ_ONLY);
+    }
+
+    /**
+     * @see JSONObject#put(String, int)
+     */
+    @Override
+    public JSONObject put(String name, int value) {
+        throw new UnsupportedOperationException(READ_ONLY);
+    }
+
+    /**
+     * @see JSONObject#put(String, long)
+     */
+    @Override
+    public JSONObject put(String name, long value) {
+        throw new UnsupportedOperationException(READ_ONLY);
+    }
+
+    /**
+     * @see JSONObject#put(String, Object)
+     */
+    @Override
+    public JSONObject put(String name, Object value) {
+        throw new UnsupportedOperationException(READ_ONLY);
+    }
+
+    /**
+     * @see JSONObject#putOpt(String, Object)
+     */
+    @Override
+    public JSONObject putOpt(String name, Object value) {
+        throw new UnsupportedOperationException(READ_ONLY);
+    }
+
+    /**
+     * @see JSONObject#accumulate(String, Object)
+     */
+    @Override
+    public JSONObject accumulate(String name, Object value) {
+        throw new UnsupportedOperationException(READ_ONLY);
+    }
+
+    /**
+     * @see JSONObject#remove(String)
+     */
+    @Override
+    public Object remove(String name) {
+        throw new UnsupportedOperationException(READ_ONLY);
+    }
+
+    /**
+     * Gets map of views, creating it if needed. Called with lock.
+     *
+     * @param views Views by nested values. May be null.
+     * @return Views by nested values.
+     */
+    static IdentityHashMap<Object, Object> viewsOf(IdentityHashMap<Object, Object> views) {
+        return (views != null) ? views : new IdentityHashMap<Object, Object>();
+    }
+
+    /**
+     * Gets view of nested object or array, creating it on first access. Called with lock.
+     *
+     * @param views Views by nested values.
+     * @param value Nested object or array.
+     * @return View.
+     */
+    static Object viewOf(@NonNull IdentityHashMap<Object, Object> views, @NonNull Object value) {
+
+        if(value instanceof ReadOnlyJsonObject || value instanceof ReadOnlyJsonArray)
+            return value;
+
+        Object view = views.get(value);
+
+        if(view == null) {
+            try {
+                view = (value instanceof JSONObject)
+                        ? new ReadOnlyJsonObject((JSONObject)value)
+                        : new ReadOnlyJsonArray((JSONArray)value);
+            }
+            catch(JSONException ex) {
+                throw new IllegalStateException(ex);
+            }
+
+            views.put(value, view);
+        }
+
+        return view;
+    }
+
+    /**
+     * Gets read-only message for modification.
+     */
+    static String readOnlyMessage() {
+        return READ_ONLY;
+    }
+}
@@ -0,0 +1,256 @@
+package com.nextremer.minarai.client;
+
+import android.support.annotation.NonNull;
+
+import java.io.Closeable;
+import java.util.Random;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scheduler of reconnection attempts following {@link MinaraiReconnectPolicy}.
+ * Used instead of the reconnection of Socket.IO when the policy is set.
+ * One attempt is scheduled at a time, and a network-available signal replaces the waiting attempt with an immediate one,
+ * or starts attempts again after the maximum attempts are exhausted.
+ *
+ * @author nextremer.com
+ */
+class Reconnector implements Closeable {
+
+    private static final String LOG_TAG = Reconnector.class.getName();     // Logging tag.
+
+    private static final long KEEP_ALIVE_SECONDS = 30L;    // Keep alive time of idle thread.
+
+    private static final String REASON_CLIENT_DISCONNECT = "io client disconnect";     // Disconnected by client.
+    private static final String REASON_SERVER_DISCONNECT = "io server disconnect";     // Disconnected by server.
+
+    private final MinaraiReconnectPolicy policy;    // Reconnection policy.
+    private final Runnable connector;               // Action to connect.
+    private final Logger log;                       // Logger.
+    private final Random random = new Random();     // Random for jitter. Guarded by this.
+    private final ScheduledThreadPoolExecutor executor;     // Timer thread.
+
+    private boolean reconnecting;           // Reconnection in progress. Guarded by this.
+    private boolean offline;                // Disconnected unexpectedly and not connected since. Guarded by this.
+    private int attempt;                    // Number of attempts since disconnect. Guarded by this.
+    private long disconnectNanos;           // Time when disconnected. Guarded by this.
+    private ScheduledFuture<?> pending;     // Scheduled attempt. Guarded by this.
+    private boolean closed;                 // Closed flag. Guarded by this.
+
+    private long disconnectCount;       // Number of unexpected disconnects. Guarded by this.
+    private long attemptCount;          // Number of attempts. Guarded by this.
+    private long failureCount;          // Number of failed attempts. Guarded by this.
+    private long reconnectCount;        // Number of successful reconnections. Guarded by this.
+    private long lastLatencyMillis = -1L;   // Time from disconnect to reconnected of the last reconnection. Guarded by this.
+
+    private final Runnable attemptTask = new Runnable() {
+        @Override
+        public void run() {
+            attempt();
+        }
+    };
+
+    /**
+     * Constructor.
+     *
+     * @param policy    Reconnection policy.
+     * @param connector Action to connect. Called on the timer thread.
+     * @param log       Logger.
+     */
+    Reconnector(@NonNull MinaraiReconnectPolicy policy, @NonNull Runnable connector, @NonNull Logger log) {
+
+        if(policy == null)
+            throw new IllegalArgumentException("policy must not be null.");
+
+        if(connector == null)
+            throw new IllegalArgumentException("connector must not be null.");
+
+        this.policy = policy;
+        this.connector = connector;
+        this.log = log;
+
+        executor = new ScheduledThreadPoolExecutor(1, Util.newThreadFactory("minarai-reconnect"));
+        executor.setKeepAliveTime(KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+        executor.allowCoreThreadTimeOut(true);
+        executor.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Called when connected. Resets backoff.
+     */
+    synchronized void onConnected() {
+
+        if(reconnecting) {
+            reconnectCount++;
+            lastLatencyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - disconnectNanos);
+            log.i(LOG_TAG, "Reconnected in " + lastLatencyMillis + " ms after " + attempt + " attempts");
+        }
+
+        reconnecting = false;
+        offline = false;
+        attempt = 0;
+        cancelPending();
+    }
+
+    /**
+     * Called when disconnected. Schedules first attempt unless disconnected on purpose.
+     *
+     * @param reason Reason of Socket.IO. May be null.
+     */
+    synchronized void onDisconnected(String reason) {
+
+        if(closed || reconnecting)
+            return;
+
+        if(REASON_CLIENT_DISCONNECT.equals(reason) || REASON_SERVER_DISCONNECT.equals(reason)) {
+            log.d(LOG_TAG, "Not reconnecting: ", reason);
+            return;
+        }
+
+        offline = true;
+        startReconnecting();
+        schedule();
+    }
+
+    /**
+     * Called when connection attempt failed. Schedules next attempt.
+     */
+    synchronized void onConnectFailed() {
+
+        if(closed)
+            return;
+
+        // Initial connection failed.
+        if(!reconnecting) {
+            offline = true;
+            startReconnecting();
+        }
+        else {
+            // Error and timeout of the same attempt are reported both.
+            if(pending != null)
+                return;
+
+            failureCount++;
+        }
+
+        schedule();
+    }
+
+    /**
+     * Attempt immediately, e.g. when network becomes available.
+     * Starts attempts again if they were given up by the maximum attempts. Does nothing if connected or disconnected on purpose.
+     */
+    synchronized void retryNow() {
+
+        if(closed)
+            return;
+
+        if(!reconnecting) {
+            if(!offline)
+                return;
+
+            // Given up by maximum attempts. Latency is still measured from the disconnect.
+            log.i(LOG_TAG, "Reconnection restarted");
+            reconnecting = true;
+        }
+
+        cancelPending();
+        attempt = 0;
+        submit(0L);
+    }
+
+    /**
+     * Gets statistics.
+     */
+    synchronized MinaraiReconnectStats getStats() {
+        return new MinaraiReconnectStats(disconnectCount, attemptCount, failureCount, reconnectCount, lastLatencyMillis);
+    }
+
+    /**
+     * Cancel scheduled attempt and stop timer thread.
+     */
+    @Override
+    public void close() {
+
+        synchronized(this) {
+            closed = true;
+            cancelPending();
+        }
+
+        executor.shutdownNow();
+    }
+
+    /**
+     * Start reconnection.
+     */
+    private void startReconnecting() {
+        reconnecting = true;
+        attempt = 0;
+        disconnectNanos = System.nanoTime();
+        disconnectCount++;
+    }
+
+    /**
+     * Schedule next attempt by policy. Gives up if maximum attempts reached.
+     */
+    private void schedule() {
+
+        int maxAttempts = policy.getMaxAttempts();
+
+        if(maxAttempts > 0 && attempt >= maxAttempts) {
+            log.w(LOG_TAG, "Reconnection failed after " + attempt + " attempts");
+            reconnecting = false;
+            return;
+        }
+
+        long delay = policy.getDelayMillis(attempt, random);
+        log.d(LOG_TAG, "Reconnect in " + delay + " ms");
+
+        submit(delay);
+    }
+
+    /**
+     * Submit attempt to timer thread.
+     *
+     * @param delay Delay in milliseconds.
+     */
+    private void submit(long delay) {
+
+        try {
+            pending = executor.schedule(attemptTask, delay, TimeUnit.MILLISECONDS);
+        }
+        catch(RejectedExecutionException ex) {
+            // Closed.
+        }
+    }
+
+    /**
+     * Cancel scheduled attempt.
+     */
+    private void cancelPending() {
+
+        if(pending != null) {
+            pending.cancel(false);
+            pending = null;
+        }
+    }
+
+    /**
+     * Make attempt.
+     */
+    private void attempt() {
+
+        synchronized(this) {
+            if(closed || !reconnecting)
+                return;
+
+            pending = null;
+            attempt++;
+            attemptCount++;
+        }
+
+        connector.run();
+    }
+}
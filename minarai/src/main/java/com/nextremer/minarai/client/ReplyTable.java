@@ -0,0 +1,322 @@
+package com.nextremer.minarai.client;
+
+import android.support.annotation.NonNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Bounded table of messages waiting for replies.
+ * Replies do not name the message they answer, so every sent message takes a slot in send order,
+ * and a reply consumes the oldest slot, as bot replies to each message in order.
+ * Messages sent without waiting, and tasks canceled or timed out, keep their slots, so their late replies are ignored
+ * instead of completing the next waiting task. A reply while no slot is left is ignored.
+ * Deadlines are kept in a heap and one timer wakes up at the earliest one, instead of a timer per message.
+ * Entries answered before their deadline are dropped from the heap lazily.
+ *
+ * @author nextremer.com
+ */
+class ReplyTable implements Closeable {
+
+    private static final String LOG_TAG = ReplyTable.class.getName();  // Logging tag.
+
+    private static final long KEEP_ALIVE_SECONDS = 30L;    // Keep alive time of idle thread.
+    private static final int SLOTS_PER_WAITING = 4;        // Maximum number of slots per maximum number of waiting messages.
+
+    private final int maxSize;                          // Maximum number of waiting messages.
+    private final Logger log;                           // Logger.
+    private final ScheduledThreadPoolExecutor timer;    // Timer to expire.
+
+    private final Map<String, MinaraiReplyTask> waiting = new HashMap<>();    // Waiting tasks by id. Guarded by this.
+    private final ArrayDeque<Object> slots = new ArrayDeque<>();            // Unanswered messages in send order. Task or slot of message without task. Guarded by this.
+    private final PriorityQueue<MinaraiReplyTask> deadlines;    // Tasks by deadline, including answered ones. Guarded by this.
+    private ScheduledFuture<?> wakeup;                          // Scheduled expiry. Guarded by this.
+    private long wakeupNanos;                                   // Time of scheduled expiry. Guarded by this.
+    private boolean closed;                                     // Closed flag. Guarded by this.
+
+    private final Runnable expireTask = new Runnable() {
+        @Override
+        public void run() {
+            expire();
+        }
+    };
+
+    /**
+     * Constructor.
+     *
+     * @param maxSize Maximum number of waiting messages.
+     * @param log     Logger.
+     */
+    ReplyTable(int maxSize, @NonNull Logger log) {
+
+        if(maxSize < 1)
+            throw new IllegalArgumentException("maxSize must be positive.");
+
+        this.maxSize = maxSize;
+        this.log = log;
+
+        deadlines = new PriorityQueue<>(16, new Comparator<MinaraiReplyTask>() {
+            @Override
+            public int compare(MinaraiReplyTask a, MinaraiReplyTask b) {
+                long diff = a.deadlineNanos - b.deadlineNanos;
+                return (diff < 0L) ? -1 : ((diff > 0L) ? 1 : 0);
+            }
+        });
+
+        timer = new ScheduledThreadPoolExecutor(1, Util.newThreadFactory("minarai-reply"));
+        timer.setKeepAliveTime(KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+        timer.allowCoreThreadTimeOut(true);
+        timer.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Add task waiting for reply. Called before the message is sent.
+     *
+     * @param task Task.
+     * @return Added or not. false if table is full or closed.
+     */
+    boolean add(@NonNull MinaraiReplyTask task) {
+
+        MinaraiReplyTask forgotten;
+
+        synchronized(this) {
+            if(closed || waiting.size() >= maxSize)
+                return false;
+
+            forgotten = addSlot(task);
+            waiting.put(task.id, task);
+            deadlines.add(task);
+            task.setTable(this);
+
+            // Answered entries are left in the heap until their deadline. Rebuild when they dominate.
+            if(deadlines.size() > maxSize * 2) {
+                deadlines.clear();
+                deadlines.addAll(waiting.values());
+            }
+
+            if(wakeup == null || task.deadlineNanos - wakeupNanos < 0L)
+                schedule(task.deadlineNanos);
+        }
+
+        failForgotten(forgotten);
+
+        return true;
+    }
+
+    /**
+     * Add slot of message sent without waiting for reply. Called before the message is sent.
+     *
+     * @return Slot. Pass to {@link #withdraw(Object)} if the message is not sent.
+     */
+    Object addUnawaited() {
+
+        Object slot = new Object();
+        MinaraiReplyTask forgotten;
+
+        synchronized(this) {
+            if(closed)
+                return slot;
+
+            forgotten = addSlot(slot);
+        }
+
+        failForgotten(forgotten);
+
+        return slot;
+    }
+
+    /**
+     * Withdraw slot of message which is not sent.
+     *
+     * @param slot Task or slot by {@link #addUnawaited()}.
+     */
+    synchronized void withdraw(@NonNull Object slot) {
+
+        slots.removeLastOccurrence(slot);
+
+        if(slot instanceof MinaraiReplyTask)
+            remove((MinaraiReplyTask)slot);
+    }
+    /**
+     * Stop waiting task, e.g. canceled. Its slot is kept until the reply arrives.
+     *
+     * @param task Task.
+     */
+    synchronized void remove(@NonNull MinaraiReplyTask task) {
+
+        if(waiting.get(task.id) == task)
+            waiting.remove(task.id);
+    }
+
+    /**
+     * Gets number of waiting messages.
+     */
+    synchronized int size() {
+        return waiting.size();
+    }
+
+    /**
+     * Called when MESSAGE event is delivered. Consumes the oldest slot, and completes its task if waiting.
+     *
+     * @param reply Reply.
+     */
+    void onReply(@NonNull MinaraiChatEvent reply) {
+
+        long replyNanos = System.nanoTime();
+        MinaraiReplyTask task;
+
+        synchronized(this) {
+            Object slot = slots.poll();
+
+            if(!(slot instanceof MinaraiReplyTask) || waiting.get(((MinaraiReplyTask)slot).id) != slot) {
+                log.d(LOG_TAG, "Reply to message not waiting: ", reply.getId());
+                return;
+            }
+
+            task = (MinaraiReplyTask)slot;
+            waiting.remove(task.id);
+        }
+
+        if(task.complete(reply, replyNanos) && task.callback != null)
+            task.callback.onReply(reply, task.getLatencyMicros());
+    }
+
+    /**
+     * Fail all waiting tasks and stop timer.
+     */
+    @Override
+    public void close() {
+
+        List<MinaraiReplyTask> tasks;
+
+        synchronized(this) {
+            if(closed)
+                return;
+
+            closed = true;
+            tasks = new ArrayList<>(waiting.values());
+            waiting.clear();
+            slots.clear();
+            deadlines.clear();
+        }
+
+        timer.shutdownNow();
+
+        IOException cause = new IOException("Client is closed.");
+
+        for(MinaraiReplyTask task : tasks) {
+            if(task.fail(cause) && task.callback != null)
+                task.callback.onFailure(cause);
+        }
+    }
+
+    /**
+     * Add slot at the end. The oldest slot is forgotten over the limit, e.g. bot does not reply to some messages.
+     * Called with lock.
+     *
+     * @param slot Task or slot of message without task.
+     * @return Waiting task of the forgotten slot, to be failed without lock. null if none.
+     */
+    private MinaraiReplyTask addSlot(Object slot) {
+
+        MinaraiReplyTask forgotten = null;
+
+        if(slots.size() >= maxSize * SLOTS_PER_WAITING) {
+            Object oldest = slots.poll();
+            log.w(LOG_TAG, "Too many unanswered messages. Oldest one is forgotten.");
+
+            if(oldest instanceof MinaraiReplyTask && waiting.get(((MinaraiReplyTask)oldest).id) == oldest) {
+                forgotten = (MinaraiReplyTask)oldest;
+                waiting.remove(forgotten.id);
+            }
+        }
+
+        slots.add(slot);
+
+        return forgotten;
+    }
+
+    /**
+     * Fail task whose slot is forgotten.
+     *
+     * @param task Task. May be null.
+     */
+    private void failForgotten(MinaraiReplyTask task) {
+
+        if(task == null)
+            return;
+
+        IOException cause = new IOException("Too many unanswered messages.");
+
+        if(task.fail(cause) && task.callback != null)
+            task.callback.onFailure(cause);
+    }
+
+    /**
+     * Fail tasks past their deadlines, then schedule next expiry.
+     */
+    private void expire() {
+
+        List<MinaraiReplyTask> expired = new ArrayList<>();
+
+        synchronized(this) {
+            wakeup = null;
+
+            if(closed)
+                return;
+
+            long now = System.nanoTime();
+            MinaraiReplyTask head;
+
+            while((head = deadlines.peek()) != null && head.deadlineNanos - now <= 0L) {
+                deadlines.poll();
+
+                if(waiting.get(head.id) == head) {
+                    waiting.remove(head.id);
+                    expired.add(head);
+                }
+            }
+
+            if(head != null)
+                schedule(head.deadlineNanos);
+        }
+
+        for(MinaraiReplyTask task : expired) {
+            TimeoutException cause = new TimeoutException("No reply in time: " + task.id);
+
+            if(task.fail(cause) && task.callback != null)
+                task.callback.onFailure(cause);
+        }
+    }
+
+    /**
+     * Schedule expiry, replacing scheduled one. Called with lock.
+     *
+     * @param deadlineNanos Time to expire.
+     */
+    private void schedule(long deadlineNanos) {
+
+        if(wakeup != null)
+            wakeup.cancel(false);
+
+        try {
+            wakeup = timer.schedule(expireTask, Math.max(0L, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+            wakeupNanos = deadlineNanos;
+        }
+        catch(RejectedExecutionException ex) {
+            wakeup = null;
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package com.nextremer.minarai.client;
+
+import android.support.annotation.NonNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.Okio;
+import okio.Source;
+
+/**
+ * Request body which streams content from a file, an input stream or a file channel.
+ * Only a small constant buffer is held in memory while writing, and progress is reported per segment.
+ *
+ * @author nextremer.com
+ */
+abstract class StreamRequestBody extends RequestBody {
+
+    private static final long SEGMENT_SIZE = 8192L; // Bytes written between progress reports.
+
+    /**
+     * Defines a listener of writing progress.
+     */
+    interface ProgressListener {
+
+        /**
+         * Called when a part of content is written.
+         *
+         * @param bytesWritten  Bytes written so far.
+         * @param contentLength Content length. -1 if unknown.
+         */
+        void onProgress(long bytesWritten, long contentLength);
+    }
+
+    private final MediaType contentType;    // Content type.
+    private final long contentLength;       // Content length. -1 if unknown.
+    private ProgressListener listener;      // Progress listener.
+
+    /**
+     * Constructor.
+     *
+     * @param contentType   Content type.
+     * @param contentLength Content length. -1 if unknown.
+     */
+    private StreamRequestBody(MediaType contentType, long contentLength) {
+        this.contentType = contentType;
+        this.contentLength = contentLength;
+    }
+
+    /**
+     * Creates body which streams a file.
+     *
+     * @param contentType Content type.
+     * @param file        File.
+     * @return Request body.
+     */
+    static StreamRequestBody ofFile(MediaType contentType, @NonNull final File file) {
+
+        if(file == null)
+            throw new IllegalArgumentException("file must not be null.");
+
+        return new StreamRequestBody(contentType, file.length()) {
+            @Override
+            protected Source open() throws IOException {
+                return Okio.source(file);
+            }
+        };
+    }
+
+    /**
+     * Creates body which writes a byte array.
+     *
+     * @param contentType Content type.
+     * @param bytes       Bytes.
+     * @param off         Byte offset of content.
+     * @param len         Byte length of content.
+     * @return Request body.
+     */
+    static StreamRequestBody ofBytes(MediaType contentType, @NonNull final byte[] bytes, final int off, final int len) {
+
+        if(bytes == null)
+            throw new IllegalArgumentException("bytes must not be null.");
+
+        return new StreamRequestBody(contentType, len) {
+            @Override
+            protected Source open() {
+                return Okio.source(new ByteArrayInputStream(bytes, off, len));
+            }
+        };
+    }
+
+    /**
+     * Creates body which streams an input stream.
+     * The stream can be written only once and is closed after written or released.
+     *
+     * @param contentType   Content type.
+     * @param in            Input stream.
+     * @param contentLength Content length. -1 if unknown.
+     * @return Request body.
+     */
+    static StreamRequestBody ofStream(MediaType contentType, @NonNull final InputStream in, long contentLength) {
+
+        if(in == null)
+            throw new IllegalArgumentException("in must not be null.");
+
+        return new StreamRequestBody(contentType, contentLength) {
+
+            private boolean opened; // Opened flag.
+
+            @Override
+            boolean isRepeatable() {
+                return false;
+            }
+
+            @Override
+            protected synchronized Source open() throws IOException {
+
+                if(opened)
+                    throw new IOException("Input stream is already consumed.");
+
+                opened = true;
+
+                return Okio.source(in);
+            }
+
+            @Override
+            synchronized void release() {
+
+                if(opened)
+                    return;
+
+                opened = true;
+
+                try {
+                    in.close();
+                }
+                catch(IOException ignored) {
+                }
+            }
+        };
+    }
+
+    /**
+     * Creates body which streams a file channel from its current position to the end.
+     * The channel is not closed after written.
+     *
+     * @param contentType Content type.
+     * @param channel     File channel.
+     * @return Request body.
+     * @throws IOException When I/O error occurred.
+     */
+    static StreamRequestBody ofChannel(MediaType contentType, @NonNull final FileChannel channel) throws IOException {
+
+        if(channel == null)
+            throw new IllegalArgumentException("channel must not be null.");
+
+        final long position = channel.position();
+
+        return new StreamRequestBody(contentType, channel.size() - position) {
+            @Override
+            protected Source open() throws IOException {
+                channel.position(position);
+                return Okio.source(Channels.newInputStream(channel));
+            }
+
+            @Override
+            protected boolean closeSource() {
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Opens source of content.
+     *
+     * @return Source.
+     * @throws IOException When I/O error occurred.
+     */
+    protected abstract Source open() throws IOException;
+
+    /**
+     * Opens content as input stream.
+     *
+     * @return Input stream. Caller must close it.
+     * @throws IOException When I/O error occurred.
+     */
+    InputStream openStream() throws IOException {
+
+        final Source source = open();
+
+        if(closeSource())
+            return Okio.buffer(source).inputStream();
+
+        // Keep underlying source open when the stream is closed.
+        return new FilterInputStream(Okio.buffer(source).inputStream()) {
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    /**
+     * Releases content which is never written, e.g. when upload is canceled or failed before sending.
+     * Content already opened is left to its reader.
+     */
+    void release() {
+    }
+
+    /**
+     * Gets whether content can be opened more than once.
+     */
+    boolean isRepeatable() {
+        return true;
+    }
+
+    /**
+     * Gets whether source should be closed after written.
+     */
+    protected boolean closeSource() {
+        return true;
+    }
+
+    /**
+     * Sets progress listener.
+     *
+     * @param listener Listener. null to remove.
+     * @return this
+     */
+    StreamRequestBody setProgressListener(ProgressListener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    /**
+     * @see RequestBody#contentType()
+     */
+    @Override
+    public MediaType contentType() {
+        return contentType;
+    }
+
+    /**
+     * @see RequestBody#contentLength()
+     */
+    @Override
+    public long contentLength() {
+        return contentLength;
+    }
+
+    /**
+     * @see RequestBody#writeTo(BufferedSink)
+     */
+    @Override
+    public void writeTo(@NonNull BufferedSink sink) throws IOException {
+
+        Source source = open();
+
+        try {
+            long written = 0L;
+            long read;
+
+            while((read = source.read(sink.buffer(), SEGMENT_SIZE)) != -1L) {
+                sink.emitCompleteSegments();
+                written += read;
+
+                if(listener != null)
+                    listener.onProgress(written, contentLength);
+            }
+        }
+        finally {
+            if(closeSource())
+                source.close();
+        }
+    }
+}
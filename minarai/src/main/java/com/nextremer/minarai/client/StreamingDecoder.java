@@ -0,0 +1,140 @@
+package com.nextremer.minarai.client;
+
+import org.json.JSONArray;
+
+import io.socket.parser.IOParser;
+import io.socket.parser.Packet;
+import io.socket.parser.Parser;
+
+/**
+ * Socket.IO packet decoder which does not parse payloads of event packets.
+ * An event packet with one object argument is decoded into its event name and a {@link RawJson} of the argument,
+ * which is parsed later only if needed. Other packets are decoded by the default decoder.
+ * Called only on the Socket.IO event thread.
+ *
+ * @author nextremer.com
+ */
+class StreamingDecoder implements Parser.Decoder {
+
+    private final IOParser.Decoder fallback = new IOParser.Decoder();  // Decoder of other packets.
+    private Callback callback;                                          // Callback.
+
+    /**
+     * @see Parser.Decoder#add(String)
+     */
+    @Override
+    public void add(String obj) {
+
+        Packet<JSONArray> packet = decodeEvent(obj);
+
+        if(packet == null) {
+            fallback.add(obj);
+            return;
+        }
+
+        if(callback != null)
+            callback.call(packet);
+    }
+
+    /**
+     * @see Parser.Decoder#add(byte[])
+     */
+    @Override
+    public void add(byte[] obj) {
+        fallback.add(obj);
+    }
+
+    /**
+     * @see Parser.Decoder#destroy()
+     */
+    @Override
+    public void destroy() {
+        fallback.destroy();
+        callback = null;
+    }
+
+    /**
+     * @see Parser.Decoder#onDecoded(Callback)
+     */
+    @Override
+    public void onDecoded(Callback callback) {
+        this.callback = callback;
+        fallback.onDecoded(callback);
+    }
+
+    /**
+     * Decode event packet like '2/nsp,id["event",{...}]'.
+     *
+     * @param str Encoded packet.
+     * @return Packet. null if not an event packet with one object argument.
+     */
+    static Packet<JSONArray> decodeEvent(String str) {
+
+        if(str == null || str.length() < 2 || str.charAt(0) != '0' + Parser.EVENT)
+            return null;
+
+        int i = 1;
+        String nsp = "/";
+
+        // Namespace.
+        if(str.charAt(i) == '/') {
+            int comma = str.indexOf(',', i);
+
+            if(comma < 0)
+                return null;
+
+            nsp = str.substring(i, comma);
+            i = comma + 1;
+        }
+
+        // Ack id.
+        int id = -1;
+        int idStart = i;
+
+        while(i < str.length() && str.charAt(i) >= '0' && str.charAt(i) <= '9')
+            i++;
+
+        if(i > idStart) {
+            try {
+                id = Integer.parseInt(str.substring(idStart, i));
+            }
+            catch(NumberFormatException ex) {
+                return null;
+            }
+        }
+
+        // Arguments.
+        try {
+            JsonScanner scanner = new JsonScanner(str, i);
+            scanner.expect('[');
+
+            String event = scanner.readString();
+            scanner.expect(',');
+
+            if(scanner.peek() != '{')
+                return null;
+
+            int start = scanner.position();
+            scanner.skipValue();
+            int end = scanner.position();
+
+            scanner.expect(']');
+
+            if(scanner.position() != str.length())
+                return null;
+
+            JSONArray args = new JSONArray();
+            args.put(event);
+            args.put(new RawJson(str.substring(start, end).trim()));
+
+            Packet<JSONArray> packet = new Packet<>(Parser.EVENT, args);
+            packet.nsp = nsp;
+            packet.id = id;
+
+            return packet;
+        }
+        catch(IllegalStateException | IndexOutOfBoundsException ex) {
+            return null;
+        }
+    }
+}
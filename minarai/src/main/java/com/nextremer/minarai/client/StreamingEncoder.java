@@ -0,0 +1,92 @@
+package com.nextremer.minarai.client;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import io.socket.parser.IOParser;
+import io.socket.parser.Packet;
+import io.socket.parser.Parser;
+
+/**
+ * Socket.IO packet encoder which writes event packets into a reusable buffer.
+ * Arguments of {@link RawJson} are written as is, so payloads encoded by {@link JsonWriter} are not parsed or walked again.
+ * Packets with other kinds of arguments are encoded by the default encoder.
+ * Called only on the Socket.IO event thread.
+ *
+ * @author nextremer.com
+ */
+class StreamingEncoder implements Parser.Encoder {
+
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;    // Buffer larger than this is not kept after use.
+
+    private final Parser.Encoder fallback = new IOParser.Encoder();     // Encoder of other packets.
+    private StringBuilder buffer = new StringBuilder(1024);             // Reusable buffer.
+
+    /**
+     * @see Parser.Encoder#encode(Packet, Callback)
+     */
+    @Override
+    public void encode(Packet obj, Callback callback) {
+
+        if((obj.type != Parser.EVENT && obj.type != Parser.ACK)
+                || !(obj.data instanceof JSONArray)
+                || !isFlat((JSONArray)obj.data)) {
+            fallback.encode(obj, callback);
+            return;
+        }
+
+        JSONArray args = (JSONArray)obj.data;
+        StringBuilder sb = buffer;
+        sb.setLength(0);
+
+        sb.append(obj.type);
+
+        if(obj.nsp != null && obj.nsp.length() != 0 && !"/".equals(obj.nsp))
+            sb.append(obj.nsp).append(',');
+
+        if(obj.id >= 0)
+            sb.append(obj.id);
+
+        JsonWriter writer = new JsonWriter(sb);
+        writer.beginArray();
+
+        for(int i = 0; i < args.length(); i++) {
+            Object arg = args.opt(i);
+
+            if(arg instanceof String)
+                writer.value((String)arg);
+            else if(arg == null || arg == JSONObject.NULL)
+                writer.raw("null");
+            else
+                writer.raw(arg.toString());
+        }
+
+        writer.endArray();
+
+        String encoded = sb.toString();
+
+        if(sb.capacity() > MAX_RETAINED_CAPACITY)
+            buffer = new StringBuilder(1024);
+
+        callback.call(new String[] {encoded});
+    }
+
+    /**
+     * Gets if arguments can be written without the default encoder.
+     *
+     * @param args Arguments.
+     * @return Flat or not.
+     */
+    private static boolean isFlat(JSONArray args) {
+
+        for(int i = 0; i < args.length(); i++) {
+            Object arg = args.opt(i);
+
+            if(!(arg instanceof RawJson || arg instanceof String || arg instanceof Number
+                    || arg instanceof Boolean || arg == null || arg == JSONObject.NULL))
+                return false;
+        }
+
+        return true;
+    }
+}
@@ -1,10 +1,16 @@
 package com.nextremer.minarai.client;
 
 import android.support.annotation.NonNull;
+import android.util.Base64;
 
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.util.Iterator;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Utility class.
  *
@@ -30,7 +36,8 @@ class Util {
     }
 
     /**
-     * Duplicate JSONObject.
+     * Duplicate JSONObject. Nested objects and arrays are copied structurally, without encoding and parsing.
+     * Strings, numbers and other values are immutable and shared.
      *
      * @param src Source object.
      * @return Duplicated object.
@@ -41,6 +48,110 @@ class Util {
         if(src == null)
             throw new IllegalArgumentException("src must not be null.");
 
-        return new JSONObject(src.toString());
+        JSONObject copy = new JSONObject();
+        Iterator<?> names = src.keys();
+
+        while(names.hasNext()) {
+            String name = (String)names.next();
+            copy.put(name, duplicateValue(src.opt(name)));
+        }
+
+        return copy;
+    }
+
+    /**
+     * Duplicate JSONArray. Nested objects and arrays are copied structurally, without encoding and parsing.
+     *
+     * @param src Source array.
+     * @return Duplicated array.
+     * @throws JSONException When source array format is invalid.
+     */
+    public static JSONArray duplicate(@NonNull JSONArray src) throws JSONException {
+
+        if(src == null)
+            throw new IllegalArgumentException("src must not be null.");
+
+        JSONArray copy = new JSONArray();
+
+        for(int i = 0; i < src.length(); i++) {
+            copy.put(duplicateValue(src.opt(i)));
+        }
+
+        return copy;
+    }
+
+    /**
+     * Duplicate JSONObject lazily. Only the top level is copied, and nested objects and arrays are copied when first accessed.
+     * Much cheaper than {@link #duplicate(JSONObject)} when only a part of a large tree is read or modified,
+     * but the source must not be modified while the copy is in use.
+     *
+     * @param src Source object.
+     * @return Duplicated object.
+     * @throws JSONException When source object format is invalid.
+     */
+    public static JSONObject lazyDuplicate(@NonNull JSONObject src) throws JSONException {
+
+        if(src == null)
+            throw new IllegalArgumentException("src must not be null.");
+
+        return new LazyJsonObject(src);
+    }
+
+    /**
+     * Duplicate value of JSONObject or JSONArray.
+     *
+     * @param value Value.
+     * @return Copy of object or array. Other values as they are.
+     * @throws JSONException When value format is invalid.
+     */
+    private static Object duplicateValue(Object value) throws JSONException {
+
+        if(value instanceof JSONObject)
+            return duplicate((JSONObject)value);
+
+        if(value instanceof JSONArray)
+            return duplicate((JSONArray)value);
+
+        return value;
+    }
+
+    /**
+     * Make data URL.
+     *
+     * @param type  Media type.
+     * @param bytes Data.
+     * @return Data URL.
+     */
+    public static String toDataUrl(@NonNull String type, @NonNull byte[] bytes) {
+
+        String encoded = Base64.encodeToString(bytes, Base64.NO_WRAP);
+
+        return new StringBuilder(type.length() + encoded.length() + 13)
+                .append("data:").append(type).append(";base64,").append(encoded)
+                .toString();
+    }
+
+    /**
+     * Creates thread factory which makes named daemon threads.
+     *
+     * @param name Thread name prefix.
+     * @return Thread factory.
+     */
+    public static ThreadFactory newThreadFactory(@NonNull final String name) {
+
+        if(name == null)
+            throw new IllegalArgumentException("name must not be null.");
+
+        return new ThreadFactory() {
+
+            private final AtomicInteger count = new AtomicInteger();   // Thread count.
+
+            @Override
+            public Thread newThread(@NonNull Runnable r) {
+                Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
     }
 }
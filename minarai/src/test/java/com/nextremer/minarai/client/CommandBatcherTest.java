@@ -0,0 +1,103 @@
+package com.nextremer.minarai.client;
+
+import android.support.annotation.NonNull;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link CommandBatcher} coalescing only the names opted in.
+ *
+ * @author nextremer.com
+ */
+public class CommandBatcherTest {
+
+    /**
+     * Sink which records emitted commands as "name:value".
+     */
+    private static class RecordingSink implements CommandBatcher.Sink {
+
+        final List<String> emitted = Collections.synchronizedList(new ArrayList<String>());  // Emitted commands.
+
+        @Override
+        public boolean emit(@NonNull String name, @NonNull JSONObject extra, long unixTime) {
+            emitted.add(name + ":" + extra.optInt("v"));
+            return true;
+        }
+    }
+
+    private final RecordingSink sink = new RecordingSink();    // Sink of batcher.
+    private CommandBatcher batcher;                             // Batcher under test.
+
+    /**
+     * Tear down.
+     */
+    @After
+    public void tearDown() {
+        if(batcher != null)
+            batcher.close();
+    }
+
+    /**
+     * Commands of names not opted in are neither dropped nor reordered, and flush pending commands before them.
+     */
+    @Test
+    public void passThroughInOrder() throws Exception {
+
+        batcher = new CommandBatcher(sink, new HashSet<>(Arrays.asList("volume")), 60000L, 32, newLogger());
+
+        assertTrue(batcher.isCoalesced("volume"));
+        assertFalse(batcher.isCoalesced("buy"));
+
+        assertTrue(batcher.add("volume", extra(1), 0L));
+        assertTrue(batcher.add("volume", extra(2), 0L));
+        assertTrue(batcher.pass("buy", extra(1), 0L));
+        assertTrue(batcher.pass("buy", extra(2), 0L));
+        assertTrue(batcher.add("volume", extra(3), 0L));
+        batcher.flush();
+
+        assertEquals(Arrays.asList("volume:2", "buy:1", "buy:2", "volume:3"), sink.emitted);
+
+        MinaraiCommandBatchStats stats = batcher.getStats();
+        assertEquals(3L, stats.getAcceptedCount());
+        assertEquals(1L, stats.getCoalescedCount());
+        assertEquals(2L, stats.getEmittedCount());
+    }
+
+    /**
+     * Make extra data.
+     *
+     * @param value Value.
+     * @return Extra data.
+     */
+    private static JSONObject extra(int value) throws Exception {
+        return new JSONObject().put("v", value);
+    }
+
+    /**
+     * Make logger which logs nothing.
+     */
+    private static Logger newLogger() {
+        return new Logger(new MinaraiLogger() {
+            @Override
+            public boolean isLoggable(int level) {
+                return false;
+            }
+
+            @Override
+            public void log(int level, @NonNull String tag, @NonNull String msg, Throwable tr) {
+            }
+        });
+    }
+}
@@ -0,0 +1,138 @@
+package com.nextremer.minarai.client;
+
+import android.support.annotation.NonNull;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link ConversationStore} scoped to the user.
+ *
+ * @author nextremer.com
+ */
+public class ConversationStoreTest {
+
+    private static final long NOW = 1500000000L;    // UNIX time of first event.
+
+    private final File file = newFile();    // Conversation file.
+    private ConversationStore store;        // Store under test.
+
+    /**
+     * Tear down.
+     */
+    @After
+    public void tearDown() {
+
+        if(store != null)
+            store.close();
+
+        if(file.exists())
+            assertTrue(file.delete());
+    }
+
+    /**
+     * Events stored for a user are not read for the next user, and are removed from the file when read.
+     */
+    @Test
+    public void userSwitch() {
+
+        store = newStore("alice");
+        store.add(newMessage("a1", 0));
+        store.add(newMessage("a2", 1));
+        store.close();
+
+        store = newStore("bob");
+        assertEquals(0, store.getLatest(10).size());
+        store.add(newMessage("b1", 2));
+        store.close();
+
+        store = newStore("bob");
+        List<MinaraiChatEvent> events = store.getLatest(10);
+        assertEquals(1, events.size());
+        assertEquals("b1", events.get(0).getId());
+        store.close();
+
+        // The file holds events of one user at a time.
+        store = newStore("alice");
+        assertEquals(0, store.getLatest(10).size());
+        store.close();
+
+        store = newStore("bob");
+        assertEquals(0, store.getLatest(10).size());
+    }
+
+    /**
+     * Clear removes events and the file, including events added but not written yet.
+     */
+    @Test
+    public void clear() {
+
+        store = newStore("alice");
+
+        for(int i = 0; i < 100; i++)
+            store.add(newMessage("a" + i, i));
+
+        store.clear();
+        assertEquals(0, store.getLatest(200).size());
+        store.close();
+
+        assertFalse(file.exists());
+
+        store = newStore("alice");
+        assertEquals(0, store.getLatest(200).size());
+    }
+
+    /**
+     * Make store of the file.
+     *
+     * @param userId User id.
+     * @return Store.
+     */
+    private ConversationStore newStore(String userId) {
+        return new ConversationStore(file, userId, 100, new Logger(new MinaraiLogger() {
+            @Override
+            public boolean isLoggable(int level) {
+                return false;
+            }
+
+            @Override
+            public void log(int level, @NonNull String tag, @NonNull String msg, Throwable tr) {
+            }
+        }));
+    }
+
+    /**
+     * Make MESSAGE event data.
+     *
+     * @param id     Payload id.
+     * @param offset Seconds after {@link #NOW}.
+     * @return Event data.
+     */
+    private static MinaraiChatEvent newMessage(String id, int offset) {
+        return new MinaraiChatEvent(MinaraiEvent.MESSAGE, null,
+                "{\"id\":\"" + id + "\",\"head\":{\"timestampUnixTime\":" + (NOW + offset) + "},\"body\":{}}");
+    }
+
+    /**
+     * Make path of temporary file which does not exist.
+     */
+    private static File newFile() {
+
+        try {
+            File file = File.createTempFile("minarai-conversation", null);
+            assertTrue(file.delete());
+            return file;
+        }
+        catch(IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
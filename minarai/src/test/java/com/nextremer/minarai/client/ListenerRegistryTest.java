@@ -0,0 +1,266 @@
+package com.nextremer.minarai.client;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link ListenerRegistry} under concurrent registration and snapshots.
+ *
+ * @author nextremer.com
+ */
+public class ListenerRegistryTest {
+
+    private static final int THREADS = 8;       // Number of writer threads.
+    private static final int LISTENERS = 500;   // Number of listeners per writer thread.
+
+    private final MinaraiDispatcher dispatcher = MinaraiDispatcher.inline();    // Dispatcher of registrations.
+
+    /**
+     * Concurrent adds are neither lost nor duplicated.
+     */
+    @Test
+    public void concurrentAdd() throws Throwable {
+
+        final ListenerRegistry registry = new ListenerRegistry(null);
+        final List<List<Object>> added = newListeners();
+
+        runWriters(new Writer() {
+            @Override
+            public void run(int thread) {
+                for(Object listener : added.get(thread)) {
+                    registry.add(MinaraiEvent.MESSAGE, listener, dispatcher);
+                }
+            }
+        });
+
+        Map<Object, Integer> counts = count(registry.get(MinaraiEvent.MESSAGE));
+        assertEquals(THREADS * LISTENERS, counts.size());
+
+        for(List<Object> listeners : added) {
+            for(Object listener : listeners) {
+                assertEquals(Integer.valueOf(1), counts.get(listener));
+            }
+        }
+
+        assertEquals(0, registry.get(MinaraiEvent.SYNC).length);
+    }
+
+    /**
+     * Concurrent adds and removes leave exactly the listeners which are not removed,
+     * while snapshots taken meanwhile are always consistent.
+     */
+    @Test
+    public void concurrentAddRemoveAndSnapshot() throws Throwable {
+
+        final ListenerRegistry registry = new ListenerRegistry(null);
+        final List<List<Object>> added = newListeners();
+        final AtomicBoolean done = new AtomicBoolean();
+        final AtomicReference<Throwable> readerError = new AtomicReference<>();
+
+        // Reader checks that each snapshot has no null and no duplicate.
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while(!done.get()) {
+                        ListenerRegistry.Registration[] snapshot = registry.get(MinaraiEvent.MESSAGE);
+                        Map<Object, Integer> counts = count(snapshot);
+
+                        for(Integer count : counts.values()) {
+                            assertEquals(Integer.valueOf(1), count);
+                        }
+                    }
+                }
+                catch(Throwable ex) {
+                    readerError.set(ex);
+                }
+            }
+        });
+        reader.start();
+
+        // Each writer adds its listeners, then removes even ones. Removal of unknown listener fails.
+        runWriters(new Writer() {
+            @Override
+            public void run(int thread) {
+
+                List<Object> listeners = added.get(thread);
+
+                for(Object listener : listeners) {
+                    registry.add(MinaraiEvent.MESSAGE, listener, dispatcher);
+                    assertTrue(contains(registry.get(MinaraiEvent.MESSAGE), listener));
+                }
+
+                for(int i = 0; i < listeners.size(); i += 2) {
+                    assertTrue(registry.remove(MinaraiEvent.MESSAGE, listeners.get(i)));
+                    assertFalse(contains(registry.get(MinaraiEvent.MESSAGE), listeners.get(i)));
+                }
+
+                assertFalse(registry.remove(MinaraiEvent.MESSAGE, new Object()));
+            }
+        });
+
+        done.set(true);
+        reader.join();
+        assertNull(readerError.get());
+
+        Map<Object, Integer> counts = count(registry.get(MinaraiEvent.MESSAGE));
+        assertEquals(THREADS * LISTENERS / 2, counts.size());
+
+        for(List<Object> listeners : added) {
+            for(int i = 0; i < listeners.size(); i++) {
+                assertEquals((i % 2 == 0) ? null : Integer.valueOf(1), counts.get(listeners.get(i)));
+            }
+        }
+    }
+
+    /**
+     * Listener added more than once is kept as many times, and removed one by one.
+     */
+    @Test
+    public void duplicateListener() throws Throwable {
+
+        final ListenerRegistry registry = new ListenerRegistry(null);
+        final Object listener = new Object();
+
+        runWriters(new Writer() {
+            @Override
+            public void run(int thread) {
+                registry.add(MinaraiEvent.LOGS, listener, dispatcher);
+            }
+        });
+
+        assertEquals(THREADS, registry.get(MinaraiEvent.LOGS).length);
+
+        runWriters(new Writer() {
+            @Override
+            public void run(int thread) {
+                assertTrue(registry.remove(MinaraiEvent.LOGS, listener));
+            }
+        });
+
+        assertEquals(0, registry.get(MinaraiEvent.LOGS).length);
+        assertFalse(registry.remove(MinaraiEvent.LOGS, listener));
+    }
+
+    /**
+     * Task of writer thread.
+     */
+    private interface Writer {
+
+        /**
+         * Run task.
+         *
+         * @param thread Index of thread.
+         */
+        void run(int thread);
+    }
+
+    /**
+     * Run writers on threads which start at once, and rethrow the first error.
+     *
+     * @param writer Task.
+     */
+    private static void runWriters(final Writer writer) throws Throwable {
+
+        final CyclicBarrier start = new CyclicBarrier(THREADS);
+        final CountDownLatch finished = new CountDownLatch(THREADS);
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+
+        for(int i = 0; i < THREADS; i++) {
+            final int thread = i;
+
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        writer.run(thread);
+                    }
+                    catch(Throwable ex) {
+                        error.compareAndSet(null, ex);
+                    }
+                    finally {
+                        finished.countDown();
+                    }
+                }
+            }).start();
+        }
+
+        finished.await();
+
+        if(error.get() != null)
+            throw error.get();
+    }
+
+    /**
+     * Make distinct listeners for each writer thread.
+     */
+    private static List<List<Object>> newListeners() {
+
+        List<List<Object>> result = new ArrayList<>(THREADS);
+
+        for(int i = 0; i < THREADS; i++) {
+            List<Object> listeners = new ArrayList<>(LISTENERS);
+
+            for(int j = 0; j < LISTENERS; j++) {
+                listeners.add(new Object());
+            }
+
+            result.add(Collections.unmodifiableList(listeners));
+        }
+
+        return result;
+    }
+
+    /**
+     * Count occurrences of listeners in registrations.
+     *
+     * @param registrations Registrations.
+     * @return Occurrences by listener.
+     */
+    private static Map<Object, Integer> count(ListenerRegistry.Registration[] registrations) {
+
+        Map<Object, Integer> counts = new IdentityHashMap<>();
+
+        for(ListenerRegistry.Registration registration : registrations) {
+            assertNotNull(registration);
+
+            Integer count = counts.get(registration.listener);
+            counts.put(registration.listener, (count != null) ? count + 1 : 1);
+        }
+
+        return counts;
+    }
+
+    /**
+     * Gets if registrations contain listener.
+     *
+     * @param registrations Registrations.
+     * @param listener      Listener.
+     * @return Contained or not.
+     */
+    private static boolean contains(ListenerRegistry.Registration[] registrations, Object listener) {
+
+        for(ListenerRegistry.Registration registration : registrations) {
+            if(registration.listener == listener)
+                return true;
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,134 @@
+package com.nextremer.minarai.client;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of queued {@link MinaraiDispatcher}.
+ *
+ * @author nextremer.com
+ */
+public class MinaraiDispatcherTest {
+
+    /**
+     * Executor which keeps tasks until run, and rejects while requested.
+     */
+    private static class ManualExecutor implements Executor {
+
+        final List<Runnable> tasks = new ArrayList<>();     // Tasks not run yet.
+        int rejects;                                        // Number of tasks to reject.
+
+        @Override
+        public void execute(Runnable command) {
+
+            if(rejects > 0) {
+                rejects--;
+                throw new RejectedExecutionException("Rejected for test.");
+            }
+
+            tasks.add(command);
+        }
+
+        /**
+         * Run tasks until none is left.
+         */
+        void runAll() {
+            while(!tasks.isEmpty()) {
+                tasks.remove(0).run();
+            }
+        }
+    }
+
+    /**
+     * Listener which records events.
+     */
+    private static class RecordingListener implements MinaraiEventDataListener {
+
+        final List<MinaraiEventData> received = new ArrayList<>();  // Received events.
+
+        @Override
+        public void onEvent(MinaraiEventData data) {
+            received.add(data);
+        }
+    }
+
+    /**
+     * Coalescing does not replace queued events while the queue has room.
+     */
+    @Test
+    public void coalesceOnlyWhenFull() {
+
+        ManualExecutor executor = new ManualExecutor();
+        MinaraiDispatcher dispatcher = MinaraiDispatcher.executor(executor, 3, MinaraiOverflowPolicy.COALESCE);
+        RecordingListener listener = new RecordingListener();
+        ListenerRegistry.Registration registration = new ListenerRegistry.Registration(listener, dispatcher, null);
+
+        MinaraiEventData[] events = new MinaraiEventData[4];
+
+        for(int i = 0; i < events.length; i++) {
+            events[i] = newMessage("m" + i);
+            dispatcher.dispatch(registration, events[i]);
+        }
+
+        executor.runAll();
+
+        // The first three fill the queue, and the fourth replaces the latest queued one.
+        assertEquals(3, listener.received.size());
+        assertSame(events[0], listener.received.get(0));
+        assertSame(events[1], listener.received.get(1));
+        assertSame(events[3], listener.received.get(2));
+        assertEquals(1L, dispatcher.getStats().getCoalescedCount());
+        assertEquals(0L, dispatcher.getStats().getDroppedCount());
+    }
+
+    /**
+     * Rejected drain task does not stall the dispatcher. The event is delivered by the next dispatch.
+     */
+    @Test
+    public void rejectedExecution() {
+
+        ManualExecutor executor = new ManualExecutor();
+        MinaraiDispatcher dispatcher = MinaraiDispatcher.executor(executor, 8, MinaraiOverflowPolicy.DROP_OLDEST);
+        RecordingListener listener = new RecordingListener();
+        ListenerRegistry.Registration registration = new ListenerRegistry.Registration(listener, dispatcher, null);
+
+        MinaraiEventData first = newMessage("m0");
+        MinaraiEventData second = newMessage("m1");
+
+        executor.rejects = 1;
+
+        try {
+            dispatcher.dispatch(registration, first);
+            fail("Rejection is not propagated.");
+        }
+        catch(RejectedExecutionException ex) {
+            // Expected.
+        }
+
+        dispatcher.dispatch(registration, second);
+        executor.runAll();
+
+        assertEquals(2, listener.received.size());
+        assertSame(first, listener.received.get(0));
+        assertSame(second, listener.received.get(1));
+    }
+
+    /**
+     * Make MESSAGE event data.
+     *
+     * @param id Payload id.
+     * @return Event data.
+     */
+    private static MinaraiEventData newMessage(String id) {
+        return new MinaraiChatEvent(MinaraiEvent.MESSAGE, null, "{\"id\":\"" + id + "\"}");
+    }
+}
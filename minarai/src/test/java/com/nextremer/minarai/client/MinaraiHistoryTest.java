@@ -0,0 +1,208 @@
+package com.nextremer.minarai.client;
+
+import android.support.annotation.NonNull;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link MinaraiHistory} matching responses to its requests.
+ *
+ * @author nextremer.com
+ */
+public class MinaraiHistoryTest {
+
+    private static final long NOW = 1500000000L;    // UNIX time of latest entry.
+
+    /**
+     * Fetcher which records requests without sending.
+     */
+    private static class RecordingFetcher implements MinaraiHistory.Fetcher {
+
+        final List<String> ids = new ArrayList<>();    // Payload ids of requests.
+        private int count;                              // Number of ids made.
+
+        @Override
+        public synchronized String nextId() {
+            return "history-" + (++count) + "-logs";
+        }
+
+        @Override
+        public synchronized boolean fetch(@NonNull String id, @NonNull MinaraiGetLogsOptions options) {
+            ids.add(id);
+            return true;
+        }
+
+        synchronized String last() {
+            return ids.get(ids.size() - 1);
+        }
+    }
+
+    /**
+     * Callback which records the result.
+     */
+    private static class RecordingCallback implements MinaraiHistoryCallback {
+
+        final CountDownLatch loaded = new CountDownLatch(1);   // Counted down when loaded.
+        volatile List<MinaraiChatEvent> entries;                // Loaded entries.
+        volatile boolean hasMore;                               // Loaded hasMore.
+
+        @Override
+        public void onLoaded(@NonNull List<MinaraiChatEvent> entries, boolean hasMore) {
+            this.entries = entries;
+            this.hasMore = hasMore;
+            loaded.countDown();
+        }
+    }
+
+    private final RecordingFetcher fetcher = new RecordingFetcher();   // Fetcher of history.
+    private MinaraiHistory history;                                     // History under test.
+
+    /**
+     * Tear down.
+     */
+    @After
+    public void tearDown() {
+        if(history != null)
+            history.close();
+    }
+
+    /**
+     * LOGS event of another request adds entries, but does not complete the waiting load.
+     */
+    @Test
+    public void unrelatedLogs() {
+
+        history = newHistory(60000L);
+
+        RecordingCallback callback = new RecordingCallback();
+        history.loadBefore(NOW + 1L, 2, callback);
+        assertEquals(1, fetcher.ids.size());
+
+        // Response to getLogs called by app.
+        history.addAppRequest("app-1-logs");
+        history.onLogs(newLogs("app-1-logs", NOW - 10L, "a", "b", "c", "d"));
+        assertEquals(1L, callback.loaded.getCount());
+        assertEquals(4, history.size());
+
+        history.onLogs(newLogs(fetcher.last(), NOW, "e", "f", "g"));
+        assertEquals(0L, callback.loaded.getCount());
+        assertEquals(2, callback.entries.size());
+        assertEquals("f", callback.entries.get(0).getId());
+        assertEquals("g", callback.entries.get(1).getId());
+        assertTrue(callback.hasMore);
+    }
+
+    /**
+     * Lost response completes the load with local entries, and its late arrival does not complete the next load.
+     */
+    @Test
+    public void timeout() throws InterruptedException {
+
+        history = newHistory(50L);
+        history.onLogs(newLogs("app-1-logs", NOW - 10L, "a", "b"));
+
+        RecordingCallback first = new RecordingCallback();
+        history.loadBefore(NOW + 1L, 5, first);
+        String expired = fetcher.last();
+
+        assertTrue(first.loaded.await(5L, TimeUnit.SECONDS));
+        assertEquals(2, first.entries.size());
+        assertTrue(first.hasMore);
+
+        RecordingCallback second = new RecordingCallback();
+        history.loadBefore(NOW + 1L, 5, second);
+        assertEquals(2, fetcher.ids.size());
+
+        history.onLogs(newLogs(expired, NOW - 5L, "c"));
+        assertEquals(1L, second.loaded.getCount());
+
+        history.onLogs(newLogs(fetcher.last(), NOW, "d"));
+        assertEquals(0L, second.loaded.getCount());
+        assertEquals(4, second.entries.size());
+        assertEquals(false, second.hasMore);
+    }
+
+    /**
+     * Response whose id is not echoed completes the load, unless app request is waiting for response.
+     */
+    @Test
+    public void idNotEchoed() {
+
+        history = newHistory(60000L);
+
+        RecordingCallback first = new RecordingCallback();
+        history.loadBefore(NOW + 1L, 2, first);
+
+        history.onLogs(newLogs("server-1", NOW, "a", "b", "c"));
+        assertEquals(0L, first.loaded.getCount());
+        assertEquals(2, first.entries.size());
+
+        // App request is answered first.
+        history.addAppRequest("app-1-logs");
+
+        RecordingCallback second = new RecordingCallback();
+        history.loadBefore(NOW - 2L, 2, second);
+        assertEquals(2, fetcher.ids.size());
+
+        history.onLogs(newLogs("server-2", NOW - 10L, "d"));
+        assertEquals(1L, second.loaded.getCount());
+
+        history.onLogs(newLogs("server-3", NOW - 3L, "e", "f", "g"));
+        assertEquals(0L, second.loaded.getCount());
+        assertEquals("f", second.entries.get(0).getId());
+        assertEquals("g", second.entries.get(1).getId());
+    }
+
+    /**
+     * Make history with the fetcher.
+     *
+     * @param timeoutMillis Timeout of request.
+     * @return History.
+     */
+    private MinaraiHistory newHistory(long timeoutMillis) {
+        return new MinaraiHistory(fetcher, 100, timeoutMillis, new Logger(new MinaraiLogger() {
+            @Override
+            public boolean isLoggable(int level) {
+                return false;
+            }
+
+            @Override
+            public void log(int level, @NonNull String tag, @NonNull String msg, Throwable tr) {
+            }
+        }));
+    }
+
+    /**
+     * Make LOGS event data. Entries are one second apart.
+     *
+     * @param id       Payload id.
+     * @param end      UNIX time of the newest entry.
+     * @param entryIds Payload ids of entries in chronological order.
+     * @return Event data.
+     */
+    private static MinaraiLogsEvent newLogs(String id, long end, String... entryIds) {
+
+        StringBuilder logs = new StringBuilder();
+
+        for(int i = 0; i < entryIds.length; i++) {
+            if(i > 0)
+                logs.append(',');
+
+            long unixTime = end - entryIds.length + 1 + i;
+            logs.append("{\"id\":\"").append(entryIds[i])
+                    .append("\",\"head\":{\"timestampUnixTime\":").append(unixTime).append("}}");
+        }
+
+        return new MinaraiLogsEvent(MinaraiEvent.LOGS, null,
+                "{\"id\":\"" + id + "\",\"body\":{\"logs\":[" + logs + "]}}");
+    }
+}
@@ -0,0 +1,105 @@
+package com.nextremer.minarai.client;
+
+import android.support.annotation.NonNull;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import okhttp3.MediaType;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link MinaraiUploadTask} canceled and {@link StreamRequestBody} released before upload.
+ *
+ * @author nextremer.com
+ */
+public class MinaraiUploadTaskTest {
+
+    /**
+     * Callback which records failures.
+     */
+    private static class RecordingCallback implements MinaraiUploadCallback {
+
+        final List<IOException> failures = new ArrayList<>();  // Failures reported.
+
+        @Override
+        public void onProcessed(long originalBytes, long processedBytes) {
+        }
+
+        @Override
+        public void onProgress(long bytesSent, long totalBytes) {
+        }
+
+        @Override
+        public void onSuccess(@NonNull URL url) {
+        }
+
+        @Override
+        public void onFailure(@NonNull IOException ex) {
+            failures.add(ex);
+        }
+    }
+
+    /**
+     * Input stream which records whether it is closed.
+     */
+    private static class RecordingInputStream extends ByteArrayInputStream {
+
+        int closed;     // Number of close calls.
+
+        RecordingInputStream() {
+            super(new byte[] {1, 2, 3});
+        }
+
+        @Override
+        public void close() {
+            closed++;
+        }
+    }
+
+    /**
+     * Cancel is reported to callback once, and later completion is not.
+     */
+    @Test
+    public void cancelReportsFailure() {
+
+        RecordingCallback callback = new RecordingCallback();
+        MinaraiUploadTask task = new MinaraiUploadTask(callback);
+
+        assertTrue(task.cancel(false));
+        assertFalse(task.cancel(false));
+        assertFalse(task.fail(new IOException("Late failure.")));
+
+        assertTrue(task.isCancelled());
+        assertEquals(1, callback.failures.size());
+    }
+
+    /**
+     * Stream never written is closed by release, and stream already opened is left to its reader.
+     */
+    @Test
+    public void releaseClosesUnwrittenStream() throws IOException {
+
+        RecordingInputStream unwritten = new RecordingInputStream();
+        StreamRequestBody body = StreamRequestBody.ofStream(MediaType.parse("image/jpeg"), unwritten, 3L);
+
+        body.release();
+        body.release();
+        assertEquals(1, unwritten.closed);
+
+        RecordingInputStream opened = new RecordingInputStream();
+        body = StreamRequestBody.ofStream(MediaType.parse("image/jpeg"), opened, 3L);
+
+        body.openStream().close();
+        body.release();
+        assertEquals(1, opened.closed);
+    }
+}
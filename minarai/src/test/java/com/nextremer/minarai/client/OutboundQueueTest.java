@@ -0,0 +1,111 @@
+package com.nextremer.minarai.client;
+
+import android.support.annotation.NonNull;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link OutboundQueue} surviving process death while sending.
+ *
+ * @author nextremer.com
+ */
+public class OutboundQueueTest {
+
+    private final File file = newFile();    // Queue file.
+
+    /**
+     * Tear down.
+     */
+    @After
+    public void tearDown() {
+        if(file.exists())
+            assertTrue(file.delete());
+    }
+
+    /**
+     * Messages are kept in the file until sent, and messages sent before process death are not replayed.
+     */
+    @Test
+    public void replayAfterDeath() {
+
+        OutboundQueue queue = newQueue();
+        assertTrue(queue.add(newRecord("m1")));
+        assertTrue(queue.add(newRecord("m2")));
+        assertTrue(queue.add(newRecord("m3")));
+
+        // Process dies after the first message is sent.
+        List<OutboundQueue.Record> pending = queue.peek();
+        assertEquals(3, pending.size());
+        queue.markSent(pending.get(0));
+
+        queue = newQueue();
+        pending = queue.peek();
+        assertEquals(2, pending.size());
+        assertEquals("m2", pending.get(0).id);
+        assertEquals("m3", pending.get(1).id);
+
+        // Replay of the sent message is suppressed.
+        assertTrue(queue.add(newRecord("m1")));
+        assertEquals(2, queue.size());
+
+        for(OutboundQueue.Record record : pending)
+            queue.markSent(record);
+
+        assertEquals(0, queue.size());
+        assertFalse(file.exists());
+
+        assertTrue(queue.add(newRecord("m3")));
+        assertEquals(0, queue.size());
+    }
+
+    /**
+     * Make queue of the file.
+     */
+    private OutboundQueue newQueue() {
+        return new OutboundQueue(file, 10, new Logger(new MinaraiLogger() {
+            @Override
+            public boolean isLoggable(int level) {
+                return false;
+            }
+
+            @Override
+            public void log(int level, @NonNull String tag, @NonNull String msg, Throwable tr) {
+            }
+        }));
+    }
+
+    /**
+     * Make message.
+     *
+     * @param id Payload id.
+     * @return Message.
+     */
+    private static OutboundQueue.Record newRecord(String id) {
+        return new OutboundQueue.Record("message", id, 1500000000L, null, new JSONObject());
+    }
+
+    /**
+     * Make path of temporary file which does not exist.
+     */
+    private static File newFile() {
+
+        try {
+            File file = File.createTempFile("minarai-outbound", null);
+            assertTrue(file.delete());
+            return file;
+        }
+        catch(IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}